@@ -0,0 +1,186 @@
+package geometries;
+
+/**
+ * Batch ray intersection kernels - one ray against a run of spheres or triangles stored
+ * as struct-of-arrays.
+ * <p>
+ * Every kernel is a single branch-free loop over contiguous arrays, the shape that the JIT compiler
+ * turns into SIMD code (4 or 8 lanes on AVX2 / AVX-512) by auto-vectorization. The kernels calculate
+ * only the branch-free part of the tests; the owners finish every test with the same arithmetic as
+ * their scalar code, so the batch and the scalar paths find exactly the same intersections.
+ * </p>
+ * <p>
+ * The kernels are used in the leaves of {@link SphereSet} and for the spheres and triangles held
+ * directly in {@link Geometries}. They are on by default; {@link #setEnabled(boolean)}, or the system
+ * property {@code raytracer.batchKernels=false}, switches back to the scalar code for measurements.
+ * </p>
+ */
+public final class BatchKernels {
+    /** Whether the batch kernels are used */
+    private static volatile boolean enabled =
+            Boolean.parseBoolean(System.getProperty("raytracer.batchKernels", "true"));
+
+    /** Output columns of the kernels, one set per rendering thread */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Growable output columns of the kernels - 2 for the sphere kernel followed by 8 for the triangle kernel.
+     * A scratch is marked busy while its columns are read, so a nested user (a {@link SphereSet} or
+     * a {@link Geometries} inside a collection) takes the next scratch of the thread.
+     */
+    static final class Scratch {
+        /** The columns */
+        private final double[][] columns = new double[10][0];
+        /** Whether the columns are in use */
+        private boolean busy;
+        /** The scratch for a nested user */
+        private Scratch next;
+
+        /**
+         * @param length minimal column length
+         * @return the columns
+         */
+        double[][] columns(int length) {
+            if (columns[0].length < length) {
+                int capacity = Math.max(length, 2 * columns[0].length);
+                for (int c = 0; c < columns.length; ++c) columns[c] = new double[capacity];
+            }
+            return columns;
+        }
+
+        /**
+         * Releases the columns.
+         */
+        void release() {
+            busy = false;
+        }
+    }
+
+    /** Utility class - no instances */
+    private BatchKernels() {
+    }
+
+    /**
+     * Switches between the batch kernels and the scalar intersection code.
+     *
+     * @param enabled whether to use the batch kernels
+     */
+    public static void setEnabled(boolean enabled) {
+        BatchKernels.enabled = enabled;
+    }
+
+    /**
+     * @return whether the batch kernels are used
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes the output columns of the current thread; they must be released after use.
+     *
+     * @return the scratch
+     */
+    static Scratch scratch() {
+        Scratch scratch = SCRATCH.get();
+        while (scratch.busy) {
+            if (scratch.next == null) scratch.next = new Scratch();
+            scratch = scratch.next;
+        }
+        scratch.busy = true;
+        return scratch;
+    }
+
+    /**
+     * Sphere kernel: for every sphere, with u the vector from the ray head to the center,
+     * calculates the projection of u on the ray direction and the squared length of u.
+     *
+     * @param cx   center X per sphere
+     * @param cy   center Y per sphere
+     * @param cz   center Z per sphere
+     * @param from first sphere
+     * @param to   end of the sphere range (exclusive)
+     * @param ox   ray origin X
+     * @param oy   ray origin Y
+     * @param oz   ray origin Z
+     * @param dx   ray direction X
+     * @param dy   ray direction Y
+     * @param dz   ray direction Z
+     * @param uv   receives u·v per sphere, from index 0
+     * @param uu   receives u·u per sphere, from index 0
+     */
+    static void spheres(double[] cx, double[] cy, double[] cz, int from, int to,
+                        double ox, double oy, double oz, double dx, double dy, double dz, double[] uv, double[] uu) {
+        for (int i = from; i < to; ++i) {
+            double ux = cx[i] - ox, uy = cy[i] - oy, uz = cz[i] - oz;
+            uv[i - from] = ux * dx + uy * dy + uz * dz;
+            uu[i - from] = ux * ux + uy * uy + uz * uz;
+        }
+    }
+
+    /**
+     * Sphere kernel over single precision centers - see
+     * {@link #spheres(double[], double[], double[], int, int, double, double, double, double, double, double, double[], double[])}.
+     */
+    static void spheres(float[] cx, float[] cy, float[] cz, int from, int to,
+                        double ox, double oy, double oz, double dx, double dy, double dz, double[] uv, double[] uu) {
+        for (int i = from; i < to; ++i) {
+            double ux = cx[i] - ox, uy = cy[i] - oy, uz = cz[i] - oz;
+            uv[i - from] = ux * dx + uy * dy + uz * dz;
+            uu[i - from] = ux * ux + uy * uy + uz * uz;
+        }
+    }
+
+    /**
+     * Triangle kernel, with the arithmetic of {@link Triangle}: the plane test (normal·direction and
+     * normal·(A - head)) and, for every side, the length of the normal of the triangle formed by the
+     * ray head and the side, and the dot product of its unit normal with the ray direction.
+     *
+     * @param v      vertex columns - A X,Y,Z, B X,Y,Z, C X,Y,Z (9 columns)
+     * @param n      plane unit normal columns - X,Y,Z (3 columns)
+     * @param count  amount of triangles
+     * @param ox     ray origin X
+     * @param oy     ray origin Y
+     * @param oz     ray origin Z
+     * @param dx     ray direction X
+     * @param dy     ray direction Y
+     * @param dz     ray direction Z
+     * @param out    receives normal·direction, normal·(A - head), then per side AB, BC, CA
+     *               the normal length and the dot product (8 columns)
+     * @param column first output column
+     */
+    static void triangles(double[][] v, double[][] n, int count,
+                          double ox, double oy, double oz, double dx, double dy, double dz, double[][] out, int column) {
+        double[] axs = v[0], ays = v[1], azs = v[2], bxs = v[3], bys = v[4], bzs = v[5], cxs = v[6], cys = v[7], czs = v[8];
+        double[] nxs = n[0], nys = n[1], nzs = n[2];
+        double[] nv = out[column], num = out[column + 1], l1 = out[column + 2], d1 = out[column + 3];
+        double[] l2 = out[column + 4], d2 = out[column + 5], l3 = out[column + 6], d3 = out[column + 7];
+        for (int i = 0; i < count; ++i) {
+            double ax = axs[i] - ox, ay = ays[i] - oy, az = azs[i] - oz;
+            double bx = bxs[i] - ox, by = bys[i] - oy, bz = bzs[i] - oz;
+            double cx = cxs[i] - ox, cy = cys[i] - oy, cz = czs[i] - oz;
+            double nx = nxs[i], ny = nys[i], nz = nzs[i];
+            nv[i] = nx * dx + ny * dy + nz * dz;
+            num[i] = nx * ax + ny * ay + nz * az;
+
+            double sx = ay * bz - az * by, sy = az * bx - ax * bz, sz = ax * by - ay * bx;
+            double length = Math.sqrt(sx * sx + sy * sy + sz * sz);
+            l1[i] = length;
+            d1[i] = sx / length * dx + sy / length * dy + sz / length * dz;
+
+            sx = by * cz - bz * cy;
+            sy = bz * cx - bx * cz;
+            sz = bx * cy - by * cx;
+            length = Math.sqrt(sx * sx + sy * sy + sz * sz);
+            l2[i] = length;
+            d2[i] = sx / length * dx + sy / length * dy + sz / length * dz;
+
+            sx = cy * az - cz * ay;
+            sy = cz * ax - cx * az;
+            sz = cx * ay - cy * ax;
+            length = Math.sqrt(sx * sx + sy * sy + sz * sz);
+            l3[i] = length;
+            d3[i] = sx / length * dx + sy / length * dy + sz / length * dz;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package geometries;
+
+import primitives.Point;
+
+/**
+ * Bicubic patch defined by a 4x4 grid of control points, with a Bezier or a uniform B-spline basis.
+ * <p>
+ * Both bases are non-negative and sum to 1, so the patch lies inside the convex hull of its
+ * control points, and the box of the control points bounds it.
+ * </p>
+ */
+public class BicubicPatch extends ParametricSurface {
+
+    /**
+     * The basis functions of the patch.
+     */
+    public enum Basis {
+        /** Bernstein polynomials - the patch passes through the corner control points */
+        BEZIER,
+        /** Uniform cubic B-spline - the patch is one span of a smooth B-spline surface */
+        B_SPLINE;
+
+        /**
+         * Evaluates the 4 basis functions.
+         *
+         * @param t   the parameter in [0,1]
+         * @param out receives the 4 weights
+         */
+        void weights(double t, double[] out) {
+            double s = 1 - t;
+            switch (this) {
+                case BEZIER -> {
+                    out[0] = s * s * s;
+                    out[1] = 3 * t * s * s;
+                    out[2] = 3 * t * t * s;
+                    out[3] = t * t * t;
+                }
+                case B_SPLINE -> {
+                    out[0] = s * s * s / 6;
+                    out[1] = (3 * t * t * t - 6 * t * t + 4) / 6;
+                    out[2] = (-3 * t * t * t + 3 * t * t + 3 * t + 1) / 6;
+                    out[3] = t * t * t / 6;
+                }
+            }
+        }
+    }
+
+    /** Control point coordinates - 16 points row by row, 3 values per point */
+    private final double[] control = new double[48];
+    /** The basis functions */
+    private final Basis basis;
+    /** Box of the control points */
+    private final BoundingBox box;
+
+    /**
+     * Constructs a patch.
+     *
+     * @param basis         the basis functions
+     * @param controlPoints 16 control points, row by row (4 points along u in each of the 4 rows along v)
+     */
+    public BicubicPatch(Basis basis, Point... controlPoints) {
+        if (basis == null || controlPoints.length != 16)
+            throw new IllegalArgumentException("Bicubic patch requires a basis and 16 control points");
+        this.basis = basis;
+        for (int i = 0; i < 16; ++i) {
+            control[3 * i] = controlPoints[i].getX();
+            control[3 * i + 1] = controlPoints[i].getY();
+            control[3 * i + 2] = controlPoints[i].getZ();
+        }
+        box = BoundingBox.ofPoints(controlPoints);
+    }
+
+    /**
+     * Constructs a Bezier patch.
+     *
+     * @param controlPoints 16 control points, row by row
+     */
+    public BicubicPatch(Point... controlPoints) {
+        this(Basis.BEZIER, controlPoints);
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return box;
+    }
+
+    @Override
+    protected void evaluate(double u, double v, double[] out, int offset) {
+        double[] wu = new double[4], wv = new double[4];
+        basis.weights(u, wu);
+        basis.weights(v, wv);
+        double x = 0, y = 0, z = 0;
+        for (int i = 0; i < 4; ++i)
+            for (int j = 0; j < 4; ++j) {
+                double w = wv[i] * wu[j];
+                int p = 3 * (4 * i + j);
+                x += w * control[p];
+                y += w * control[p + 1];
+                z += w * control[p + 2];
+            }
+        out[offset] = x;
+        out[offset + 1] = y;
+        out[offset + 2] = z;
+    }
+
+    /**
+     * Evaluates the surface point at the given parameters.
+     *
+     * @param u first parameter in [0,1]
+     * @param v second parameter in [0,1]
+     * @return the point
+     */
+    public Point getPoint(double u, double v) {
+        double[] xyz = new double[3];
+        evaluate(u, v, xyz, 0);
+        return new Point(xyz[0], xyz[1], xyz[2]);
+    }
+}
@@ -0,0 +1,214 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Axis-aligned bounding box (AABB) used for quick rejection of rays before
+ * the exact (and usually more expensive) intersection calculation of a geometry.
+ * <p>
+ * The box is immutable, its extents are kept as plain doubles so that the ray-box
+ * slab test does not allocate any objects.
+ * </p>
+ */
+public final class BoundingBox {
+    /** Minimal X coordinate of the box */
+    public final double minX;
+    /** Minimal Y coordinate of the box */
+    public final double minY;
+    /** Minimal Z coordinate of the box */
+    public final double minZ;
+    /** Maximal X coordinate of the box */
+    public final double maxX;
+    /** Maximal Y coordinate of the box */
+    public final double maxY;
+    /** Maximal Z coordinate of the box */
+    public final double maxZ;
+
+    /**
+     * Constructs a bounding box from its extents along each axis.
+     * The values are sorted, so the order of each min/max couple does not matter.
+     *
+     * @param x1 first X extent
+     * @param y1 first Y extent
+     * @param z1 first Z extent
+     * @param x2 second X extent
+     * @param y2 second Y extent
+     * @param z2 second Z extent
+     */
+    public BoundingBox(double x1, double y1, double z1, double x2, double y2, double z2) {
+        minX = Math.min(x1, x2);
+        minY = Math.min(y1, y2);
+        minZ = Math.min(z1, z2);
+        maxX = Math.max(x1, x2);
+        maxY = Math.max(y1, y2);
+        maxZ = Math.max(z1, z2);
+    }
+
+    /**
+     * Constructs a bounding box from two opposite corners.
+     *
+     * @param p1 first corner
+     * @param p2 opposite corner
+     */
+    public BoundingBox(Point p1, Point p2) {
+        this(p1.getX(), p1.getY(), p1.getZ(), p2.getX(), p2.getY(), p2.getZ());
+    }
+
+    /**
+     * Creates the bounding box of a sphere.
+     *
+     * @param center the center of the sphere
+     * @param radius the radius of the sphere
+     * @return the box enclosing the sphere
+     */
+    public static BoundingBox ofSphere(Point center, double radius) {
+        return new BoundingBox(center.getX() - radius, center.getY() - radius, center.getZ() - radius,
+                center.getX() + radius, center.getY() + radius, center.getZ() + radius);
+    }
+
+    /**
+     * Creates the bounding box of a set of points.
+     *
+     * @param points the points (at least one)
+     * @return the smallest box enclosing all the points
+     */
+    public static BoundingBox ofPoints(Point... points) {
+        double x1 = Double.POSITIVE_INFINITY, y1 = Double.POSITIVE_INFINITY, z1 = Double.POSITIVE_INFINITY;
+        double x2 = Double.NEGATIVE_INFINITY, y2 = Double.NEGATIVE_INFINITY, z2 = Double.NEGATIVE_INFINITY;
+        for (Point p : points) {
+            x1 = Math.min(x1, p.getX());
+            y1 = Math.min(y1, p.getY());
+            z1 = Math.min(z1, p.getZ());
+            x2 = Math.max(x2, p.getX());
+            y2 = Math.max(y2, p.getY());
+            z2 = Math.max(z2, p.getZ());
+        }
+        return new BoundingBox(x1, y1, z1, x2, y2, z2);
+    }
+
+    /**
+     * Returns the smallest box that encloses both this box and another one.
+     *
+     * @param other the other box
+     * @return the union box
+     */
+    public BoundingBox union(BoundingBox other) {
+        return new BoundingBox(Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ));
+    }
+
+    /**
+     * Returns the overlapping part of this box and another one.
+     *
+     * @param other the other box
+     * @return the intersection box, or {@code null} if the boxes do not overlap
+     */
+    public BoundingBox intersection(BoundingBox other) {
+        double x1 = Math.max(minX, other.minX), x2 = Math.min(maxX, other.maxX);
+        double y1 = Math.max(minY, other.minY), y2 = Math.min(maxY, other.maxY);
+        double z1 = Math.max(minZ, other.minZ), z2 = Math.min(maxZ, other.maxZ);
+        return x1 > x2 || y1 > y2 || z1 > z2 ? null : new BoundingBox(x1, y1, z1, x2, y2, z2);
+    }
+
+    /**
+     * Returns a copy of the box grown by a margin in every direction.
+     *
+     * @param margin the margin to add on each side
+     * @return the expanded box
+     */
+    public BoundingBox expand(double margin) {
+        return new BoundingBox(minX - margin, minY - margin, minZ - margin,
+                maxX + margin, maxY + margin, maxZ + margin);
+    }
+
+    /**
+     * Checks whether a point lies inside the box (boundaries included).
+     *
+     * @param x point X coordinate
+     * @param y point Y coordinate
+     * @param z point Z coordinate
+     * @return true if the point is inside the box
+     */
+    public boolean contains(double x, double y, double z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Clips a ray against the box using the slab method.
+     * On input {@code range} holds the allowed distance interval [range[0], range[1]] along the ray,
+     * on success it is narrowed to the part of the interval that lies inside the box.
+     *
+     * @param ray   the ray
+     * @param range two-cell array with the distance interval, updated in place
+     * @return true if the ray passes through the box within the given interval
+     */
+    public boolean clip(Ray ray, double[] range) {
+        Point head = ray.getHead();
+        Vector dir = ray.getDirection();
+        return clip(head.getX(), head.getY(), head.getZ(), dir.getX(), dir.getY(), dir.getZ(), range);
+    }
+
+    /**
+     * Primitive-typed variant of {@link #clip(Ray, double[])} for the hot loops
+     * that keep the ray in local variables.
+     *
+     * @param ox    ray origin X
+     * @param oy    ray origin Y
+     * @param oz    ray origin Z
+     * @param dx    ray direction X
+     * @param dy    ray direction Y
+     * @param dz    ray direction Z
+     * @param range two-cell array with the distance interval, updated in place
+     * @return true if the ray passes through the box within the given interval
+     */
+    public boolean clip(double ox, double oy, double oz, double dx, double dy, double dz, double[] range) {
+        double tNear = range[0], tFar = range[1];
+
+        // a ray parallel to a slab is either always or never inside it
+        if (dx == 0) {
+            if (ox < minX || ox > maxX) return false;
+        } else {
+            double t1 = (minX - ox) / dx, t2 = (maxX - ox) / dx;
+            tNear = Math.max(tNear, Math.min(t1, t2));
+            tFar = Math.min(tFar, Math.max(t1, t2));
+        }
+
+        if (dy == 0) {
+            if (oy < minY || oy > maxY) return false;
+        } else {
+            double t1 = (minY - oy) / dy, t2 = (maxY - oy) / dy;
+            tNear = Math.max(tNear, Math.min(t1, t2));
+            tFar = Math.min(tFar, Math.max(t1, t2));
+        }
+
+        if (dz == 0) {
+            if (oz < minZ || oz > maxZ) return false;
+        } else {
+            double t1 = (minZ - oz) / dz, t2 = (maxZ - oz) / dz;
+            tNear = Math.max(tNear, Math.min(t1, t2));
+            tFar = Math.min(tFar, Math.max(t1, t2));
+        }
+
+        if (tNear > tFar) return false;
+        range[0] = tNear;
+        range[1] = tFar;
+        return true;
+    }
+
+    /**
+     * Checks whether the ray (in front of its head) hits the box.
+     *
+     * @param ray the ray
+     * @return true if the ray hits the box
+     */
+    public boolean intersects(Ray ray) {
+        return clip(ray, new double[]{0, Double.POSITIVE_INFINITY});
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox{(" + minX + "," + minY + "," + minZ + ") - (" + maxX + "," + maxY + "," + maxZ + ")}";
+    }
+}
@@ -5,16 +5,21 @@ import primitives.*;
 import java.util.ArrayList;
 import java.util.List;
 
+import static primitives.Util.alignZero;
+
 /**
  * Box class represents a 3D rectangular box (cuboid) geometry
  */
-public class Box extends Geometry {
+public class Box extends Geometry implements Solid {
 
     /** The minimum point of the box (corner with smallest coordinates) */
     private final Point minPoint;
     /** The maximum point of the box (corner with largest coordinates) */
     private final Point maxPoint;
 
+    /** Axis-aligned extents of the box, used for the slab intersection test */
+    private final BoundingBox box;
+
     /** List of all 6 faces of the box as Polygon objects */
     private final List<Polygon> faces;
 
@@ -37,6 +42,7 @@ public class Box extends Geometry {
 
         this.minPoint = new Point(minX, minY, minZ);
         this.maxPoint = new Point(maxX, maxY, maxZ);
+        this.box = new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
 
         // Create all 8 vertices of the box
         Point v1 = new Point(minX, minY, minZ); // min corner
@@ -94,65 +100,44 @@ public class Box extends Geometry {
         return new ArrayList<>(faces);
     }
 
+    /** Outward face normals - front, back, bottom, top, left, right */
+    private static final Vector[] FACE_NORMALS =
+            {Vector.MINUS_Z, Vector.AXIS_Z, Vector.MINUS_Y, Vector.AXIS_Y, Vector.MINUS_X, Vector.AXIS_X};
+
     @Override
     public Vector getNormal(Point point) {
-        // Find which face the point is on and return its normal
+        // Find which face the point is on and return its normal:
+        // the first face within epsilon, otherwise the closest face
         double epsilon = 1e-10;
-
-        // Check each face
-        if (Math.abs(point.getZ() - minPoint.getZ()) < epsilon) {
-            return new Vector(0, 0, -1); // Front face normal
-        }
-        if (Math.abs(point.getZ() - maxPoint.getZ()) < epsilon) {
-            return new Vector(0, 0, 1); // Back face normal
-        }
-        if (Math.abs(point.getY() - minPoint.getY()) < epsilon) {
-            return new Vector(0, -1, 0); // Bottom face normal
-        }
-        if (Math.abs(point.getY() - maxPoint.getY()) < epsilon) {
-            return new Vector(0, 1, 0); // Top face normal
-        }
-        if (Math.abs(point.getX() - minPoint.getX()) < epsilon) {
-            return new Vector(-1, 0, 0); // Left face normal
-        }
-        if (Math.abs(point.getX() - maxPoint.getX()) < epsilon) {
-            return new Vector(1, 0, 0); // Right face normal
+        int closest = 0;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for (int face = 0; face < 6; ++face) {
+            double distance = faceDistance(point, face);
+            if (distance < epsilon) return FACE_NORMALS[face];
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closest = face;
+            }
         }
-
-        // If point is not exactly on a face, find the closest face
-        return getClosestFaceNormal(point);
+        return FACE_NORMALS[closest];
     }
 
     /**
-     * Helper method to find normal of closest face when point is not exactly on a face
+     * Distance of a point from the plane of a face.
+     *
+     * @param point the point
+     * @param face  the face index - front, back, bottom, top, left, right
+     * @return the distance
      */
-    private Vector getClosestFaceNormal(Point point) {
-        double[] distances = {
-                Math.abs(point.getZ() - minPoint.getZ()), // Front
-                Math.abs(point.getZ() - maxPoint.getZ()), // Back
-                Math.abs(point.getY() - minPoint.getY()), // Bottom
-                Math.abs(point.getY() - maxPoint.getY()), // Top
-                Math.abs(point.getX() - minPoint.getX()), // Left
-                Math.abs(point.getX() - maxPoint.getX())  // Right
+    private double faceDistance(Point point, int face) {
+        return switch (face) {
+            case 0 -> Math.abs(point.getZ() - minPoint.getZ());
+            case 1 -> Math.abs(point.getZ() - maxPoint.getZ());
+            case 2 -> Math.abs(point.getY() - minPoint.getY());
+            case 3 -> Math.abs(point.getY() - maxPoint.getY());
+            case 4 -> Math.abs(point.getX() - minPoint.getX());
+            default -> Math.abs(point.getX() - maxPoint.getX());
         };
-
-        Vector[] normals = {
-                new Vector(0, 0, -1), // Front
-                new Vector(0, 0, 1),  // Back
-                new Vector(0, -1, 0), // Bottom
-                new Vector(0, 1, 0),  // Top
-                new Vector(-1, 0, 0), // Left
-                new Vector(1, 0, 0)   // Right
-        };
-
-        int minIndex = 0;
-        for (int i = 1; i < distances.length; i++) {
-            if (distances[i] < distances[minIndex]) {
-                minIndex = i;
-            }
-        }
-
-        return normals[minIndex];
     }
 
 
@@ -188,8 +173,29 @@ public class Box extends Geometry {
         return (Box) super.setEmission(emission);
     }
 
+    @Override
+    public BoundingBox getBoundingBox() {
+        return box;
+    }
+
+    @Override
+    public void calculateIntervals(Ray ray, IntervalList out) {
+        double[] range = {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        if (box.clip(ray, range))
+            out.add(range[0], this, range[1], this);
+    }
+
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
-        return List.of();
+        double[] range = {0, Double.POSITIVE_INFINITY};
+        if (!box.clip(ray, range)) return null;
+
+        double tNear = alignZero(range[0]);
+        double tFar = alignZero(range[1]);
+        if (tFar <= 0) return null;
+        // the ray starts inside the box (or only touches it) - just the exit point
+        if (tNear <= 0 || alignZero(tFar - tNear) == 0)
+            return List.of(new Intersection(this, ray.getPoint(tFar)));
+        return List.of(new Intersection(this, ray.getPoint(tNear)), new Intersection(this, ray.getPoint(tFar)));
     }
 }
\ No newline at end of file
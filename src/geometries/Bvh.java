@@ -0,0 +1,381 @@
+package geometries;
+
+import java.util.Arrays;
+
+/**
+ * Flat bounding volume hierarchy over primitives identified by index, used inside
+ * the geometries that own large amounts of primitives (meshes, sphere sets).
+ * <p>
+ * The tree is stored in arrays: node {@code i} has its box at {@code bounds[6i..6i+5]}
+ * (min X,Y,Z then max X,Y,Z) and its links at {@code nodes[2i]} and {@code nodes[2i+1]}.
+ * A leaf has a positive primitive count in {@code nodes[2i+1]} and its primitives are
+ * {@code order[nodes[2i] .. nodes[2i] + count)}. An inner node has count 0 and its two
+ * children at {@code nodes[2i]} and {@code nodes[2i] + 1}.
+ * </p>
+ * <p>
+ * The boxes may be kept in single precision, rounded outwards so every box still contains
+ * its primitives, and the arrays may be kept off-heap ({@link #setStorage(boolean, boolean)});
+ * the traversal math stays in double precision.
+ * </p>
+ */
+final class Bvh {
+    /**
+     * Receives the primitives of the leaves that a ray reaches.
+     */
+    @FunctionalInterface
+    interface Visitor {
+        /**
+         * Tests one primitive.
+         *
+         * @param primitive the primitive index
+         * @param tMax      the current distance limit of the traversal
+         * @return the distance limit for the rest of the traversal (e.g. the closest hit so far),
+         * or a negative value to stop the traversal
+         */
+        double visit(int primitive, double tMax);
+    }
+
+    /**
+     * Receives the leaves that a ray reaches, as ranges of primitives stored in leaf order.
+     */
+    @FunctionalInterface
+    interface LeafVisitor {
+        /**
+         * Tests the primitives of one leaf.
+         *
+         * @param first the first primitive of the leaf
+         * @param count amount of primitives in the leaf
+         * @param tMax  the current distance limit of the traversal
+         * @return the distance limit for the rest of the traversal (e.g. the closest hit so far),
+         * or a negative value to stop the traversal
+         */
+        double visit(int first, int count, double tMax);
+    }
+
+    /**
+     * Supplies the boxes of the primitives while the hierarchy is built.
+     */
+    interface PrimitiveBounds {
+        /**
+         * @param primitive the primitive index
+         * @param axis      0 for X, 1 for Y, 2 for Z
+         * @return the minimal coordinate of the primitive along the axis
+         */
+        double min(int primitive, int axis);
+
+        /**
+         * @param primitive the primitive index
+         * @param axis      0 for X, 1 for Y, 2 for Z
+         * @return the maximal coordinate of the primitive along the axis
+         */
+        double max(int primitive, int axis);
+
+        /**
+         * @param primitive the primitive index
+         * @param axis      0 for X, 1 for Y, 2 for Z
+         * @return the center of the primitive box along the axis
+         */
+        default double centroid(int primitive, int axis) {
+            return (min(primitive, axis) + max(primitive, axis)) / 2;
+        }
+    }
+
+    /** Traversal stack depth, enough for any tree built by median splits */
+    private static final int STACK_SIZE = 64;
+    /** Traversal stacks, one per rendering thread */
+    private static final ThreadLocal<Stack> STACKS = ThreadLocal.withInitial(Stack::new);
+
+    /**
+     * Traversal stack of a thread, reused by all its traversals. A stack is marked busy during a traversal,
+     * so a nested traversal (from a visitor) takes the next stack of the thread.
+     */
+    private static final class Stack {
+        /** The node indices */
+        final int[] nodes = new int[STACK_SIZE];
+        /** Whether the stack is in use */
+        boolean busy;
+        /** The stack for a nested traversal */
+        Stack next;
+    }
+
+    /** Maximal amount of primitives in a leaf */
+    private final int leafSize;
+    /** Node boxes - 6 values per node */
+    private Coordinates bounds;
+    /** Node links - 2 values per node */
+    private Indices nodes;
+    /**
+     * Primitive indices in leaf order, {@code null} after the owner has reordered
+     * its primitives into leaf order (see {@link #dropOrder()})
+     */
+    int[] order;
+
+    /**
+     * Builds the hierarchy by median splits along the longest axis of the centroids.
+     *
+     * @param count      amount of primitives
+     * @param leafSize   maximal amount of primitives in a leaf
+     * @param primitives the boxes of the primitives
+     */
+    Bvh(int count, int leafSize, PrimitiveBounds primitives) {
+        if (count == 0) throw new IllegalArgumentException("Hierarchy requires at least one primitive");
+        if (leafSize < 1) throw new IllegalArgumentException("Leaf size must be positive");
+        this.leafSize = leafSize;
+        order = new int[count];
+        for (int i = 0; i < count; ++i) order[i] = i;
+
+        int maxNodes = 2 * count + 1;
+        double[] nodeBounds = new double[6 * maxNodes];
+        int[] nodeLinks = new int[2 * maxNodes];
+        int used = build(primitives, nodeBounds, nodeLinks, 0, 1, 0, count);
+        bounds = Coordinates.of(Arrays.copyOf(nodeBounds, 6 * used), false, false);
+        nodes = Indices.of(Arrays.copyOf(nodeLinks, 2 * used), false);
+    }
+
+    /**
+     * Forgets the primitive order - the owner has stored its primitives in leaf order
+     * (primitive {@code order[i]} moved to index {@code i}), so leaves refer to them directly.
+     */
+    void dropOrder() {
+        order = null;
+    }
+
+    /**
+     * Changes the storage of the node arrays. Single precision boxes are rounded outwards (the minimums
+     * down and the maximums up), which halves their memory; the conversion to single precision is one-way.
+     *
+     * @param singlePrecision whether to keep the boxes as floats
+     * @param offHeap         whether to keep the boxes and the links off-heap
+     */
+    void setStorage(boolean singlePrecision, boolean offHeap) {
+        double[] values = bounds.toArray();
+        if (singlePrecision && !bounds.singlePrecision())
+            for (int i = 0; i < values.length; ++i) {
+                float f = (float) values[i];
+                if (i % 6 < 3) values[i] = f > values[i] ? Math.nextDown(f) : f;
+                else values[i] = f < values[i] ? Math.nextUp(f) : f;
+            }
+        bounds = Coordinates.of(values, singlePrecision || bounds.singlePrecision(), offHeap);
+        if (nodes.offHeap() != offHeap) nodes = Indices.of(nodes.toArray(), offHeap);
+    }
+
+    /**
+     * @return approximate memory taken by the hierarchy, in bytes
+     */
+    long memoryBytes() {
+        return bounds.memoryBytes() + nodes.memoryBytes() + (order == null ? 0 : 4L * order.length);
+    }
+
+    /**
+     * @return approximate memory taken by the hierarchy outside the Java heap, in bytes
+     */
+    long offHeapBytes() {
+        return (bounds.offHeap() ? bounds.memoryBytes() : 0) + (nodes.offHeap() ? nodes.memoryBytes() : 0);
+    }
+
+    /**
+     * @return the amount of nodes in the hierarchy
+     */
+    int nodeCount() {
+        return nodes.length() / 2;
+    }
+
+    /**
+     * Builds the subtree of one node.
+     *
+     * @param primitives the boxes of the primitives
+     * @param nodeBounds node boxes being filled
+     * @param nodeLinks  node links being filled
+     * @param node       index of the node to build
+     * @param next       first free node index
+     * @param from       first primitive (in {@link #order}) of the node
+     * @param to         end of the primitives of the node (exclusive)
+     * @return the first free node index after the subtree
+     */
+    private int build(PrimitiveBounds primitives, double[] nodeBounds, int[] nodeLinks,
+                      int node, int next, int from, int to) {
+        double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        double[] centroidBox = box.clone();
+        for (int i = from; i < to; ++i) {
+            int p = order[i];
+            for (int axis = 0; axis < 3; ++axis) {
+                box[axis] = Math.min(box[axis], primitives.min(p, axis));
+                box[3 + axis] = Math.max(box[3 + axis], primitives.max(p, axis));
+                double centroid = primitives.centroid(p, axis);
+                centroidBox[axis] = Math.min(centroidBox[axis], centroid);
+                centroidBox[3 + axis] = Math.max(centroidBox[3 + axis], centroid);
+            }
+        }
+        System.arraycopy(box, 0, nodeBounds, 6 * node, 6);
+
+        int count = to - from;
+        int axis = 0;
+        for (int a = 1; a < 3; ++a)
+            if (centroidBox[3 + a] - centroidBox[a] > centroidBox[3 + axis] - centroidBox[axis]) axis = a;
+        // small or degenerate (all centroids at one point) sets become leaves
+        if (count <= leafSize || centroidBox[3 + axis] - centroidBox[axis] <= 0) {
+            nodeLinks[2 * node] = from;
+            nodeLinks[2 * node + 1] = count;
+            return next;
+        }
+
+        int mid = (from + to) >>> 1;
+        select(primitives, axis, from, to - 1, mid);
+        int left = next;
+        nodeLinks[2 * node] = left;
+        nodeLinks[2 * node + 1] = 0;
+        next = build(primitives, nodeBounds, nodeLinks, left, next + 2, from, mid);
+        return build(primitives, nodeBounds, nodeLinks, left + 1, next, mid, to);
+    }
+
+    /**
+     * Partially sorts {@link #order} so the k-th primitive is in place by its centroid along an axis,
+     * with smaller centroids before it and bigger after it (quick select).
+     *
+     * @param primitives the boxes of the primitives
+     * @param axis       the axis to sort by
+     * @param lo         first index (inclusive)
+     * @param hi         last index (inclusive)
+     * @param k          the index to put in place
+     */
+    private void select(PrimitiveBounds primitives, int axis, int lo, int hi, int k) {
+        while (lo < hi) {
+            double pivot = primitives.centroid(order[(lo + hi) >>> 1], axis);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (primitives.centroid(order[i], axis) < pivot) ++i;
+                while (primitives.centroid(order[j], axis) > pivot) --j;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i++] = order[j];
+                    order[j--] = tmp;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    /**
+     * @return the bounding box of the whole hierarchy
+     */
+    BoundingBox getBoundingBox() {
+        return new BoundingBox(bounds.get(0), bounds.get(1), bounds.get(2), bounds.get(3), bounds.get(4), bounds.get(5));
+    }
+
+    /**
+     * Visits all the primitives in the leaves whose boxes the ray passes through within a distance range.
+     * The visitor may shrink the range or stop the traversal.
+     *
+     * @param ox      ray origin X
+     * @param oy      ray origin Y
+     * @param oz      ray origin Z
+     * @param dx      ray direction X
+     * @param dy      ray direction Y
+     * @param dz      ray direction Z
+     * @param tMax    maximal distance along the ray
+     * @param visitor receives the primitives
+     * @return the amount of node boxes tested
+     */
+    int traverse(double ox, double oy, double oz, double dx, double dy, double dz, double tMax, Visitor visitor) {
+        return traverse(ox, oy, oz, dx, dy, dz, tMax, visitor, null);
+    }
+
+    /**
+     * Visits the leaves whose boxes the ray passes through within a distance range. The leaves are
+     * given as index ranges, so the owner must keep its primitives in leaf order (see {@link #dropOrder()}).
+     * The visitor returns the distance limit for the rest of the traversal, so the boxes beyond the
+     * closest hit found so far are skipped, and a negative limit ends the traversal.
+     *
+     * @param ox      ray origin X
+     * @param oy      ray origin Y
+     * @param oz      ray origin Z
+     * @param dx      ray direction X
+     * @param dy      ray direction Y
+     * @param dz      ray direction Z
+     * @param tMax    maximal distance along the ray
+     * @param visitor receives the leaves
+     * @return the amount of node boxes tested
+     */
+    int traverseLeaves(double ox, double oy, double oz, double dx, double dy, double dz, double tMax,
+                       LeafVisitor visitor) {
+        return traverse(ox, oy, oz, dx, dy, dz, tMax, null, visitor);
+    }
+
+    /**
+     * Traverses the hierarchy with the stack of the current thread, passing the leaves to one of the visitors.
+     *
+     * @param ox         ray origin X
+     * @param oy         ray origin Y
+     * @param oz         ray origin Z
+     * @param dx         ray direction X
+     * @param dy         ray direction Y
+     * @param dz         ray direction Z
+     * @param tMax       maximal distance along the ray
+     * @param primitives receives the primitives of the leaves, or {@code null}
+     * @param leaves     receives the leaves, if there is no primitive visitor
+     * @return the amount of node boxes tested
+     */
+    private int traverse(double ox, double oy, double oz, double dx, double dy, double dz, double tMax,
+                         Visitor primitives, LeafVisitor leaves) {
+        Stack taken = STACKS.get();
+        while (taken.busy) {
+            if (taken.next == null) taken.next = new Stack();
+            taken = taken.next;
+        }
+        taken.busy = true;
+        try {
+            double ix = 1 / dx, iy = 1 / dy, iz = 1 / dz;
+            int[] stack = taken.nodes;
+            int top = 0;
+            int visited = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                ++visited;
+                int b = 6 * node;
+                if (!hitsBox(bounds.get(b), bounds.get(b + 1), bounds.get(b + 2),
+                        bounds.get(b + 3), bounds.get(b + 4), bounds.get(b + 5), ox, oy, oz, ix, iy, iz, tMax))
+                    continue;
+                int first = nodes.get(2 * node), count = nodes.get(2 * node + 1);
+                if (count > 0) {
+                    if (primitives == null) tMax = leaves.visit(first, count, tMax);
+                    else
+                        for (int i = first, end = first + count; i < end && tMax >= 0; ++i)
+                            tMax = primitives.visit(order == null ? i : order[i], tMax);
+                    if (tMax < 0) break;
+                } else {
+                    stack[top++] = first + 1;
+                    stack[top++] = first;
+                }
+            }
+            return visited;
+        } finally {
+            taken.busy = false;
+        }
+    }
+
+    /**
+     * Slab test of a ray against a node box, with the inverse of the ray direction precomputed.
+     * An infinite inverse (direction component 0) yields NaN only for a ray lying exactly
+     * on a slab plane, which is treated as a hit.
+     *
+     * @return true if the ray passes through the box between its head and tMax
+     */
+    private static boolean hitsBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                   double ox, double oy, double oz, double ix, double iy, double iz, double tMax) {
+        double t1 = (minX - ox) * ix, t2 = (maxX - ox) * ix;
+        double tNear = Math.min(t1, t2), tFar = Math.max(t1, t2);
+        t1 = (minY - oy) * iy;
+        t2 = (maxY - oy) * iy;
+        tNear = Math.max(tNear, Math.min(t1, t2));
+        tFar = Math.min(tFar, Math.max(t1, t2));
+        t1 = (minZ - oz) * iz;
+        t2 = (maxZ - oz) * iz;
+        tNear = Math.max(tNear, Math.min(t1, t2));
+        tFar = Math.min(tFar, Math.max(t1, t2));
+        return !(tNear > tFar || tFar < 0 || tNear > tMax);
+    }
+}
@@ -0,0 +1,276 @@
+package geometries;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Read-only array of coordinates of the large geometries (mesh vertices, hierarchy boxes),
+ * stored in double or single precision, on the Java heap or off-heap.
+ * <p>
+ * Off-heap storage lives in direct native-order buffers: the garbage collector sees only the small
+ * buffer objects and never scans or copies the data, and the data does not count against the heap
+ * size (so heaps can stay below the compressed pointers limit). A buffer holds at most 2 GB, so the
+ * values are split into chunks of 1 GB and value {@code i} is read from chunk {@code i >>> shift} - the
+ * off-heap storage holds as many values as a Java array. The values are always read as doubles.
+ * </p>
+ */
+abstract class Coordinates {
+    /** Binary logarithm of the size of an off-heap chunk in bytes - 1 GB */
+    static final int CHUNK_BYTES_SHIFT = 30;
+
+    /**
+     * Stores coordinates.
+     *
+     * @param values          the coordinates (kept as is in heap double precision, so not to be changed later)
+     * @param singlePrecision whether to store them as floats (rounded to nearest)
+     * @param offHeap         whether to store them off-heap
+     * @return the storage
+     */
+    static Coordinates of(double[] values, boolean singlePrecision, boolean offHeap) {
+        return of(values, singlePrecision, offHeap, CHUNK_BYTES_SHIFT);
+    }
+
+    /**
+     * Stores coordinates, off-heap in chunks of a given size.
+     *
+     * @param values          the coordinates (kept as is in heap double precision, so not to be changed later)
+     * @param singlePrecision whether to store them as floats (rounded to nearest)
+     * @param offHeap         whether to store them off-heap
+     * @param chunkShift      binary logarithm of the size of an off-heap chunk in bytes
+     * @return the storage
+     */
+    static Coordinates of(double[] values, boolean singlePrecision, boolean offHeap, int chunkShift) {
+        if (!offHeap) return singlePrecision ? new HeapFloats(values) : new HeapDoubles(values);
+        return singlePrecision ? new DirectFloats(values, chunkShift) : new DirectDoubles(values, chunkShift);
+    }
+
+    /**
+     * @param index the coordinate index
+     * @return the coordinate
+     */
+    abstract double get(int index);
+
+    /**
+     * @return the amount of coordinates
+     */
+    abstract int length();
+
+    /**
+     * @return whether the coordinates are stored as floats
+     */
+    abstract boolean singlePrecision();
+
+    /**
+     * @return whether the coordinates are stored off-heap
+     */
+    abstract boolean offHeap();
+
+    /**
+     * @return the memory taken by the coordinates, in bytes
+     */
+    long memoryBytes() {
+        return (long) length() * (singlePrecision() ? Float.BYTES : Double.BYTES);
+    }
+
+    /**
+     * @return a copy of the coordinates in double precision
+     */
+    double[] toArray() {
+        double[] result = new double[length()];
+        for (int i = 0; i < result.length; ++i) result[i] = get(i);
+        return result;
+    }
+
+    /**
+     * Allocates direct native-order buffers for values, in chunks of a power of two values.
+     * Value {@code i} belongs at {@code i & (1 << shift) - 1} of chunk {@code i >>> shift}.
+     *
+     * @param count       amount of values
+     * @param elementSize size of a value in bytes, a power of two
+     * @param chunkShift  binary logarithm of the size of a chunk in bytes, at most 30
+     * @return the chunks, all of them full except the last one
+     * @throws IllegalArgumentException if a chunk is over 1 GB or smaller than a value
+     */
+    static ByteBuffer[] allocateChunks(int count, int elementSize, int chunkShift) {
+        int shift = chunkShift - Integer.numberOfTrailingZeros(elementSize);
+        if (chunkShift > CHUNK_BYTES_SHIFT || shift < 0)
+            throw new IllegalArgumentException("Off-heap chunk must hold a value and be at most 1 GB");
+        ByteBuffer[] chunks = new ByteBuffer[(int) (((long) count + (1 << shift) - 1) >>> shift)];
+        for (int c = 0; c < chunks.length; ++c) {
+            int values = Math.min(count - (c << shift), 1 << shift);
+            chunks[c] = ByteBuffer.allocateDirect(values * elementSize).order(ByteOrder.nativeOrder());
+        }
+        return chunks;
+    }
+
+    /**
+     * Coordinates in a heap double array.
+     */
+    private static final class HeapDoubles extends Coordinates {
+        /** The coordinates */
+        private final double[] values;
+
+        /**
+         * @param values the coordinates (not copied)
+         */
+        HeapDoubles(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        boolean singlePrecision() {
+            return false;
+        }
+
+        @Override
+        boolean offHeap() {
+            return false;
+        }
+    }
+
+    /**
+     * Coordinates in a heap float array.
+     */
+    private static final class HeapFloats extends Coordinates {
+        /** The coordinates */
+        private final float[] values;
+
+        /**
+         * @param values the coordinates
+         */
+        HeapFloats(double[] values) {
+            this.values = new float[values.length];
+            for (int i = 0; i < values.length; ++i) this.values[i] = (float) values[i];
+        }
+
+        @Override
+        double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        boolean singlePrecision() {
+            return true;
+        }
+
+        @Override
+        boolean offHeap() {
+            return false;
+        }
+    }
+
+    /**
+     * Coordinates in off-heap double buffers.
+     */
+    private static final class DirectDoubles extends Coordinates {
+        /** The coordinates, in chunks */
+        private final DoubleBuffer[] chunks;
+        /** Binary logarithm of the amount of coordinates in a chunk */
+        private final int shift;
+        /** Position mask inside a chunk */
+        private final int mask;
+        /** Amount of coordinates */
+        private final int length;
+
+        /**
+         * @param values     the coordinates
+         * @param chunkShift binary logarithm of the size of a chunk in bytes
+         */
+        DirectDoubles(double[] values, int chunkShift) {
+            ByteBuffer[] buffers = allocateChunks(values.length, Double.BYTES, chunkShift);
+            shift = chunkShift - Integer.numberOfTrailingZeros(Double.BYTES);
+            mask = (1 << shift) - 1;
+            length = values.length;
+            chunks = new DoubleBuffer[buffers.length];
+            for (int c = 0; c < chunks.length; ++c) {
+                chunks[c] = buffers[c].asDoubleBuffer();
+                chunks[c].put(0, values, c << shift, chunks[c].capacity());
+            }
+        }
+
+        @Override
+        double get(int index) {
+            return chunks[index >>> shift].get(index & mask);
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        boolean singlePrecision() {
+            return false;
+        }
+
+        @Override
+        boolean offHeap() {
+            return true;
+        }
+    }
+
+    /**
+     * Coordinates in off-heap float buffers.
+     */
+    private static final class DirectFloats extends Coordinates {
+        /** The coordinates, in chunks */
+        private final FloatBuffer[] chunks;
+        /** Binary logarithm of the amount of coordinates in a chunk */
+        private final int shift;
+        /** Position mask inside a chunk */
+        private final int mask;
+        /** Amount of coordinates */
+        private final int length;
+
+        /**
+         * @param values     the coordinates
+         * @param chunkShift binary logarithm of the size of a chunk in bytes
+         */
+        DirectFloats(double[] values, int chunkShift) {
+            ByteBuffer[] buffers = allocateChunks(values.length, Float.BYTES, chunkShift);
+            shift = chunkShift - Integer.numberOfTrailingZeros(Float.BYTES);
+            mask = (1 << shift) - 1;
+            length = values.length;
+            chunks = new FloatBuffer[buffers.length];
+            for (int c = 0; c < chunks.length; ++c) chunks[c] = buffers[c].asFloatBuffer();
+            for (int i = 0; i < length; ++i) chunks[i >>> shift].put(i & mask, (float) values[i]);
+        }
+
+        @Override
+        double get(int index) {
+            return chunks[index >>> shift].get(index & mask);
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        boolean singlePrecision() {
+            return true;
+        }
+
+        @Override
+        boolean offHeap() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package geometries;
+
+import primitives.Ray;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static primitives.Util.alignZero;
+
+/**
+ * Constructive solid geometry (CSG) node - the union, intersection or difference of two solids.
+ * <p>
+ * The node combines the inside-intervals of its children along the ray line, so nodes can be
+ * nested into trees of any depth. The intervals are kept in per-thread preallocated
+ * {@link IntervalList} buffers instead of intersection lists. Every node keeps a bounding box
+ * derived from its children's boxes, so a ray that misses it skips the whole subtree.
+ * </p>
+ * <p>
+ * The reported intersections refer to the primitive whose surface bounds the result at that point,
+ * so the normal, the material and the emission are taken from the primitives.
+ * </p>
+ */
+public class CsgNode extends Intersectable implements Solid {
+
+    /**
+     * The boolean operation of a CSG node.
+     */
+    public enum Operation {
+        /** Points inside any of the children */
+        UNION,
+        /** Points inside both of the children */
+        INTERSECTION,
+        /** Points inside the left child but not inside the right child */
+        DIFFERENCE;
+
+        /**
+         * Applies the operation to the inside-state of the two children.
+         *
+         * @param inLeft  whether the point is inside the left child
+         * @param inRight whether the point is inside the right child
+         * @return whether the point is inside the result
+         */
+        boolean apply(boolean inLeft, boolean inRight) {
+            return switch (this) {
+                case UNION -> inLeft || inRight;
+                case INTERSECTION -> inLeft && inRight;
+                case DIFFERENCE -> inLeft && !inRight;
+            };
+        }
+    }
+
+    /**
+     * Per-thread scratch buffers of a node.
+     */
+    private static final class Buffers {
+        /** Intervals of the left child */
+        final IntervalList left = new IntervalList();
+        /** Intervals of the right child */
+        final IntervalList right = new IntervalList();
+        /** Intervals of the node itself (used by the intersection calculation) */
+        final IntervalList result = new IntervalList();
+        /** Distance range for the bounding box test */
+        final double[] range = new double[2];
+    }
+
+    /** The operation of the node */
+    private final Operation operation;
+    /** The left operand */
+    private final Solid left;
+    /** The right operand */
+    private final Solid right;
+    /** Bounding box of the result, {@code null} if the result is necessarily empty */
+    private final BoundingBox box;
+    /** Scratch interval buffers, one set per rendering thread */
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    /**
+     * Constructs a CSG node.
+     *
+     * @param operation the boolean operation
+     * @param left      the left operand
+     * @param right     the right operand
+     */
+    public CsgNode(Operation operation, Solid left, Solid right) {
+        if (operation == null || left == null || right == null)
+            throw new IllegalArgumentException("CSG node requires an operation and two operands");
+        this.operation = operation;
+        this.left = left;
+        this.right = right;
+        BoundingBox leftBox = left.getBoundingBox();
+        BoundingBox rightBox = right.getBoundingBox();
+        this.box = switch (operation) {
+            case UNION -> leftBox == null ? rightBox : rightBox == null ? leftBox : leftBox.union(rightBox);
+            case INTERSECTION -> leftBox == null || rightBox == null ? null : leftBox.intersection(rightBox);
+            case DIFFERENCE -> leftBox;
+        };
+    }
+
+    /**
+     * Creates the union of two solids.
+     *
+     * @param left  first solid
+     * @param right second solid
+     * @return the union node
+     */
+    public static CsgNode union(Solid left, Solid right) {
+        return new CsgNode(Operation.UNION, left, right);
+    }
+
+    /**
+     * Creates the intersection of two solids.
+     *
+     * @param left  first solid
+     * @param right second solid
+     * @return the intersection node
+     */
+    public static CsgNode intersection(Solid left, Solid right) {
+        return new CsgNode(Operation.INTERSECTION, left, right);
+    }
+
+    /**
+     * Creates the difference of two solids.
+     *
+     * @param left  the solid to carve from
+     * @param right the solid to carve out
+     * @return the difference node
+     */
+    public static CsgNode difference(Solid left, Solid right) {
+        return new CsgNode(Operation.DIFFERENCE, left, right);
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return box;
+    }
+
+    @Override
+    public void calculateIntervals(Ray ray, IntervalList out) {
+        if (box == null) return;
+        Buffers scratch = buffers.get();
+        // the whole subtree is culled when the ray's line misses the node's box
+        double[] range = scratch.range;
+        range[0] = Double.NEGATIVE_INFINITY;
+        range[1] = Double.POSITIVE_INFINITY;
+        if (!box.clip(ray, range)) return;
+
+        IntervalList l = scratch.left;
+        IntervalList r = scratch.right;
+        l.clear();
+        left.calculateIntervals(ray, l);
+        // nothing to intersect or carve from
+        if (l.size == 0 && operation != Operation.UNION) return;
+
+        r.clear();
+        right.calculateIntervals(ray, r);
+        if (r.size == 0) {
+            if (operation != Operation.INTERSECTION) copy(l, out);
+            return;
+        }
+        if (l.size == 0) { // union only
+            copy(r, out);
+            return;
+        }
+        merge(l, r, out);
+    }
+
+    /**
+     * Appends all the intervals of one buffer to another.
+     *
+     * @param from source buffer
+     * @param to   target buffer
+     */
+    private static void copy(IntervalList from, IntervalList to) {
+        for (int i = 0, n = 2 * from.size; i < n; i += 2)
+            to.add(from.t[i], from.surface[i], from.t[i + 1], from.surface[i + 1]);
+    }
+
+    /**
+     * Sweeps the boundaries of both children in distance order and emits the intervals
+     * where the operation holds.
+     *
+     * @param l   left child intervals
+     * @param r   right child intervals
+     * @param out the result buffer
+     */
+    private void merge(IntervalList l, IntervalList r, IntervalList out) {
+        int i = 0, j = 0;
+        int nl = 2 * l.size, nr = 2 * r.size;
+        boolean inLeft = false, inRight = false, inside = false;
+        double start = 0;
+        Geometry startSurface = null;
+
+        while (i < nl || j < nr) {
+            double t;
+            Geometry surface;
+            if (j >= nr || (i < nl && l.t[i] <= r.t[j])) {
+                t = l.t[i];
+                surface = l.surface[i++];
+                inLeft = !inLeft;
+            } else {
+                t = r.t[j];
+                surface = r.surface[j++];
+                inRight = !inRight;
+            }
+
+            boolean now = operation.apply(inLeft, inRight);
+            if (now == inside) continue;
+            inside = now;
+            if (inside) {
+                start = t;
+                startSurface = surface;
+            } else if (t > start) // drop degenerate (zero length) pieces
+                out.add(start, startSurface, t, surface);
+        }
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        IntervalList result = buffers.get().result;
+        result.clear();
+        calculateIntervals(ray, result);
+        if (result.size == 0) return null;
+
+        List<Intersection> intersections = null;
+        for (int i = 0, n = 2 * result.size; i < n; ++i) {
+            double t = result.t[i];
+            // infinite boundaries belong to unbounded pieces and have no surface point
+            if (alignZero(t) <= 0 || Double.isInfinite(t)) continue;
+            if (intersections == null) intersections = new LinkedList<>();
+            intersections.add(new Intersection(result.surface[i], ray.getPoint(t)));
+        }
+        return intersections;
+    }
+}
@@ -13,12 +13,16 @@ import static primitives.Util.alignZero;
  * Represents a finite cylinder in 3D space, defined by a central axis, radius, and height.
  * Inherits from {@link Tube}, which represents an infinite cylinder.
  */
-public class Cylinder extends Tube {
+public class Cylinder extends Tube implements Solid {
 
     /**
      * The height of the cylinder.
      */
     private final double height;
+    /** Center of the top base */
+    private final Point top;
+    /** Outward normal of the bottom base */
+    private final Vector bottomNormal;
 
     /**
      * Constructs a Cylinder with a given height, axis, and radius.
@@ -30,33 +34,102 @@ public class Cylinder extends Tube {
     public Cylinder(double height, Ray axis, double radius) {
         super(axis, radius);
         this.height = height;
+        this.top = axis.getPoint(height);
+        this.bottomNormal = axis.getDirection().scale(-1);
     }
 
     @Override
     public Vector getNormal(Point point) {
-        Point p0 = axis.getPoint(0d);
+        Point p0 = axis.getHead();
         Vector dir = this.axis.getDirection();
 
         //  If p0 is the head of the axis
         if (point.equals(p0))
-            return dir.scale(-1);
+            return bottomNormal;
 
         // If p1 is the end of the axis
-        if (point.equals(axis.getPoint(height)))
+        if (point.equals(top))
             return dir;
 
         // If the point is on the top or bottom surface of the cylinder
 
         if (Util.isZero(p0.subtract(point).dotProduct(dir)))
-            return dir.scale(-1d);
+            return bottomNormal;
 
-        if (Util.isZero(axis.getPoint(height).subtract(point).dotProduct(dir)))
+        if (Util.isZero(top.subtract(point).dotProduct(dir)))
             return dir;
 
         // Otherwise, call the superclass method
         return super.getNormal(point);
     }
 
+    @Override
+    public BoundingBox getBoundingBox() {
+        Point bottom = axis.getHead();
+        Point top = axis.getPoint(height);
+        Vector dir = axis.getDirection();
+        // the caps are discs - their extent along each axis is radius * sin(angle between the axis and it)
+        double ex = radius * Math.sqrt(Math.max(0, 1 - dir.getX() * dir.getX()));
+        double ey = radius * Math.sqrt(Math.max(0, 1 - dir.getY() * dir.getY()));
+        double ez = radius * Math.sqrt(Math.max(0, 1 - dir.getZ() * dir.getZ()));
+        return new BoundingBox(
+                Math.min(bottom.getX(), top.getX()) - ex, Math.min(bottom.getY(), top.getY()) - ey,
+                Math.min(bottom.getZ(), top.getZ()) - ez,
+                Math.max(bottom.getX(), top.getX()) + ex, Math.max(bottom.getY(), top.getY()) + ey,
+                Math.max(bottom.getZ(), top.getZ()) + ez);
+    }
+
+    /**
+     * Calculates the part of the ray's line inside the closed (capped) cylinder -
+     * the intersection of the infinite tube interval with the slab between the two caps.
+     *
+     * @param ray the ray
+     * @param out the buffer to append the interval to
+     */
+    @Override
+    public void calculateIntervals(Ray ray, IntervalList out) {
+        Point p0 = ray.getHead();
+        Vector v = ray.getDirection();
+        Point pa = axis.getHead();
+        Vector va = axis.getDirection();
+
+        double wx = p0.getX() - pa.getX(), wy = p0.getY() - pa.getY(), wz = p0.getZ() - pa.getZ();
+        double vDotA = v.getX() * va.getX() + v.getY() * va.getY() + v.getZ() * va.getZ();
+        double wDotA = wx * va.getX() + wy * va.getY() + wz * va.getZ();
+
+        // components orthogonal to the axis
+        double vpx = v.getX() - vDotA * va.getX(), vpy = v.getY() - vDotA * va.getY(), vpz = v.getZ() - vDotA * va.getZ();
+        double wpx = wx - wDotA * va.getX(), wpy = wy - wDotA * va.getY(), wpz = wz - wDotA * va.getZ();
+
+        double a = vpx * vpx + vpy * vpy + vpz * vpz;
+        double b = vpx * wpx + vpy * wpy + vpz * wpz;
+        double c = wpx * wpx + wpy * wpy + wpz * wpz - radius * radius;
+
+        double tMin, tMax;
+        if (Util.isZero(a)) { // ray parallel to the axis
+            if (c >= 0) return;
+            tMin = Double.NEGATIVE_INFINITY;
+            tMax = Double.POSITIVE_INFINITY;
+        } else {
+            double discriminant = b * b - a * c;
+            if (alignZero(discriminant) <= 0) return;
+            double sqrt = Math.sqrt(discriminant);
+            tMin = (-b - sqrt) / a;
+            tMax = (-b + sqrt) / a;
+        }
+
+        // clip by the caps: 0 <= wDotA + t * vDotA <= height
+        if (Util.isZero(vDotA)) {
+            if (wDotA < 0 || wDotA > height) return;
+        } else {
+            double t1 = -wDotA / vDotA, t2 = (height - wDotA) / vDotA;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (tMin >= tMax) return;
+        out.add(tMin, this, tMax, this);
+    }
+
     @Override
     public  List<Intersection> calculateIntersectionsHelper(Ray ray) {
         List<Intersection> intersections = new ArrayList<>();
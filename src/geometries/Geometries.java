@@ -2,28 +2,145 @@ package geometries;
 
 import primitives.Point;
 import primitives.Ray;
+import primitives.Vector;
 
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+
+import static primitives.Util.isZero;
 
 public class Geometries extends Intersectable {
-    List<Intersectable>geometries=new LinkedList<Intersectable>();
+    List<Intersectable>geometries=new ArrayList<Intersectable>();
 
     public Geometries(Intersectable... geometries) {
         add (geometries);
     }
 
+    /**
+     * Spheres and triangles of the collection, packed as struct-of-arrays for the {@link BatchKernels}
+     * - {@code null} until the first intersection calculation after a change of the collection
+     */
+    private volatile Packed packed;
+    /** The members of the collection for the membership test - {@code null} until the first test after a change */
+    private volatile Set<Intersectable> members;
+
+    /**
+     * Margin of the candidate tests of the batch path - far above the zero alignment threshold,
+     * so the candidates include every primitive that the exact test may accept
+     */
+    private static final double CANDIDATE_MARGIN = 1e-9;
+    /** Smallest amount of packed spheres and triangles worth the batch path */
+    private static final int MIN_BATCH = 8;
+
+    /**
+     * The spheres and the triangles of a collection in struct-of-arrays storage.
+     * Only the exact {@link Sphere} and {@link Triangle} classes are packed, subclasses may
+     * calculate their intersections differently.
+     */
+    private static final class Packed {
+        /** Packed sphere index per collection member, -1 if the member is not a packed sphere */
+        final int[] sphereSlot;
+        /** Packed triangle index per collection member, -1 if the member is not a packed triangle */
+        final int[] triangleSlot;
+        /** The packed spheres */
+        final Sphere[] spheres;
+        /** Sphere centers - X, Y, Z columns */
+        final double[] cx, cy, cz;
+        /** Squared sphere radii */
+        final double[] radiusSquared;
+        /** The packed triangles */
+        final Triangle[] triangles;
+        /** Triangle vertices - A X,Y,Z, B X,Y,Z, C X,Y,Z columns */
+        final double[][] vertices = new double[9][];
+        /** Triangle plane normals - X, Y, Z columns */
+        final double[][] normals = new double[3][];
+
+        /**
+         * Packs the spheres and the triangles of a collection.
+         *
+         * @param members the collection members
+         */
+        Packed(List<Intersectable> members) {
+            int size = members.size();
+            sphereSlot = new int[size];
+            triangleSlot = new int[size];
+            List<Sphere> sphereList = new ArrayList<>();
+            List<Triangle> triangleList = new ArrayList<>();
+            for (int i = 0; i < size; ++i) {
+                Intersectable member = members.get(i);
+                sphereSlot[i] = triangleSlot[i] = -1;
+                if (member.getClass() == Sphere.class) {
+                    sphereSlot[i] = sphereList.size();
+                    sphereList.add((Sphere) member);
+                } else if (member.getClass() == Triangle.class) {
+                    triangleSlot[i] = triangleList.size();
+                    triangleList.add((Triangle) member);
+                }
+            }
+            spheres = sphereList.toArray(new Sphere[0]);
+            cx = new double[spheres.length];
+            cy = new double[spheres.length];
+            cz = new double[spheres.length];
+            radiusSquared = new double[spheres.length];
+            for (int k = 0; k < spheres.length; ++k) {
+                Point center = spheres[k].getCenter();
+                cx[k] = center.getX();
+                cy[k] = center.getY();
+                cz[k] = center.getZ();
+                radiusSquared[k] = spheres[k].radius * spheres[k].radius;
+            }
+            triangles = triangleList.toArray(new Triangle[0]);
+            for (int c = 0; c < 9; ++c) vertices[c] = new double[triangles.length];
+            for (int c = 0; c < 3; ++c) normals[c] = new double[triangles.length];
+            for (int k = 0; k < triangles.length; ++k) {
+                for (int v = 0; v < 3; ++v) {
+                    Point vertex = triangles[k].vertices.get(v);
+                    vertices[3 * v][k] = vertex.getX();
+                    vertices[3 * v + 1][k] = vertex.getY();
+                    vertices[3 * v + 2][k] = vertex.getZ();
+                }
+                Vector normal = triangles[k].plane.getNormal();
+                normals[0][k] = normal.getX();
+                normals[1][k] = normal.getY();
+                normals[2][k] = normal.getZ();
+            }
+        }
+    }
+
     public void add(Intersectable... geometries) {
         Collections.addAll(this.geometries, geometries);
+        packed = null;
+        members = null;
     }
     /**
      * Removes all geometries from the collection.
      */
     public void clear() {
         geometries.clear();
+        packed = null;
+        members = null;
+    }
+
+    /**
+     * Checks whether a geometry is a member of the collection itself - not of a nested collection or
+     * of a CSG node - so the intersections of the geometry alone are intersections of the collection.
+     *
+     * @param geometry the geometry
+     * @return true if the geometry is a member of the collection
+     */
+    public boolean contains(Intersectable geometry) {
+        Set<Intersectable> set = members;
+        if (set == null) {
+            set = Collections.newSetFromMap(new IdentityHashMap<>(2 * geometries.size()));
+            set.addAll(geometries);
+            members = set;
+        }
+        return set.contains(geometry);
     }
 
     public Geometries() {
@@ -39,24 +156,174 @@ public class Geometries extends Intersectable {
      */
     @Override
     public List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        return collectIntersections(ray);
+    }
+
+    /**
+     * Passes the intersections of the members straight to the sink, member by member,
+     * without copying any member's intersections into a list of the collection.
+     *
+     * @param ray  the ray
+     * @param sink receives the intersections
+     * @return true if all the intersections were passed, false if the sink stopped the enumeration
+     */
+    @Override
+    protected boolean visitIntersectionsHelper(Ray ray, IntersectionSink sink) {
+        if (BatchKernels.isEnabled()) {
+            Packed packed = this.packed;
+            if (packed == null) this.packed = packed = new Packed(geometries);
+            if (packed.spheres.length + packed.triangles.length >= MIN_BATCH)
+                return visitIntersectionsBatch(ray, sink, packed);
+        }
+
+        for (Intersectable geometry : geometries)
+            if (!geometry.visitIntersectionsHelper(ray, sink)) return false;
+        return true;
+    }
 
-        List<Intersection> intersections = null;
+    /**
+     * Passes the intersections found with the batch kernels testing all the spheres and all the
+     * triangles at once, and with the scalar code for the other geometries. The intersections are
+     * passed in the same order as by the scalar code.
+     *
+     * @param ray    the ray
+     * @param sink   receives the intersections
+     * @param packed the packed spheres and triangles
+     * @return true if all the intersections were passed, false if the sink stopped the enumeration
+     */
+    private boolean visitIntersectionsBatch(Ray ray, IntersectionSink sink, Packed packed) {
+        BatchKernels.Scratch scratch = BatchKernels.scratch();
+        try {
+            double[][] columns = runKernels(ray, packed, scratch);
+            double[] uv = columns[0], uu = columns[1];
+            for (int i = 0; i < packed.sphereSlot.length; ++i) {
+                int s = packed.sphereSlot[i], t = packed.triangleSlot[i];
+                if (s >= 0) {
+                    if (!sphereCandidate(packed, columns, s)) continue;
+                    List<Intersection> sphereIntersections = packed.spheres[s].intersections(ray, uv[s], uu[s]);
+                    if (sphereIntersections != null)
+                        for (Intersection intersection : sphereIntersections)
+                            if (!sink.accept(intersection)) return false;
+                } else if (t >= 0) {
+                    double distance = triangleDistance(ray, packed, columns, t);
+                    if (distance > 0 && !sink.accept(new Intersection(packed.triangles[t], ray.getPoint(distance))))
+                        return false;
+                } else if (!geometries.get(i).visitIntersectionsHelper(ray, sink))
+                    return false;
+            }
+            return true;
+        } finally {
+            scratch.release();
+        }
+    }
 
-        // Iterate through each geometry in the collection
-        for (Intersectable geometry : geometries) {
-            List<Intersection> geometryIntersections = geometry.calculateIntersectionsHelper(ray);
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        if (BatchKernels.isEnabled()) {
+            Packed packed = this.packed;
+            if (packed == null) this.packed = packed = new Packed(geometries);
+            if (packed.spheres.length + packed.triangles.length >= MIN_BATCH)
+                return calculateClosestHitBatch(ray, hit, packed);
+        }
+        boolean found = false;
+        for (Intersectable geometry : geometries)
+            found |= geometry.calculateClosestHitHelper(ray, hit);
+        return found;
+    }
 
-            // If the current geometry has intersection points
-            if (geometryIntersections != null) {
-                if (intersections == null)
-                    intersections = new LinkedList<>(geometryIntersections);
+    /**
+     * Finds the closest hit with the batch kernels testing all the spheres and all the triangles
+     * at once, and the scalar code for the other geometries, in the order of the scalar code.
+     *
+     * @param ray    the ray
+     * @param hit    the closest hit found so far
+     * @param packed the packed spheres and triangles
+     * @return true if a closer hit was found
+     */
+    private boolean calculateClosestHitBatch(Ray ray, Hit hit, Packed packed) {
+        BatchKernels.Scratch scratch = BatchKernels.scratch();
+        try {
+            double[][] columns = runKernels(ray, packed, scratch);
+            double[] uv = columns[0], uu = columns[1];
+            boolean found = false;
+            for (int i = 0; i < packed.sphereSlot.length; ++i) {
+                int s = packed.sphereSlot[i], t = packed.triangleSlot[i];
+                if (s >= 0) {
+                    if (sphereCandidate(packed, columns, s))
+                        found |= packed.spheres[s].closestHit(ray, uv[s], uu[s], hit);
+                } else if (t >= 0)
+                    found |= hit.offer(triangleDistance(ray, packed, columns, t), packed.triangles[t], -1);
                 else
-                    intersections.addAll(geometryIntersections);
+                    found |= geometries.get(i).calculateClosestHitHelper(ray, hit);
             }
+            return found;
+        } finally {
+            scratch.release();
         }
+    }
 
-        // Return the list of intersection points, or null if no intersections were found
-        return intersections;
+    /**
+     * Runs the sphere and the triangle kernels over the packed members.
+     *
+     * @param ray     the ray
+     * @param packed  the packed spheres and triangles
+     * @param scratch the output columns
+     * @return the output columns - the sphere results in columns 0-1, the triangle results in columns 2-9
+     */
+    private static double[][] runKernels(Ray ray, Packed packed, BatchKernels.Scratch scratch) {
+        int spheres = packed.spheres.length, triangles = packed.triangles.length;
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+        double[][] columns = scratch.columns(Math.max(spheres, triangles));
+        BatchKernels.spheres(packed.cx, packed.cy, packed.cz, 0, spheres, ox, oy, oz, dx, dy, dz, columns[0], columns[1]);
+        BatchKernels.triangles(packed.vertices, packed.normals, triangles, ox, oy, oz, dx, dy, dz, columns, 2);
+        return columns;
+    }
+
+    /**
+     * Conservative test of a packed sphere - its distance from the ray line is about the radius or less.
+     *
+     * @param packed  the packed spheres and triangles
+     * @param columns the kernel output
+     * @param s       the packed sphere index
+     * @return false if the sphere is surely missed
+     */
+    private static boolean sphereCandidate(Packed packed, double[][] columns, int s) {
+        double uv = columns[0][s];
+        return columns[1][s] - uv * uv < packed.radiusSquared[s] + CANDIDATE_MARGIN;
+    }
+
+    /**
+     * Finishes the test of a packed triangle. A conservative test first skips the triangles whose
+     * sides do not all see the ray on about the same side.
+     *
+     * @param ray     the ray
+     * @param packed  the packed spheres and triangles
+     * @param columns the kernel output
+     * @param t       the packed triangle index
+     * @return the distance to the intersection, or 0 if there is none
+     */
+    private static double triangleDistance(Ray ray, Packed packed, double[][] columns, int t) {
+        double s1 = side(columns[4][t], columns[5][t]), s2 = side(columns[6][t], columns[7][t]);
+        double s3 = side(columns[8][t], columns[9][t]);
+        if (Math.min(s1, Math.min(s2, s3)) <= -CANDIDATE_MARGIN && Math.max(s1, Math.max(s2, s3)) >= CANDIDATE_MARGIN)
+            return 0;
+        Triangle triangle = packed.triangles[t];
+        return triangle.intersectionDistance(
+                triangle.plane.intersectionDistance(ray.getHead(), columns[2][t], columns[3][t]), s1, s2, s3);
+    }
+
+    /**
+     * Finishes a side test of a triangle the way {@link Polygon#sideDotProduct} does.
+     *
+     * @param length length of the side normal
+     * @param dot    dot product of the unit side normal with the ray direction
+     * @return the dot product, or 0 if the ray head is on the line of the side
+     */
+    private static double side(double length, double dot) {
+        return isZero(length) ? 0 : dot;
     }
 
 
@@ -3,6 +3,7 @@ package geometries;
 import primitives.Color;
 import primitives.Material;
 import primitives.Point;
+import primitives.Ray;
 import primitives.Vector;
 
 /**
@@ -67,4 +68,40 @@ public abstract class Geometry extends Intersectable {
      * @return the normal vector at the given point
      */
     public abstract Vector getNormal(Point point);
+
+    /**
+     * Calculates the normal at an intersection, when the intersection's normal is first needed.
+     * Geometries that record a primitive index in their intersections override it to use the
+     * normal of the primitive.
+     *
+     * @param intersection an intersection with the geometry
+     * @return the normal vector at the point of intersection
+     */
+    protected Vector getNormal(Intersection intersection) {
+        return getNormal(intersection.point);
+    }
+
+    /**
+     * Returns the material at an intersection, when the intersection's material is first needed.
+     * Geometries that hold a material per primitive override it.
+     *
+     * @param intersection an intersection with the geometry
+     * @return the material at the point of intersection
+     */
+    protected Material getMaterial(Intersection intersection) {
+        return getMaterial();
+    }
+
+    /**
+     * Builds the full intersection record of a hit found by {@link #findClosestHit}.
+     * Geometries that record a primitive index in the hit override it to fill the primitive's
+     * normal and material.
+     *
+     * @param ray the ray that found the hit
+     * @param hit the hit
+     * @return the intersection
+     */
+    protected Intersection buildIntersection(Ray ray, Hit hit) {
+        return new Intersection(this, ray.getPoint(hit.t));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,278 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Function;
+
+import static primitives.Util.alignZero;
+
+/**
+ * Represents an implicit surface defined by a signed distance function (SDF) and
+ * rendered by sphere tracing.
+ * <p>
+ * The surface is the zero set of the function: negative values are inside the solid and positive
+ * values are outside. The function only has to be a lower bound of the true distance up to a
+ * Lipschitz constant {@code L}: a step of {@code f(p)/L} along the ray never crosses the surface.
+ * Blends, fractals and rounded shapes can be traced this way without tessellating them into triangles.
+ * </p>
+ * <p>
+ * A bounding box is mandatory - the ray is clipped to it before marching (early rejection)
+ * and it bounds the marching distance. The amount of marching steps per ray is limited by a
+ * configurable step budget.
+ * </p>
+ */
+public class ImplicitSurface extends Geometry {
+
+    /**
+     * A signed distance function - negative inside the solid, positive outside,
+     * with the surface at its zero set.
+     */
+    @FunctionalInterface
+    public interface DistanceFunction {
+        /**
+         * Evaluates the signed distance at a point.
+         *
+         * @param x point X coordinate
+         * @param y point Y coordinate
+         * @param z point Z coordinate
+         * @return signed distance (lower bound of the true distance up to the Lipschitz constant)
+         */
+        double distance(double x, double y, double z);
+
+        /**
+         * Distance function of a sphere.
+         *
+         * @param center sphere center
+         * @param radius sphere radius
+         * @return the distance function
+         */
+        static DistanceFunction sphere(Point center, double radius) {
+            double cx = center.getX(), cy = center.getY(), cz = center.getZ();
+            return (x, y, z) -> Math.sqrt((x - cx) * (x - cx) + (y - cy) * (y - cy) + (z - cz) * (z - cz)) - radius;
+        }
+
+        /**
+         * Distance function of an axis-aligned box with rounded edges.
+         *
+         * @param center   box center
+         * @param halfSize half of the box size along each axis (before rounding)
+         * @param rounding radius of the rounded edges
+         * @return the distance function
+         */
+        static DistanceFunction roundBox(Point center, Vector halfSize, double rounding) {
+            double cx = center.getX(), cy = center.getY(), cz = center.getZ();
+            double hx = halfSize.getX(), hy = halfSize.getY(), hz = halfSize.getZ();
+            return (x, y, z) -> {
+                double qx = Math.abs(x - cx) - hx, qy = Math.abs(y - cy) - hy, qz = Math.abs(z - cz) - hz;
+                double ox = Math.max(qx, 0), oy = Math.max(qy, 0), oz = Math.max(qz, 0);
+                return Math.sqrt(ox * ox + oy * oy + oz * oz) + Math.min(Math.max(qx, Math.max(qy, qz)), 0) - rounding;
+            };
+        }
+
+        /**
+         * Distance function of a torus lying in a plane parallel to XZ.
+         *
+         * @param center      torus center
+         * @param majorRadius distance from the center to the tube center
+         * @param minorRadius radius of the tube
+         * @return the distance function
+         */
+        static DistanceFunction torus(Point center, double majorRadius, double minorRadius) {
+            double cx = center.getX(), cy = center.getY(), cz = center.getZ();
+            return (x, y, z) -> {
+                double dx = x - cx, dy = y - cy, dz = z - cz;
+                double q = Math.sqrt(dx * dx + dz * dz) - majorRadius;
+                return Math.sqrt(q * q + dy * dy) - minorRadius;
+            };
+        }
+
+        /**
+         * Union of this solid with another one.
+         *
+         * @param other the other solid
+         * @return the distance function of the union
+         */
+        default DistanceFunction union(DistanceFunction other) {
+            return (x, y, z) -> Math.min(distance(x, y, z), other.distance(x, y, z));
+        }
+
+        /**
+         * Intersection of this solid with another one.
+         *
+         * @param other the other solid
+         * @return the distance function of the intersection
+         */
+        default DistanceFunction intersect(DistanceFunction other) {
+            return (x, y, z) -> Math.max(distance(x, y, z), other.distance(x, y, z));
+        }
+
+        /**
+         * This solid with another one carved out of it.
+         *
+         * @param other the solid to subtract
+         * @return the distance function of the difference
+         */
+        default DistanceFunction subtract(DistanceFunction other) {
+            return (x, y, z) -> Math.max(distance(x, y, z), -other.distance(x, y, z));
+        }
+
+        /**
+         * Smooth (blended) union of this solid with another one (polynomial smooth minimum).
+         *
+         * @param other the other solid
+         * @param k     blending radius, 0 gives a sharp union
+         * @return the distance function of the blend
+         */
+        default DistanceFunction smoothUnion(DistanceFunction other, double k) {
+            if (k <= 0) return union(other);
+            return (x, y, z) -> {
+                double d1 = distance(x, y, z), d2 = other.distance(x, y, z);
+                double h = Math.max(k - Math.abs(d1 - d2), 0) / k;
+                return Math.min(d1, d2) - h * h * k * 0.25;
+            };
+        }
+    }
+
+    /** Default maximal amount of marching steps per ray */
+    private static final int DEFAULT_MAX_STEPS = 256;
+    /** Default surface hit threshold */
+    private static final double DEFAULT_EPSILON = 1e-4;
+
+    /** The signed distance function of the surface */
+    private final DistanceFunction sdf;
+    /** Bounding box that encloses the whole surface */
+    private final BoundingBox box;
+    /** Lipschitz bound of the distance function (1 for an exact distance) */
+    private double lipschitz = 1;
+    /** Maximal amount of marching steps per ray */
+    private int maxSteps = DEFAULT_MAX_STEPS;
+    /** Distance from the surface that is considered as a hit */
+    private double epsilon = DEFAULT_EPSILON;
+    /** Optional analytic normal, when null the normal is found by finite differences */
+    private Function<Point, Vector> normalFunction = null;
+
+    /**
+     * Constructs an implicit surface.
+     *
+     * @param sdf the signed distance function of the surface
+     * @param box a bounding box that encloses the whole surface
+     */
+    public ImplicitSurface(DistanceFunction sdf, BoundingBox box) {
+        if (sdf == null || box == null)
+            throw new IllegalArgumentException("Implicit surface requires a distance function and a bounding box");
+        this.sdf = sdf;
+        this.box = box;
+    }
+
+    /**
+     * Sets the Lipschitz bound of the distance function - every marching step is divided by it.
+     *
+     * @param lipschitz the Lipschitz bound (at least 1 for a conservative march)
+     * @return this surface (for method chaining)
+     */
+    public ImplicitSurface setLipschitz(double lipschitz) {
+        if (alignZero(lipschitz) <= 0) throw new IllegalArgumentException("Lipschitz bound must be positive");
+        this.lipschitz = lipschitz;
+        return this;
+    }
+
+    /**
+     * Sets the step budget - the maximal amount of marching steps per ray.
+     *
+     * @param maxSteps maximal amount of steps
+     * @return this surface (for method chaining)
+     */
+    public ImplicitSurface setMaxSteps(int maxSteps) {
+        if (maxSteps <= 0) throw new IllegalArgumentException("Step budget must be positive");
+        this.maxSteps = maxSteps;
+        return this;
+    }
+
+    /**
+     * Sets the distance from the surface that is considered as a hit.
+     * It is also the spacing of the finite differences used for the normal.
+     *
+     * @param epsilon the hit threshold
+     * @return this surface (for method chaining)
+     */
+    public ImplicitSurface setEpsilon(double epsilon) {
+        if (alignZero(epsilon) <= 0) throw new IllegalArgumentException("Epsilon must be positive");
+        this.epsilon = epsilon;
+        return this;
+    }
+
+    /**
+     * Sets an analytic normal instead of the finite-differences approximation.
+     *
+     * @param normalFunction function returning the outward normal at a surface point
+     * @return this surface (for method chaining)
+     */
+    public ImplicitSurface setNormalFunction(Function<Point, Vector> normalFunction) {
+        this.normalFunction = normalFunction;
+        return this;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return box;
+    }
+
+    /**
+     * Evaluates the signed distance function at a point.
+     *
+     * @param point the point
+     * @return the signed distance
+     */
+    public double distance(Point point) {
+        return sdf.distance(point.getX(), point.getY(), point.getZ());
+    }
+
+    @Override
+    public Vector getNormal(Point point) {
+        if (normalFunction != null) return normalFunction.apply(point).normalize();
+
+        // central differences of the distance function approximate its gradient
+        double x = point.getX(), y = point.getY(), z = point.getZ(), h = epsilon;
+        return new Vector(
+                sdf.distance(x + h, y, z) - sdf.distance(x - h, y, z),
+                sdf.distance(x, y + h, z) - sdf.distance(x, y - h, z),
+                sdf.distance(x, y, z + h) - sdf.distance(x, y, z - h)
+        ).normalize();
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        double[] range = {0, Double.POSITIVE_INFINITY};
+        if (!box.clip(ray, range)) return null;
+
+        Point head = ray.getHead();
+        Vector dir = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+
+        List<Intersection> intersections = null;
+        // a hit is reported when the march enters the epsilon shell around the surface,
+        // and the next one only after it has left the shell
+        boolean inShell = false;
+        double t = range[0];
+        for (int step = 0; step < maxSteps && t <= range[1]; ++step) {
+            double d = sdf.distance(ox + t * dx, oy + t * dy, oz + t * dz);
+            double absD = Math.abs(d);
+            if (absD < epsilon) {
+                if (!inShell && alignZero(t) > 0) {
+                    if (intersections == null) intersections = new LinkedList<>();
+                    intersections.add(new Intersection(this, ray.getPoint(t)));
+                }
+                inShell = true;
+            } else
+                inShell = false;
+            // never step less than epsilon, so the march leaves the shell after a hit
+            t += Math.max(absD / lipschitz, epsilon);
+        }
+        return intersections;
+    }
+}
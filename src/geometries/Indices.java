@@ -0,0 +1,140 @@
+package geometries;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Read-only array of indices of the large geometries (triangle vertices, hierarchy links),
+ * on the Java heap or off-heap in chunks (see {@link Coordinates}).
+ */
+abstract class Indices {
+    /**
+     * Stores indices.
+     *
+     * @param values  the indices (kept as is on the heap, so not to be changed later)
+     * @param offHeap whether to store them off-heap
+     * @return the storage
+     */
+    static Indices of(int[] values, boolean offHeap) {
+        return of(values, offHeap, Coordinates.CHUNK_BYTES_SHIFT);
+    }
+
+    /**
+     * Stores indices, off-heap in chunks of a given size.
+     *
+     * @param values     the indices (kept as is on the heap, so not to be changed later)
+     * @param offHeap    whether to store them off-heap
+     * @param chunkShift binary logarithm of the size of an off-heap chunk in bytes
+     * @return the storage
+     */
+    static Indices of(int[] values, boolean offHeap, int chunkShift) {
+        return offHeap ? new Direct(values, chunkShift) : new Heap(values);
+    }
+
+    /**
+     * @param index the position
+     * @return the index at the position
+     */
+    abstract int get(int index);
+
+    /**
+     * @return the amount of indices
+     */
+    abstract int length();
+
+    /**
+     * @return whether the indices are stored off-heap
+     */
+    abstract boolean offHeap();
+
+    /**
+     * @return the memory taken by the indices, in bytes
+     */
+    long memoryBytes() {
+        return (long) length() * Integer.BYTES;
+    }
+
+    /**
+     * @return a copy of the indices
+     */
+    int[] toArray() {
+        int[] result = new int[length()];
+        for (int i = 0; i < result.length; ++i) result[i] = get(i);
+        return result;
+    }
+
+    /**
+     * Indices in a heap array.
+     */
+    private static final class Heap extends Indices {
+        /** The indices */
+        private final int[] values;
+
+        /**
+         * @param values the indices (not copied)
+         */
+        Heap(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        boolean offHeap() {
+            return false;
+        }
+    }
+
+    /**
+     * Indices in off-heap buffers.
+     */
+    private static final class Direct extends Indices {
+        /** The indices, in chunks */
+        private final IntBuffer[] chunks;
+        /** Binary logarithm of the amount of indices in a chunk */
+        private final int shift;
+        /** Position mask inside a chunk */
+        private final int mask;
+        /** Amount of indices */
+        private final int length;
+
+        /**
+         * @param values     the indices
+         * @param chunkShift binary logarithm of the size of a chunk in bytes
+         */
+        Direct(int[] values, int chunkShift) {
+            ByteBuffer[] buffers = Coordinates.allocateChunks(values.length, Integer.BYTES, chunkShift);
+            shift = chunkShift - Integer.numberOfTrailingZeros(Integer.BYTES);
+            mask = (1 << shift) - 1;
+            length = values.length;
+            chunks = new IntBuffer[buffers.length];
+            for (int c = 0; c < chunks.length; ++c) {
+                chunks[c] = buffers[c].asIntBuffer();
+                chunks[c].put(0, values, c << shift, chunks[c].capacity());
+            }
+        }
+
+        @Override
+        int get(int index) {
+            return chunks[index >>> shift].get(index & mask);
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        boolean offHeap() {
+            return true;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,8 +28,9 @@ public abstract class Intersectable {
      * @return a list of intersection points, or {@code null} if there are no intersections
      */
     public final List<Point> findIntersections(Ray ray) {
-        var list = calculateIntersections(ray);
-        return list == null ? null : list.stream().map(intersection -> intersection.point).toList();
+        List<Point> points = new ArrayList<>();
+        visitIntersectionsHelper(ray, intersection -> points.add(intersection.point));
+        return points.isEmpty() ? null : points;
     }
 
     /**
@@ -44,6 +46,86 @@ public abstract class Intersectable {
         return calculateIntersectionsHelper(ray);
     }
 
+    /**
+     * Passes the intersections between the ray and the geometry one by one to a sink, without
+     * building a list. The sink may stop the enumeration - e.g. a shadow ray stops at the first
+     * opaque occluder.
+     *
+     * @param ray  the ray to intersect with
+     * @param sink receives the intersections
+     * @return true if all the intersections were passed, false if the sink stopped the enumeration
+     */
+    public final boolean visitIntersections(Ray ray, IntersectionSink sink) {
+        return visitIntersectionsHelper(ray, sink);
+    }
+
+    /**
+     * Passes the intersections between the ray and the geometry to a sink. This default
+     * implementation passes the intersection list of the geometry; containers and geometries
+     * with many primitives override it to pass their intersections as they are found.
+     *
+     * @param ray  the ray to intersect with
+     * @param sink receives the intersections
+     * @return true if all the intersections were passed, false if the sink stopped the enumeration
+     */
+    protected boolean visitIntersectionsHelper(Ray ray, IntersectionSink sink) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray);
+        if (intersections != null)
+            for (Intersection intersection : intersections)
+                if (!sink.accept(intersection)) return false;
+        return true;
+    }
+
+    /**
+     * Collects the intersections passed by {@link #visitIntersectionsHelper(Ray, IntersectionSink)}
+     * into a list, for the geometries that enumerate their intersections through the sink.
+     *
+     * @param ray the ray to intersect with
+     * @return a list of {@link Intersection} objects, or {@code null} if there are no intersections
+     */
+    protected final List<Intersection> collectIntersections(Ray ray) {
+        List<Intersection> intersections = new ArrayList<>();
+        visitIntersectionsHelper(ray, intersections::add);
+        return intersections.isEmpty() ? null : intersections;
+    }
+
+    /**
+     * Finds the closest intersection of the ray that is nearer than the hit found so far.
+     * <p>
+     * Only a compact {@link Hit} is recorded during the search; the full {@link Intersection}
+     * is built once, for the final closest hit ({@link Hit#toIntersection(Ray)}).
+     * </p>
+     *
+     * @param ray the ray to intersect with
+     * @param hit the closest hit found so far, updated if a closer one is found
+     * @return true if a closer hit was found
+     */
+    public final boolean findClosestHit(Ray ray, Hit hit) {
+        return calculateClosestHitHelper(ray, hit);
+    }
+
+    /**
+     * Finds the closest intersection of the ray that is nearer than the hit found so far.
+     * This default implementation scans the full intersection list; geometries that can
+     * test their primitives directly override it.
+     *
+     * @param ray the ray to intersect with
+     * @param hit the closest hit found so far, updated if a closer one is found
+     * @return true if a closer hit was found
+     */
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray);
+        if (intersections == null) return false;
+        Point head = ray.getHead();
+        boolean found = false;
+        for (Intersection intersection : intersections)
+            if (hit.offer(intersection.point.distance(head), intersection.geometry, -1)) {
+                hit.intersection = intersection;
+                found = true;
+            }
+        return found;
+    }
+
 
 
     /**
@@ -59,22 +141,126 @@ public abstract class Intersectable {
      */
     protected abstract List<Intersection> calculateIntersectionsHelper(Ray ray);
 
+    /**
+     * Returns the axis-aligned bounding box of the geometry, used for quick rejection of rays.
+     *
+     * @return the bounding box, or {@code null} if the geometry is unbounded (or its box is unknown)
+     */
+    public BoundingBox getBoundingBox() {
+        return null;
+    }
+
 
     /**
-     * Represents an intersection between a ray and a geometry object.
+     * Receives the intersections of a ray, one by one.
+     */
+    @FunctionalInterface
+    public interface IntersectionSink {
+        /**
+         * Receives one intersection.
+         *
+         * @param intersection the intersection
+         * @return true to continue the enumeration, false to stop it
+         */
+        boolean accept(Intersection intersection);
+    }
+
+    /**
+     * Compact record of the closest hit found during the intersection phase - the distance along
+     * the ray, the geometry and the primitive inside it. It is reused while the geometries
+     * are searched and is turned into a full {@link Intersection} only for the final hit.
+     */
+    public static final class Hit {
+        /** Distance along the ray of the closest hit so far - the search limit */
+        public double t;
+        /** The hit geometry, {@code null} before any hit */
+        public Geometry geometry;
+        /** Index of the hit primitive inside the geometry (mesh triangle, set sphere), -1 for a simple geometry */
+        public int primitive = -1;
+        /** Barycentric coordinates of the hit inside a triangle primitive, for the geometries that report them */
+        public double u, v;
+        /** The intersection record, if the geometry built it during the search */
+        Intersection intersection;
+
+        /**
+         * Constructs an empty hit record, without a distance limit.
+         */
+        public Hit() {
+            this(Double.POSITIVE_INFINITY);
+        }
+
+        /**
+         * Constructs an empty hit record that accepts only hits nearer than a distance.
+         *
+         * @param tMax the distance limit
+         */
+        public Hit(double tMax) {
+            this.t = tMax;
+        }
+
+        /**
+         * Records a hit if it lies ahead of the ray head and nearer than the current one.
+         *
+         * @param t         distance along the ray
+         * @param geometry  the geometry
+         * @param primitive the primitive index inside the geometry, -1 for a simple geometry
+         * @return true if the hit was recorded
+         */
+        public boolean offer(double t, Geometry geometry, int primitive) {
+            if (!(t > 0 && t < this.t)) return false;
+            this.t = t;
+            this.geometry = geometry;
+            this.primitive = primitive;
+            this.u = this.v = 0;
+            this.intersection = null;
+            return true;
+        }
+
+        /**
+         * @return true if a hit was recorded
+         */
+        public boolean found() {
+            return geometry != null;
+        }
+
+        /**
+         * Builds the full intersection record of the hit for shading.
+         *
+         * @param ray the ray that found the hit
+         * @return the intersection, or {@code null} if nothing was hit
+         */
+        public Intersection toIntersection(Ray ray) {
+            if (intersection == null && geometry != null) intersection = geometry.buildIntersection(ray, this);
+            if (intersection != null) intersection.travelled = ray.getTravelled() + t;
+            return intersection;
+        }
+    }
+
+    /**
+     * Represents an intersection between a ray and a geometry object - the full record used for shading.
      */
     public static class Intersection {
         /**
-         * The geometry object that was intersected.
+         * The direction of the ray that hit the point.
+         */
+        public Vector rayDirection;
+        /**
+         * The dot product between the ray direction and the normal.
+         */
+        public double rayNormalDotProduct;
+        /**
+         * Distance the pixel cone of the ray travelled from the camera to the point - the secondary and
+         * the shadow rays leaving the point carry it on.
          */
-        public Vector rayDirection;             // כיוון הקרן שפגעה בנקודה
-        public Vector normalBeforeHit;          // הנורמל המקורי לפני בדיקת כיוונים
-        public double rayNormalDotProduct;      // המכפלה הסקלרית בין הקרן לנורמל
+        public double travelled;
 
         public LightSource lightSource;         // מקור האור הרלוונטי לחישוב הנוכחי
         public Vector lightDirection;           // כיוון האור מהנקודה למקור האור
         public double lightNormalDotProduct;    // dot(n, l) לחישובי אור
 
+        /**
+         * The geometry object that was intersected.
+         */
         public final Geometry geometry;
 
         /**
@@ -83,48 +269,65 @@ public abstract class Intersectable {
         public final Point point;
 
         /**
-         * The material of the intersected geometry.
+         * Index of the hit primitive inside the geometry (mesh triangle, set sphere), -1 for a simple
+         * geometry - the geometry finds the normal and the material of the primitive by it when they are needed
          */
-        public final Material material;
+        int primitive = -1;
 
         /**
-         * The normal vector at the point of intersection.
-         * Can be set after intersection is constructed.
+         * The material at the point of intersection, {@code null} until it is first needed.
          */
-        public Vector normal;
+        private Material material;
 
         /**
-         * The direction vector of the viewing ray at the intersection.
-         * Can be set for lighting/shading calculations.
+         * The normal vector at the point of intersection, {@code null} until it is first needed.
          */
-        public Vector v;
+        private Vector normal;
 
         /**
-         * The dot product between the normal and v (used in lighting).
-         */
-        public double vNormal;
-
-        /**
-         * The light source used in lighting calculation.
+         * Constructs an intersection record with the specified geometry and point. The normal and
+         * the material are found only when they are first needed, so the intersections that are never
+         * shaded (farther candidates, occluders of shadow rays) cost only their point.
+         *
+         * @param geometry the intersected geometry
+         * @param point    the point of intersection
          */
-        public LightSource light;
-
-//        /**
-//         * The dot product between the normal and the light direction (used in lighting).
-//         */
-//        public double lNormal;
-//
+        public Intersection(Geometry geometry, Point point) {
+            this.geometry = geometry;
+            this.point = point;
+        }
 
         /**
-         * Constructs an intersection record with the specified geometry and point.
+         * Constructs an intersection record with its own material.
          *
          * @param geometry the intersected geometry
          * @param point    the point of intersection
+         * @param material the material at the point of intersection
          */
-        public Intersection(Geometry geometry, Point point) {
+        public Intersection(Geometry geometry, Point point, Material material) {
             this.geometry = geometry;
             this.point = point;
-            this.material = geometry != null ? geometry.getMaterial() : null;
+            this.material = material;
+        }
+
+        /**
+         * Returns the material at the point of intersection, found on the first call.
+         *
+         * @return the material
+         */
+        public Material getMaterial() {
+            if (material == null && geometry != null) material = geometry.getMaterial(this);
+            return material;
+        }
+
+        /**
+         * Returns the normal vector at the point of intersection, calculated on the first call.
+         *
+         * @return the unit normal
+         */
+        public Vector getNormal() {
+            if (normal == null) normal = geometry.getNormal(this);
+            return normal;
         }
 
         @Override
@@ -0,0 +1,75 @@
+package geometries;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of sorted, disjoint intervals along a ray line, used by the
+ * constructive solid geometry evaluation.
+ * <p>
+ * Interval {@code i} spans the distances {@code [t[2i], t[2i+1]]} and each of its boundaries
+ * remembers the primitive geometry whose surface it lies on. The arrays are allocated once
+ * and only grow when a deeper tree needs more room, so evaluating a ray does not allocate.
+ * </p>
+ */
+public final class IntervalList {
+    /** Initial capacity in intervals */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** Boundary distances - entry at even index, exit at odd index */
+    double[] t = new double[2 * INITIAL_CAPACITY];
+    /** The surface each boundary lies on */
+    Geometry[] surface = new Geometry[2 * INITIAL_CAPACITY];
+    /** Amount of intervals in the buffer */
+    int size = 0;
+
+    /**
+     * Removes all the intervals (the buffer keeps its capacity).
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the amount of intervals in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends an interval after the existing ones. The intervals must be appended sorted and disjoint.
+     *
+     * @param enter        entry distance
+     * @param enterSurface the surface at the entry
+     * @param exit         exit distance
+     * @param exitSurface  the surface at the exit
+     */
+    public void add(double enter, Geometry enterSurface, double exit, Geometry exitSurface) {
+        int i = 2 * size;
+        if (i == t.length) {
+            t = Arrays.copyOf(t, 2 * i);
+            surface = Arrays.copyOf(surface, 2 * i);
+        }
+        t[i] = enter;
+        surface[i] = enterSurface;
+        t[i + 1] = exit;
+        surface[i + 1] = exitSurface;
+        ++size;
+    }
+
+    /**
+     * @param i interval index
+     * @return entry distance of the interval
+     */
+    public double enter(int i) {
+        return t[2 * i];
+    }
+
+    /**
+     * @param i interval index
+     * @return exit distance of the interval
+     */
+    public double exit(int i) {
+        return t[2 * i + 1];
+    }
+}
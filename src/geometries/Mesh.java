@@ -0,0 +1,829 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
+/**
+ * Indexed triangle mesh - vertices and triangle indices in flat arrays with an internal
+ * bounding volume hierarchy, instead of one {@link Triangle} object per triangle.
+ * <p>
+ * The mesh can carry several precomputed levels of detail (LOD), generated once at load time
+ * by edge-collapse simplification. When the angular size of a pixel is known
+ * ({@link #setLodPixelSpread(double)}), every ray selects the coarsest level whose triangles are
+ * still smaller than the pixel footprint at the hit distance, so distant meshes that cover
+ * a few pixels do not pay for a full resolution traversal. The secondary and the shadow rays carry
+ * the distance their pixel cone travelled ({@link Ray#getTravelled()}), so they see the level of the hit
+ * they leave and the footprints of the reflections keep growing.
+ * </p>
+ * <p>
+ * Very large meshes may be kept in single precision ({@link #useSinglePrecision()}) - the vertices
+ * and the hierarchy boxes are stored as floats, while the ray math stays in double precision -
+ * and off-heap ({@link #useOffHeapStorage()}), out of the sight of the garbage collector.
+ * </p>
+ */
+public class Mesh extends Geometry {
+
+    /**
+     * One level of detail - a triangle set with its own hierarchy.
+     */
+    private static final class Level {
+        /** Vertex coordinates - 3 values per vertex */
+        final Coordinates vertices;
+        /** Triangle vertex indices - 3 values per triangle, in the leaf order of the hierarchy */
+        final Indices indices;
+        /** Hierarchy over the triangles */
+        final Bvh bvh;
+        /** Mean edge length - the size of the level's detail */
+        final double edgeLength;
+
+        /**
+         * Constructs a level in heap double precision storage and builds its hierarchy.
+         *
+         * @param vertices vertex coordinates
+         * @param indices  triangle vertex indices
+         * @param leafSize maximal amount of triangles in a hierarchy leaf
+         */
+        Level(double[] vertices, int[] indices, int leafSize) {
+            int triangles = indices.length / 3;
+            double edges = 0;
+            for (int t = 0; t < triangles; ++t) {
+                int a = 3 * indices[3 * t], b = 3 * indices[3 * t + 1], c = 3 * indices[3 * t + 2];
+                edges += distance(vertices, a, b) + distance(vertices, b, c) + distance(vertices, c, a);
+            }
+            this.edgeLength = edges / (3 * triangles);
+            this.bvh = new Bvh(triangles, leafSize, new Bvh.PrimitiveBounds() {
+                @Override
+                public double min(int t, int axis) {
+                    return Math.min(vertices[3 * indices[3 * t] + axis],
+                            Math.min(vertices[3 * indices[3 * t + 1] + axis], vertices[3 * indices[3 * t + 2] + axis]));
+                }
+
+                @Override
+                public double max(int t, int axis) {
+                    return Math.max(vertices[3 * indices[3 * t] + axis],
+                            Math.max(vertices[3 * indices[3 * t + 1] + axis], vertices[3 * indices[3 * t + 2] + axis]));
+                }
+            });
+            // store the triangles in leaf order, so the hierarchy needs no permutation
+            int[] sorted = new int[indices.length];
+            for (int t = 0; t < triangles; ++t) System.arraycopy(indices, 3 * bvh.order[t], sorted, 3 * t, 3);
+            bvh.dropOrder();
+            this.vertices = Coordinates.of(vertices, false, false);
+            this.indices = Indices.of(sorted, false);
+        }
+
+        /**
+         * Constructs a level from existing storage.
+         *
+         * @param vertices   vertex coordinates
+         * @param indices    triangle vertex indices
+         * @param bvh        hierarchy over the triangles
+         * @param edgeLength mean edge length
+         */
+        private Level(Coordinates vertices, Indices indices, Bvh bvh, double edgeLength) {
+            this.vertices = vertices;
+            this.indices = indices;
+            this.bvh = bvh;
+            this.edgeLength = edgeLength;
+        }
+
+        /**
+         * Moves the level into another storage. The single precision hierarchy boxes are rounded outwards,
+         * so they contain the rounded vertices as well.
+         *
+         * @param singlePrecision whether to store the vertices and the hierarchy boxes as floats
+         * @param offHeap         whether to store the arrays off-heap
+         * @return the level in the new storage
+         */
+        Level store(boolean singlePrecision, boolean offHeap) {
+            if (vertices.singlePrecision() == singlePrecision && vertices.offHeap() == offHeap) return this;
+            bvh.setStorage(singlePrecision, offHeap);
+            return new Level(Coordinates.of(vertices.toArray(), singlePrecision, offHeap),
+                    indices.offHeap() == offHeap ? indices : Indices.of(indices.toArray(), offHeap), bvh, edgeLength);
+        }
+
+        /**
+         * @return approximate memory taken by the level, in bytes
+         */
+        long memoryBytes() {
+            return vertices.memoryBytes() + indices.memoryBytes() + bvh.memoryBytes();
+        }
+
+        /**
+         * @return approximate memory taken by the level outside the Java heap, in bytes
+         */
+        long offHeapBytes() {
+            return (vertices.offHeap() ? vertices.memoryBytes() : 0) + (indices.offHeap() ? indices.memoryBytes() : 0)
+                    + bvh.offHeapBytes();
+        }
+
+        /**
+         * @return amount of triangles in the level
+         */
+        int triangles() {
+            return indices.length() / 3;
+        }
+    }
+
+    /** Maximal amount of triangles in a hierarchy leaf */
+    private static final int LEAF_SIZE = 4;
+    /**
+     * Maximal amount of triangles in a hierarchy leaf of a coarser level - its hierarchy is a fraction of the
+     * full resolution one, so it affords smaller leaves and the coarser levels save triangle tests as well
+     */
+    private static final int COARSE_LEAF_SIZE = 2;
+    /** Triangle reduction factor between consequent levels (half the edge length) */
+    private static final int LEVEL_REDUCTION = 4;
+    /** Smallest triangle count worth another level */
+    private static final int MIN_LEVEL_TRIANGLES = 8;
+
+    /** Levels of detail, the full resolution first */
+    private Level[] levels;
+    /** Whether the vertices and the hierarchy boxes are stored as floats */
+    private boolean singlePrecision = false;
+    /** Whether the mesh arrays are stored off-heap */
+    private boolean offHeap = false;
+    /** Bounding box of the mesh */
+    private BoundingBox box;
+    /** Angular size of a pixel, 0 for full resolution on every ray */
+    private double pixelSpread = 0;
+    /** Factor on the pixel footprint when choosing a level (bigger is coarser) */
+    private double lodBias = 1;
+    /** Amount of ray-triangle tests, for measurements - {@code null} unless the statistics are collected */
+    private LongAdder triangleTests;
+    /** Amount of ray-box tests of hierarchy nodes, for measurements - {@code null} unless the statistics are collected */
+    private LongAdder nodeTests;
+
+    /** Traversal contexts, one per rendering thread */
+    private static final ThreadLocal<Traversal> TRAVERSALS = ThreadLocal.withInitial(Traversal::new);
+
+    /**
+     * Traversal state of one ray in one level, reused by all the traversals of a thread, so a ray allocates
+     * nothing but the intersections it passes on. A context is marked busy during a traversal, so a nested
+     * traversal (from a sink) takes the next context of the thread.
+     */
+    private static final class Traversal implements Bvh.Visitor {
+        /** Distance range of the ray inside the mesh bounds */
+        final double[] range = new double[2];
+        /** The traversed mesh */
+        Mesh mesh;
+        /** The ray */
+        Ray ray;
+        /** Ray head and direction coordinates */
+        double ox, oy, oz, dx, dy, dz;
+        /** The traversed level index */
+        int level;
+        /** Vertex coordinates of the level */
+        Coordinates vertices;
+        /** Triangle vertex indices of the level */
+        Indices indices;
+        /** Receives the intersections, {@code null} in a closest hit search */
+        IntersectionSink sink;
+        /** The closest hit found so far, in a closest hit search */
+        Hit hit;
+        /** Whether all the intersections were passed to the sink */
+        boolean complete;
+        /** Amount of ray-triangle tests of the traversal */
+        int tests;
+        /** Whether the context is in use */
+        boolean busy;
+        /** The context for a nested traversal */
+        Traversal next;
+
+        /**
+         * Takes a context of the current thread for a ray; it must be released after use.
+         *
+         * @param mesh the traversed mesh
+         * @param ray  the ray
+         * @return the context, with the full distance range
+         */
+        static Traversal take(Mesh mesh, Ray ray) {
+            Traversal traversal = TRAVERSALS.get();
+            while (traversal.busy) {
+                if (traversal.next == null) traversal.next = new Traversal();
+                traversal = traversal.next;
+            }
+            traversal.busy = true;
+            traversal.mesh = mesh;
+            traversal.ray = ray;
+            Point head = ray.getHead();
+            Vector dir = ray.getDirection();
+            traversal.ox = head.getX();
+            traversal.oy = head.getY();
+            traversal.oz = head.getZ();
+            traversal.dx = dir.getX();
+            traversal.dy = dir.getY();
+            traversal.dz = dir.getZ();
+            traversal.range[0] = 0;
+            traversal.range[1] = Double.POSITIVE_INFINITY;
+            return traversal;
+        }
+
+        /**
+         * Releases the context and its references.
+         */
+        void release() {
+            mesh = null;
+            ray = null;
+            sink = null;
+            hit = null;
+            vertices = null;
+            indices = null;
+            busy = false;
+        }
+
+        /**
+         * Traverses the hierarchy of one level.
+         *
+         * @param levelIndex the level index
+         * @param tMax       the distance limit of the traversal
+         */
+        void traverse(int levelIndex, double tMax) {
+            Level traversed = mesh.levels[levelIndex];
+            level = levelIndex;
+            vertices = traversed.vertices;
+            indices = traversed.indices;
+            tests = 0;
+            int nodes = traversed.bvh.traverse(ox, oy, oz, dx, dy, dz, tMax, this);
+            if (mesh.triangleTests != null) {
+                mesh.triangleTests.add(tests);
+                mesh.nodeTests.add(nodes);
+            }
+        }
+
+        @Override
+        public double visit(int triangle, double limit) {
+            ++tests;
+            Coordinates v = vertices;
+            int a = 3 * indices.get(3 * triangle), b = 3 * indices.get(3 * triangle + 1);
+            int c = 3 * indices.get(3 * triangle + 2);
+            if (sink != null) {
+                Intersection intersection = mesh.hit(ray, mesh.primitive(level, triangle), v.get(a), v.get(a + 1),
+                        v.get(a + 2), v.get(b), v.get(b + 1), v.get(b + 2), v.get(c), v.get(c + 1), v.get(c + 2));
+                if (intersection == null || sink.accept(intersection)) return limit;
+                complete = false;
+                return -1;
+            }
+            double ax = v.get(a), ay = v.get(a + 1), az = v.get(a + 2);
+            double e1x = v.get(b) - ax, e1y = v.get(b + 1) - ay, e1z = v.get(b + 2) - az;
+            double e2x = v.get(c) - ax, e2y = v.get(c + 1) - ay, e2z = v.get(c + 2) - az;
+            double t = intersectTriangle(ax, ay, az, e1x, e1y, e1z, e2x, e2y, e2z, ox, oy, oz, dx, dy, dz);
+            if (!hit.offer(t, mesh, mesh.primitive(level, triangle))) return limit;
+            // barycentric weights of the second and the third vertex
+            double px = ox + dx * t - ax, py = oy + dy * t - ay, pz = oz + dz * t - az;
+            double d00 = e1x * e1x + e1y * e1y + e1z * e1z, d01 = e1x * e2x + e1y * e2y + e1z * e2z;
+            double d11 = e2x * e2x + e2y * e2y + e2z * e2z;
+            double d20 = px * e1x + py * e1y + pz * e1z, d21 = px * e2x + py * e2y + pz * e2z;
+            double denominator = d00 * d11 - d01 * d01;
+            hit.u = (d11 * d20 - d01 * d21) / denominator;
+            hit.v = (d00 * d21 - d01 * d20) / denominator;
+            // the traversal limit follows the closest hit, so the boxes behind it are skipped
+            return Math.min(limit, t);
+        }
+    }
+
+    /**
+     * Constructs a mesh.
+     *
+     * @param vertices vertex coordinates - 3 values per vertex
+     * @param indices  triangle vertex indices - 3 values per triangle
+     * @throws IllegalArgumentException if the arrays are empty, incomplete or the indices are out of range
+     */
+    public Mesh(double[] vertices, int[] indices) {
+        if (vertices.length == 0 || vertices.length % 3 != 0 || indices.length == 0 || indices.length % 3 != 0)
+            throw new IllegalArgumentException("Mesh requires whole vertices and whole triangles");
+        int vertexCount = vertices.length / 3;
+        for (int index : indices)
+            if (index < 0 || index >= vertexCount)
+                throw new IllegalArgumentException("Mesh triangle index out of range: " + index);
+        levels = new Level[]{new Level(vertices.clone(), indices, LEAF_SIZE)};
+        box = levels[0].bvh.getBoundingBox();
+    }
+
+    /**
+     * Constructs a mesh from vertex points.
+     *
+     * @param vertices the vertices
+     * @param indices  triangle vertex indices - 3 values per triangle
+     */
+    public Mesh(List<Point> vertices, int[] indices) {
+        this(toArray(vertices), indices);
+    }
+
+    /**
+     * Flattens points into a coordinates array.
+     *
+     * @param points the points
+     * @return the coordinates - 3 values per point
+     */
+    private static double[] toArray(List<Point> points) {
+        double[] result = new double[3 * points.size()];
+        int i = 0;
+        for (Point p : points) {
+            result[i++] = p.getX();
+            result[i++] = p.getY();
+            result[i++] = p.getZ();
+        }
+        return result;
+    }
+
+    /**
+     * Generates coarser levels of detail by edge-collapse simplification.
+     * Every level has about a quarter of the triangles of the previous one (half the edge length).
+     * It should be called once, when the mesh is loaded.
+     *
+     * @param count maximal amount of levels including the full resolution one
+     * @return this mesh (for method chaining)
+     */
+    public Mesh generateLevelsOfDetail(int count) {
+        if (count < 1) throw new IllegalArgumentException("At least one level of detail is required");
+        List<Level> result = new LinkedList<>();
+        Level level = levels[0];
+        result.add(level);
+        while (result.size() < count && level.triangles() / LEVEL_REDUCTION >= MIN_LEVEL_TRIANGLES) {
+            Level coarser = simplify(level, level.triangles() / LEVEL_REDUCTION);
+            if (coarser == null || coarser.triangles() >= level.triangles()) break;
+            result.add(coarser);
+            level = coarser;
+        }
+        levels = result.toArray(new Level[0]);
+        return this;
+    }
+
+    /**
+     * Stores the vertices and the hierarchy boxes of all the levels in single precision, which halves
+     * their memory and improves cache hit rates. The ray math stays in double precision; the vertices
+     * move by up to half a float ulp (about 6e-8 of their magnitude). The conversion is one-way,
+     * levels generated afterwards are stored in single precision as well.
+     *
+     * @return this mesh (for method chaining)
+     */
+    public Mesh useSinglePrecision() {
+        singlePrecision = true;
+        return store();
+    }
+
+    /**
+     * Moves the vertices, the triangles and the hierarchies of all the levels off-heap (into direct buffers),
+     * so the garbage collector does not scan or copy them and they do not count against the heap size.
+     * Levels generated afterwards are stored off-heap as well.
+     *
+     * @return this mesh (for method chaining)
+     */
+    public Mesh useOffHeapStorage() {
+        offHeap = true;
+        return store();
+    }
+
+    /**
+     * Moves all the levels into the current storage.
+     *
+     * @return this mesh (for method chaining)
+     */
+    private Mesh store() {
+        for (int i = 0; i < levels.length; ++i) levels[i] = levels[i].store(singlePrecision, offHeap);
+        box = levels[0].bvh.getBoundingBox();
+        return this;
+    }
+
+    /**
+     * @return approximate memory taken by the mesh data and its hierarchies, in bytes
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Level level : levels) bytes += level.memoryBytes();
+        return bytes;
+    }
+
+    /**
+     * @return approximate memory taken by the mesh data and its hierarchies outside the Java heap, in bytes
+     */
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (Level level : levels) bytes += level.offHeapBytes();
+        return bytes;
+    }
+
+    /**
+     * Sets the angular size of a pixel of the rendering camera (view plane pixel width over
+     * view plane distance) - enables level of detail selection.
+     *
+     * @param pixelSpread the pixel spread angle, 0 disables level of detail selection
+     * @return this mesh (for method chaining)
+     */
+    public Mesh setLodPixelSpread(double pixelSpread) {
+        if (pixelSpread < 0) throw new IllegalArgumentException("Pixel spread must not be negative");
+        this.pixelSpread = pixelSpread;
+        return this;
+    }
+
+    /**
+     * Sets the level of detail bias - the amount of pixels a triangle edge may cover
+     * at the selected level. Bigger values select coarser levels.
+     *
+     * @param lodBias the bias (1 by default)
+     * @return this mesh (for method chaining)
+     */
+    public Mesh setLodBias(double lodBias) {
+        if (alignZero(lodBias) <= 0) throw new IllegalArgumentException("Level of detail bias must be positive");
+        this.lodBias = lodBias;
+        return this;
+    }
+
+    /**
+     * @return the amount of levels of detail (at least 1)
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * @param level level index, 0 is the full resolution
+     * @return the amount of triangles in the level
+     */
+    public int getTriangleCount(int level) {
+        return levels[level].triangles();
+    }
+
+    /**
+     * Switches the counting of the ray-triangle and node box tests, for measurements. The counters are
+     * shared by the rendering threads, so they are off by default.
+     *
+     * @param collect whether to count the tests
+     * @return this mesh (for method chaining)
+     */
+    public Mesh setStatistics(boolean collect) {
+        triangleTests = collect ? new LongAdder() : null;
+        nodeTests = collect ? new LongAdder() : null;
+        return this;
+    }
+
+    /**
+     * @return the amount of ray-triangle tests performed since the last reset, 0 if the tests are not counted
+     */
+    public long getTriangleTests() {
+        return triangleTests == null ? 0 : triangleTests.sum();
+    }
+
+    /**
+     * @return the amount of hierarchy node box tests performed since the last reset, 0 if the tests are not counted
+     */
+    public long getNodeTests() {
+        return nodeTests == null ? 0 : nodeTests.sum();
+    }
+
+    /**
+     * Resets the ray-triangle and node box tests counters.
+     */
+    public void resetStatistics() {
+        if (triangleTests == null) return;
+        triangleTests.reset();
+        nodeTests.reset();
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return box;
+    }
+
+    /**
+     * Selects the level of detail for a hit at a given distance along the pixel cone of the ray - the
+     * coarsest level whose detail is still below the pixel footprint there.
+     *
+     * @param distance distance the pixel cone travelled from the camera to the hit
+     * @return the level index
+     */
+    int selectLevel(double distance) {
+        if (pixelSpread == 0 || levels.length == 1) return 0;
+        double footprint = distance * pixelSpread * lodBias;
+        for (int i = levels.length - 1; i > 0; --i)
+            if (levels[i].edgeLength <= footprint) return i;
+        return 0;
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        return collectIntersections(ray);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The intersections are not known before they are passed, so the level is selected at the entry into the
+     * mesh bounds. A secondary or shadow ray leaving the mesh starts inside its bounds, at the distance its pixel
+     * cone travelled to the hit it leaves, so it intersects the level of that hit and does not shadow itself.
+     * </p>
+     */
+    @Override
+    protected boolean visitIntersectionsHelper(Ray ray, IntersectionSink sink) {
+        Traversal traversal = Traversal.take(this, ray);
+        try {
+            double[] range = traversal.range;
+            if (!box.clip(ray, range)) return true;
+            traversal.sink = sink;
+            traversal.complete = true;
+            traversal.traverse(selectLevel(ray.getTravelled() + range[0]), range[1]);
+            return traversal.complete;
+        } finally {
+            traversal.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The level is selected by the hit distance: the search starts at the level of the entry into the mesh
+     * bounds - the nearest possible hit - and if the hit found there is far enough for a coarser level,
+     * the search is repeated in the coarser level. The levels only grow coarser, so there are at most as many
+     * searches as levels, and a mesh far from the ray head is searched once.
+     * </p>
+     */
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        Traversal traversal = Traversal.take(this, ray);
+        try {
+            double[] range = traversal.range;
+            if (!box.clip(ray, range)) return false;
+            traversal.hit = hit;
+            double start = hit.t;
+            Geometry geometry = hit.geometry;
+            int primitive = hit.primitive;
+            double u = hit.u, v = hit.v;
+            Intersection intersection = hit.intersection;
+            int level = selectLevel(ray.getTravelled() + range[0]);
+            while (true) {
+                traversal.traverse(level, Math.min(range[1], start));
+                if (hit.t >= start) return false;
+                int coarser = selectLevel(ray.getTravelled() + hit.t);
+                if (coarser <= level) return true;
+                // the hit is beyond the footprint of the level - the former closest hit is searched again
+                hit.t = start;
+                hit.geometry = geometry;
+                hit.primitive = primitive;
+                hit.u = u;
+                hit.v = v;
+                hit.intersection = intersection;
+                level = coarser;
+            }
+        } finally {
+            traversal.release();
+        }
+    }
+
+    @Override
+    protected Intersection buildIntersection(Ray ray, Hit hit) {
+        // the hit records the level of its triangle
+        Intersection intersection = new Intersection(this, ray.getPoint(hit.t));
+        intersection.primitive = hit.primitive;
+        return intersection;
+    }
+
+    @Override
+    protected Vector getNormal(Intersection intersection) {
+        return intersection.primitive < 0 ? getNormal(intersection.point) : primitiveNormal(intersection.primitive);
+    }
+
+    /**
+     * Identifies a triangle of a level in the intersection records.
+     *
+     * @param level    the level index
+     * @param triangle the triangle index in the level
+     * @return the primitive index
+     */
+    private int primitive(int level, int triangle) {
+        return triangle * levels.length + level;
+    }
+
+    /**
+     * Calculates the normal of a triangle identified by {@link #primitive(int, int)}.
+     *
+     * @param primitive the primitive index
+     * @return the unit normal of the triangle
+     */
+    Vector primitiveNormal(int primitive) {
+        Level level = levels[primitive % levels.length];
+        Indices idx = level.indices;
+        int triangle = primitive / levels.length;
+        return triangleNormal(level.vertices, 3 * idx.get(3 * triangle),
+                3 * idx.get(3 * triangle + 1), 3 * idx.get(3 * triangle + 2));
+    }
+
+    /**
+     * Tests a triangle and builds its intersection with the ray - the normal is calculated
+     * only if the intersection is shaded.
+     *
+     * @param ray       the ray
+     * @param primitive the triangle as identified by {@link #primitive(int, int)}
+     * @param ax        first vertex X
+     * @param ay        first vertex Y
+     * @param az        first vertex Z
+     * @param bx        second vertex X
+     * @param by        second vertex Y
+     * @param bz        second vertex Z
+     * @param cx        third vertex X
+     * @param cy        third vertex Y
+     * @param cz        third vertex Z
+     * @return the intersection, or {@code null} if the triangle is missed
+     */
+    private Intersection hit(Ray ray, int primitive, double ax, double ay, double az,
+                             double bx, double by, double bz, double cx, double cy, double cz) {
+        Point head = ray.getHead();
+        Vector dir = ray.getDirection();
+        double e1x = bx - ax, e1y = by - ay, e1z = bz - az;
+        double e2x = cx - ax, e2y = cy - ay, e2z = cz - az;
+        double t = intersectTriangle(ax, ay, az, e1x, e1y, e1z, e2x, e2y, e2z,
+                head.getX(), head.getY(), head.getZ(), dir.getX(), dir.getY(), dir.getZ());
+        if (t <= 0) return null;
+        Intersection intersection = new Intersection(this, ray.getPoint(t));
+        intersection.primitive = primitive;
+        return intersection;
+    }
+
+    /**
+     * Moller-Trumbore ray-triangle intersection.
+     *
+     * @param ax  first vertex X
+     * @param ay  first vertex Y
+     * @param az  first vertex Z
+     * @param e1x first edge X (second vertex minus the first)
+     * @param e1y first edge Y
+     * @param e1z first edge Z
+     * @param e2x second edge X (third vertex minus the first)
+     * @param e2y second edge Y
+     * @param e2z second edge Z
+     * @param ox ray origin X
+     * @param oy ray origin Y
+     * @param oz ray origin Z
+     * @param dx ray direction X
+     * @param dy ray direction Y
+     * @param dz ray direction Z
+     * @return the distance to the intersection, or a non-positive value if there is none
+     */
+    static double intersectTriangle(double ax, double ay, double az, double e1x, double e1y, double e1z,
+                                    double e2x, double e2y, double e2z,
+                                    double ox, double oy, double oz, double dx, double dy, double dz) {
+        double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (isZero(det)) return 0; // ray parallel to the triangle
+        double inv = 1 / det;
+        double sx = ox - ax, sy = oy - ay, sz = oz - az;
+        double u = (sx * px + sy * py + sz * pz) * inv;
+        if (u < 0 || u > 1) return 0;
+        double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        double w = (dx * qx + dy * qy + dz * qz) * inv;
+        if (w < 0 || u + w > 1) return 0;
+        return alignZero((e2x * qx + e2y * qy + e2z * qz) * inv);
+    }
+
+    /**
+     * Calculates the unit normal of a triangle.
+     *
+     * @param v vertex coordinates
+     * @param a offset of the first vertex
+     * @param b offset of the second vertex
+     * @param c offset of the third vertex
+     * @return the normal
+     */
+    private static Vector triangleNormal(Coordinates v, int a, int b, int c) {
+        double e1x = v.get(b) - v.get(a), e1y = v.get(b + 1) - v.get(a + 1), e1z = v.get(b + 2) - v.get(a + 2);
+        double e2x = v.get(c) - v.get(a), e2y = v.get(c + 1) - v.get(a + 1), e2z = v.get(c + 2) - v.get(a + 2);
+        return new Vector(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x).normalize();
+    }
+
+    /**
+     * Returns the normal of the full resolution triangle nearest to the point.
+     * The intersections of the mesh know their triangle, so this linear search is only a fallback.
+     *
+     * @param point a point on the mesh
+     * @return the normal
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        Level level = levels[0];
+        Coordinates v = level.vertices;
+        Indices idx = level.indices;
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        int best = 0;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int t = 0, n = idx.length(); t < n; t += 3) {
+            int a = 3 * idx.get(t), b = 3 * idx.get(t + 1), c = 3 * idx.get(t + 2);
+            double cx = (v.get(a) + v.get(b) + v.get(c)) / 3 - px;
+            double cy = (v.get(a + 1) + v.get(b + 1) + v.get(c + 1)) / 3 - py;
+            double cz = (v.get(a + 2) + v.get(b + 2) + v.get(c + 2)) / 3 - pz;
+            double d = cx * cx + cy * cy + cz * cz;
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = t;
+            }
+        }
+        return triangleNormal(v, 3 * idx.get(best), 3 * idx.get(best + 1), 3 * idx.get(best + 2));
+    }
+
+    /**
+     * Distance between two vertices.
+     *
+     * @param v vertex coordinates
+     * @param a offset of the first vertex
+     * @param b offset of the second vertex
+     * @return the distance
+     */
+    private static double distance(double[] v, int a, int b) {
+        double x = v[a] - v[b], y = v[a + 1] - v[b + 1], z = v[a + 2] - v[b + 2];
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * Simplifies a level by greedy shortest-edge collapses. Every pass sorts the edges by length and
+     * collapses each edge whose vertices were not touched yet in the pass into its midpoint,
+     * until the target triangle count is reached. Degenerate triangles are dropped.
+     *
+     * @param level  the level to simplify
+     * @param target the wanted amount of triangles
+     * @return the simplified level, or null if nothing could be collapsed
+     */
+    private Level simplify(Level level, int target) {
+        double[] v = level.vertices.toArray();
+        int vertexCount = v.length / 3;
+        int[] tris = level.indices.toArray();
+        int triCount = tris.length / 3;
+        int[] parent = new int[vertexCount];
+        for (int i = 0; i < vertexCount; ++i) parent[i] = i;
+
+        while (triCount > target) {
+            // unique edges as (low, high) vertex couples
+            long[] edges = new long[3 * triCount];
+            for (int t = 0; t < triCount; ++t)
+                for (int e = 0; e < 3; ++e) {
+                    int p = tris[3 * t + e], q = tris[3 * t + (e + 1) % 3];
+                    edges[3 * t + e] = (long) Math.min(p, q) * vertexCount + Math.max(p, q);
+                }
+            Arrays.sort(edges);
+            int unique = 0;
+            for (int i = 0; i < edges.length; ++i)
+                if (i == 0 || edges[i] != edges[i - 1]) edges[unique++] = edges[i];
+
+            // order by length: non-negative float bits sort like the floats themselves
+            long[] byLength = new long[unique];
+            for (int i = 0; i < unique; ++i) {
+                int p = (int) (edges[i] / vertexCount), q = (int) (edges[i] % vertexCount);
+                byLength[i] = ((long) Float.floatToIntBits((float) distance(v, 3 * p, 3 * q)) << 32) | i;
+            }
+            Arrays.sort(byLength);
+
+            // every collapse removes about two triangles
+            int needed = Math.max(1, (triCount - target) / 2);
+            boolean[] touched = new boolean[vertexCount];
+            int collapsed = 0;
+            for (int i = 0; i < unique && collapsed < needed; ++i) {
+                long edge = edges[(int) byLength[i]];
+                int p = (int) (edge / vertexCount), q = (int) (edge % vertexCount);
+                if (touched[p] || touched[q]) continue;
+                touched[p] = touched[q] = true;
+                for (int axis = 0; axis < 3; ++axis)
+                    v[3 * p + axis] = (v[3 * p + axis] + v[3 * q + axis]) / 2;
+                parent[q] = p;
+                ++collapsed;
+            }
+            if (collapsed == 0) break;
+
+            // remap the triangles to the surviving vertices and drop the degenerate ones
+            int kept = 0;
+            for (int t = 0; t < triCount; ++t) {
+                int a = parent[tris[3 * t]], b = parent[tris[3 * t + 1]], c = parent[tris[3 * t + 2]];
+                if (a == b || b == c || a == c) continue;
+                tris[3 * kept] = a;
+                tris[3 * kept + 1] = b;
+                tris[3 * kept + 2] = c;
+                ++kept;
+            }
+            // the triangles now refer only to surviving vertices, so one parent step is always enough
+            triCount = kept;
+        }
+        if (triCount == 0) return null;
+
+        // compact the vertices that are still referenced
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int used = 0;
+        double[] vertices = new double[v.length];
+        int[] indices = new int[3 * triCount];
+        for (int i = 0; i < 3 * triCount; ++i) {
+            int p = tris[i];
+            if (remap[p] < 0) {
+                remap[p] = used;
+                System.arraycopy(v, 3 * p, vertices, 3 * used++, 3);
+            }
+            indices[i] = remap[p];
+        }
+        return new Level(Arrays.copyOf(vertices, 3 * used), indices, COARSE_LEAF_SIZE).store(singlePrecision, offHeap);
+    }
+}
@@ -0,0 +1,146 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+
+/**
+ * Parametric surface over the unit square of (u,v), rendered through a micro-mesh tessellation.
+ * <p>
+ * The surface is tessellated lazily, only when a ray first reaches its bounding box, and the
+ * micro-mesh is held in a {@link TessellationCache} that may evict it and regenerate it on demand.
+ * Rays that miss the bounding box never cause a tessellation.
+ * </p>
+ */
+public abstract class ParametricSurface extends Geometry {
+    /** Amount of grid segments along each parameter */
+    private int resolution = 16;
+    /** Cache of the micro-mesh */
+    private TessellationCache cache = TessellationCache.getDefault();
+
+    /**
+     * Evaluates the surface point at the given parameters.
+     *
+     * @param u      first parameter in [0,1]
+     * @param v      second parameter in [0,1]
+     * @param out    receives the point coordinates
+     * @param offset position of the X coordinate in the output
+     */
+    protected abstract void evaluate(double u, double v, double[] out, int offset);
+
+    /**
+     * Returns a box containing the whole surface - it decides when the surface is tessellated.
+     *
+     * @return the bounding box
+     */
+    @Override
+    public abstract BoundingBox getBoundingBox();
+
+    /**
+     * Sets the tessellation resolution (the cached mesh is regenerated).
+     *
+     * @param resolution amount of grid segments along each parameter (2 triangles per grid cell)
+     * @return this surface (for method chaining)
+     */
+    public ParametricSurface setResolution(int resolution) {
+        if (resolution < 1) throw new IllegalArgumentException("Tessellation resolution must be positive");
+        this.resolution = resolution;
+        cache.invalidate(this);
+        return this;
+    }
+
+    /**
+     * Sets the cache holding the micro-mesh.
+     *
+     * @param cache the cache
+     * @return this surface (for method chaining)
+     */
+    public ParametricSurface setTessellationCache(TessellationCache cache) {
+        if (cache == null) throw new IllegalArgumentException("Tessellation cache must not be null");
+        this.cache.invalidate(this);
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Tessellates the surface into a grid micro-mesh.
+     *
+     * @return the mesh
+     */
+    Mesh tessellate() {
+        int n = resolution + 1;
+        double[] vertices = new double[3 * n * n];
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                evaluate((double) j / resolution, (double) i / resolution, vertices, 3 * (i * n + j));
+        int[] indices = new int[6 * resolution * resolution];
+        int k = 0;
+        for (int i = 0; i < resolution; ++i)
+            for (int j = 0; j < resolution; ++j) {
+                int a = i * n + j, b = a + 1, c = a + n, d = c + 1;
+                indices[k++] = a;
+                indices[k++] = b;
+                indices[k++] = d;
+                indices[k++] = a;
+                indices[k++] = d;
+                indices[k++] = c;
+            }
+        return new Mesh(vertices, indices);
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        return collectIntersections(ray);
+    }
+
+    @Override
+    protected boolean visitIntersectionsHelper(Ray ray, IntersectionSink sink) {
+        BoundingBox box = getBoundingBox();
+        if (box == null || !box.intersects(ray)) return true;
+        // the hits belong to the surface, so the material and the emission are the surface's
+        return cache.get(this).visitIntersectionsHelper(ray, hit -> {
+            Intersection intersection = new Intersection(this, hit.point);
+            intersection.primitive = hit.primitive;
+            return sink.accept(intersection);
+        });
+    }
+
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        BoundingBox box = getBoundingBox();
+        if (box == null || !box.intersects(ray)) return false;
+        if (!cache.get(this).calculateClosestHitHelper(ray, hit)) return false;
+        // the hit belongs to the surface, so the material and the emission are the surface's
+        hit.geometry = this;
+        return true;
+    }
+
+    @Override
+    protected Intersection buildIntersection(Ray ray, Hit hit) {
+        Intersection meshHit = cache.get(this).buildIntersection(ray, hit);
+        Intersection intersection = new Intersection(this, meshHit.point);
+        intersection.primitive = meshHit.primitive;
+        return intersection;
+    }
+
+    @Override
+    protected Vector getNormal(Intersection intersection) {
+        // the primitive is a triangle of the micro-mesh, which is regenerated the same way if it was evicted
+        return intersection.primitive < 0 ? getNormal(intersection.point)
+                : cache.get(this).primitiveNormal(intersection.primitive);
+    }
+
+    /**
+     * Returns the normal of the micro-mesh triangle nearest to the point.
+     * The intersections of the surface know their micro-mesh triangle, so this is only a fallback.
+     *
+     * @param point a point on the surface
+     * @return the normal
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        return cache.get(this).getNormal(point);
+    }
+}
@@ -64,7 +64,7 @@ public class Plane extends Geometry {
 
     @Override
     public Vector getNormal(Point point) {
-        return normal.normalize();
+        return normal;
     }
 
     /**
@@ -73,7 +73,7 @@ public class Plane extends Geometry {
      * @return the normal vector
      */
     public Vector getNormal() {
-        return normal.normalize();
+        return normal;
     }
 
 
@@ -86,15 +86,41 @@ public class Plane extends Geometry {
      */
     @Override
     public List<Intersection> calculateIntersectionsHelper(Ray ray) {
-        Vector direction = ray.getDirection();
-        Point point0 = ray.getHead();
-        // if the ray is parallel to the plane or the ray starts on the plane at the point q
-        if (Util.isZero(direction.dotProduct(normal)) || q.equals(point0))
-            return null;
-        double t = normal.dotProduct(q.subtract(point0)) / normal.dotProduct(direction);
+        double t = intersectionDistance(ray);
+        return t <= 0 ? null : List.of(new Intersection(this, ray.getPoint(t)));
+    }
 
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        return hit.offer(intersectionDistance(ray), this, -1);
+    }
 
-        return Util.alignZero(t) <= 0d? null : List.of(new Intersection(this,ray.getPoint(t)));
+    /**
+     * Calculates the distance along the ray to the plane, without allocations.
+     *
+     * @param ray the ray
+     * @return the distance, or 0 if the ray does not intersect the plane
+     */
+    double intersectionDistance(Ray ray) {
+        Point point0 = ray.getHead();
+        return intersectionDistance(point0, normal.dotProduct(ray.getDirection()),
+                normal.getX() * (q.getX() - point0.getX()) + normal.getY() * (q.getY() - point0.getY())
+                        + normal.getZ() * (q.getZ() - point0.getZ()));
+    }
+
+    /**
+     * Finishes the distance calculation from precalculated dot products (see {@link BatchKernels}).
+     *
+     * @param point0 the ray head
+     * @param nv     normal·direction
+     * @param nq     normal·(q - head)
+     * @return the distance, or 0 if the ray does not intersect the plane
+     */
+    double intersectionDistance(Point point0, double nv, double nq) {
+        // if the ray is parallel to the plane or the ray starts on the plane at the point q
+        if (Util.isZero(nv) || q.equals(point0))
+            return 0;
+        return Math.max(Util.alignZero(nq / nv), 0);
     }
     }
 
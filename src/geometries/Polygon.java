@@ -2,9 +2,7 @@ package geometries;
 
 import static java.lang.Double.*;
 
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
 
 import static primitives.Util.*;
 
@@ -150,9 +148,12 @@ public class Polygon extends Geometry {
 //    }
     @Override
     public Vector getNormal(Point point) {
-        Vector edge1 = vertices.get(1).subtract(vertices.get(0));
-        Vector edge2 = vertices.get(2).subtract(vertices.get(0));
-        return edge1.crossProduct(edge2).normalize();
+        return plane.getNormal();
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return BoundingBox.ofPoints(vertices.toArray(new Point[0]));
     }
 
     /**
@@ -164,47 +165,53 @@ public class Polygon extends Geometry {
      */
     @Override
     public List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        double t = intersectionDistance(ray);
+        return t <= 0 ? null : List.of(new Intersection(this, ray.getPoint(t)));
+    }
 
-        // Create a list to store the normals formed by the polygon's sides
-        List<Vector> edgeNormals = new LinkedList<>();
-
-        // Extract the origin and direction vector of the given ray
-        final Point rayOrigin = ray.getHead();
-        final Vector rayDirection = ray.getDirection();
-
-        // Compute a normal vector for each side of the polygon
-        Vector previousVector = vertices.getFirst().subtract(rayOrigin);
-        for (Point vertex : vertices.subList(1, size)) {
-            Vector currentVector = vertex.subtract(rayOrigin);
-            edgeNormals.add(previousVector.crossProduct(currentVector).normalize());
-            previousVector = currentVector;
-        }
-        // Handle the last side connecting the last and first vertices
-        edgeNormals.add(vertices.getLast().subtract(rayOrigin).crossProduct(vertices.getFirst().subtract(rayOrigin)).normalize());
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        return hit.offer(intersectionDistance(ray), this, -1);
+    }
 
-        // Check if the ray points to the same side for all edges
-        boolean isInitiallyPositive = rayDirection.dotProduct(edgeNormals.getFirst()) > 0;
-        for (Vector normal : edgeNormals) {
-            double dot = rayDirection.dotProduct(normal);
+    /**
+     * Calculates the distance along the ray to the polygon, without allocations.
+     *
+     * @param ray the ray
+     * @return the distance, or 0 if the ray does not intersect the polygon
+     */
+    double intersectionDistance(Ray ray) {
+        // Check if the ray points to the same side of all the edges
+        boolean isInitiallyPositive = false;
+        for (int i = 0; i < size; ++i) {
+            double dot = sideDotProduct(ray, i, i + 1 == size ? 0 : i + 1);
             // If dot product is zero or the sign is inconsistent, no intersection
-            if (Util.isZero(dot) || (dot > 0 != isInitiallyPositive)) {
-                return null;
-            }
+            if (isZero(dot)) return 0;
+            if (i == 0) isInitiallyPositive = dot > 0;
+            else if (dot > 0 != isInitiallyPositive) return 0;
         }
 
-        // Build a plane using the first three vertices of the polygon
-        Plane basePlane = new Plane(vertices.getFirst(), vertices.get(1), vertices.get(2));
-
-        List<Point> intersectionPoints = basePlane.findIntersections(ray);
-        if (intersectionPoints == null) {
-            return null; // No intersection with the plane
-        }
-
-        // Find intersection points between the ray and the constructed plane
-        return Objects.requireNonNull(intersectionPoints).stream()
-                .map(point -> new Intersection(this, point))
-                .toList();
-    }
+        return plane.intersectionDistance(ray);
     }
 
-
+    /**
+     * Calculates the dot product of the ray direction with the unit normal of the triangle
+     * formed by the ray head and a side of the polygon, without allocations.
+     *
+     * @param ray the ray
+     * @param i   index of the first vertex of the side
+     * @param j   index of the second vertex of the side
+     * @return the dot product, or 0 if the ray head is on the line of the side
+     */
+    protected double sideDotProduct(Ray ray, int i, int j) {
+        Point p0 = ray.getHead();
+        Vector direction = ray.getDirection();
+        Point a = vertices.get(i), b = vertices.get(j);
+        double ax = a.getX() - p0.getX(), ay = a.getY() - p0.getY(), az = a.getZ() - p0.getZ();
+        double bx = b.getX() - p0.getX(), by = b.getY() - p0.getY(), bz = b.getZ() - p0.getZ();
+        double nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (isZero(length)) return 0;
+        return nx / length * direction.getX() + ny / length * direction.getY() + nz / length * direction.getZ();
+    }
+}
@@ -0,0 +1,26 @@
+package geometries;
+
+import primitives.Ray;
+
+/**
+ * A closed geometry with a well-defined inside, which can take part in
+ * constructive solid geometry ({@link CsgNode}).
+ */
+public interface Solid {
+    /**
+     * Calculates the intervals of the ray's line that lie inside the solid.
+     * The whole line is considered, so distances behind the ray head (negative) are included -
+     * that is how a ray starting inside the solid is handled.
+     *
+     * @param ray the ray
+     * @param out the buffer to append the sorted intervals to (cleared by the caller)
+     */
+    void calculateIntervals(Ray ray, IntervalList out);
+
+    /**
+     * Returns the axis-aligned bounding box of the solid.
+     *
+     * @return the bounding box
+     */
+    BoundingBox getBoundingBox();
+}
@@ -13,7 +13,7 @@ import static primitives.Util.alignZero;
 /**
  * Represents a sphere in 3D space defined by a center point and a radius.
  */
-public class Sphere extends RadialGeometry {
+public class Sphere extends RadialGeometry implements Solid {
 
     /**
      * The center point of the sphere.
@@ -31,9 +31,34 @@ public class Sphere extends RadialGeometry {
         this.center = center;
     }
 
+    /**
+     * @return the center point of the sphere
+     */
+    public Point getCenter() {
+        return center;
+    }
+
     @Override
     public Vector getNormal(Point point) {
-        return point.subtract(center).normalize();
+        return Vector.normalized(point.getX() - center.getX(), point.getY() - center.getY(), point.getZ() - center.getZ());
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return BoundingBox.ofSphere(center, radius);
+    }
+
+    @Override
+    public void calculateIntervals(Ray ray, IntervalList out) {
+        Point p0 = ray.getHead();
+        Vector v = ray.getDirection();
+        double ux = center.getX() - p0.getX(), uy = center.getY() - p0.getY(), uz = center.getZ() - p0.getZ();
+        double tm = ux * v.getX() + uy * v.getY() + uz * v.getZ();
+        double dSquared = ux * ux + uy * uy + uz * uz - tm * tm;
+        double thSquared = radius * radius - dSquared;
+        if (alignZero(thSquared) <= 0) return;
+        double th = Math.sqrt(thSquared);
+        out.add(tm - th, this, tm + th, this);
     }
 
     @Override
@@ -42,20 +67,61 @@ public class Sphere extends RadialGeometry {
         Point p0 = ray.getHead();
         Vector v = ray.getDirection();
 
+        // Calculate the vector from the ray's origin to the sphere's center
+        double ux = center.getX() - p0.getX(), uy = center.getY() - p0.getY(), uz = center.getZ() - p0.getZ();
+        return intersections(ray, ux * v.getX() + uy * v.getY() + uz * v.getZ(), ux * ux + uy * uy + uz * uz);
+    }
+
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        Point p0 = ray.getHead();
+        Vector v = ray.getDirection();
+        double ux = center.getX() - p0.getX(), uy = center.getY() - p0.getY(), uz = center.getZ() - p0.getZ();
+        return closestHit(ray, ux * v.getX() + uy * v.getY() + uz * v.getZ(), ux * ux + uy * uy + uz * uz, hit);
+    }
+
+    /**
+     * Finishes the closest hit search from precalculated dot products, with the arithmetic of
+     * {@link #intersections(Ray, double, double)} - the nearer of the two intersections is offered.
+     *
+     * @param ray the ray
+     * @param uv  u·v - the projection of u on the ray direction
+     * @param uu  u·u
+     * @param hit the closest hit found so far
+     * @return true if a closer hit was found
+     */
+    boolean closestHit(Ray ray, double uv, double uu, Hit hit) {
+        if (ray.getHead().equals(center)) return hit.offer(radius, this, -1);
+        double tm = alignZero(uv);
+        double dSquared = alignZero(uu - tm * tm);
+        double radiusSquared = radius * radius;
+        if (alignZero(dSquared - radiusSquared) >= 0) return false;
+        double th = Math.sqrt(radiusSquared - dSquared);
+        double t1 = alignZero(tm - th);
+        return hit.offer(t1 > 0 ? t1 : alignZero(tm + th), this, -1);
+    }
+
+    /**
+     * Finishes the intersection calculation from precalculated dot products (calculated here
+     * or by {@link BatchKernels}), where u is the vector from the ray head to the center.
+     *
+     * @param ray the ray
+     * @param uv  u·v - the projection of u on the ray direction
+     * @param uu  u·u
+     * @return the intersections, or null if there are none
+     */
+    List<Intersection> intersections(Ray ray, double uv, double uu) {
         // Special case: if the ray starts at the center of the sphere
-        if (p0.equals(center)) {
+        if (ray.getHead().equals(center)) {
             // The intersection point is along the ray's direction at a distance equal to the radius
             return List.of(new Intersection(this, ray.getPoint(radius)));
         }
 
-        // Calculate the vector from the ray's origin to the sphere's center
-        Vector u = center.subtract(p0);
-
         // Project vector u onto the ray's direction vector v to find the projection length (tm)
-        double tm = alignZero(u.dotProduct(v));
+        double tm = alignZero(uv);
 
         // Calculate the squared distance from the sphere's center to the ray
-        double dSquared = alignZero(u.lengthSquared() - tm * tm);
+        double dSquared = alignZero(uu - tm * tm);
 
         // Calculate the squared radius of the sphere
         double radiusSquared = radius * radius;
@@ -0,0 +1,338 @@
+package geometries;
+
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+
+import static primitives.Util.alignZero;
+
+/**
+ * A large set of spheres (particles, point clouds, granular media) in packed arrays
+ * with an internal bounding volume hierarchy, instead of one {@link Sphere} object per sphere.
+ * <p>
+ * Every sphere takes 4 floats (center and radius, one array per coordinate) and a short material
+ * index into a shared material palette. The spheres are stored in the leaf order of the hierarchy,
+ * so a leaf is a contiguous range of the arrays and the hierarchy keeps no permutation, and the
+ * spheres of a leaf are tested together by the {@link BatchKernels}. Single precision is enough
+ * for the stored data and the hierarchy boxes, the intersection itself is calculated in double
+ * precision. The intersections know their sphere, which gives their normal and material.
+ * </p>
+ */
+public class SphereSet extends Geometry {
+    /** Maximal amount of spheres in a hierarchy leaf */
+    private static final int LEAF_SIZE = 8;
+
+    /** Center X per sphere, in leaf order */
+    private final float[] x;
+    /** Center Y per sphere, in leaf order */
+    private final float[] y;
+    /** Center Z per sphere, in leaf order */
+    private final float[] z;
+    /** Radius per sphere, in leaf order */
+    private final float[] radius;
+    /** Material palette index per sphere, in leaf order - {@code null} if all spheres use the geometry material */
+    private final short[] materialIndices;
+    /** The material palette */
+    private final Material[] materials;
+    /** Hierarchy over the spheres */
+    private final Bvh bvh;
+    /** Bounding box of the whole set */
+    private final BoundingBox box;
+
+    /**
+     * Constructs a sphere set where all the spheres use the geometry material.
+     *
+     * @param centers sphere centers - 3 coordinates per sphere
+     * @param radii   sphere radii
+     */
+    public SphereSet(double[] centers, double[] radii) {
+        this(centers, radii, null);
+    }
+
+    /**
+     * Constructs a sphere set with a material per sphere.
+     *
+     * @param centers         sphere centers - 3 coordinates per sphere
+     * @param radii           sphere radii
+     * @param materialIndices index in the palette per sphere, or {@code null} to use the geometry material
+     * @param materials       the material palette
+     */
+    public SphereSet(double[] centers, double[] radii, int[] materialIndices, Material... materials) {
+        int count = radii.length;
+        if (count == 0 || centers.length != 3 * count)
+            throw new IllegalArgumentException("Sphere set requires 3 center coordinates per radius");
+        for (double radius : radii)
+            if (!(radius > 0)) throw new IllegalArgumentException("Sphere radius must be positive");
+        if (materialIndices != null) {
+            if (materialIndices.length != count)
+                throw new IllegalArgumentException("Sphere set requires a material index per sphere");
+            if (materials.length > Short.MAX_VALUE + 1)
+                throw new IllegalArgumentException("Material palette is too large");
+            for (int index : materialIndices)
+                if (index < 0 || index >= materials.length)
+                    throw new IllegalArgumentException("Material index out of range");
+        }
+
+        float[] packed = new float[4 * count];
+        for (int i = 0; i < count; ++i) {
+            packed[4 * i] = (float) centers[3 * i];
+            packed[4 * i + 1] = (float) centers[3 * i + 1];
+            packed[4 * i + 2] = (float) centers[3 * i + 2];
+            packed[4 * i + 3] = (float) radii[i];
+        }
+        // the hierarchy is built over the rounded spheres, so its boxes bound the stored data exactly
+        bvh = new Bvh(count, LEAF_SIZE, new Bvh.PrimitiveBounds() {
+            @Override
+            public double min(int sphere, int axis) {
+                return (double) packed[4 * sphere + axis] - packed[4 * sphere + 3];
+            }
+
+            @Override
+            public double max(int sphere, int axis) {
+                return (double) packed[4 * sphere + axis] + packed[4 * sphere + 3];
+            }
+
+            @Override
+            public double centroid(int sphere, int axis) {
+                return packed[4 * sphere + axis];
+            }
+        });
+
+        // store the spheres in leaf order, so the hierarchy needs no permutation
+        int[] order = bvh.order;
+        x = new float[count];
+        y = new float[count];
+        z = new float[count];
+        radius = new float[count];
+        this.materialIndices = materialIndices == null ? null : new short[count];
+        for (int i = 0; i < count; ++i) {
+            x[i] = packed[4 * order[i]];
+            y[i] = packed[4 * order[i] + 1];
+            z[i] = packed[4 * order[i] + 2];
+            radius[i] = packed[4 * order[i] + 3];
+            if (materialIndices != null) this.materialIndices[i] = (short) materialIndices[order[i]];
+        }
+        bvh.dropOrder();
+        bvh.setStorage(true, false);
+        this.materials = materials;
+        box = bvh.getBoundingBox();
+    }
+
+    /**
+     * @return amount of spheres in the set
+     */
+    public int size() {
+        return radius.length;
+    }
+
+    /**
+     * @return approximate memory taken by the set data and its hierarchy, in bytes
+     */
+    public long getMemoryBytes() {
+        return 16L * radius.length
+                + (materialIndices == null ? 0 : 2L * materialIndices.length)
+                + bvh.memoryBytes();
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return box;
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        return collectIntersections(ray);
+    }
+
+    @Override
+    protected boolean visitIntersectionsHelper(Ray ray, IntersectionSink sink) {
+        double[] range = {0, Double.POSITIVE_INFINITY};
+        if (!box.clip(ray, range)) return true;
+
+        Point head = ray.getHead();
+        Vector dir = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+        double[] t = new double[2];
+        boolean[] complete = {true};
+
+        if (!BatchKernels.isEnabled()) {
+            bvh.traverse(ox, oy, oz, dx, dy, dz, range[1], (sphere, limit) -> {
+                if (!intersectSphere(sphere, ox, oy, oz, dx, dy, dz, t) || passHits(sink, ray, sphere, t)) return limit;
+                complete[0] = false;
+                return -1;
+            });
+            return complete[0];
+        }
+
+        BatchKernels.Scratch scratch = BatchKernels.scratch();
+        double[][] columns = scratch.columns(LEAF_SIZE);
+        double[] uv = columns[0], uu = columns[1];
+        try {
+            bvh.traverseLeaves(ox, oy, oz, dx, dy, dz, range[1], (first, count, limit) -> {
+                BatchKernels.spheres(x, y, z, first, first + count, ox, oy, oz, dx, dy, dz, uv, uu);
+                for (int i = 0; i < count; ++i)
+                    if (finishSphere(first + i, uv[i], uu[i], t) && !passHits(sink, ray, first + i, t)) {
+                        complete[0] = false;
+                        return -1;
+                    }
+                return limit;
+            });
+        } finally {
+            scratch.release();
+        }
+        return complete[0];
+    }
+
+    @Override
+    protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+        double[] range = {0, Double.POSITIVE_INFINITY};
+        if (!box.clip(ray, range)) return false;
+
+        Point head = ray.getHead();
+        Vector dir = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+        double[] t = new double[2];
+        double start = hit.t;
+        double tMax = Math.min(range[1], hit.t);
+
+        // the traversal limit follows the closest hit, so the boxes behind it are skipped
+        if (!BatchKernels.isEnabled()) {
+            bvh.traverse(ox, oy, oz, dx, dy, dz, tMax, (sphere, limit) -> {
+                if (intersectSphere(sphere, ox, oy, oz, dx, dy, dz, t)) hit.offer(t[0] > 0 ? t[0] : t[1], this, sphere);
+                return Math.min(limit, hit.t);
+            });
+            return hit.t < start;
+        }
+
+        BatchKernels.Scratch scratch = BatchKernels.scratch();
+        double[][] columns = scratch.columns(LEAF_SIZE);
+        double[] uv = columns[0], uu = columns[1];
+        try {
+            bvh.traverseLeaves(ox, oy, oz, dx, dy, dz, tMax, (first, count, limit) -> {
+                BatchKernels.spheres(x, y, z, first, first + count, ox, oy, oz, dx, dy, dz, uv, uu);
+                for (int i = 0; i < count; ++i)
+                    if (finishSphere(first + i, uv[i], uu[i], t)) hit.offer(t[0] > 0 ? t[0] : t[1], this, first + i);
+                return Math.min(limit, hit.t);
+            });
+        } finally {
+            scratch.release();
+        }
+        return hit.t < start;
+    }
+
+    @Override
+    protected Intersection buildIntersection(Ray ray, Hit hit) {
+        return hit(ray, hit.primitive, hit.t);
+    }
+
+    /**
+     * Passes the intersections of a sphere that lie ahead of the ray head to a sink.
+     *
+     * @param sink   receives the intersections
+     * @param ray    the ray
+     * @param sphere the sphere index
+     * @param t      distances of the entry and the exit
+     * @return false if the sink stopped the enumeration
+     */
+    private boolean passHits(IntersectionSink sink, Ray ray, int sphere, double[] t) {
+        return (t[0] <= 0 || sink.accept(hit(ray, sphere, t[0]))) && (t[1] <= 0 || sink.accept(hit(ray, sphere, t[1])));
+    }
+
+    /**
+     * Builds the intersection record of a hit - it knows its sphere, so the sphere normal
+     * and material are found only if the intersection is shaded.
+     *
+     * @param ray    the ray
+     * @param sphere the sphere index
+     * @param t      distance along the ray
+     * @return the intersection
+     */
+    private Intersection hit(Ray ray, int sphere, double t) {
+        Intersection intersection = new Intersection(this, ray.getPoint(t));
+        intersection.primitive = sphere;
+        return intersection;
+    }
+
+    @Override
+    protected Vector getNormal(Intersection intersection) {
+        int sphere = intersection.primitive;
+        if (sphere < 0) return getNormal(intersection.point);
+        Point point = intersection.point;
+        double r = radius[sphere];
+        return new Vector((point.getX() - x[sphere]) / r, (point.getY() - y[sphere]) / r,
+                (point.getZ() - z[sphere]) / r).normalize();
+    }
+
+    @Override
+    protected Material getMaterial(Intersection intersection) {
+        return materialIndices == null || intersection.primitive < 0
+                ? getMaterial() : materials[materialIndices[intersection.primitive]];
+    }
+
+    /**
+     * Scalar ray-sphere intersection of one sphere of the set.
+     *
+     * @param sphere the sphere index
+     * @param ox     ray origin X
+     * @param oy     ray origin Y
+     * @param oz     ray origin Z
+     * @param dx     ray direction X (unit direction)
+     * @param dy     ray direction Y
+     * @param dz     ray direction Z
+     * @param t      receives the distances of the entry and the exit (aligned to zero)
+     * @return true if the ray's line crosses the sphere
+     */
+    private boolean intersectSphere(int sphere, double ox, double oy, double oz,
+                                    double dx, double dy, double dz, double[] t) {
+        double ux = x[sphere] - ox, uy = y[sphere] - oy, uz = z[sphere] - oz;
+        return finishSphere(sphere, ux * dx + uy * dy + uz * dz, ux * ux + uy * uy + uz * uz, t);
+    }
+
+    /**
+     * Finishes the ray-sphere intersection from precalculated dot products (calculated by
+     * the scalar code or by {@link BatchKernels}), where u is the vector from the ray head to the center.
+     *
+     * @param sphere the sphere index
+     * @param tm     u·v - the projection of u on the ray direction
+     * @param uu     u·u
+     * @param t      receives the distances of the entry and the exit (aligned to zero)
+     * @return true if the ray's line crosses the sphere
+     */
+    private boolean finishSphere(int sphere, double tm, double uu, double[] t) {
+        double r = radius[sphere];
+        double thSquared = r * r - (uu - tm * tm);
+        if (alignZero(thSquared) <= 0) return false;
+        double th = Math.sqrt(thSquared);
+        t[0] = alignZero(tm - th);
+        t[1] = alignZero(tm + th);
+        return true;
+    }
+
+    /**
+     * Returns the normal of the sphere whose surface is nearest to the point.
+     * The intersections of the set know their sphere, so this linear search is only a fallback.
+     *
+     * @param point a point on one of the spheres
+     * @return the normal
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        int best = 0;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < radius.length; ++s) {
+            double ux = px - x[s], uy = py - y[s], uz = pz - z[s];
+            double distance = Math.abs(Math.sqrt(ux * ux + uy * uy + uz * uz) - radius[s]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = s;
+            }
+        }
+        return new Vector(px - x[best], py - y[best], pz - z[best]).normalize();
+    }
+}
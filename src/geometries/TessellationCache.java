@@ -0,0 +1,135 @@
+package geometries;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the micro-meshes of {@link ParametricSurface}s, limited by memory.
+ * <p>
+ * A surface is tessellated when a ray first reaches its bounding box. When the cached meshes exceed
+ * the memory cap the least recently used ones are evicted, and regenerated if a ray reaches their
+ * surface again, so scenes whose full tessellation does not fit in memory can still be rendered.
+ * The most recent mesh is never evicted, even if it alone exceeds the cap.
+ * The cache is shared by the rendering threads.
+ * </p>
+ */
+public class TessellationCache {
+    /** The cache used by surfaces that were not given another one - 256 MB */
+    private static final TessellationCache DEFAULT = new TessellationCache(256L << 20);
+
+    /** Memory cap in bytes */
+    private final long capacity;
+    /** The meshes in access order, the least recently used first */
+    private final LinkedHashMap<ParametricSurface, Mesh> meshes = new LinkedHashMap<>(16, 0.75f, true);
+    /** Memory taken by the cached meshes in bytes */
+    private long bytes = 0;
+    /** Amount of requests served from the cache */
+    private long hits = 0;
+    /** Amount of tessellations */
+    private long misses = 0;
+    /** Amount of evicted meshes */
+    private long evictions = 0;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param capacity memory cap in bytes
+     */
+    public TessellationCache(long capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Cache capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the cache shared by default by all the surfaces
+     */
+    public static TessellationCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the micro-mesh of a surface, tessellating it on a miss. The tessellation runs outside
+     * the lock, so two threads may tessellate the same surface at once; the first one is kept.
+     *
+     * @param surface the surface
+     * @return the mesh of the surface
+     */
+    Mesh get(ParametricSurface surface) {
+        synchronized (this) {
+            Mesh mesh = meshes.get(surface);
+            if (mesh != null) {
+                ++hits;
+                return mesh;
+            }
+            ++misses;
+        }
+        Mesh mesh = surface.tessellate();
+        synchronized (this) {
+            Mesh existing = meshes.get(surface);
+            if (existing != null) return existing;
+            meshes.put(surface, mesh);
+            bytes += mesh.getMemoryBytes();
+            Iterator<Map.Entry<ParametricSurface, Mesh>> eldest = meshes.entrySet().iterator();
+            while (bytes > capacity && meshes.size() > 1) {
+                bytes -= eldest.next().getValue().getMemoryBytes();
+                eldest.remove();
+                ++evictions;
+            }
+        }
+        return mesh;
+    }
+
+    /**
+     * Drops the mesh of a surface (after the surface has changed).
+     *
+     * @param surface the surface
+     */
+    synchronized void invalidate(ParametricSurface surface) {
+        Mesh mesh = meshes.remove(surface);
+        if (mesh != null) bytes -= mesh.getMemoryBytes();
+    }
+
+    /**
+     * Drops all the meshes and resets the statistics.
+     */
+    public synchronized void clear() {
+        meshes.clear();
+        bytes = hits = misses = evictions = 0;
+    }
+
+    /**
+     * @return the memory taken by the cached meshes, in bytes
+     */
+    public synchronized long getMemoryBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the amount of cached meshes
+     */
+    public synchronized int size() {
+        return meshes.size();
+    }
+
+    /**
+     * @return the amount of requests served from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the amount of tessellations performed
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the amount of evicted meshes
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -4,7 +4,6 @@ import primitives.*;
 import primitives.Ray;
 import geometries.Polygon;
 
-import java.util.List;
 
 /**
  * Represents a triangle in 3D space defined by three vertices.
@@ -27,38 +26,42 @@ public class Triangle extends Polygon {
      * This method calculates the intersections between a ray and a triangle defined by three vertices.
      * It first checks for intersection with the plane of the triangle and then checks if the ray
      * intersects the triangle itself by evaluating the sign of the dot products with the triangle's edges.
-     * If an intersection occurs, the method returns the intersection point(s).
+     * If an intersection occurs, the method returns the distance to it.
      *
      * @param ray the ray to check for intersections with the triangle.
-     * @return a list of intersection points between the ray and the triangle, or null if no intersection exists.
+     * @return the distance to the intersection, or 0 if no intersection exists.
      */
-    public List<Intersection> calculateIntersectionsHelper(Ray ray) {
-        Plane plane = new Plane(vertices.get(0), vertices.get(1), vertices.get(2));
-        if (plane.findIntersections(ray) == null) return null;
-        Point p0 = ray.getHead();
-        Vector rayDirection = ray.getDirection();
-        Vector v1 = vertices.get(0).subtract(p0);
-        Vector v2 = vertices.get(1).subtract(p0);
-        Vector v3 = vertices.get(2).subtract(p0);
-        Vector n1 = v1.crossProduct(v2).normalize();
-        Vector n2 = v2.crossProduct(v3).normalize();
-        Vector n3 = v3.crossProduct(v1).normalize();
+    @Override
+    double intersectionDistance(Ray ray) {
+        double t = plane.intersectionDistance(ray);
+        if (t <= 0) return 0;
 
-        double d1 = Util.alignZero(n1.dotProduct(rayDirection));
-        double d2 = Util.alignZero(n2.dotProduct(rayDirection));
-        double d3 = Util.alignZero(n3.dotProduct(rayDirection));
+        return intersectionDistance(t, sideDotProduct(ray, 0, 1), sideDotProduct(ray, 1, 2), sideDotProduct(ray, 2, 0));
+    }
+
+    /**
+     * Finishes the intersection test from the plane distance and the side dot products
+     * (calculated here or by {@link BatchKernels}).
+     *
+     * @param t  distance to the plane, non-positive if the plane is missed
+     * @param s1 side dot product of the first side
+     * @param s2 side dot product of the second side
+     * @param s3 side dot product of the third side
+     * @return the distance to the intersection, or 0 if there is none
+     */
+    double intersectionDistance(double t, double s1, double s2, double s3) {
+        if (t <= 0) return 0;
+        double d1 = Util.alignZero(s1);
+        double d2 = Util.alignZero(s2);
+        double d3 = Util.alignZero(s3);
 
         if ((d1 > 0 && d2 > 0 && d3 > 0) ||
                 (d1 < 0 && d2 < 0 && d3 < 0) ||
                 (d1 == 0 && d2 == 0) ||
                 (d2 == 0 && d3 == 0) ||
-                (d1 == 0 && d3 == 0)) {
-
-            // אם יש חיתוך, צריך להחזיר אותו עם this ולא להשאיר את זה מה-plane
-            List<Point> pts = plane.findIntersections(ray);
-            return pts == null ? null : List.of(new Intersection(this, pts.get(0)));
-        }
+                (d1 == 0 && d3 == 0))
+            return t;
 
-        return null;
+        return 0;
     }
 }
@@ -0,0 +1,129 @@
+package lighting;
+
+import primitives.*;
+
+/**
+ * A light source with a surface, that casts soft shadows.
+ * <p>
+ * The intensity and the direction of the light at a point are those of a point light at the center of
+ * the surface. The shadowing is the visible fraction of the surface, estimated by shadow rays toward
+ * sample points of the surface: the surface is split into a grid of cells, and every shadow ray goes to
+ * a point of its own cell given by {@link #getSample(double, double)}.
+ * </p>
+ */
+public abstract class AreaLight extends PointLight {
+    /** Default amount of grid cells along a side of the surface */
+    private static final int DEFAULT_SAMPLES = 4;
+
+    /** Amount of grid cells along a side of the surface */
+    private int samples = DEFAULT_SAMPLES;
+
+    /**
+     * Constructs an area light.
+     *
+     * @param intensity the base color/intensity of the light
+     * @param center    the center of the surface
+     */
+    protected AreaLight(Color intensity, Point center) {
+        super(intensity, center);
+    }
+
+    /**
+     * Sets the amount of grid cells along a side of the surface, so the soft shadow in the penumbra is
+     * estimated by up to {@code samples * samples} shadow rays. A single cell casts a hard shadow from the center.
+     *
+     * @param samples the amount of cells along a side, default 4
+     * @return this light for method chaining
+     */
+    public AreaLight setSamples(int samples) {
+        if (samples < 1) throw new IllegalArgumentException("Area light needs at least one sample");
+        this.samples = samples;
+        return this;
+    }
+
+    /**
+     * @return the amount of grid cells along a side of the surface
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Maps a point of the unit square onto the surface. Equal areas of the square map to equal areas of
+     * the surface, so uniform points of a cell of the square sample a cell of the surface uniformly.
+     *
+     * @param u first coordinate in [0,1)
+     * @param v second coordinate in [0,1)
+     * @return the point of the surface
+     */
+    public abstract Point getSample(double u, double v);
+
+    /**
+     * @return the largest distance of a point of the surface from its center
+     */
+    protected abstract double getExtent();
+
+    /**
+     * @return the area of the surface
+     */
+    public abstract double getArea();
+
+    /**
+     * @return the unit normal of the plane of the surface
+     */
+    public abstract Vector getNormal();
+
+    /**
+     * Finds where a ray meets the surface. The surface is not a geometry of the scene, so only the
+     * renderers that sample the lights by their surface look for it.
+     *
+     * @param ray the ray
+     * @return the distance from the ray head to the surface, {@link Double#POSITIVE_INFINITY} if the ray misses it
+     */
+    public double getSurfaceDistance(Ray ray) {
+        Vector normal = getNormal(), direction = ray.getDirection();
+        double dn = direction.dotProduct(normal);
+        if (dn == 0) return Double.POSITIVE_INFINITY;
+        Point head = ray.getHead(), center = getPosition();
+        double t = ((center.getX() - head.getX()) * normal.getX() + (center.getY() - head.getY()) * normal.getY()
+                + (center.getZ() - head.getZ()) * normal.getZ()) / dn;
+        if (t <= 0) return Double.POSITIVE_INFINITY;
+        return contains(head.getX() + t * direction.getX() - center.getX(), head.getY() + t * direction.getY()
+                - center.getY(), head.getZ() + t * direction.getZ() - center.getZ()) ? t : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Checks whether a point of the plane of the surface is on the surface.
+     *
+     * @param x X of the point relative to the center
+     * @param y Y of the point relative to the center
+     * @param z Z of the point relative to the center
+     * @return true if the point is on the surface
+     */
+    protected abstract boolean contains(double x, double y, double z);
+
+    @Override
+    public AreaLight setKc(double kC) {
+        super.setKc(kC);
+        return this;
+    }
+
+    @Override
+    public AreaLight setKl(double kL) {
+        super.setKl(kL);
+        return this;
+    }
+
+    @Override
+    public AreaLight setKq(double kQ) {
+        super.setKq(kQ);
+        return this;
+    }
+
+    @Override
+    public double getRange(double cutoff) {
+        // the shadow rays reach the whole surface, so the influence sphere covers it
+        double range = super.getRange(cutoff);
+        return range == 0 || range == Double.POSITIVE_INFINITY ? range : range + getExtent();
+    }
+}
@@ -25,7 +25,7 @@ public class DirectionalLight extends Light implements LightSource {
     public Vector getL(Point p) {
         // Return direction FROM point TO light source
         // For directional light, this is opposite to the light's direction
-        return direction.normalize();
+        return direction; // normalized by the constructor
     }
 
     @Override
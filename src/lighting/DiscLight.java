@@ -0,0 +1,77 @@
+package lighting;
+
+import primitives.*;
+
+/**
+ * A disc area light - given by its center, the normal of its plane and its radius.
+ */
+public class DiscLight extends AreaLight {
+    /** Radius of the disc */
+    private final double radius;
+    /** Unit normal of the disc */
+    private final Vector normal;
+    /** Unit vector in the plane of the disc */
+    private final Vector axisU;
+    /** Unit vector in the plane of the disc, orthogonal to {@link #axisU} */
+    private final Vector axisV;
+
+    /**
+     * Constructs a disc area light.
+     *
+     * @param intensity the base color/intensity of the light
+     * @param center    the center of the disc
+     * @param normal    the normal of the plane of the disc
+     * @param radius    the radius of the disc
+     * @throws IllegalArgumentException if the radius is not positive
+     */
+    public DiscLight(Color intensity, Point center, Vector normal, double radius) {
+        super(intensity, center);
+        if (radius <= 0) throw new IllegalArgumentException("Disc light radius must be positive");
+        this.radius = radius;
+        this.normal = normal.normalize();
+        // the coordinate axis farthest from the normal is not parallel to it
+        Vector other = Math.abs(this.normal.getX()) < 0.5 ? Vector.AXIS_X : Vector.AXIS_Y;
+        axisU = this.normal.crossProduct(other).normalize();
+        axisV = this.normal.crossProduct(axisU);
+    }
+
+    @Override
+    public Point getSample(double u, double v) {
+        // concentric mapping of the square onto the disc, which keeps the cells of the square compact
+        double a = 2 * u - 1, b = 2 * v - 1;
+        double r, phi;
+        if (a == 0 && b == 0) return getPosition();
+        if (Math.abs(a) > Math.abs(b)) {
+            r = a;
+            phi = Math.PI / 4 * (b / a);
+        } else {
+            r = b;
+            phi = Math.PI / 2 - Math.PI / 4 * (a / b);
+        }
+        double x = radius * r * Math.cos(phi), y = radius * r * Math.sin(phi);
+        Point center = getPosition();
+        return new Point(center.getX() + x * axisU.getX() + y * axisV.getX(),
+                center.getY() + x * axisU.getY() + y * axisV.getY(),
+                center.getZ() + x * axisU.getZ() + y * axisV.getZ());
+    }
+
+    @Override
+    protected double getExtent() {
+        return radius;
+    }
+
+    @Override
+    public double getArea() {
+        return Math.PI * radius * radius;
+    }
+
+    @Override
+    public Vector getNormal() {
+        return normal;
+    }
+
+    @Override
+    protected boolean contains(double x, double y, double z) {
+        return x * x + y * y + z * z <= radius * radius;
+    }
+}
@@ -30,4 +30,46 @@ public interface LightSource {
      */
     double getDistance(Point p);
 
+    /**
+     * Gets the position of the light source, the center of its influence sphere.
+     *
+     * @return the position, or null if the light source has no position
+     */
+    default Point getPosition() {
+        return null;
+    }
+
+    /**
+     * Gets the distance from the light source beyond which its intensity is below a cutoff
+     * in every color component.
+     *
+     * @param cutoff the intensity cutoff
+     * @return the radius of the influence sphere, {@link Double#POSITIVE_INFINITY} if the light reaches everywhere
+     */
+    default double getRange(double cutoff) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Estimates the strength of the light source, for choosing among many lights.
+     *
+     * @return the largest intensity component of the light before attenuation,
+     * {@link Double#POSITIVE_INFINITY} if it is unknown
+     */
+    default double getPower() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Checks whether the light source may light a point with an intensity above a cutoff.
+     * The test is cheap and conservative - a false answer means that the intensity at the
+     * point is below the cutoff, so the light may be skipped before any other calculation.
+     *
+     * @param p      the point
+     * @param cutoff the intensity cutoff
+     * @return false if the intensity at the point is below the cutoff
+     */
+    default boolean mayIlluminate(Point p, double cutoff) {
+        return true;
+    }
 }
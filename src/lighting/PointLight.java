@@ -29,7 +29,8 @@ public class PointLight extends Light implements LightSource {
         if (p.equals(position)) {
             throw new IllegalArgumentException("The point cannot be equal to the position of the point light.");
         }
-        return p.subtract(position).normalize();
+        double x = p.getX() - position.getX(), y = p.getY() - position.getY(), z = p.getZ() - position.getZ();
+        return Vector.normalized(x, y, z);
     }
 
     @Override
@@ -73,6 +74,41 @@ public class PointLight extends Light implements LightSource {
     }
 
 
+    @Override
+    public Point getPosition() {
+        return position;
+    }
+
+    @Override
+    public double getPower() {
+        return intensity.max();
+    }
+
+    /**
+     * Calculates the largest intensity component of the light at any distance.
+     *
+     * @return the peak intensity, {@link Double#POSITIVE_INFINITY} if the attenuation does not bound it
+     */
+    protected double getPeakIntensity() {
+        return kC > 0 && kL >= 0 && kQ >= 0 ? intensity.max() / kC : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public double getRange(double cutoff) {
+        if (cutoff <= 0 || kC < 0 || kL < 0 || kQ < 0) return Double.POSITIVE_INFINITY;
+        // the distance where kC + kL*d + kQ*d^2 reaches intensity / cutoff
+        double excess = intensity.max() / cutoff - kC;
+        if (excess <= 0) return 0;
+        if (kQ > 0) return (Math.sqrt(kL * kL + 4 * kQ * excess) - kL) / (2 * kQ);
+        return kL > 0 ? excess / kL : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public boolean mayIlluminate(Point p, double cutoff) {
+        double range = getRange(cutoff);
+        return range == Double.POSITIVE_INFINITY || p.distanceSquared(position) <= range * range;
+    }
+
     @Override
     public double getDistance(Point p) {
         if (p.equals(position)) {
@@ -0,0 +1,66 @@
+package lighting;
+
+import primitives.*;
+
+/**
+ * A rectangular area light - a parallelogram given by its center and its two edge vectors.
+ */
+public class RectLight extends AreaLight {
+    /** The first edge of the rectangle */
+    private final Vector edgeU;
+    /** The second edge of the rectangle */
+    private final Vector edgeV;
+    /** The cross product of the edges - the normal scaled by the area */
+    private final Vector cross;
+
+    /**
+     * Constructs a rectangular area light.
+     *
+     * @param intensity the base color/intensity of the light
+     * @param center    the center of the rectangle
+     * @param edgeU     the first edge of the rectangle, its length is the width
+     * @param edgeV     the second edge of the rectangle, its length is the height
+     * @throws IllegalArgumentException if the edges are parallel
+     */
+    public RectLight(Color intensity, Point center, Vector edgeU, Vector edgeV) {
+        super(intensity, center);
+        cross = edgeU.crossProduct(edgeV); // throws for parallel edges
+        this.edgeU = edgeU;
+        this.edgeV = edgeV;
+    }
+
+    @Override
+    public Point getSample(double u, double v) {
+        Point center = getPosition();
+        double a = u - 0.5, b = v - 0.5;
+        return new Point(center.getX() + a * edgeU.getX() + b * edgeV.getX(),
+                center.getY() + a * edgeU.getY() + b * edgeV.getY(),
+                center.getZ() + a * edgeU.getZ() + b * edgeV.getZ());
+    }
+
+    @Override
+    protected double getExtent() {
+        return Math.max(edgeU.add(edgeV).length(), edgeU.subtract(edgeV).length()) / 2;
+    }
+
+    @Override
+    public double getArea() {
+        return cross.length();
+    }
+
+    @Override
+    public Vector getNormal() {
+        return cross.normalize();
+    }
+
+    @Override
+    protected boolean contains(double x, double y, double z) {
+        // the coordinates along the edges, by the cross products with the other edge
+        double area2 = cross.lengthSquared();
+        double a = ((y * edgeV.getZ() - z * edgeV.getY()) * cross.getX() + (z * edgeV.getX() - x * edgeV.getZ()) * cross.getY()
+                + (x * edgeV.getY() - y * edgeV.getX()) * cross.getZ()) / area2;
+        double b = ((edgeU.getY() * z - edgeU.getZ() * y) * cross.getX() + (edgeU.getZ() * x - edgeU.getX() * z) * cross.getY()
+                + (edgeU.getX() * y - edgeU.getY() * x) * cross.getZ()) / area2;
+        return Math.abs(a) <= 0.5 && Math.abs(b) <= 0.5;
+    }
+}
@@ -72,6 +72,20 @@ public class SpotLight extends PointLight {
     }
 
 
+    @Override
+    public boolean mayIlluminate(Point p, double cutoff) {
+        if (!super.mayIlluminate(p, cutoff)) return false;
+        // the point must be inside the cone where cos^beamExponent * peak intensity reaches the cutoff
+        double peak = getPeakIntensity();
+        if (peak <= cutoff) return false;
+        double cosLimit = cutoff <= 0 || beamExponent == 0 || peak == Double.POSITIVE_INFINITY ? 0
+                : Math.pow(cutoff / peak, 1 / beamExponent);
+        Point position = getPosition();
+        double x = p.getX() - position.getX(), y = p.getY() - position.getY(), z = p.getZ() - position.getZ();
+        double cos = x * direction.getX() + y * direction.getY() + z * direction.getZ();
+        return cos > 0 && cos * cos > cosLimit * cosLimit * (x * x + y * y + z * z);
+    }
+
     @Override
     public Color getIntensity(Point p)
     {
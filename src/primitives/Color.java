@@ -120,6 +120,24 @@ public class Color {
         return new Color(rgb.scale(k));
     }
 
+    /**
+     * Returns the strongest component of the color
+     *
+     * @return the largest of the red, green and blue components
+     */
+    public double max() {
+        return Math.max(rgb.d1(), Math.max(rgb.d2(), rgb.d3()));
+    }
+
+    /**
+     * Returns the components of the color
+     *
+     * @return the red, green and blue components
+     */
+    public Double3 getRgb() {
+        return rgb;
+    }
+
     /**
      * Scale the color by (1 / reduction factor)
      *
@@ -126,6 +126,15 @@ public class Double3 {
         return d1 < other.d1 && d2 < other.d2 && d3 < other.d3;
     }
 
+    /**
+     * Returns the largest number of the triad
+     *
+     * @return the largest of the three numbers
+     */
+    public double max() {
+        return Math.max(d1, Math.max(d2, d3));
+    }
+
     public double d1() {
         return d1;
     }
@@ -45,6 +45,18 @@ public class Material {
 
     public int nShininess = 0;
 
+    /**
+     * Roughness of the reflection - the radius of the cone of the reflected rays at a unit distance.
+     * Zero reflects like a perfect mirror, and larger values blur the reflection.
+     */
+    public double roughnessR = 0;
+
+    /**
+     * Roughness of the transparency - the radius of the cone of the refracted rays at a unit distance.
+     * Zero is clear, and larger values give a frosted look.
+     */
+    public double roughnessT = 0;
+
     /**
      * Sets the ambient reflection coefficient using a {@link Double3}.
      *
@@ -162,4 +174,28 @@ public class Material {
         this.nShininess = nShininess;
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the roughness of the reflection.
+     *
+     * @param roughnessR the radius of the cone of the reflected rays at a unit distance, 0 for a mirror
+     * @return the current {@code Material} object for method chaining
+     */
+    public Material setRoughnessR(double roughnessR) {
+        if (roughnessR < 0) throw new IllegalArgumentException("Roughness must not be negative");
+        this.roughnessR = roughnessR;
+        return this;
+    }
+
+    /**
+     * Sets the roughness of the transparency.
+     *
+     * @param roughnessT the radius of the cone of the refracted rays at a unit distance, 0 for a clear surface
+     * @return the current {@code Material} object for method chaining
+     */
+    public Material setRoughnessT(double roughnessT) {
+        if (roughnessT < 0) throw new IllegalArgumentException("Roughness must not be negative");
+        this.roughnessT = roughnessT;
+        return this;
+    }
+}
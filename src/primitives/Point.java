@@ -1,19 +1,27 @@
 package primitives;
 
+import static primitives.Util.isZero;
+
 /**
  * Represents a point in 3D space using three coordinates.
+ * <p>
+ * The coordinates are kept in primitive fields rather than in a {@link Double3},
+ * so a point (or a vector) is a single object on the heap.
+ * </p>
  */
 public class Point {
 
     /**
      * The point at the origin (0, 0, 0).
      */
-    public static final Point ZERO = new Point(Double3.ZERO);
+    public static final Point ZERO = new Point(0, 0, 0);
 
-    /**
-     * The internal representation of the point as a 3D coordinate.
-     */
-    protected final Double3 xyz;
+    /** The X coordinate */
+    protected final double x;
+    /** The Y coordinate */
+    protected final double y;
+    /** The Z coordinate */
+    protected final double z;
 
     /**
      * Constructs a point from three coordinate values.
@@ -23,7 +31,9 @@ public class Point {
      * @param z the Z coordinate
      */
     public Point(double x, double y, double z) {
-        xyz = new Double3(x, y, z);
+        this.x = x;
+        this.y = y;
+        this.z = z;
     }
 
     /**
@@ -32,7 +42,7 @@ public class Point {
      * @param xyz the 3D coordinate
      */
     public Point(Double3 xyz) {
-        this.xyz = xyz;
+        this(xyz.d1, xyz.d2, xyz.d3);
     }
 
     /**
@@ -42,10 +52,11 @@ public class Point {
      * @return the resulting vector
      */
     public Vector subtract(Point point) {
-        if (this.equals(point)) {
+        double dx = x - point.x, dy = y - point.y, dz = z - point.z;
+        if (isZero(dx) && isZero(dy) && isZero(dz)) {
             throw new IllegalArgumentException("Cannot create a zero vector from two identical points");
         }
-        return new Vector(xyz.subtract(point.xyz));
+        return new Vector(dx, dy, dz);
     }
 
     /**
@@ -55,7 +66,7 @@ public class Point {
      * @return the resulting point
      */
     public Point add(Vector v1) {
-        return new Point(xyz.add(v1.xyz));
+        return new Point(x + v1.x, y + v1.y, z + v1.z);
     }
 
     /**
@@ -75,30 +86,29 @@ public class Point {
      * @return the squared distance
      */
     public double distanceSquared(Point point) {
-        Double3 diff = this.xyz.subtract(point.xyz);
-        Double3 squared = diff.product(diff);
-        return squared.d1 + squared.d2 + squared.d3;
+        double dx = x - point.x, dy = y - point.y, dz = z - point.z;
+        return dx * dx + dy * dy + dz * dz;
     }
 
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         return (obj instanceof Point other)
-                && this.xyz.equals(other.xyz);
+                && isZero(x - other.x) && isZero(y - other.y) && isZero(z - other.z);
     }
 
     @Override
     public String toString() {
-        return "" + xyz;
+        return "(" + x + "," + y + "," + z + ")";
     }
 
     public double getX() {
-        return this.xyz.d1;
+        return x;
     }
     public double getY() {
-        return this.xyz.d2;
+        return y;
     }
     public double getZ() {
-        return this.xyz.d3;
+        return z;
     }
 }
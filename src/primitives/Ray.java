@@ -19,15 +19,33 @@ public class Ray {
      */
     private final Vector direction;
 
+    /**
+     * Distance the pixel cone of the ray travelled from the camera before the ray head - 0 for the camera
+     * rays, the distance of the hit the ray leaves for the secondary and the shadow rays.
+     */
+    private final double travelled;
+
     /**
      * Constructs a ray with a given origin and direction.
      *
      * @param head      the origin point of the ray
-     * @param direction the direction vector of the ray
+     * @param direction the direction vector of the ray (a vector known to be a unit vector is kept as is)
      */
     public Ray(Point head, Vector direction) {
+        this(head, direction, 0);
+    }
+
+    /**
+     * Constructs a ray whose pixel cone already travelled some distance.
+     *
+     * @param head      the origin point of the ray
+     * @param direction the direction vector of the ray
+     * @param travelled the distance the pixel cone travelled before the head
+     */
+    public Ray(Point head, Vector direction, double travelled) {
         this.head = head;
         this.direction = direction.normalize();
+        this.travelled = travelled;
     }
 
     @Override
@@ -50,13 +68,20 @@ public class Ray {
     public Point getHead() {
         return head;
     }
+
+    /**
+     * @return the distance the pixel cone of the ray travelled from the camera before the ray head
+     */
+    public double getTravelled() {
+        return travelled;
+    }
     //The method calculates a point on the line of the beam,
 //at a given distance from the beginning of the beam
     public Point getPoint(double t) {
         // if t is zero, return the head point
         if (Util.isZero(t))
             return head;
-        return head.add(direction.scale(t));
+        return new Point(head.x + direction.x * t, head.y + direction.y * t, head.z + direction.z * t);
     }
 
 //    public Intersection findClosestIntersection(List<Intersection> intersections) {
@@ -130,9 +155,23 @@ public class Ray {
      * @param normal the normal at the point (used to offset the start)
      */
     public Ray(Point p, Vector dir, Vector normal) {
-        Vector delta = normal.scale(dir.dotProduct(normal) > 0 ? DELTA : -DELTA);
-        this.head = p.add(delta);
+        this(p, dir, normal, 0);
+    }
+
+    /**
+     * Constructs a secondary ray with a small offset from the point in the direction of the normal,
+     * whose pixel cone already travelled some distance.
+     *
+     * @param p         the origin point of the ray
+     * @param dir       the direction vector
+     * @param normal    the normal at the point (used to offset the start)
+     * @param travelled the distance the pixel cone travelled to the point
+     */
+    public Ray(Point p, Vector dir, Vector normal, double travelled) {
+        double delta = dir.dotProduct(normal) > 0 ? DELTA : -DELTA;
+        this.head = new Point(p.x + normal.x * delta, p.y + normal.y * delta, p.z + normal.z * delta);
         this.direction = dir.normalize();
+        this.travelled = travelled;
     }
 
 
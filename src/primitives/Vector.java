@@ -1,5 +1,7 @@
 package primitives;
 
+import static primitives.Util.isZero;
+
 /**
  * Represents a vector in 3D space.
  * A vector is a directed entity that supports operations such as addition, scaling,
@@ -7,13 +9,17 @@ package primitives;
  * A zero vector is not allowed.
  */
 public class Vector extends Point {
-    public static final Vector AXIS_X = new Vector(1, 0, 0);
-    public static final Vector AXIS_Y = new Vector(0, 1, 0);
-    public static final Vector AXIS_Z = new Vector(0, 0, 1);
-    public static final Vector MINUS_Y = new Vector(0, -1, 0);
-    public static final Vector MINUS_Z = new Vector(0, 0, -1);
-    public static final Vector MINUS_X = new Vector(-1, 0, 0);
+    public static final Vector AXIS_X = new Vector(1, 0, 0, true);
+    public static final Vector AXIS_Y = new Vector(0, 1, 0, true);
+    public static final Vector AXIS_Z = new Vector(0, 0, 1, true);
+    public static final Vector MINUS_Y = new Vector(0, -1, 0, true);
+    public static final Vector MINUS_Z = new Vector(0, 0, -1, true);
+    public static final Vector MINUS_X = new Vector(-1, 0, 0, true);
 
+    /**
+     * Whether the vector is known to be a unit vector, so normalizing it again is skipped
+     */
+    private final boolean normalized;
 
     /**
      * Constructs a vector from three coordinate values.
@@ -25,9 +31,40 @@ public class Vector extends Point {
      */
     public Vector(double x, double y, double z) {
         super(x, y, z);
-        if (xyz.equals(Double3.ZERO)) {
+        if (isZero(x) && isZero(y) && isZero(z)) {
             throw new IllegalArgumentException("Vector cannot be zero vector");
         }
+        normalized = false;
+    }
+
+    /**
+     * Constructs a vector that is known to be a unit vector (or not), without the zero check.
+     *
+     * @param x          the X component
+     * @param y          the Y component
+     * @param z          the Z component
+     * @param normalized whether the vector is a unit vector
+     */
+    private Vector(double x, double y, double z, boolean normalized) {
+        super(x, y, z);
+        this.normalized = normalized;
+    }
+
+    /**
+     * Constructs the unit vector in the direction of the given components, with a single allocation.
+     *
+     * @param x the X component
+     * @param y the Y component
+     * @param z the Z component
+     * @return the unit vector
+     * @throws IllegalArgumentException if the components form the zero vector
+     */
+    public static Vector normalized(double x, double y, double z) {
+        if (isZero(x) && isZero(y) && isZero(z)) {
+            throw new IllegalArgumentException("Vector cannot be zero vector");
+        }
+        double length = Math.sqrt(x * x + y * y + z * z);
+        return new Vector(x / length, y / length, z / length, true);
     }
 
     /**
@@ -37,10 +74,7 @@ public class Vector extends Point {
      * @throws IllegalArgumentException if the vector is the zero vector
      */
     public Vector(Double3 xyz) {
-        super(xyz);
-        if (xyz.equals(Double3.ZERO)) {
-            throw new IllegalArgumentException("Vector cannot be zero vector");
-        }
+        this(xyz.d1, xyz.d2, xyz.d3);
     }
 
     /**
@@ -50,7 +84,7 @@ public class Vector extends Point {
      * @return the resulting vector
      */
     public Vector add(Vector vector) {
-        return new Vector(this.xyz.add(vector.xyz));
+        return new Vector(x + vector.x, y + vector.y, z + vector.z);
     }
 
     /**
@@ -60,7 +94,9 @@ public class Vector extends Point {
      * @return the scaled vector
      */
     public Vector scale(double scalar) {
-        return new Vector(this.xyz.scale(scalar));
+        // reversing a unit vector keeps it a unit vector
+        return normalized && scalar == -1 ? new Vector(-x, -y, -z, true)
+                : new Vector(x * scalar, y * scalar, z * scalar);
     }
 
     /**
@@ -70,7 +106,7 @@ public class Vector extends Point {
      * @return the dot product
      */
     public double dotProduct(Vector vector) {
-        return this.xyz.d1 * vector.xyz.d1 + this.xyz.d2 * vector.xyz.d2 + this.xyz.d3 * vector.xyz.d3;
+        return x * vector.x + y * vector.y + z * vector.z;
     }
 
     /**
@@ -80,11 +116,7 @@ public class Vector extends Point {
      * @return the resulting vector from the cross product
      */
     public Vector crossProduct(Vector v) {
-        return new Vector(
-                this.xyz.d2 * v.xyz.d3 - this.xyz.d3 * v.xyz.d2,
-                this.xyz.d3 * v.xyz.d1 - this.xyz.d1 * v.xyz.d3,
-                this.xyz.d1 * v.xyz.d2 - this.xyz.d2 * v.xyz.d1
-        );
+        return new Vector(y * v.z - z * v.y, z * v.x - x * v.z, x * v.y - y * v.x);
     }
 
     /**
@@ -93,7 +125,7 @@ public class Vector extends Point {
      * @return the squared length
      */
     public double lengthSquared() {
-        return this.dotProduct(this);
+        return x * x + y * y + z * z;
     }
 
     /**
@@ -102,16 +134,26 @@ public class Vector extends Point {
      * @return the length
      */
     public double length() {
-        return Math.sqrt(this.lengthSquared());
+        return normalized ? 1 : Math.sqrt(this.lengthSquared());
     }
 
     /**
      * Returns a normalized version of this vector (unit vector).
+     * A vector that is already known to be a unit vector is returned as is.
      *
      * @return the normalized vector
      */
     public Vector normalize() {
-        return new Vector(this.xyz.reduce(this.length()));
+        if (normalized) return this;
+        double length = length();
+        return new Vector(x / length, y / length, z / length, true);
+    }
+
+    /**
+     * @return whether the vector is known to be a unit vector
+     */
+    public boolean isNormalized() {
+        return normalized;
     }
 
     @Override
@@ -32,6 +32,7 @@ public class Camera implements Cloneable {
     private int adaptiveSuperSamplingDepth = 0; // 0 - no adaptive super sampling, else - adaptive super sampling Depth times
 
     private int threadsCount = 0; // -2 auto, -1 range/stream, 0 no threads, 1+ number of threads
+    private boolean wavefront = false; // trace the rays of many pixels together, stage by stage
     private final int SPARE_THREADS = 2; // Spare threads if trying to use all the cores
     private double printInterval = 0; // printing progress percentage interval
     private PixelManager pixelManager; // Manages pixel processing in multi-threaded rendering
@@ -86,16 +87,22 @@ public class Camera implements Cloneable {
         double xJ = (j - (nX - 1) / 2.0) * pixelWidth;
         double yI = (i - (nY - 1) / 2.0) * pixelHeight;
 
-        Point pIJ = pcenter;
-
+        // the pixel center and the direction are computed in components - only the direction is allocated
+        double x = pcenter.getX(), y = pcenter.getY(), z = pcenter.getZ();
         if (xJ != 0) {
-            pIJ = pIJ.add(vRight.scale(xJ));
+            x += vRight.getX() * xJ;
+            y += vRight.getY() * xJ;
+            z += vRight.getZ() * xJ;
         }
         if (yI != 0) {
-            pIJ = pIJ.add(vUp.scale(-yI));
+            x += vUp.getX() * -yI;
+            y += vUp.getY() * -yI;
+            z += vUp.getZ() * -yI;
         }
-
-        return new Ray(p0, pIJ.subtract(p0));
+        x -= p0.getX();
+        y -= p0.getY();
+        z -= p0.getZ();
+        return new Ray(p0, Vector.normalized(x, y, z));
     }
 
     /**
@@ -150,12 +157,32 @@ public class Camera implements Cloneable {
         return this;
     }
 
+    /**
+     * Render image with the wavefront renderer, wave by wave of pixels; the stages of every wave
+     * are split among the cores if multithreading is set
+     * @return the camera object itself
+     */
+    private Camera renderImageWavefront() {
+        WavefrontRenderer renderer = new WavefrontRenderer((SimpleRayTracer) rayTracer, threadsCount != 0);
+        int total = nX * nY;
+        for (int from = 0; from < total; from += WavefrontRenderer.WAVE_SIZE) {
+            int to = Math.min(total, from + WavefrontRenderer.WAVE_SIZE);
+            Color[] colors = renderer.render(this, nX, nY, from, to);
+            for (int p = from; p < to; ++p) {
+                imageWriter.writePixel(p % nX, p / nX, colors[p - from]);
+                pixelManager.pixelDone();
+            }
+        }
+        return this;
+    }
+
     /** This function renders image's pixel color map from the scene
      * included in the ray tracer object
      * @return the camera object itself
      */
     public Camera renderImage() {
         pixelManager = new PixelManager(nY, nX, printInterval);
+        if (wavefront) return renderImageWavefront();
         return switch (threadsCount) {
             case 0 -> renderImageNoThreads();
             case -1 -> renderImageStream();
@@ -442,6 +469,15 @@ public class Camera implements Cloneable {
     public double getWidth()   { return width; }
     public double getHeight()  { return height; }
 
+    /**
+     * Returns the angular size of one pixel - the pixel width ({@code width / nX}) over the view plane distance.
+     * Multiplied by a distance along a camera ray it gives the pixel footprint there,
+     * which is used for level of detail selection.
+     *
+     * @return the pixel spread angle
+     */
+    public double getPixelSpread() { return width / nX / distance; }
+
     /**
      * Builder class for constructing Camera objects step-by-step.
      */
@@ -542,6 +578,19 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets the wavefront rendering - the rays of many pixels are traced together, stage by stage,
+         * instead of the full tree of rays of one pixel at a time. It traces one ray per pixel
+         * with the shading of the simple ray tracer.
+         *
+         * @param wavefront whether to use the wavefront rendering
+         * @return the camera builder
+         */
+        public Builder setWavefront(boolean wavefront) {
+            camera.wavefront = wavefront;
+            return this;
+        }
+
         /**
          * Set the interval for printing debug information
          *
@@ -610,13 +659,26 @@ public class Camera implements Cloneable {
          * @param scene the scene that will be rendered.
          * @param rayTracerType the type of the ray tracer to use (e.g., SIMPLE).
          * @return the Builder instance to allow method chaining.
+         * @throws IllegalArgumentException if the type has no ray tracer.
          */
         public Builder setRayTracer(Scene scene, RayTracerType rayTracerType) {
-            if (rayTracerType == RayTracerType.SIMPLE) {
-                camera.rayTracer = new SimpleRayTracer(scene);
-            } else {
-                camera.rayTracer = null;
-            }
+            camera.rayTracer = switch (rayTracerType) {
+                case SIMPLE -> new SimpleRayTracer(scene);
+                case PATH -> new PathTracer(scene);
+                default -> throw new IllegalArgumentException("Ray tracer type " + rayTracerType + " is not supported");
+            };
+            return this;
+        }
+
+        /**
+         * Sets a configured ray tracer for the camera (e.g. a {@link SimpleRayTracer} sampling the lights).
+         *
+         * @param rayTracer the ray tracer
+         * @return the Builder instance to allow method chaining.
+         */
+        public Builder setRayTracer(RayTracerBase rayTracer) {
+            if (rayTracer == null) throw new IllegalArgumentException("Ray tracer must not be null");
+            camera.rayTracer = rayTracer;
             return this;
         }
 
@@ -654,6 +716,11 @@ public class Camera implements Cloneable {
                     camera.rayTracer = new SimpleRayTracer(null);
                 }
 
+                if (camera.wavefront && (camera.antiAliasing || camera.adaptiveSuperSamplingDepth != 0
+                        || !(camera.rayTracer instanceof SimpleRayTracer))) {
+                    throw new IllegalStateException("Wavefront rendering traces one ray per pixel with the simple ray tracer");
+                }
+
                 return (Camera) camera.clone();
 
             } catch (CloneNotSupportedException ignored) {
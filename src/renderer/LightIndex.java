@@ -0,0 +1,356 @@
+package renderer;
+
+import lighting.LightSource;
+import primitives.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spatial index over the influence spheres of the light sources of a scene.
+ * <p>
+ * The spheres of the lights with a bounded reach ({@link LightSource#getRange(double)}) are
+ * registered in the cells of a uniform grid around them, so a shaded point evaluates only the lights
+ * registered in its cell, together with the lights that reach everywhere - the lights of unbounded reach
+ * and the lights whose sphere covers the whole grid. Those are kept in one shared list, which is the list
+ * of every cell without other lights. Every cell keeps its lights in the order of the scene, so the
+ * lighting is summed in the same order as without the index. Scenes with a few bounded lights, or with
+ * lights whose spheres overlap most of the grid, get no grid - every point gets all the lights.
+ * </p>
+ */
+final class LightIndex {
+    /** Smallest amount of bounded lights worth a grid */
+    private static final int MIN_GRID_LIGHTS = 8;
+    /** Largest amount of grid cells along an axis */
+    private static final int MAX_CELLS_PER_AXIS = 32;
+    /** Largest amount of light indices stored in the cells of the grid */
+    static final int MAX_GRID_ENTRIES = 1 << 22;
+
+    /** The indexed light list */
+    private final List<LightSource> source;
+    /** The amount of lights in the list when it was indexed */
+    private final int sourceSize;
+    /** The intensity cutoff of the influence spheres */
+    private final double cutoff;
+    /** The lights, in the order of the scene */
+    private final LightSource[] lights;
+    /** Indices of all the lights */
+    private final int[] all;
+    /** Indices of the lights of unbounded reach */
+    private final int[] unbounded;
+    /** Indices of the lights that reach every point of the grid - the unbounded ones, and the ones that cover it */
+    private final int[] global;
+    /** Light indices of every cell, {@code null} without a grid */
+    private final int[][] cells;
+    /** Amount of light indices stored in the cells, beyond the shared list */
+    private final long entries;
+    /** Amount of cells along an axis - of the grid, or of a grid being sized */
+    private int resolution;
+    /** Minimal corner of the box of all the bounded spheres - X, Y, Z */
+    private final double[] reachMin = new double[3];
+    /** Maximal corner of the box of all the bounded spheres - X, Y, Z */
+    private final double[] reachMax = new double[3];
+    /** Minimal corner of the grid - X, Y, Z */
+    private final double[] min = new double[3];
+    /** Maximal corner of the grid - X, Y, Z */
+    private final double[] max = new double[3];
+    /** Amount of cells per length unit along every axis */
+    private final double[] scale = new double[3];
+    /** Indices of the lights out of the light tree - without a position or with an unknown power */
+    private final int[] untreed;
+    /** Hierarchy of the other lights - {@code null} until the first sampling */
+    private volatile LightTree tree;
+
+    /**
+     * Indexes the lights of a scene.
+     *
+     * @param source the light list of the scene
+     * @param cutoff the intensity cutoff of the influence spheres
+     */
+    LightIndex(List<LightSource> source, double cutoff) {
+        this.source = source;
+        this.sourceSize = source.size();
+        this.cutoff = cutoff;
+        lights = source.toArray(new LightSource[0]);
+        int n = lights.length;
+        all = new int[n];
+        double[] ranges = new double[n];
+        int bounded = 0;
+        for (int l = 0; l < n; ++l) {
+            all[l] = l;
+            ranges[l] = lights[l].getPosition() == null ? Double.POSITIVE_INFINITY : lights[l].getRange(cutoff);
+            if (ranges[l] != Double.POSITIVE_INFINITY) ++bounded;
+        }
+        unbounded = new int[n - bounded];
+        for (int l = 0, u = 0; l < n; ++l)
+            if (ranges[l] == Double.POSITIVE_INFINITY) unbounded[u++] = l;
+        untreed = Arrays.stream(all).filter(l -> !treed(lights[l])).toArray();
+
+        double[][] centers = new double[n][];
+        for (int l = 0; l < n; ++l)
+            if (ranges[l] != Double.POSITIVE_INFINITY) centers[l] = coordinates(lights[l].getPosition());
+        bound(centers, ranges, null, reachMin, reachMax);
+        // the lights whose sphere box covers the grid reach every cell - the grid is the box of the other
+        // spheres, found from the lights that cover all the light positions until no other light covers it
+        boolean[] covering = new boolean[n];
+        double[] low = new double[3], high = new double[3];
+        for (int axis = 0; axis < 3; ++axis) {
+            low[axis] = Double.POSITIVE_INFINITY;
+            high[axis] = Double.NEGATIVE_INFINITY;
+            for (double[] center : centers)
+                if (center != null) {
+                    low[axis] = Math.min(low[axis], center[axis]);
+                    high[axis] = Math.max(high[axis], center[axis]);
+                }
+        }
+        for (int l = 0; l < n; ++l) covering[l] = centers[l] != null && covers(centers[l], ranges[l], low, high);
+        boolean changed = true;
+        while (changed) {
+            bound(centers, ranges, covering, min, max);
+            changed = false;
+            for (int l = 0; l < n; ++l)
+                if (covering[l] && !covers(centers[l], ranges[l], min, max)) {
+                    covering[l] = false;
+                    changed = true;
+                }
+        }
+        int partial = 0;
+        for (int l = 0; l < n; ++l)
+            if (centers[l] != null && !covering[l]) ++partial;
+        global = Arrays.stream(all).filter(l -> ranges[l] == Double.POSITIVE_INFINITY || covering[l]).toArray();
+
+        // the finest grid within the entry budget, unless it would keep most of the lights in most of the cells
+        int size = Math.min(MAX_CELLS_PER_AXIS, 2 * (int) Math.ceil(Math.cbrt(partial)));
+        long count = 0;
+        for (; size > 1; size /= 2) {
+            setResolution(size);
+            count = 0;
+            for (int l = 0; l < n; ++l)
+                if (centers[l] != null && !covering[l]) count += cellsOf(centers[l], ranges[l]);
+            long cellCount = (long) size * size * size;
+            if (count + Math.min(count, cellCount) * global.length <= MAX_GRID_ENTRIES) break;
+        }
+        if (partial < MIN_GRID_LIGHTS || size <= 1 || 2 * count > (long) size * size * size * partial) {
+            cells = null;
+            entries = 0;
+            return;
+        }
+
+        // every cell gets its lights in the scene order - the global ones and the ones whose sphere box overlaps it
+        int cellCount = resolution * resolution * resolution;
+        int[] sizes = new int[cellCount];
+        int[][] lists = new int[cellCount][];
+        int[] from = new int[3], to = new int[3];
+        for (int l = 0; l < n; ++l) {
+            if (centers[l] == null || covering[l]) continue;
+            for (int axis = 0; axis < 3; ++axis) {
+                from[axis] = cell(centers[l][axis] - ranges[l], axis);
+                to[axis] = cell(centers[l][axis] + ranges[l], axis);
+            }
+            for (int i = from[0]; i <= to[0]; ++i)
+                for (int j = from[1]; j <= to[1]; ++j)
+                    for (int k = from[2]; k <= to[2]; ++k)
+                        append(lists, sizes, (i * resolution + j) * resolution + k, l);
+        }
+        cells = new int[cellCount][];
+        long stored = 0;
+        for (int c = 0; c < cellCount; ++c) {
+            cells[c] = sizes[c] == 0 ? global : merge(global, lists[c], sizes[c]);
+            if (sizes[c] > 0) stored += cells[c].length;
+        }
+        entries = stored;
+    }
+
+    /**
+     * Calculates the box of the spheres of the bounded lights.
+     *
+     * @param centers  the centers of the spheres, null for an unbounded light
+     * @param ranges   the radii of the spheres
+     * @param excluded the lights left out of the box, null to leave none out
+     * @param low      receives the minimal corner of the box
+     * @param high     receives the maximal corner of the box
+     */
+    private static void bound(double[][] centers, double[] ranges, boolean[] excluded, double[] low, double[] high) {
+        Arrays.fill(low, Double.POSITIVE_INFINITY);
+        Arrays.fill(high, Double.NEGATIVE_INFINITY);
+        for (int l = 0; l < centers.length; ++l) {
+            if (centers[l] == null || excluded != null && excluded[l]) continue;
+            for (int axis = 0; axis < 3; ++axis) {
+                low[axis] = Math.min(low[axis], centers[l][axis] - ranges[l]);
+                high[axis] = Math.max(high[axis], centers[l][axis] + ranges[l]);
+            }
+        }
+    }
+
+    /**
+     * @param center the center of a sphere
+     * @param range  the radius of the sphere
+     * @param low    the minimal corner of a box
+     * @param high   the maximal corner of the box
+     * @return true if the box of the sphere contains the box
+     */
+    private static boolean covers(double[] center, double range, double[] low, double[] high) {
+        for (int axis = 0; axis < 3; ++axis)
+            if (center[axis] - range > low[axis] || center[axis] + range < high[axis]) return false;
+        return true;
+    }
+
+    /**
+     * Sets the amount of cells along an axis of the grid.
+     *
+     * @param size the amount of cells along an axis
+     */
+    private void setResolution(int size) {
+        resolution = size;
+        for (int axis = 0; axis < 3; ++axis)
+            scale[axis] = max[axis] > min[axis] ? size / (max[axis] - min[axis]) : 0;
+    }
+
+    /**
+     * @param center the center of a sphere
+     * @param range  the radius of the sphere
+     * @return the amount of cells that the box of the sphere overlaps
+     */
+    private long cellsOf(double[] center, double range) {
+        long count = 1;
+        for (int axis = 0; axis < 3; ++axis)
+            count *= cell(center[axis] + range, axis) - cell(center[axis] - range, axis) + 1;
+        return count;
+    }
+
+    /**
+     * Merges two lists of light indices, each in the scene order, into one list in the scene order.
+     *
+     * @param first  the first list
+     * @param second the second list
+     * @param size   the amount of indices in the second list
+     * @return the merged list
+     */
+    private static int[] merge(int[] first, int[] second, int size) {
+        int[] merged = new int[first.length + size];
+        for (int i = 0, j = 0, m = 0; m < merged.length; ++m)
+            merged[m] = j == size || i < first.length && first[i] < second[j] ? first[i++] : second[j++];
+        return merged;
+    }
+
+    /**
+     * @param light a light source
+     * @return true if the light belongs in the light tree
+     */
+    private static boolean treed(LightSource light) {
+        return light.getPosition() != null && light.getPower() != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Adds a light to the list of a cell.
+     *
+     * @param lists the cell lists
+     * @param sizes the amounts of lights in the cell lists
+     * @param c     the cell
+     * @param light the light index
+     */
+    private static void append(int[][] lists, int[] sizes, int c, int light) {
+        if (lists[c] == null) lists[c] = new int[4];
+        else if (sizes[c] == lists[c].length) lists[c] = Arrays.copyOf(lists[c], 2 * sizes[c]);
+        lists[c][sizes[c]++] = light;
+    }
+
+    /**
+     * @param point a point
+     * @return the X, Y, Z coordinates of the point
+     */
+    private static double[] coordinates(Point point) {
+        return new double[]{point.getX(), point.getY(), point.getZ()};
+    }
+
+    /**
+     * @param coordinate a coordinate inside the grid
+     * @param axis       0 for X, 1 for Y, 2 for Z
+     * @return the cell along the axis
+     */
+    private int cell(double coordinate, int axis) {
+        return Math.max(0, Math.min(resolution - 1, (int) ((coordinate - min[axis]) * scale[axis])));
+    }
+
+    /**
+     * Checks whether the index was built for a light list and a cutoff. The index does not see changes
+     * of the lights themselves, only a replaced list, a change of its size or of the cutoff.
+     *
+     * @param lights the light list of the scene
+     * @param cutoff the intensity cutoff
+     * @return true if the index is up to date
+     */
+    boolean indexes(List<LightSource> lights, double cutoff) {
+        return lights == source && lights.size() == sourceSize && cutoff == this.cutoff;
+    }
+
+    /**
+     * @return the amount of light indices stored in the cells of the grid, beyond the shared list of the
+     * lights that reach everywhere - 0 without a grid
+     */
+    long gridEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the amount of lights
+     */
+    int size() {
+        return lights.length;
+    }
+
+    /**
+     * @param light the light index
+     * @return the light source
+     */
+    LightSource get(int light) {
+        return lights[light];
+    }
+
+    /**
+     * Returns the lights that may light a point - every other light is below the cutoff there.
+     *
+     * @param point the point
+     * @return the light indices, in the scene order
+     */
+    int[] candidates(Point point) {
+        if (cells == null) return all;
+        double x = point.getX(), y = point.getY(), z = point.getZ();
+        if (x < reachMin[0] || x > reachMax[0] || y < reachMin[1] || y > reachMax[1] || z < reachMin[2]
+                || z > reachMax[2]) return unbounded;
+        if (x < min[0] || x > max[0] || y < min[1] || y > max[1] || z < min[2] || z > max[2]) return global;
+        return cells[(cell(x, 0) * resolution + cell(y, 1)) * resolution + cell(z, 2)];
+    }
+
+    /**
+     * Tests a candidate light on its own bound.
+     *
+     * @param light the light index
+     * @param point the point
+     * @return false if the light is below the cutoff at the point
+     */
+    boolean mayIlluminate(int light, Point point) {
+        return lights[light].mayIlluminate(point, cutoff);
+    }
+
+    /**
+     * Returns the lights that are not in the light tree, so they are never sampled and always evaluated.
+     *
+     * @return the light indices, in the scene order
+     */
+    int[] untreed() {
+        return untreed;
+    }
+
+    /**
+     * Returns the hierarchy of the lights with a position and a known power, building it on the first call.
+     *
+     * @return the light tree, {@code null} if there are no such lights
+     */
+    LightTree tree() {
+        LightTree result = tree;
+        if (result == null && untreed.length < lights.length)
+            tree = result = new LightTree(lights, Arrays.stream(all).filter(l -> treed(lights[l])).toArray());
+        return result;
+    }
+}
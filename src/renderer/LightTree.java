@@ -0,0 +1,162 @@
+package renderer;
+
+import lighting.LightSource;
+import primitives.Point;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Hierarchy of light sources clustered by position and power, for sampling a few of many lights.
+ * <p>
+ * Every node knows the box of its lights and their total power. A light is sampled by descending from
+ * the root, choosing a child with a probability proportional to its estimated contribution at the
+ * shaded point - its power over its squared distance - so the lights that matter are sampled more often.
+ * The probability of the sampled light is returned with it, and dividing its lighting by that probability
+ * gives an unbiased estimate of the lighting of all the lights. One uniform number drives the whole
+ * descent - it is rescaled into the chosen part of its interval at every node.
+ * </p>
+ * <p>
+ * The tree is stored in arrays: node {@code i} has its box at {@code bounds[6i..6i+5]} (min X,Y,Z then
+ * max X,Y,Z), and either children at {@code left[i]} and {@code right[i]}, or {@code left[i] == -1} and
+ * its single light at {@code light[i]}.
+ * </p>
+ */
+final class LightTree {
+    /** Smallest squared distance in the contribution estimates */
+    private static final double MIN_DISTANCE_SQUARED = 1e-12;
+    /** Squared fraction of its diagonal that is the smallest distance to a node */
+    private static final double MIN_DIAGONAL_FRACTION_SQUARED = 1.0 / 256;
+
+    /** Node boxes */
+    private final double[] bounds;
+    /** Total power of the lights of every node */
+    private final double[] power;
+    /** Left child of every node, -1 for a leaf */
+    private final int[] left;
+    /** Right child of every node */
+    private final int[] right;
+    /** Light index of every leaf */
+    private final int[] light;
+    /** Amount of nodes built so far */
+    private int nodes;
+
+    /**
+     * Builds the hierarchy of lights.
+     *
+     * @param lights  the lights of the scene
+     * @param members indices of the lights to put in the tree - lights with a position and a finite power
+     */
+    LightTree(LightSource[] lights, int[] members) {
+        if (members.length == 0) throw new IllegalArgumentException("Light tree needs lights");
+        int size = 2 * members.length - 1;
+        bounds = new double[6 * size];
+        power = new double[size];
+        left = new int[size];
+        right = new int[size];
+        light = new int[size];
+        Integer[] order = new Integer[members.length];
+        double[][] positions = new double[lights.length][];
+        for (int m = 0; m < members.length; ++m) {
+            order[m] = members[m];
+            Point position = lights[members[m]].getPosition();
+            positions[members[m]] = new double[]{position.getX(), position.getY(), position.getZ()};
+        }
+        build(lights, positions, order, 0, order.length);
+    }
+
+    /**
+     * Builds the node of a range of lights, splitting them at the median along the longest axis of their box.
+     *
+     * @param lights    the lights of the scene
+     * @param positions the light positions - X, Y, Z
+     * @param order     the light indices, reordered in place
+     * @param from      first light of the range
+     * @param to        end of the range (exclusive)
+     * @return the node
+     */
+    private int build(LightSource[] lights, double[][] positions, Integer[] order, int from, int to) {
+        int node = nodes++;
+        int b = 6 * node;
+        for (int axis = 0; axis < 3; ++axis) {
+            bounds[b + axis] = Double.POSITIVE_INFINITY;
+            bounds[b + 3 + axis] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = from; i < to; ++i)
+            for (int axis = 0; axis < 3; ++axis) {
+                bounds[b + axis] = Math.min(bounds[b + axis], positions[order[i]][axis]);
+                bounds[b + 3 + axis] = Math.max(bounds[b + 3 + axis], positions[order[i]][axis]);
+            }
+        if (to - from == 1) {
+            left[node] = -1;
+            light[node] = order[from];
+            power[node] = lights[order[from]].getPower();
+            return node;
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; ++a)
+            if (bounds[b + 3 + a] - bounds[b + a] > bounds[b + 3 + axis] - bounds[b + axis]) axis = a;
+        int splitAxis = axis;
+        Arrays.sort(order, from, to, Comparator.comparingDouble(l -> positions[l][splitAxis]));
+        int middle = (from + to) >>> 1;
+        left[node] = build(lights, positions, order, from, middle);
+        right[node] = build(lights, positions, order, middle, to);
+        power[node] = power[left[node]] + power[right[node]];
+        return node;
+    }
+
+    /**
+     * Estimates the contribution of the lights of a node at a point - their power over the squared
+     * distance to their box. A point inside the box is not at distance 0 from the lights, so the distance
+     * is not less than a sixteenth of the box diagonal: a larger floor treats near and far clusters alike,
+     * and a smaller one starves the neighbors of the box that contains the point.
+     *
+     * @param node the node
+     * @param x    point X
+     * @param y    point Y
+     * @param z    point Z
+     * @return the estimated contribution
+     */
+    private double importance(int node, double x, double y, double z) {
+        int b = 6 * node;
+        double dx = Math.max(0, Math.max(bounds[b] - x, x - bounds[b + 3]));
+        double dy = Math.max(0, Math.max(bounds[b + 1] - y, y - bounds[b + 4]));
+        double dz = Math.max(0, Math.max(bounds[b + 2] - z, z - bounds[b + 5]));
+        double ex = bounds[b + 3] - bounds[b], ey = bounds[b + 4] - bounds[b + 1], ez = bounds[b + 5] - bounds[b + 2];
+        double distanceSquared = Math.max(dx * dx + dy * dy + dz * dz,
+                (ex * ex + ey * ey + ez * ez) * MIN_DIAGONAL_FRACTION_SQUARED);
+        return power[node] / Math.max(distanceSquared, MIN_DISTANCE_SQUARED);
+    }
+
+    /**
+     * Samples a light for a point.
+     *
+     * @param point       the shaded point
+     * @param u           a uniform random number in [0,1)
+     * @param probability receives the probability of the sampled light at index 0
+     * @return the index of the sampled light
+     */
+    int sample(Point point, double u, double[] probability) {
+        double x = point.getX(), y = point.getY(), z = point.getZ();
+        double pdf = 1;
+        int node = 0;
+        while (left[node] >= 0) {
+            double importanceLeft = importance(left[node], x, y, z);
+            double importanceRight = importance(right[node], x, y, z);
+            double total = importanceLeft + importanceRight;
+            double pLeft = total > 0 ? importanceLeft / total : 0.5;
+            if (u < pLeft) {
+                u /= pLeft;
+                pdf *= pLeft;
+                node = left[node];
+            } else {
+                u = (u - pLeft) / (1 - pLeft);
+                pdf *= 1 - pLeft;
+                node = right[node];
+            }
+            u = Math.min(u, Math.nextDown(1.0)); // the rescaling may round up to 1
+        }
+        probability[0] = pdf;
+        return light[node];
+    }
+}
@@ -0,0 +1,380 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import lighting.AreaLight;
+import lighting.LightSource;
+import primitives.*;
+import scene.Scene;
+
+import java.util.Arrays;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+import static renderer.SimpleRayTracer.MIN_CALC_COLOR_K;
+
+/**
+ * Monte Carlo path tracer - global illumination by random paths of rays.
+ * <p>
+ * Every path bounces off the surfaces by one randomly chosen part of their material - the diffuse and
+ * specular lobes, the reflection or the transparency - in proportion to its strength, so the light of the
+ * other surfaces and of the emissive geometries reaches every point, not only the light of the light sources.
+ * At every bounce, the light sources are evaluated directly with shadow rays (next event estimation), as by
+ * the {@link SimpleRayTracer}. An area light can also be met by the bounced rays, so its light is the sum of
+ * both estimates weighted by the power heuristic of their probabilities (multiple importance sampling).
+ * Paths that carry little light end by Russian roulette.
+ * </p>
+ * <p>
+ * The ambient light is not added - the light of the other surfaces replaces it - and, as in the simple ray
+ * tracer, the light sources are not visible themselves. Every ray traces a batch of paths and accumulates
+ * their mean progressively, until the noise of the mean is below a tolerance or the amount of paths is reached.
+ * The random numbers of the paths are seeded from the ray, so an image does not depend on the threads.
+ * </p>
+ */
+public class PathTracer extends RayTracerBase {
+    /** Default maximal amount of bounces along a path */
+    private static final int DEFAULT_MAX_DEPTH = 10;
+    /** Default amount of paths per ray */
+    private static final int DEFAULT_SAMPLES = 16;
+    /** Amount of paths between the noise checks of the progressive accumulation */
+    private static final int BATCH = 4;
+    /** Amount of bounces before Russian roulette */
+    private static final int ROULETTE_DEPTH = 3;
+    /** Random numbers of a bounce: the lobe, the lobe part, the direction, the roulette, then the light samples */
+    private static final int LOBE = 0, PART = 1, DIRECTION = 2, ROULETTE = 4, LIGHTS = 5;
+
+    /** The shading of the simple ray tracer - intersections, lighting and shadow rays */
+    private final SimpleRayTracer shading;
+    /** Maximal amount of bounces along a path */
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    /** Amount of paths per ray */
+    private int samples = DEFAULT_SAMPLES;
+    /** Standard error of the mean color below which no more paths are traced, 0 to trace all of them */
+    private double noiseTolerance = 0;
+    /** The area lights of the light index they were found in, rebuilt with the index */
+    private volatile AreaLights areaLights;
+
+    /**
+     * The area lights of a light index - the lights which the bounced rays may meet.
+     *
+     * @param index  the light index
+     * @param lights the area lights among its lights, in their order
+     */
+    private record AreaLights(LightIndex index, AreaLight[] lights) {
+    }
+
+    /**
+     * Constructs a path tracer of a scene.
+     *
+     * @param scene the scene to be rendered
+     */
+    public PathTracer(Scene scene) {
+        super(scene);
+        shading = new SimpleRayTracer(scene);
+    }
+
+    /**
+     * Sets the maximal amount of bounces along a path.
+     *
+     * @param maxDepth the maximal amount of shaded intersections along a path, the first one included
+     * @return this path tracer (for method chaining)
+     */
+    public PathTracer setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) throw new IllegalArgumentException("Maximal depth must be positive");
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Sets the amount of paths traced for every ray.
+     *
+     * @param samples the amount of paths per ray
+     * @return this path tracer (for method chaining)
+     */
+    public PathTracer setSamples(int samples) {
+        if (samples < 1) throw new IllegalArgumentException("Path tracing needs at least one path per ray");
+        this.samples = samples;
+        return this;
+    }
+
+    /**
+     * Sets the noise tolerance of the progressive accumulation: after every batch of paths, the standard error
+     * of the mean of the strongest color component is estimated, and once it is below the tolerance no more
+     * paths are traced for the ray - so plain regions of the image get a few paths, and noisy ones all of them.
+     *
+     * @param noiseTolerance the standard error of the mean in color units, 0 to trace all the paths
+     * @return this path tracer (for method chaining)
+     */
+    public PathTracer setNoiseTolerance(double noiseTolerance) {
+        if (noiseTolerance < 0) throw new IllegalArgumentException("Noise tolerance must not be negative");
+        this.noiseTolerance = noiseTolerance;
+        return this;
+    }
+
+    @Override
+    public Color traceRay(Ray ray) {
+        LightIndex lights = shading.lightIndex();
+        AreaLight[] areas = areaLights(lights);
+        long seed = Sampler.seed(ray.getPoint(1));
+        Color sum = Color.BLACK;
+        double mean = 0, m2 = 0; // running mean and squared deviations of the strongest component
+        int n = 0;
+        while (n < samples) {
+            Color color = tracePath(ray, lights, areas, Sampler.stream(seed, n));
+            sum = sum.add(color);
+            double x = color.max(), delta = x - mean;
+            mean += delta / ++n;
+            m2 += delta * (x - mean);
+            if (noiseTolerance > 0 && n % BATCH == 0 && Math.sqrt(m2 / (n - 1) / n) <= noiseTolerance) break;
+        }
+        return sum.reduce(n);
+    }
+
+    /**
+     * Returns the area lights of the scene, finding them again only if the light index was rebuilt.
+     *
+     * @param lights the light index of the scene
+     * @return the area lights
+     */
+    private AreaLight[] areaLights(LightIndex lights) {
+        AreaLights cached = areaLights;
+        if (cached == null || cached.index() != lights) {
+            AreaLight[] areas = new AreaLight[lights.size()];
+            int count = 0;
+            for (int l = 0; l < lights.size(); ++l)
+                if (lights.get(l) instanceof AreaLight area) areas[count++] = area;
+            areaLights = cached = new AreaLights(lights, Arrays.copyOf(areas, count));
+        }
+        return cached.lights();
+    }
+
+    /**
+     * Traces one path.
+     *
+     * @param ray    the first ray of the path
+     * @param lights the light sources
+     * @param areas  the area lights, which the bounced rays may meet
+     * @param seed   the seed of the random numbers of the path
+     * @return the color carried by the path
+     */
+    private Color tracePath(Ray ray, LightIndex lights, AreaLight[] areas, long seed) {
+        Color color = Color.BLACK;
+        Double3 k = Double3.ONE;
+        // the point and the probability of the last bounce, for the area lights met by the bounced ray
+        Point from = null;
+        double fromPdf = 0;
+        for (int depth = 0; depth < maxDepth; ++depth) {
+            Intersection intersection = shading.findClosestIntersection(ray);
+            if (fromPdf > 0 && areas.length > 0) {
+                double distance = intersection == null ? Double.POSITIVE_INFINITY : intersection.point.distance(from);
+                color = color.add(metLights(ray, distance, from, fromPdf, areas).scale(k));
+            }
+            if (intersection == null) return color.add(scene.background.scale(k));
+            if (!shading.preprocessIntersection(intersection, ray.getDirection())) break;
+            long bounce = Sampler.stream(seed, depth);
+            Material material = intersection.getMaterial();
+            Point point = intersection.point;
+            Vector n = intersection.getNormal();
+
+            // the lobes of the material, by their share of the reflected light
+            double wD = material.kD.max(), wS = material.kS.max() * 2 / (material.nShininess + 1);
+            double wT = material.kT.max(), wR = material.kR.max();
+            double total = wD + wS + wT + wR;
+            double pLobes = total == 0 ? 0 : (wD + wS) / total;
+
+            color = color.add(intersection.geometry.getEmission().scale(k),
+                    directLight(intersection, lights, bounce, pLobes, wD, wS).scale(k));
+            if (total == 0) break;
+
+            double u = Sampler.uniform(bounce, LOBE) * total;
+            if (u < wD + wS) {
+                Vector direction = sampleLobes(intersection, wD, wS, bounce);
+                if (direction == null || !setDirection(intersection, direction)) break;
+                fromPdf = pLobes * lobesPdf(intersection, direction, wD, wS);
+                Double3 g = shading.calcDiffusive(intersection).add(shading.calcSpecular(intersection));
+                k = k.product(g).scale(1 / (Math.PI * fromPdf));
+                ray = new Ray(point, direction, n, intersection.travelled);
+            } else if (u < wD + wS + wT) {
+                k = k.product(material.kT).scale(total / wT);
+                ray = scatter(intersection, shading.constructRefractedRay(intersection), material.roughnessT, bounce);
+                fromPdf = 0;
+            } else {
+                k = k.product(material.kR).scale(total / wR);
+                ray = scatter(intersection, shading.constructReflectedRay(intersection), material.roughnessR, bounce);
+                fromPdf = 0;
+            }
+            from = point;
+
+            if (depth + 1 >= ROULETTE_DEPTH) {
+                double survival = Math.min(1, k.max());
+                if (Sampler.uniform(bounce, ROULETTE) >= survival) break;
+                k = k.scale(1 / survival);
+            }
+            if (k.max() == 0) break;
+        }
+        return color;
+    }
+
+    /**
+     * Estimates the light of the light sources at a point by shadow rays. An area light is sampled at one
+     * point of its surface, and weighted against the chance of meeting it by the bounced ray.
+     *
+     * @param intersection the shaded point
+     * @param lights       the light sources
+     * @param bounce       the seed of the random numbers of the bounce
+     * @param pLobes       the probability of bouncing by the diffuse and specular lobes
+     * @param wD           the share of the diffuse lobe
+     * @param wS           the share of the specular lobe
+     * @return the light of the light sources
+     */
+    private Color directLight(Intersection intersection, LightIndex lights, long bounce, double pLobes,
+                              double wD, double wS) {
+        Point point = intersection.point;
+        Color color = Color.BLACK;
+        for (int l : lights.candidates(point)) {
+            if (!lights.mayIlluminate(l, point)) continue;
+            LightSource light = lights.get(l);
+            Color iL;
+            if (light instanceof AreaLight area) {
+                Point sample = area.getSample(Sampler.uniform(bounce, LIGHTS + 2 * l),
+                        Sampler.uniform(bounce, LIGHTS + 2 * l + 1));
+                double dx = sample.getX() - point.getX(), dy = sample.getY() - point.getY(), dz = sample.getZ() - point.getZ();
+                if (isZero(dx) && isZero(dy) && isZero(dz)) continue;
+                double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                Vector direction = new Vector(dx / distance, dy / distance, dz / distance);
+                double cosLight = Math.abs(direction.dotProduct(area.getNormal()));
+                if (isZero(cosLight) || !setDirection(intersection, direction)) continue;
+                Double3 ktr = shading.transparency(area,
+                        new Ray(point, direction, intersection.getNormal(), intersection.travelled), point, distance);
+                if (ktr.lowerThan(MIN_CALC_COLOR_K)) continue;
+                double pLight = distance * distance / (area.getArea() * cosLight);
+                double pBounce = pLobes * lobesPdf(intersection, direction, wD, wS);
+                iL = area.getIntensity(point).scale(ktr).scale(pLight * pLight / (pLight * pLight + pBounce * pBounce));
+            } else {
+                if (!shading.setLightSource(intersection, light)) continue;
+                Double3 ktr = shading.transparency(light, shading.shadowRay(intersection), point, light.getDistance(point));
+                if (ktr.lowerThan(MIN_CALC_COLOR_K)) continue;
+                iL = light.getIntensity(point).scale(ktr);
+            }
+            color = color.add(iL.scale(shading.calcDiffusive(intersection)), iL.scale(shading.calcSpecular(intersection)));
+        }
+        return color;
+    }
+
+    /**
+     * Adds the light of the area lights met by a bounced ray before it hits a geometry, weighted against
+     * the chance of sampling the same point of the light by {@link #directLight}.
+     *
+     * @param ray      the bounced ray
+     * @param distance distance to the geometry hit by the ray
+     * @param from     the point the ray bounced off
+     * @param pdf      the probability density of the direction of the ray
+     * @param areas    the area lights
+     * @return the light of the met area lights, per unit of the throughput of the ray
+     */
+    private Color metLights(Ray ray, double distance, Point from, double pdf, AreaLight[] areas) {
+        Color color = Color.BLACK;
+        for (AreaLight area : areas) {
+            double t = area.getSurfaceDistance(ray);
+            if (t >= distance) continue;
+            double cosLight = Math.abs(ray.getDirection().dotProduct(area.getNormal()));
+            if (isZero(cosLight)) continue;
+            // the radiance of the light, over the probability of the ray, is its intensity at the point
+            // as the shadow rays see it, scaled by the ratio of the light sampling and bounce probabilities
+            double pLight = t * t / (area.getArea() * cosLight);
+            color = color.add(area.getIntensity(from).scale(Math.PI * pLight * pdf * pdf / (pLight * pLight + pdf * pdf)));
+        }
+        return color;
+    }
+
+    /**
+     * Sets a direction leaving a point as its light direction, for the lighting calculations of the shading.
+     *
+     * @param intersection the point
+     * @param direction    the unit direction leaving the point
+     * @return false if the direction leaves to the other side of the surface than the viewer
+     */
+    private static boolean setDirection(Intersection intersection, Vector direction) {
+        intersection.lightDirection = direction.scale(-1);
+        intersection.lightNormalDotProduct = alignZero(-direction.dotProduct(intersection.getNormal()));
+        return intersection.lightNormalDotProduct * intersection.rayNormalDotProduct > 0;
+    }
+
+    /**
+     * Samples a direction by the diffuse lobe - around the normal, in proportion to the cosine - or by the
+     * specular lobe - around the mirror direction, in proportion to the power of the cosine - by their shares.
+     *
+     * @param intersection the point
+     * @param wD           the share of the diffuse lobe
+     * @param wS           the share of the specular lobe
+     * @param bounce       the seed of the random numbers of the bounce
+     * @return the unit direction, {@code null} if it leaves to the other side of the surface
+     */
+    private static Vector sampleLobes(Intersection intersection, double wD, double wS, long bounce) {
+        double a = Sampler.uniform(bounce, DIRECTION), b = Sampler.uniform(bounce, DIRECTION + 1);
+        Vector n = intersection.getNormal();
+        Vector axis;
+        double cos;
+        if (Sampler.uniform(bounce, PART) * (wD + wS) < wD) {
+            axis = intersection.rayNormalDotProduct < 0 ? n : n.scale(-1);
+            cos = Math.sqrt(1 - a);
+        } else {
+            axis = mirror(intersection);
+            cos = Math.pow(1 - a, 1.0 / (intersection.getMaterial().nShininess + 1));
+        }
+        double sin = Math.sqrt(Math.max(0, 1 - cos * cos)), phi = 2 * Math.PI * b;
+        Vector u = axis.crossProduct(Math.abs(axis.getX()) < 0.5 ? Vector.AXIS_X : Vector.AXIS_Y).normalize();
+        Vector v = axis.crossProduct(u);
+        double cu = sin * Math.cos(phi), cv = sin * Math.sin(phi);
+        double x = cos * axis.getX() + cu * u.getX() + cv * v.getX();
+        double y = cos * axis.getY() + cu * u.getY() + cv * v.getY();
+        double z = cos * axis.getZ() + cu * u.getZ() + cv * v.getZ();
+        if (isZero(x) && isZero(y) && isZero(z)) return null;
+        Vector direction = Vector.normalized(x, y, z);
+        return direction.dotProduct(n) * intersection.rayNormalDotProduct < 0 ? direction : null;
+    }
+
+    /**
+     * Calculates the probability density of {@link #sampleLobes} for a direction.
+     *
+     * @param intersection the point
+     * @param direction    the unit direction, on the side of the viewer
+     * @param wD           the share of the diffuse lobe
+     * @param wS           the share of the specular lobe
+     * @return the probability density per unit solid angle
+     */
+    private static double lobesPdf(Intersection intersection, Vector direction, double wD, double wS) {
+        if (wD + wS == 0) return 0;
+        double diffuse = Math.abs(direction.dotProduct(intersection.getNormal())) / Math.PI;
+        int shininess = intersection.getMaterial().nShininess;
+        double cos = direction.dotProduct(mirror(intersection));
+        double specular = cos <= 0 ? 0 : (shininess + 1) / (2 * Math.PI) * Math.pow(cos, shininess);
+        return (wD * diffuse + wS * specular) / (wD + wS);
+    }
+
+    /**
+     * @param intersection the point
+     * @return the mirror direction of the viewing ray
+     */
+    private static Vector mirror(Intersection intersection) {
+        Vector v = intersection.rayDirection, n = intersection.getNormal();
+        double vn2 = 2 * intersection.rayNormalDotProduct;
+        return Vector.normalized(v.getX() - n.getX() * vn2, v.getY() - n.getY() * vn2, v.getZ() - n.getZ() * vn2);
+    }
+
+    /**
+     * Scatters a perfect reflected or refracted ray within the cone of a rough surface.
+     *
+     * @param intersection the point
+     * @param ideal        the perfect ray
+     * @param roughness    the radius of the cone at a unit distance, 0 for the perfect ray
+     * @param bounce       the seed of the random numbers of the bounce
+     * @return the scattered ray
+     */
+    private static Ray scatter(Intersection intersection, Ray ideal, double roughness, long bounce) {
+        if (roughness == 0) return ideal;
+        Vector d = ideal.getDirection(), n = intersection.getNormal();
+        Vector u = d.crossProduct(Math.abs(d.getX()) < 0.5 ? Vector.AXIS_X : Vector.AXIS_Y).normalize();
+        return SimpleRayTracer.coneRay(intersection, d, u, d.crossProduct(u), n, d.dotProduct(n), roughness,
+                Sampler.uniform(bounce, DIRECTION), Sampler.uniform(bounce, DIRECTION + 1));
+    }
+}
@@ -0,0 +1,457 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import lighting.AreaLight;
+import lighting.LightSource;
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Map of the caustic photons - the light that reached a diffuse surface after at least one mirror
+ * reflection, which the shadow rays of the Whitted tracing cannot find.
+ * <p>
+ * The photons are shot from the light sources that have a position, in parallel, each one following the
+ * reflected and refracted rays of the scene, and are stored where they meet a diffuse surface. The light
+ * that only went straight through transparent surfaces is not stored - the shadow rays already bring it
+ * through their transparency. The irradiance at a shaded point is estimated by the power of the nearest
+ * photons over the area of the disc that holds them.
+ * </p>
+ * <p>
+ * The photons are stored in a kd-tree without pointers: the photons of a range {@code [from, to)} are
+ * split at the middle index {@code (from + to) >>> 1}, every photon before it is not further along the
+ * split axis of the node than it, and every photon after it is not nearer - so a node is just a photon and
+ * its axis. A photon takes {@link #PHOTON_BYTES} bytes: its position and power as floats, its direction as
+ * bytes and the axis of its node.
+ * </p>
+ */
+final class PhotonMap {
+    /** Bytes of a stored photon */
+    static final int PHOTON_BYTES = 28;
+    /** Amount of photons shot by a task of the parallel shooting */
+    private static final int CHUNK = 4096;
+    /** Seed of the random sequences of the photons */
+    private static final long SEED = 0x50484F544F4EL;
+    /** Random numbers of a photon before its bounces - light choice, direction, and point of an area light */
+    private static final int LIGHT = 0, DIRECTION = 1, AREA = 3, BOUNCES = 5;
+    /** Random numbers of a bounce - the choice of the ray and a point of its cone */
+    private static final int PER_BOUNCE = 3;
+    /** Scale of the directions quantized into bytes */
+    private static final float DIRECTION_SCALE = 127;
+
+    /** Amount of stored photons */
+    private final int size;
+    /** Photon positions - X, Y, Z per photon, in tree order */
+    private final float[] positions;
+    /** Photon powers - R, G, B per photon */
+    private final float[] powers;
+    /** Photon directions, quantized - X, Y, Z per photon */
+    private final byte[] directions;
+    /** Split axis of the node of every photon - 0, 1 or 2 */
+    private final byte[] axes;
+    /** Nearest photon queries of the rendering threads */
+    private final ThreadLocal<Query> queries = ThreadLocal.withInitial(() -> new Query(1));
+
+    /**
+     * The nearest photons of a point, in a max-heap by their distance - the farthest one is first.
+     */
+    static final class Query {
+        /** The photons */
+        int[] photons;
+        /** Squared distances of the photons from the point */
+        double[] distances;
+        /** Amount of found photons */
+        int count;
+        /** Squared distance beyond which no photon is taken */
+        private double limit;
+
+        /**
+         * Constructs a query of the nearest photons.
+         *
+         * @param nearest the amount of nearest photons
+         */
+        Query(int nearest) {
+            photons = new int[nearest];
+            distances = new double[nearest];
+        }
+
+        /**
+         * Offers a photon to the query.
+         *
+         * @param photon   the photon
+         * @param distance the squared distance of the photon
+         */
+        private void offer(int photon, double distance) {
+            int n = photons.length;
+            if (count < n) {
+                // sift up
+                int i = count++;
+                while (i > 0 && distances[(i - 1) >> 1] < distance) {
+                    photons[i] = photons[(i - 1) >> 1];
+                    distances[i] = distances[(i - 1) >> 1];
+                    i = (i - 1) >> 1;
+                }
+                photons[i] = photon;
+                distances[i] = distance;
+                if (count == n) limit = distances[0];
+                return;
+            }
+            // replace the farthest photon and sift down
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) break;
+                if (child + 1 < n && distances[child + 1] > distances[child]) ++child;
+                if (distances[child] <= distance) break;
+                photons[i] = photons[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            photons[i] = photon;
+            distances[i] = distance;
+            limit = distances[0];
+        }
+    }
+
+    /**
+     * Growable photon arrays of a shooting task.
+     */
+    private static final class Batch {
+        /** Photon positions - X, Y, Z per photon */
+        float[] positions = new float[3 * 64];
+        /** Photon powers - R, G, B per photon */
+        float[] powers = new float[3 * 64];
+        /** Quantized photon directions - X, Y, Z per photon */
+        byte[] directions = new byte[3 * 64];
+        /** Amount of photons */
+        int size;
+
+        /**
+         * Stores a photon.
+         *
+         * @param point     the position
+         * @param power     the power
+         * @param direction the direction of arrival
+         */
+        void add(Point point, Double3 power, Vector direction) {
+            int i = 3 * size++;
+            if (i == positions.length) {
+                positions = Arrays.copyOf(positions, 2 * i);
+                powers = Arrays.copyOf(powers, 2 * i);
+                directions = Arrays.copyOf(directions, 2 * i);
+            }
+            positions[i] = (float) point.getX();
+            positions[i + 1] = (float) point.getY();
+            positions[i + 2] = (float) point.getZ();
+            powers[i] = (float) power.d1();
+            powers[i + 1] = (float) power.d2();
+            powers[i + 2] = (float) power.d3();
+            directions[i] = (byte) Math.round(direction.getX() * DIRECTION_SCALE);
+            directions[i + 1] = (byte) Math.round(direction.getY() * DIRECTION_SCALE);
+            directions[i + 2] = (byte) Math.round(direction.getZ() * DIRECTION_SCALE);
+        }
+    }
+
+    /**
+     * Builds the kd-tree of photons. The arrays are reordered into the tree order.
+     *
+     * @param positions  photon positions - X, Y, Z per photon
+     * @param powers     photon powers - R, G, B per photon
+     * @param directions quantized photon directions - X, Y, Z per photon
+     * @param size       the amount of photons
+     */
+    PhotonMap(float[] positions, float[] powers, byte[] directions, int size) {
+        this.size = size;
+        int[] order = new int[size];
+        for (int i = 0; i < size; ++i) order[i] = i;
+        byte[] split = new byte[size];
+        build(positions, order, split, 0, size);
+
+        this.positions = new float[3 * size];
+        this.powers = new float[3 * size];
+        this.directions = new byte[3 * size];
+        this.axes = split;
+        for (int i = 0; i < size; ++i) {
+            int from = 3 * order[i], to = 3 * i;
+            System.arraycopy(positions, from, this.positions, to, 3);
+            System.arraycopy(powers, from, this.powers, to, 3);
+            System.arraycopy(directions, from, this.directions, to, 3);
+        }
+    }
+
+    /**
+     * Shoots the caustic photons of a scene from its light sources, in parallel. The light sources are
+     * chosen in proportion to their power, and every photon leaves its light in a uniform direction,
+     * with the intensity of the light at the first surface it meets times its squared distance - so
+     * the spreading of the photons brings the attenuation of the light. The light sources without
+     * a position, whose photons cannot be aimed at the scene, shoot none.
+     *
+     * @param tracer   the ray tracer of the scene, which traces the photons
+     * @param photons  the amount of photons to shoot
+     * @param capacity the largest amount of stored photons - a random subset of them is stored,
+     *                 with their power raised accordingly
+     * @param maxLevel the largest amount of surfaces a photon meets
+     * @return the photon map
+     */
+    static PhotonMap shoot(SimpleRayTracer tracer, int photons, int capacity, int maxLevel) {
+        List<LightSource> lights = new ArrayList<>();
+        for (LightSource light : tracer.scene.lights)
+            if (light.getPosition() != null && light.getPower() > 0 && light.getPower() < Double.POSITIVE_INFINITY)
+                lights.add(light);
+        double[] cumulative = new double[lights.size()];
+        double total = 0;
+        for (int l = 0; l < cumulative.length; ++l) cumulative[l] = total += lights.get(l).getPower();
+        if (lights.isEmpty()) return new PhotonMap(new float[0], new float[0], new byte[0], 0);
+
+        double scale = 4 * Math.PI * total / photons;
+        int chunks = (photons + CHUNK - 1) / CHUNK;
+        List<Batch> batches = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            Batch batch = new Batch();
+            for (int i = c * CHUNK; i < Math.min(photons, (c + 1) * CHUNK); ++i)
+                shootPhoton(tracer, lights, cumulative, scale, maxLevel, Sampler.stream(SEED, i), batch);
+            return batch;
+        }).toList();
+
+        int stored = 0;
+        for (Batch batch : batches) stored += batch.size;
+        int kept = Math.min(stored, capacity);
+        float[] positions = new float[3 * kept], powers = new float[3 * kept];
+        byte[] directions = new byte[3 * kept];
+        // selection sampling keeps exactly the capacity, every photon with the same probability
+        float raise = (float) stored / kept;
+        int seen = 0, size = 0;
+        for (Batch batch : batches)
+            for (int i = 0; i < batch.size; ++i, ++seen) {
+                if (kept < stored && Sampler.uniform(SEED, seen) * (stored - seen) >= kept - size) continue;
+                System.arraycopy(batch.positions, 3 * i, positions, 3 * size, 3);
+                System.arraycopy(batch.directions, 3 * i, directions, 3 * size, 3);
+                for (int c = 0; c < 3; ++c) powers[3 * size + c] = batch.powers[3 * i + c] * raise;
+                ++size;
+            }
+        return new PhotonMap(positions, powers, directions, size);
+    }
+
+    /**
+     * Shoots a photon and stores it where it meets a diffuse surface after a reflection. At every surface
+     * the photon is refracted, reflected or absorbed with probabilities of the strengths of the
+     * transparency and the reflection, and its power is divided by the probability of its choice.
+     *
+     * @param tracer     the ray tracer of the scene
+     * @param lights     the light sources that shoot photons
+     * @param cumulative the cumulative powers of the light sources
+     * @param scale      the power of a photon relative to the intensity of its light
+     * @param maxLevel   the largest amount of surfaces the photon meets
+     * @param seed       the seed of the random sequence of the photon
+     * @param batch      receives the photon
+     */
+    private static void shootPhoton(SimpleRayTracer tracer, List<LightSource> lights, double[] cumulative,
+                                    double scale, int maxLevel, long seed, Batch batch) {
+        double target = Sampler.uniform(seed, LIGHT) * cumulative[cumulative.length - 1];
+        int l = 0;
+        while (l < cumulative.length - 1 && cumulative[l] <= target) ++l;
+        LightSource light = lights.get(l);
+        Point origin = light instanceof AreaLight area
+                ? area.getSample(Sampler.uniform(seed, AREA), Sampler.uniform(seed, AREA + 1)) : light.getPosition();
+        double z = 1 - 2 * Sampler.uniform(seed, DIRECTION), phi = 2 * Math.PI * Sampler.uniform(seed, DIRECTION + 1);
+        double r = Math.sqrt(Math.max(0, 1 - z * z));
+        Ray ray = new Ray(origin, Vector.normalized(r * Math.cos(phi), r * Math.sin(phi), z));
+
+        Double3 power = null;
+        boolean reflected = false;
+        for (int bounce = 0; bounce < maxLevel; ++bounce) {
+            Intersection intersection = tracer.findClosestIntersection(ray);
+            if (intersection == null || !tracer.preprocessIntersection(intersection, ray.getDirection())) return;
+            if (power == null) {
+                double distance = light.getDistance(intersection.point);
+                power = light.getIntensity(intersection.point).getRgb()
+                        .scale(scale * distance * distance / light.getPower());
+                if (power.max() == 0) return;
+            }
+            Material material = intersection.getMaterial();
+            if (reflected && material.kD.max() > 0) batch.add(intersection.point, power, ray.getDirection());
+
+            int index = BOUNCES + PER_BOUNCE * bounce;
+            double pT = material.kT.max(), pR = material.kR.max(), sum = pT + pR;
+            if (sum > 1) {
+                pT /= sum;
+                pR /= sum;
+            }
+            double u = Sampler.uniform(seed, index);
+            if (u < pT) {
+                power = power.product(material.kT).scale(1 / pT);
+                ray = scatter(intersection, tracer.constructRefractedRay(intersection), material.roughnessT,
+                        seed, index + 1);
+            } else if (u < pT + pR) {
+                power = power.product(material.kR).scale(1 / pR);
+                ray = scatter(intersection, tracer.constructReflectedRay(intersection), material.roughnessR,
+                        seed, index + 1);
+                reflected = true;
+            } else return;
+        }
+    }
+
+    /**
+     * Scatters a photon ray of a rough surface into its cone.
+     *
+     * @param intersection the intersection
+     * @param ideal        the ideal reflected or refracted ray
+     * @param roughness    the roughness of the surface
+     * @param seed         the seed of the random sequence of the photon
+     * @param index        the index of the random numbers of the cone
+     * @return the scattered ray
+     */
+    private static Ray scatter(Intersection intersection, Ray ideal, double roughness, long seed, int index) {
+        if (roughness == 0) return ideal;
+        Vector d = ideal.getDirection(), n = intersection.getNormal();
+        Vector u = d.crossProduct(Math.abs(d.getX()) < 0.5 ? Vector.AXIS_X : Vector.AXIS_Y).normalize();
+        return SimpleRayTracer.coneRay(intersection, d, u, d.crossProduct(u), n, d.dotProduct(n), roughness,
+                Sampler.uniform(seed, index), Sampler.uniform(seed, index + 1));
+    }
+
+    /**
+     * Builds the kd-tree nodes of a range of photons, splitting them at the middle index along the
+     * longest axis of their box.
+     *
+     * @param positions photon positions - X, Y, Z per photon
+     * @param order     the photons in tree order, reordered in place
+     * @param axes      receives the split axis of every node
+     * @param from      first photon of the range
+     * @param to        end of the range (exclusive)
+     */
+    private static void build(float[] positions, int[] order, byte[] axes, int from, int to) {
+        while (to - from > 1) {
+            float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+            float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+            for (int i = from; i < to; ++i)
+                for (int c = 0; c < 3; ++c) {
+                    float value = positions[3 * order[i] + c];
+                    if (value < min[c]) min[c] = value;
+                    if (value > max[c]) max[c] = value;
+                }
+            int axis = 0;
+            for (int c = 1; c < 3; ++c)
+                if (max[c] - min[c] > max[axis] - min[axis]) axis = c;
+            int middle = (from + to) >>> 1;
+            select(positions, order, axis, from, to - 1, middle);
+            axes[middle] = (byte) axis;
+            build(positions, order, axes, from, middle);
+            from = middle + 1; // the upper half is built by the loop
+        }
+    }
+
+    /**
+     * Reorders a range of photons so the photon at an index is the one of a sorted range, the photons
+     * before it are not greater along an axis and the photons after it are not smaller (Hoare's selection).
+     *
+     * @param positions photon positions - X, Y, Z per photon
+     * @param order     the photons, reordered in place
+     * @param axis      the axis
+     * @param low       first photon of the range
+     * @param high      last photon of the range (inclusive)
+     * @param nth       the index
+     */
+    private static void select(float[] positions, int[] order, int axis, int low, int high, int nth) {
+        while (high > low) {
+            float pivot = positions[3 * order[(low + high) >>> 1] + axis];
+            int i = low, j = high;
+            while (i <= j) {
+                while (positions[3 * order[i] + axis] < pivot) ++i;
+                while (positions[3 * order[j] + axis] > pivot) --j;
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (nth <= j) high = j;
+            else if (nth >= i) low = i;
+            else return;
+        }
+    }
+
+    /**
+     * @return the amount of stored photons
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the nearest photons of a point within a radius. With a normal, only the photons that arrived
+     * at the side of the surface that the point is seen from are taken. The query is reused by the thread.
+     *
+     * @param point   the point
+     * @param normal  the normal of the surface at the point, null to take the photons of both sides
+     * @param side    the dot product of the viewing direction and the normal
+     * @param nearest the amount of nearest photons
+     * @param radius  the radius of the search
+     * @return the found photons
+     */
+    Query search(Point point, Vector normal, double side, int nearest, double radius) {
+        Query query = queries.get();
+        if (query.photons.length != nearest) queries.set(query = new Query(nearest));
+        query.count = 0;
+        query.limit = radius * radius;
+        search(query, point.getX(), point.getY(), point.getZ(), normal, side, 0, size);
+        return query;
+    }
+
+    /**
+     * Searches the nearest photons in the kd-tree nodes of a range of photons.
+     *
+     * @param query  the query
+     * @param x      X of the point
+     * @param y      Y of the point
+     * @param z      Z of the point
+     * @param normal the normal of the surface, null to take the photons of both sides
+     * @param side   the dot product of the viewing direction and the normal
+     * @param from   first photon of the range
+     * @param to     end of the range (exclusive)
+     */
+    private void search(Query query, double x, double y, double z, Vector normal, double side, int from, int to) {
+        while (from < to) {
+            int node = (from + to) >>> 1, p = 3 * node, axis = axes[node];
+            double dx = x - positions[p], dy = y - positions[p + 1], dz = z - positions[p + 2];
+            double delta = axis == 0 ? dx : axis == 1 ? dy : dz;
+            // the near side first, so the far side is often beyond the found photons
+            if (delta < 0) search(query, x, y, z, normal, side, from, node);
+            else search(query, x, y, z, normal, side, node + 1, to);
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (distance < query.limit && (normal == null || side * (directions[p] * normal.getX()
+                    + directions[p + 1] * normal.getY() + directions[p + 2] * normal.getZ()) > 0))
+                query.offer(node, distance);
+            if (delta * delta >= query.limit) return;
+            if (delta < 0) from = node + 1;
+            else to = node;
+        }
+    }
+
+    /**
+     * Estimates the irradiance of the caustics at a point of a surface: the power of the nearest photons
+     * over the area of the disc that holds them - the whole search disc if fewer photons are found.
+     *
+     * @param point   the point
+     * @param normal  the normal of the surface at the point
+     * @param side    the dot product of the viewing direction and the normal
+     * @param nearest the amount of nearest photons
+     * @param radius  the largest radius of the disc
+     * @return the irradiance
+     */
+    Color gather(Point point, Vector normal, double side, int nearest, double radius) {
+        if (size == 0) return Color.BLACK;
+        Query query = search(point, normal, side, nearest, radius);
+        if (query.count == 0) return Color.BLACK;
+        double r = 0, g = 0, b = 0;
+        for (int i = 0; i < query.count; ++i) {
+            int p = 3 * query.photons[i];
+            r += powers[p];
+            g += powers[p + 1];
+            b += powers[p + 2];
+        }
+        double area = Math.PI * (query.count == nearest ? query.distances[0] : radius * radius);
+        return new Color(r / area, g / area, b / area);
+    }
+}
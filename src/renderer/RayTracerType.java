@@ -7,5 +7,7 @@ public enum RayTracerType {
     /** Simple (basic) ray tracer */
     SIMPLE,
     /** Ray tracer using regular grid */
-    GRID
+    GRID,
+    /** Monte Carlo path tracer with global illumination ({@link PathTracer}) */
+    PATH
 }
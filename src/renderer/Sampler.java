@@ -0,0 +1,72 @@
+package renderer;
+
+import primitives.Point;
+
+/**
+ * Random numbers of the stochastic shading - light sampling, shadow ray selection and path tracing.
+ * <p>
+ * The numbers of a shaded point are a sequence seeded from the point itself, so a rendered
+ * image does not depend on the threads or on the order of the pixels, and the per-pixel tracing
+ * and the wavefront renderer draw the same numbers at the same point.
+ * </p>
+ */
+final class Sampler {
+    /** Increment of the random sequence of a shaded point (the golden ratio scaled to 64 bits) */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    /** Increment of the sequence seeds of a point - another odd constant, so the sequences do not overlap */
+    private static final long STREAM_GAMMA = 0xD1B54A32D192ED03L;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private Sampler() {
+    }
+
+    /**
+     * Seeds the random sequence of a shaded point from its coordinates. The coordinates are rounded
+     * to single precision, so the last bits of the intersection calculation do not matter.
+     *
+     * @param point the shaded point
+     * @return the seed
+     */
+    static long seed(Point point) {
+        long seed = Float.floatToIntBits((float) point.getX());
+        seed = mix(seed * 31 + Float.floatToIntBits((float) point.getY()));
+        return mix(seed * 31 + Float.floatToIntBits((float) point.getZ()));
+    }
+
+    /**
+     * Derives the seed of one of many independent random sequences of a point - e.g. of one of the
+     * paths traced through a pixel.
+     *
+     * @param seed  the seed of the point
+     * @param index the index of the sequence
+     * @return the seed of the sequence
+     */
+    static long stream(long seed, int index) {
+        return mix(seed + (index + 1) * STREAM_GAMMA);
+    }
+
+    /**
+     * Returns a uniform random number of the random sequence of a point.
+     *
+     * @param seed  the seed of the point
+     * @param index the index in the sequence
+     * @return a uniform random number in [0,1)
+     */
+    static double uniform(long seed, int index) {
+        return (mix(seed + (index + 1) * GOLDEN_GAMMA) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Scrambles the bits of a value (the SplitMix64 finalizer).
+     *
+     * @param z the value
+     * @return the scrambled value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,12 +1,17 @@
 package renderer;
 
 import geometries.Geometry;
+import lighting.AreaLight;
 import lighting.LightSource;
 import primitives.*;
 import scene.Scene;
+import geometries.Intersectable.Hit;
 import geometries.Intersectable.Intersection;
+import geometries.Intersectable.IntersectionSink;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
@@ -18,90 +23,193 @@ import static primitives.Util.isZero;
 public class SimpleRayTracer extends RayTracerBase {
 
     private static final int MAX_CALC_COLOR_LEVEL = 10;
-    private static final double MIN_CALC_COLOR_K = 0.001;
-    private static final Double3 INITIAL_K = Double3.ONE;   //תנאי העצירה של מקדם ההנחתה המצטבר
+    static final double MIN_CALC_COLOR_K = 0.001;
+    static final Double3 INITIAL_K = Double3.ONE;   //תנאי העצירה של מקדם ההנחתה המצטבר
+    /** Default light intensity below which a light source is not evaluated at a point */
+    static final double DEFAULT_LIGHT_CUTOFF = 0.001;
+    /** Default amount of cone cells along a side for the rays of a rough surface */
+    static final int DEFAULT_CONE_SAMPLES = 4;
+    /** Amount of shadow rays toward an area light - one per quarter of its surface - before its soft shadow is refined */
+    private static final int COARSE_AREA_SAMPLES = 4;
+    /** Default amount of nearest photons in the caustic estimate at a point */
+    static final int DEFAULT_CAUSTIC_NEAREST = 64;
+    /** Default memory of the caustic photon map - 64 MiB */
+    static final long DEFAULT_PHOTON_MEMORY = 64L << 20;
 
     /**
-     * Constructs a SimpleRayTracer with the given scene.
+     * Calculates the overall transparency (ktr) from the intersection point to the light source.
+     * If the transparency drops below MIN_CALC_COLOR_K, the light is mostly blocked.
      *
-     * @param scene the scene to be rendered
+     * @param intersection the intersection point to check for partial shadow
+     * @return the cumulative transparency (Double3) from the point to the light
      */
+    private Double3 transparency(Intersection intersection) {
+        if (intersection.lightSource instanceof AreaLight area && area.getSamples() > 1)
+            return softTransparency(area, intersection.point, intersection.getNormal(), intersection.travelled);
+        double lightDistance = intersection.lightSource.getDistance(intersection.point);
+        return transparency(intersection.lightSource, shadowRay(intersection), intersection.point, lightDistance);
+    }
 
-    private static final double DELTA = 0.1;
+    /**
+     * Constructs the shadow ray from an intersection toward its current light source,
+     * with its head shifted along the normal.
+     *
+     * @param intersection the intersection, with its light source set
+     * @return the shadow ray
+     */
+    Ray shadowRay(Intersection intersection) {
+        Vector l = intersection.lightSource.getL(intersection.point);
+        Vector lightDirection = l.scale(-1);
 
+        // Create shadow ray with offset using the new Ray constructor
+        return new Ray(intersection.point, lightDirection, intersection.getNormal(), intersection.travelled);
+    }
 
     /**
-     * Checks if a point is not in shadow.
-     * For each light source, casts a shadow ray toward the light and checks if any object blocks the light.
+     * Calculates the transparency along a shadow ray up to the light source.
+     * <p>
+     * Nearby points are usually blocked by the same geometry, so the last geometry that blocked the
+     * light alone is tested before the scene: if it still blocks the light, the scene is not searched.
+     * Every rendering thread keeps its own last occluder per light source.
+     * </p>
      *
-     * @param intersection the intersection point to check for shadow
-     * @return true if the point is illuminated (no object blocks the light), false if it's in shadow
+     * @param light         the light source
+     * @param shadowRay     the shadow ray
+     * @param point         the shaded point
+     * @param lightDistance distance from the point to the light source
+     * @return the cumulative transparency, {@link Double3#ZERO} if the light is blocked
      */
-    private boolean unshaded(Intersection intersection) {
-        // Iterate through all light sources in the scene
-        for (LightSource light : scene.lights) {
-            // Get the light direction vector from the point toward the light source
-            Vector l = light.getL(intersection.point);
-            Vector lightDirection = l.scale(-1); // Reverse direction for the shadow ray
-
-            // Create a shadow ray from the point toward the light, slightly shifted along the normal
-            Ray lightRay = new Ray(intersection.point, lightDirection, intersection.normalBeforeHit);
+    Double3 transparency(LightSource light, Ray shadowRay, Point point, double lightDistance) {
+        Map<LightSource, Geometry> lastOccluders = occluders.get();
+        Occlusion occlusion = occlusions.get();
+        Geometry last = lastOccluders.get(light);
+        if (last != null && !last.visitIntersections(shadowRay, occlusion.reset(point, lightDistance)))
+            return Double3.ZERO;
+        // the occluders are passed one by one and the search stops as soon as the light is blocked
+        if (!scene.geometries.visitIntersections(shadowRay, occlusion.reset(point, lightDistance))
+                && occlusion.blocker != null
+                && scene.geometries.contains(occlusion.blocker))
+            lastOccluders.put(light, occlusion.blocker);
+        return occlusion.ktr;
+    }
 
-            // Calculate the distance from the point to the light source
-            double lightDistance = light.getDistance(intersection.point);
+    /**
+     * Calculates the transparency toward a light source - along the shadow ray toward a point light,
+     * or the soft shadow of an area light.
+     *
+     * @param light         the light source
+     * @param shadowRay     the shadow ray toward the light position
+     * @param point         the shaded point
+     * @param normal        the normal at the shaded point
+     * @param lightDistance distance from the point to the light position
+     * @return the cumulative transparency, {@link Double3#ZERO} if the light is blocked
+     */
+    Double3 transparency(LightSource light, Ray shadowRay, Point point, Vector normal, double lightDistance) {
+        return light instanceof AreaLight area && area.getSamples() > 1
+                ? softTransparency(area, point, normal, shadowRay.getTravelled())
+                : transparency(light, shadowRay, point, lightDistance);
+    }
 
-            // Find intersections of the shadow ray with geometries, up to the light source distance
-            List<Intersection> shadowIntersections = scene.geometries.calculateIntersections(lightRay);
-            if (shadowIntersections != null) {
-                Double3 ktr = Double3.ONE; // Start with full transparency
-                for (Intersection shadowIntersection : shadowIntersections) {
-                    // Multiply by the transparency coefficient of each intersected object
-                    ktr = ktr.product(shadowIntersection.geometry.getMaterial().kT);
-                    // If transparency becomes too low, the light is blocked
-                    if (ktr.lowerThan(MIN_CALC_COLOR_K)) {
-                        return false; // Point is in shadow
-                    }
-                }
-            }
+    /**
+     * Estimates the transparency toward an area light - the mean transparency of shadow rays toward
+     * sample points of its surface.
+     * <p>
+     * The estimate is adaptive: a shadow ray goes toward every quarter of the surface first, and if all of
+     * them agree - the point is fully lit or fully blocked - their transparency is the result. Only a point
+     * in the penumbra gets a shadow ray toward every cell of the grid of the light, so soft shadows cost
+     * a few shadow rays except at their edges. Every cell and quarter is sampled at a random point of it.
+     * </p>
+     *
+     * @param light     the area light
+     * @param point     the shaded point
+     * @param normal    the normal at the shaded point
+     * @param travelled the distance the pixel cone travelled to the shaded point
+     * @return the mean transparency, {@link Double3#ZERO} if the light is blocked
+     */
+    private Double3 softTransparency(AreaLight light, Point point, Vector normal, double travelled) {
+        long seed = Sampler.seed(point) + Sampler.seed(light.getPosition());
+        Double3 first = null;
+        Double3 sum = Double3.ZERO;
+        boolean agree = true;
+        for (int q = 0; q < COARSE_AREA_SAMPLES; ++q) {
+            Double3 ktr = sampleTransparency(light, point, normal, travelled, ((q & 1) + Sampler.uniform(seed, 2 * q)) / 2,
+                    ((q >> 1) + Sampler.uniform(seed, 2 * q + 1)) / 2);
+            if (first == null) first = ktr;
+            else agree &= ktr.equals(first);
+            sum = sum.add(ktr);
         }
-        return true; // No object blocked the light, point is illuminated
+        if (agree) return first;
+
+        // the penumbra - the coarse rays are kept, as they sample the surface uniformly too
+        int n = light.getSamples();
+        int index = 2 * COARSE_AREA_SAMPLES;
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j, index += 2)
+                sum = sum.add(sampleTransparency(light, point, normal, travelled, (i + Sampler.uniform(seed, index)) / n,
+                        (j + Sampler.uniform(seed, index + 1)) / n));
+        return sum.scale(1.0 / (COARSE_AREA_SAMPLES + n * n));
     }
 
     /**
-     * Calculates the overall transparency (ktr) from the intersection point to the light source.
-     * If the transparency drops below MIN_CALC_COLOR_K, the light is mostly blocked.
+     * Calculates the transparency along the shadow ray toward a sample point of an area light.
      *
-     * @param intersection the intersection point to check for partial shadow
-     * @return the cumulative transparency (Double3) from the point to the light
+     * @param light     the area light
+     * @param point     the shaded point
+     * @param normal    the normal at the shaded point
+     * @param travelled the distance the pixel cone travelled to the shaded point
+     * @param u         first coordinate of the sample in the unit square
+     * @param v         second coordinate of the sample in the unit square
+     * @return the cumulative transparency, {@link Double3#ZERO} if the sample is blocked
      */
-    //*******************************************************************************
-    private Double3 transparency(Intersection intersection) {
-        Vector l = intersection.lightSource.getL(intersection.point);
-        Vector lightDirection = l.scale(-1);
-
-        // Create shadow ray with offset using the new Ray constructor
-        Ray shadowRay = new Ray(intersection.point, lightDirection, intersection.normalBeforeHit);
-
-        double lightDistance = intersection.lightSource.getDistance(intersection.point);
-        List<Intersection> shadowIntersections = scene.geometries.calculateIntersections(shadowRay);
-
-        if (shadowIntersections == null) return Double3.ONE;
-
-        Double3 ktr = Double3.ONE;
+    private Double3 sampleTransparency(AreaLight light, Point point, Vector normal, double travelled, double u,
+                                       double v) {
+        Point sample = light.getSample(u, v);
+        double dx = sample.getX() - point.getX(), dy = sample.getY() - point.getY(), dz = sample.getZ() - point.getZ();
+        if (isZero(dx) && isZero(dy) && isZero(dz)) return Double3.ONE;
+        Ray ray = new Ray(point, Vector.normalized(dx, dy, dz), normal, travelled);
+        return transparency(light, ray, point, Math.sqrt(dx * dx + dy * dy + dz * dz));
+    }
 
-        for (Intersection shadowIntersection : shadowIntersections) {
-            double d = shadowIntersection.point.distance(intersection.point);
+    /**
+     * Accumulates the transparency of the occluders of a shadow ray, and stops the intersection
+     * search once the light is blocked.
+     */
+    private static final class Occlusion implements IntersectionSink {
+        /** The shaded point */
+        private Point point;
+        /** Distance from the point to the light source */
+        private double lightDistance;
+        /** The transparency accumulated so far */
+        private Double3 ktr;
+        /** The geometry that blocked the light alone, if any */
+        private Geometry blocker;
+
+        /**
+         * Starts the accumulation of a shadow ray.
+         *
+         * @param point         the shaded point
+         * @param lightDistance distance from the point to the light source
+         * @return this occlusion
+         */
+        Occlusion reset(Point point, double lightDistance) {
+            this.point = point;
+            this.lightDistance = lightDistance;
+            ktr = Double3.ONE;
+            blocker = null;
+            return this;
+        }
 
+        @Override
+        public boolean accept(Intersection occluder) {
             // Consider only intersections before the light source
-            if (d < lightDistance) {
-                ktr = ktr.product(shadowIntersection.geometry.getMaterial().kT);
-                if (ktr.lowerThan(MIN_CALC_COLOR_K)) {
-                    return Double3.ZERO;
-                }
-            }
+            if (occluder.point.distance(point) >= lightDistance) return true;
+            Double3 kT = occluder.getMaterial().kT;
+            ktr = ktr.product(kT);
+            if (!ktr.lowerThan(MIN_CALC_COLOR_K)) return true;
+            if (kT.lowerThan(MIN_CALC_COLOR_K)) blocker = occluder.geometry;
+            ktr = Double3.ZERO;
+            return false;
         }
-
-        return ktr;
     }
     //*********************************************************************************************
 
@@ -113,358 +221,903 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param ray the ray to trace
      * @return the closest intersection point, or null if none
      */
-    private Intersection findClosestIntersection(Ray ray) {
-        List<Intersection> intersections = scene.geometries.calculateIntersections(ray);
-        if (intersections == null) { // || intersections.isEmpty()
-            return null;
-        }
-        return findClosestIntersection(intersections, ray);
+    Intersection findClosestIntersection(Ray ray) {
+        // only the final closest hit gets a full intersection record
+        Hit hit = new Hit();
+        return scene.geometries.findClosestHit(ray, hit) ? hit.toIntersection(ray) : null;
     }
 
 
-    public SimpleRayTracer(Scene scene) {
-        super(scene);
-    }
+    /** Depth of a work stack entry that starts the pilot rays of a cone */
+    private static final int CONE_START = -1;
+    /** Depth of a work stack entry that ends a pilot ray of a cone */
+    private static final int CONE_PILOT = -2;
+    /** Amount of pilot rays of a cone - one per quarter of its cross-section */
+    private static final int CONE_PILOTS = 4;
 
-    @Override
-    public Color traceRay(Ray ray) {
-        Intersection closestIntersection = findClosestIntersection(ray);
-        if (closestIntersection == null) {
-            return scene.background;
+    /**
+     * Work stack of the secondary rays of one primary ray, reused by the rendering thread.
+     * Every entry is a ray with its throughput (the product of the reflection and transparency
+     * coefficients along its path) and its remaining depth, or a marker of a cone waiting for its pilot rays.
+     */
+    private static final class WorkStack {
+        /** The rays, {@code null} for a cone marker */
+        private Ray[] rays;
+        /** Throughput of every ray */
+        private Double3[] throughputs;
+        /** Remaining depth of every ray, {@link #CONE_START} or {@link #CONE_PILOT} for a cone marker */
+        private int[] levels;
+        /** The cone of every cone marker */
+        private Cone[] cones;
+        /** Amount of entries */
+        private int size;
+
+        /**
+         * @param capacity initial amount of entries
+         */
+        WorkStack(int capacity) {
+            rays = new Ray[capacity];
+            throughputs = new Double3[capacity];
+            levels = new int[capacity];
+            cones = new Cone[capacity];
+        }
+
+        /**
+         * Adds an entry.
+         *
+         * @param ray        the ray
+         * @param throughput the throughput of the ray
+         * @param level      the remaining depth
+         */
+        void push(Ray ray, Double3 throughput, int level) {
+            if (size == rays.length) {
+                rays = Arrays.copyOf(rays, 2 * size);
+                throughputs = Arrays.copyOf(throughputs, 2 * size);
+                levels = Arrays.copyOf(levels, 2 * size);
+                cones = Arrays.copyOf(cones, 2 * size);
+            }
+            rays[size] = ray;
+            throughputs[size] = throughput;
+            levels[size++] = level;
+        }
+
+        /**
+         * Adds a cone marker.
+         *
+         * @param cone the cone
+         * @param kind {@link #CONE_START} or {@link #CONE_PILOT}
+         */
+        void mark(Cone cone, int kind) {
+            push(null, null, kind);
+            cones[size - 1] = cone;
         }
-        return calcColor(closestIntersection, ray);
     }
 
     /**
-     * Finds the closest point to the ray's origin from a list of intersection points.
-     *
-     * @param intersections list of intersection points
-     * @param ray           the ray whose origin is used for distance calculation
-     * @return the closest point to the ray's origin
+     * A cone of rays around an ideal secondary ray of a rough surface, sampled by a grid of stratified cells
+     * over its cross-section. A pilot ray goes to one cell of every quarter of the grid first; when the pilots
+     * are traced, their colors decide whether the rest of the cells get rays too.
+     * <p>
+     * The pilots wait on the work stack between cone markers: the start marker saves the color traced so far,
+     * and the marker after every pilot takes the color of the pilot with all its secondary rays.
+     * </p>
      */
-    private Intersection findClosestIntersection(List<Intersection> intersections, Ray ray) {
-        Point origin = ray.getPoint(0);
-        Intersection closest = null;
-        double minDistance = Double.POSITIVE_INFINITY;
+    private static final class Cone {
+        /** The intersection */
+        private final Intersection intersection;
+        /** Direction of the ideal ray, the axes of the cross-section, and the normal */
+        private final Vector d, u, v, n;
+        /** The dot product of the ideal direction and the normal */
+        private final double side;
+        /** The radius of the cone at a unit distance */
+        private final double roughness;
+        /** Seed of the random sequence of the cone */
+        private final long seed;
+        /** Amount of grid cells along a side */
+        private final int cells;
+        /** The depth left for the cone rays */
+        private final int level;
+        /** The throughput of the cone */
+        private final Double3 kx;
+        /** The grid cell of every pilot, in row-major order */
+        private int[] pilots;
+        /** Color traced before the pilots */
+        private Color outer;
+        /** Color of the first pilot */
+        private Color first;
+        /** Sum of the colors of the traced pilots */
+        private Color sum = Color.BLACK;
+        /** Whether the colors of the traced pilots are all similar */
+        private boolean similar = true;
+        /** Amount of traced pilots */
+        private int traced;
+
+        /**
+         * Constructs a cone.
+         *
+         * @param intersection the intersection
+         * @param ideal        the perfect reflected or refracted ray
+         * @param roughness    the radius of the cone at a unit distance
+         * @param seed         the seed of the random sequence of the cone
+         * @param cells        the amount of grid cells along a side
+         * @param level        the depth left for the cone rays
+         * @param kx           the throughput of the cone
+         */
+        Cone(Intersection intersection, Ray ideal, double roughness, long seed, int cells, int level, Double3 kx) {
+            this.intersection = intersection;
+            d = ideal.getDirection();
+            n = intersection.getNormal();
+            // an orthonormal basis of the cone cross-section
+            u = d.crossProduct(Math.abs(d.getX()) < 0.5 ? Vector.AXIS_X : Vector.AXIS_Y).normalize();
+            v = d.crossProduct(u);
+            side = d.dotProduct(n);
+            this.roughness = roughness;
+            this.seed = seed;
+            this.cells = cells;
+            this.level = level;
+            this.kx = kx;
+        }
+
+        /**
+         * Constructs the ray of a grid cell, jittered within the cell.
+         *
+         * @param cell the cell, in row-major order
+         * @return the cone ray
+         */
+        Ray ray(int cell) {
+            return coneRay(intersection, d, u, v, n, side, roughness,
+                    (cell / cells + Sampler.uniform(seed, 2 * cell)) / cells,
+                    (cell % cells + Sampler.uniform(seed, 2 * cell + 1)) / cells);
+        }
 
-        for (Intersection i : intersections) {
-            double distance = i.point.distance(origin);
-            if (distance < minDistance) {
-                minDistance = distance;
-                closest = i;
+        /**
+         * Chooses a random pilot cell in every quarter of a grid of at least 3 cells along a side, and adds
+         * the pilot rays, with the whole throughput of the cone, and their markers to the work stack.
+         *
+         * @param stack the work stack
+         */
+        void pushPilots(WorkStack stack) {
+            pilots = new int[CONE_PILOTS];
+            int half = cells / 2, random = 2 * cells * cells;
+            for (int q = 0; q < CONE_PILOTS; ++q) {
+                int i = (q & 1) == 0 ? 0 : half, j = (q >> 1) == 0 ? 0 : half;
+                i += (int) (Sampler.uniform(seed, random + 2 * q) * ((q & 1) == 0 ? half : cells - half));
+                j += (int) (Sampler.uniform(seed, random + 2 * q + 1) * ((q >> 1) == 0 ? half : cells - half));
+                pilots[q] = i * cells + j;
             }
+            for (int q = CONE_PILOTS - 1; q >= 0; --q) {
+                stack.mark(this, CONE_PILOT);
+                stack.push(ray(pilots[q]), kx, level);
+            }
+            stack.mark(this, CONE_START);
         }
 
-        return closest;
-    }
+        /**
+         * Starts tracing the pilot rays.
+         *
+         * @param color the color traced so far
+         * @return the color to trace the pilots into
+         */
+        Color start(Color color) {
+            outer = color;
+            return Color.BLACK;
+        }
 
-    private boolean preprocessIntersection(Intersection intersection, Vector direction) {
-        intersection.rayDirection = direction;
-        intersection.normalBeforeHit = intersection.geometry.getNormal(intersection.point);
-//        if (intersection.rayDirection.dotProduct(intersection.normalBeforeHit) > 0)
-//            intersection.normalBeforeHit = intersection.normalBeforeHit.scale(-1);
-        intersection.rayNormalDotProduct = alignZero(direction.dotProduct(intersection.normalBeforeHit));
-        //System.out.println("✅ n·v = " + intersection.vNormal);
+        /**
+         * Ends tracing a pilot ray. After the last pilot, the cone is their mean color if their colors are
+         * similar, and otherwise the rest of the cells are added to the work stack and the pilots get
+         * a share of a cell each.
+         *
+         * @param stack the work stack
+         * @param color the color of the pilot ray, scaled by the throughput of the cone
+         * @return the color to trace the next rays into
+         */
+        Color end(WorkStack stack, Color color) {
+            if (first == null) first = color;
+            else similar &= color.iSimilar(first);
+            sum = sum.add(color);
+            if (++traced < CONE_PILOTS) return Color.BLACK;
+
+            if (similar) return outer.add(sum.reduce(CONE_PILOTS));
+            Double3 share = kx.scale(1.0 / (cells * cells));
+            for (int cell = 0; cell < cells * cells; ++cell)
+                if (!isPilot(cell)) stack.push(ray(cell), share, level);
+            return outer.add(sum.reduce(cells * cells));
+        }
 
-        return (intersection.rayNormalDotProduct != 0);
+        /**
+         * @param cell a grid cell, in row-major order
+         * @return true if a pilot ray went to the cell
+         */
+        private boolean isPilot(int cell) {
+            for (int pilot : pilots)
+                if (pilot == cell) return true;
+            return false;
+        }
     }
 
+    /** Maximal depth of the secondary rays */
+    private int maxLevel = MAX_CALC_COLOR_LEVEL;
 
-    private boolean setLightSource(Intersection intersection, LightSource lightSource) {
-        intersection.lightSource = lightSource;
-        intersection.lightDirection = lightSource.getL(intersection.point);
-        intersection.lightNormalDotProduct = alignZero(intersection.lightDirection.dotProduct(intersection.normalBeforeHit));
-        //System.out.println("✅ n·l = " + intersection.lightNormalDotProduct);
+    /** Work stacks of the rendering threads */
+    private final ThreadLocal<WorkStack> workStacks = ThreadLocal.withInitial(() -> new WorkStack(maxLevel + 2));
 
-        return intersection.lightNormalDotProduct * intersection.rayNormalDotProduct > 0;
+    /** Light intensity below which a light source is not evaluated at a point */
+    private double lightCutoff = DEFAULT_LIGHT_CUTOFF;
+
+    /** Amount of lights sampled from the light tree at every shaded point, 0 to evaluate all the lights */
+    private int lightSamples = 0;
+
+    /** Amount of shadow rays at every shaded point, 0 for a shadow ray per light */
+    private int shadowBudget = 0;
+
+    /** Amount of cone cells along a side for the reflected and refracted rays of a rough surface */
+    private int coneSamples = DEFAULT_CONE_SAMPLES;
+
+    /** Throughput below which the secondary rays play Russian roulette, 0 to cut them at {@link #MIN_CALC_COLOR_K} */
+    private double rouletteThreshold = 0;
+
+    /** Whether a surface both reflective and transparent continues its path by only one of its rays */
+    private boolean singleBranch = false;
+
+    /** Amount of caustic photons shot from the lights, 0 without caustics */
+    private int causticPhotons = 0;
+
+    /** Amount of nearest photons in the caustic estimate at a point */
+    private int causticNearest = DEFAULT_CAUSTIC_NEAREST;
+
+    /** Largest radius of the caustic estimate at a point */
+    private double causticRadius = 0;
+
+    /** Largest memory of the stored photons, in bytes */
+    private long photonMemory = DEFAULT_PHOTON_MEMORY;
+
+    /** Caustic photon map - shot on the first use after the caustic settings changed */
+    private volatile PhotonMap photonMap;
+
+    /** Index of the influence spheres of the light sources - rebuilt when the light list changes */
+    private volatile LightIndex lightIndex;
+
+    /** Last opaque occluder of every light source, per rendering thread */
+    private final ThreadLocal<Map<LightSource, Geometry>> occluders = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    /** Occlusion sinks of the rendering threads, reset for every shadow ray */
+    private final ThreadLocal<Occlusion> occlusions = ThreadLocal.withInitial(Occlusion::new);
+
+    public SimpleRayTracer(Scene scene) {
+        super(scene);
     }
 
+    /**
+     * Sets the maximal depth of the reflected and refracted rays. The rays are traced by a loop over
+     * a work stack, so the depth is not limited by the call stack.
+     *
+     * @param maxLevel the maximal amount of shaded intersections along a path of rays, the primary one included
+     * @return this ray tracer (for method chaining)
+     */
+    public SimpleRayTracer setMaxLevel(int maxLevel) {
+        if (maxLevel < 1) throw new IllegalArgumentException("Maximal depth must be positive");
+        this.maxLevel = maxLevel;
+        return this;
+    }
 
+    /**
+     * @return the maximal amount of shaded intersections along a path of rays
+     */
+    int getMaxLevel() {
+        return maxLevel;
+    }
 
     /**
-     * Calculates the overall transparency (ktr) from the intersection point to the light source.
-     * If the transparency drops below MIN_CALC_COLOR_K, the light is mostly blocked.
+     * Sets the light intensity below which a light source is skipped at a point, before its direction,
+     * its intensity or its shadow ray are calculated - e.g. out of the cone of a spot light, or
+     * too far for the attenuation of a point light.
      *
-     * @param intersection the intersection point to check for partial shadow
-     * @param light        the light source to test against
-     * @return the cumulative transparency (Double3) from the point to the light
+     * @param lightCutoff the intensity cutoff, 0 to skip only the lights that do not reach the point at all
+     * @return this ray tracer (for method chaining)
      */
-    private Double3 transparency(Intersection intersection, LightSource light) {
-        Vector l = light.getL(intersection.point);
-        Vector lightDirection = l.scale(-1);
-        Ray lightRay = new Ray(intersection.point, lightDirection, intersection.normalBeforeHit);
-        double lightDistance = light.getDistance(intersection.point);
+    public SimpleRayTracer setLightCutoff(double lightCutoff) {
+        if (lightCutoff < 0) throw new IllegalArgumentException("Light cutoff must not be negative");
+        this.lightCutoff = lightCutoff;
+        return this;
+    }
 
-        List<Intersection> intersections = scene.geometries.calculateIntersections(lightRay);
-        ////////////////////////////////////////////
-        //פונקציה שמסננת את כל מי שמעבר לlight s
-        if (intersections == null) return Double3.ONE;
+    /**
+     * Sets the amount of lights sampled at every shaded point from a hierarchy of the lights, in proportion
+     * to their estimated contribution - for scenes with many lights. The sampled lighting is unbiased, and
+     * its noise averages out over the samples of a pixel. Lights without a position are always evaluated.
+     *
+     * @param lightSamples the amount of sampled lights, 0 to evaluate all the lights
+     * @return this ray tracer (for method chaining)
+     */
+    public SimpleRayTracer setLightSamples(int lightSamples) {
+        if (lightSamples < 0) throw new IllegalArgumentException("Amount of light samples must not be negative");
+        this.lightSamples = lightSamples;
+        return this;
+    }
 
-        intersections = intersections.stream()
-                .filter(i -> i.point.distance(intersection.point) <= lightDistance)
-                .toList();
+    /**
+     * @return the amount of lights sampled at every shaded point, 0 if all the lights are evaluated
+     */
+    int getLightSamples() {
+        return lightSamples;
+    }
 
+    /**
+     * Sets the amount of shadow rays cast at every shaded point. The unshadowed lighting of every light
+     * is calculated, the strongest lights get their own shadow rays, and the last shadow ray goes to one
+     * of the other lights, sampled in proportion to its lighting - so a dozen lights cost a few shadow
+     * rays, and the estimate of the weaker lights stays unbiased. Light sampling, if set, takes precedence.
+     *
+     * @param shadowBudget the amount of shadow rays per shaded point, 0 for a shadow ray per light
+     * @return this ray tracer (for method chaining)
+     */
+    public SimpleRayTracer setShadowBudget(int shadowBudget) {
+        if (shadowBudget < 0) throw new IllegalArgumentException("Shadow ray budget must not be negative");
+        this.shadowBudget = shadowBudget;
+        return this;
+    }
 
-        if (intersections == null) return Double3.ONE;
+    /**
+     * @return the amount of shadow rays per shaded point, 0 for a shadow ray per light
+     */
+    int getShadowBudget() {
+        return shadowBudget;
+    }
 
-        Double3 ktr = Double3.ONE;
-        for (Intersection shadowIntersection : intersections) {
-            ktr = ktr.product(shadowIntersection.geometry.getMaterial().kT);
-            if (ktr.lowerThan(MIN_CALC_COLOR_K)) {
-                return Double3.ZERO;
-            }
-        }
-        return ktr;
+    /**
+     * Sets the amount of cone cells along a side for the reflected and refracted rays of a rough surface.
+     * A rough surface seen directly casts 4 pilot rays into its cone, and up to
+     * {@code coneSamples * coneSamples} rays where the colors of the pilots differ. The amount of cells
+     * along a side is halved with every bounce, so the rays of a path of rough surfaces do not multiply
+     * by the full amount at every bounce.
+     *
+     * @param coneSamples the amount of cone cells along a side, default 4
+     * @return this ray tracer (for method chaining)
+     */
+    public SimpleRayTracer setConeSamples(int coneSamples) {
+        if (coneSamples < 1) throw new IllegalArgumentException("Cone sampling needs at least one sample");
+        this.coneSamples = coneSamples;
+        return this;
     }
 
+    /**
+     * Sets Russian roulette for the secondary rays: a ray whose throughput is below the threshold in every
+     * color component is traced with a probability of its largest component over the threshold, and its
+     * throughput is divided by that probability. The expected color is the color of tracing every ray,
+     * while the faint rays - which are most of the rays of a deep path - are mostly dropped. Without
+     * roulette, the rays below {@link #MIN_CALC_COLOR_K} are dropped, which darkens the image a little.
+     * The maximal depth still bounds every path.
+     *
+     * @param rouletteThreshold the throughput threshold, from {@link #MIN_CALC_COLOR_K} to 1, or 0 to turn the roulette off
+     * @return this ray tracer (for method chaining)
+     */
+    public SimpleRayTracer setRussianRoulette(double rouletteThreshold) {
+        if (rouletteThreshold != 0 && (rouletteThreshold < MIN_CALC_COLOR_K || rouletteThreshold > 1))
+            throw new IllegalArgumentException("Roulette threshold must be 0 or between " + MIN_CALC_COLOR_K + " and 1");
+        this.rouletteThreshold = rouletteThreshold;
+        return this;
+    }
 
-    private Double3 calcDiffusive(Intersection intersection) {
-        return intersection.material.kD.scale(Math.abs(intersection.lightNormalDotProduct));
+    /**
+     * Sets whether a surface that both reflects and transmits light continues its path by only one of its
+     * rays, chosen in proportion to the strength of the reflection and the transparency, with its throughput
+     * divided by its probability. Every primary ray then has at most one secondary ray per bounce, so a
+     * pixel costs at most a ray per level instead of two to the power of the levels.
+     *
+     * @param singleBranch whether to follow one secondary ray per intersection
+     * @return this ray tracer (for method chaining)
+     */
+    public SimpleRayTracer setSingleBranch(boolean singleBranch) {
+        this.singleBranch = singleBranch;
+        return this;
     }
 
-    private Double3 calcSpecular(Intersection intersection) {
-        Vector r = intersection.lightDirection
-                .subtract(intersection.normalBeforeHit.scale(2 * intersection.lightNormalDotProduct));
-        double minusVR = -alignZero(intersection.rayDirection.dotProduct(r));
-        return minusVR <= 0 ? Double3.ZERO
-                : intersection.material.kS.scale(Math.pow(minusVR, intersection.material.nShininess));
+    /**
+     * Sets the caustics - the light that reaches a diffuse surface through mirror reflections, which the
+     * shadow rays cannot find. A photon map is shot from the lights that have a position before the first
+     * ray is traced, and the local shading of every diffuse point adds the irradiance of its nearest
+     * photons. The map is shot again after any caustic setting changes, not when the scene changes.
+     *
+     * @param causticPhotons the amount of photons shot from the lights, 0 to turn the caustics off
+     * @param causticRadius  the largest radius of the caustic estimate at a point, which blurs the caustics
+     *                       and bounds the reach of a photon
+     * @return this ray tracer (for method chaining)
+     */
+    public SimpleRayTracer setCaustics(int causticPhotons, double causticRadius) {
+        if (causticPhotons < 0) throw new IllegalArgumentException("Amount of caustic photons must not be negative");
+        if (causticPhotons > 0 && !(causticRadius > 0))
+            throw new IllegalArgumentException("Caustic radius must be positive");
+        this.causticPhotons = causticPhotons;
+        this.causticRadius = causticRadius;
+        photonMap = null;
+        return this;
     }
 
+    /**
+     * Sets the amount of nearest photons in the caustic estimate at a point. More photons give smoother
+     * and blurrier caustics.
+     *
+     * @param causticNearest the amount of nearest photons, default 64
+     * @return this ray tracer (for method chaining)
+     */
+    public SimpleRayTracer setCausticNearest(int causticNearest) {
+        if (causticNearest < 1) throw new IllegalArgumentException("Caustic estimate needs at least one photon");
+        this.causticNearest = causticNearest;
+        return this;
+    }
 
     /**
-     * Constructs a reflected ray from a given point and normal.
+     * Sets the largest memory of the caustic photon map. A photon takes {@value PhotonMap#PHOTON_BYTES}
+     * bytes, and when more photons are stored than fit, a random subset of them is kept with their power
+     * raised accordingly - the caustics get noisier, not darker.
      *
-     * @param intersection the intersection data (includes point, direction, normal)
-     * @return the reflected ray
+     * @param photonMemory the memory in bytes, default 64 MiB
+     * @return this ray tracer (for method chaining)
      */
-    private Ray constructReflectedRay(Intersection intersection) {
-        Vector v = intersection.rayDirection;
-        Vector n = intersection.normalBeforeHit;
-        Vector r = v.subtract(n.scale(2 * v.dotProduct(n))); // reflection direction
-        return new Ray(intersection.point, r, n);
+    public SimpleRayTracer setPhotonMemory(long photonMemory) {
+        if (photonMemory < PhotonMap.PHOTON_BYTES)
+            throw new IllegalArgumentException("Photon memory must hold at least one photon");
+        this.photonMemory = photonMemory;
+        photonMap = null;
+        return this;
     }
 
     /**
-     * Constructs a refracted ray (same direction, shifted by the normal).
+     * Returns the caustic photon map, shooting it if the caustic settings changed since.
      *
-     * @param intersection the intersection data
-     * @return the refracted ray
+     * @return the photon map, null without caustics
      */
-    private Ray constructRefractedRay(Intersection intersection) {
-        return new Ray(intersection.point, intersection.rayDirection, intersection.normalBeforeHit);
+    PhotonMap photonMap() {
+        if (causticPhotons == 0) return null;
+        PhotonMap map = photonMap;
+        if (map == null)
+            synchronized (this) {
+                map = photonMap;
+                if (map == null)
+                    photonMap = map = PhotonMap.shoot(this, causticPhotons,
+                            (int) Math.min(Integer.MAX_VALUE / 3, photonMemory / PhotonMap.PHOTON_BYTES), maxLevel);
+            }
+        return map;
     }
 
     /**
-     * Calculates the color at the point of intersection using recursive ray tracing.
-     * This method initializes the recursive calculation by setting the ray direction
-     * and invoking the detailed recursive method with the maximum allowed depth and initial attenuation.
+     * Calculates the caustic lighting of a diffuse point - the irradiance of the nearest photons scaled
+     * by the diffuse coefficient.
      *
-     * @param intersection the intersection data including the geometry and hit point
-     * @param ray          the original ray that caused the intersection
-     * @return the calculated color at the intersection point
+     * @param intersection the intersection
+     * @param map          the caustic photon map
+     * @return the caustic lighting
      */
-    private Color calcColor(Intersection intersection, Ray ray) {
-        intersection.rayDirection = ray.getDirection();
-        return calcColor(intersection, MAX_CALC_COLOR_LEVEL, INITIAL_K);
+    Color calcCaustics(Intersection intersection, PhotonMap map) {
+        Double3 kD = intersection.getMaterial().kD;
+        if (kD.max() == 0) return Color.BLACK;
+        return map.gather(intersection.point, intersection.getNormal(), intersection.rayNormalDotProduct,
+                causticNearest, causticRadius).scale(kD);
     }
 
     /**
-     * Calculates the color at the intersection point including ambient, local, and global lighting effects.
-     * Uses recursive ray tracing to add effects like reflection and refraction.
+     * Calculates the throughputs of the secondary rays of an intersection, with the single branch choice
+     * and the Russian roulette when they are set. The choices are random numbers of the point, so the
+     * wavefront renderer makes the same ones.
      *
-     * @param intersection the intersection point
-     * @param level        recursion depth (to limit the number of recursive calls)
-     * @param k            accumulated transparency/reflection attenuation factor
-     * @return the total calculated color at the intersection point
+     * @param intersection the intersection
+     * @param k            the throughput of the intersection's ray
+     * @return the throughput of the refracted ray at index 0 and of the reflected ray at index 1,
+     * {@code null} for a ray that is not traced
      */
-    private Color calcColor(Intersection intersection, int level, Double3 k) {
-        if (level == 0 || k.lowerThan(MIN_CALC_COLOR_K) || !preprocessIntersection(intersection, intersection.rayDirection)) {
-            return Color.BLACK;
+    Double3[] secondaryThroughputs(Intersection intersection, Double3 k) {
+        Material material = intersection.getMaterial();
+        Double3 kkt = k.product(material.kT);
+        Double3 kkr = k.product(material.kR);
+        if (!singleBranch && rouletteThreshold == 0)
+            return new Double3[]{kkt.lowerThan(MIN_CALC_COLOR_K) ? null : kkt,
+                    kkr.lowerThan(MIN_CALC_COLOR_K) ? null : kkr};
+
+        long seed = Sampler.seed(intersection.point) + 3;
+        double t = kkt.max(), r = kkr.max();
+        if (singleBranch && t > 0 && r > 0) {
+            // the other ray is dropped, and the chosen one carries the expected color of both
+            double pT = t / (t + r);
+            if (Sampler.uniform(seed, 0) < pT) {
+                kkt = kkt.scale(1 / pT);
+                kkr = Double3.ZERO;
+            } else {
+                kkr = kkr.scale(1 / (1 - pT));
+                kkt = Double3.ZERO;
+            }
         }
+        return new Double3[]{terminate(kkt, Sampler.uniform(seed, 1)), terminate(kkr, Sampler.uniform(seed, 2))};
+    }
 
-        Color ambientAndEmission = scene.ambientLight.getIntensity()
-                .scale(intersection.geometry.getMaterial().kA)
-                .add(intersection.geometry.getEmission());
-
-        Color localEffects = calcColorLocalEffects(intersection);
-        Color globalEffects = calcGlobalEffects(intersection, level, k);
-
-        return ambientAndEmission.add(localEffects).add(globalEffects);
-    }
-
-//    /**
-//     * constructs a refracted ray at a given intersection point.
-//     *
-//     * @param intersection the intersection point
-//     */
-//    public Ray constructRefractedRay(Intersection intersection)
-//    {
-//        return new Ray(intersection.point,intersection.v,intersection.normal);
-//    }
-//    /**
-//     * Constructs a reflected ray at a given intersection point.
-//     *
-//     * @param intersection the intersection point
-//     * @return the reflected ray
-//     */
-//    public Ray constructReflectedRay(Intersection intersection)
-//    {
-//        Vector r=intersection.v.subtract(intersection.normal.scale(intersection.vNormal).scale(2d)).normalize();
-//        return new Ray(intersection.point,r,intersection.normal);
-//    }
+    /**
+     * Decides whether a secondary ray is traced - by Russian roulette, or by {@link #MIN_CALC_COLOR_K}
+     * without it.
+     *
+     * @param kx the throughput of the ray
+     * @param u  a uniform random number in [0,1)
+     * @return the throughput of the traced ray, {@code null} if the ray is not traced
+     */
+    private Double3 terminate(Double3 kx, double u) {
+        if (rouletteThreshold == 0) return kx.lowerThan(MIN_CALC_COLOR_K) ? null : kx;
+        double strength = kx.max();
+        if (strength >= rouletteThreshold) return kx;
+        double survival = strength / rouletteThreshold;
+        return u < survival ? kx.scale(1 / survival) : null;
+    }
 
     /**
-     * Calculates the local lighting effects (diffuse and specular) at a given intersection point.
-     * Includes partial shadowing based on transparency (kt) of objects between the point and the light source.
+     * Chooses the lights that get a shadow ray within a budget: the strongest lights get one each, and the
+     * last one goes to a light sampled among the rest in proportion to its strength, weighted by the
+     * inverse of its probability.
      *
-     * @param intersection the intersection point to compute lighting for
-     * @return the color result of local lighting effects at the intersection
+     * @param strength the unshadowed lighting strength of every light, 0 for a light that does not reach the point
+     * @param budget   the amount of shadow rays
+     * @param seed     the seed of the random sequence of the point
+     * @return the weight of every light, 0 for a light without a shadow ray
      */
-    private Color calcColorLocalEffects(Intersection intersection) {
-        Color color = Color.BLACK; // Do not include emission here to avoid duplication
+    static double[] shadowWeights(double[] strength, int budget, long seed) {
+        int n = strength.length, lit = 0;
+        double[] weights = new double[n];
+        for (int i = 0; i < n; ++i)
+            if (strength[i] > 0) {
+                weights[i] = 1;
+                ++lit;
+            }
+        if (lit <= budget) return weights;
+
+        Arrays.fill(weights, 0);
+        for (int k = 0; k < budget - 1; ++k) {
+            int strongest = -1;
+            for (int i = 0; i < n; ++i)
+                if (weights[i] == 0 && strength[i] > 0 && (strongest < 0 || strength[i] > strength[strongest]))
+                    strongest = i;
+            weights[strongest] = 1;
+        }
+        double rest = 0;
+        for (int i = 0; i < n; ++i)
+            if (weights[i] == 0) rest += strength[i];
+        double target = Sampler.uniform(seed, 0) * rest;
+        int sampled = -1;
+        for (int i = 0; i < n; ++i) {
+            if (weights[i] != 0 || strength[i] <= 0) continue;
+            sampled = i;
+            target -= strength[i];
+            if (target < 0) break;
+        }
+        weights[sampled] = rest / strength[sampled];
+        return weights;
+    }
 
-        for (LightSource lightSource : scene.lights) {
-            Vector l = lightSource.getL(intersection.point);
-            Vector n = intersection.normalBeforeHit;
+    /**
+     * Returns the index of the light sources of the scene, indexing them again if the light list
+     * was replaced or resized since.
+     *
+     * @return the light index
+     */
+    LightIndex lightIndex() {
+        LightIndex index = lightIndex;
+        if (index == null || !index.indexes(scene.lights, lightCutoff))
+            lightIndex = index = new LightIndex(scene.lights, lightCutoff);
+        return index;
+    }
 
-            if (n.dotProduct(l) * intersection.rayDirection.dotProduct(n) <= 0)
-                continue; // Skip if angle is wrong between normal, light, and view
+    /**
+     * Traces a ray and all its reflected and refracted rays. Instead of recursion, the rays wait on a
+     * per-thread work stack and every ray adds its own shading, scaled by its throughput, to the color.
+     *
+     * @param ray the ray to trace
+     * @return the color of the ray
+     */
+    @Override
+    public Color traceRay(Ray ray) {
+        WorkStack stack = workStacks.get();
+        stack.size = 0;
+        photonMap();
+        stack.push(ray, INITIAL_K, maxLevel);
+        return trace(stack, 0);
+    }
 
-            if (!setLightSource(intersection, lightSource))
+    /**
+     * Traces the rays waiting on the work stack of the thread above a base entry, with all their reflected,
+     * refracted and cone rays, and leaves the entries below the base for their owner.
+     *
+     * @param stack the work stack
+     * @param base  the amount of entries that are not traced
+     * @return the color of the rays, scaled by their throughput
+     */
+    private Color trace(WorkStack stack, int base) {
+        Color color = Color.BLACK;
+        while (stack.size > base) {
+            int top = --stack.size;
+            Ray current = stack.rays[top];
+            Double3 kr = stack.throughputs[top];
+            int lr = stack.levels[top];
+            if (current == null) {
+                Cone cone = stack.cones[top];
+                stack.cones[top] = null;
+                color = lr == CONE_START ? cone.start(color) : cone.end(stack, color);
                 continue;
-            //Double3 ktr = transparency(intersection, lightSource);
-            intersection.lightSource = lightSource;
-            Double3 ktr = transparency(intersection);
-            if (ktr.lowerThan(MIN_CALC_COLOR_K))
+            }
+            stack.rays[top] = null;
+            stack.throughputs[top] = null;
+
+            Intersection intersection = findClosestIntersection(current);
+            if (intersection == null) {
+                color = color.add(scene.background.scale(kr));
+                continue;
+            }
+            if (lr == 0 || kr.lowerThan(MIN_CALC_COLOR_K) || !preprocessIntersection(intersection, current.getDirection()))
                 continue;
 
-            Color iL = lightSource.getIntensity(intersection.point).scale(ktr); // Scale by transparency
-            color = color.add(
-                    iL.scale(calcDiffusive(intersection)),
-                    iL.scale(calcSpecular(intersection))
-            );
+            Color local = scene.ambientLight.getIntensity()
+                    .scale(intersection.getMaterial().kA)
+                    .add(intersection.geometry.getEmission(), calcColorLocalEffects(intersection));
+            PhotonMap caustics = photonMap;
+            if (caustics != null) local = local.add(calcCaustics(intersection, caustics));
+            color = color.add(kr == INITIAL_K ? local : local.scale(kr));
+            pushSecondaryRays(stack, intersection, lr, kr);
         }
-
         return color;
     }
 
+    /**
+     * Adds the refracted and the reflected rays of an intersection to the work stack,
+     * unless their throughput is too low to matter. A rough surface adds the rays of its cones instead.
+     *
+     * @param stack        the work stack
+     * @param intersection the intersection
+     * @param level        the depth left for the intersection's ray
+     * @param k            the throughput of the intersection's ray
+     */
+    private void pushSecondaryRays(WorkStack stack, Intersection intersection, int level, Double3 k) {
+        Material material = intersection.getMaterial();
+        Double3[] kx = secondaryThroughputs(intersection, k);
+        if (kx[0] != null && material.roughnessT == 0) stack.push(constructRefractedRay(intersection), kx[0], level - 1);
+        if (kx[1] != null && material.roughnessR == 0) stack.push(constructReflectedRay(intersection), kx[1], level - 1);
+        pushGlossyRays(stack, intersection, level, kx);
+    }
 
+    /**
+     * Adds the cone rays of the blurred reflection and the frosted transparency of a rough surface
+     * to the work stack.
+     *
+     * @param stack        the work stack
+     * @param intersection the intersection
+     * @param level        the depth left for the intersection's ray
+     * @param kx           the throughputs of the secondary rays, by {@link #secondaryThroughputs}
+     */
+    private void pushGlossyRays(WorkStack stack, Intersection intersection, int level, Double3[] kx) {
+        Material material = intersection.getMaterial();
+        if (kx[0] != null && material.roughnessT > 0)
+            pushCone(stack, intersection, constructRefractedRay(intersection), material.roughnessT, level - 1, kx[0], 1);
+        if (kx[1] != null && material.roughnessR > 0)
+            pushCone(stack, intersection, constructReflectedRay(intersection), material.roughnessR, level - 1, kx[1], 2);
+    }
 
+    /**
+     * Calculates the blurred reflection and the frosted transparency of a rough surface - traces its cone rays
+     * above the entries waiting on the work stack of the thread.
+     *
+     * @param intersection the intersection
+     * @param level        the depth left for the intersection's ray
+     * @param kx           the throughputs of the secondary rays, by {@link #secondaryThroughputs}
+     * @return the color of the cone rays, scaled by their throughput
+     */
+    Color calcGlossyEffects(Intersection intersection, int level, Double3[] kx) {
+        WorkStack stack = workStacks.get();
+        int base = stack.size;
+        pushGlossyRays(stack, intersection, level, kx);
+        return trace(stack, base);
+    }
+
+    /**
+     * Adds the rays of a cone around an ideal secondary ray to the work stack, by stratified sampling of the
+     * cone cross-section - a ray to every cell of a grid over the cone, each with an equal share of the
+     * throughput, so their sum is the mean color of the cone.
+     * <p>
+     * The grid side is halved with the depth of the rays, and halved again while a share of the throughput
+     * would be too low to matter, so faint cones and deep bounces get a single ray. A grid of at least 3 cells
+     * along a side gets 4 pilot rays first, and the rest of its cells only if the colors of the pilots differ,
+     * like the adaptive super sampling of the camera - so a uniform region of a rough surface costs 4 rays.
+     * </p>
+     *
+     * @param stack        the work stack
+     * @param intersection the intersection
+     * @param ideal        the perfect reflected or refracted ray
+     * @param roughness    the radius of the cone at a unit distance
+     * @param level        the depth left for the cone rays
+     * @param kx           the throughput of the cone
+     * @param lobe         the random sequence of the cone at the point - 1 for refraction, 2 for reflection
+     */
+    private void pushCone(WorkStack stack, Intersection intersection, Ray ideal, double roughness, int level,
+                          Double3 kx, int lobe) {
+        if (kx.lowerThan(MIN_CALC_COLOR_K)) return;
+        long seed = Sampler.seed(intersection.point) + lobe;
+        int cells = Math.max(1, coneSamples >> (maxLevel - 1 - level));
+        while (cells > 1 && kx.max() / (cells * cells) < MIN_CALC_COLOR_K) cells >>= 1;
+        Cone cone = new Cone(intersection, ideal, roughness, seed, cells, level, kx);
+        if (cells > 2) {
+            cone.pushPilots(stack);
+            return;
+        }
+        Double3 share = cells == 1 ? kx : kx.scale(1.0 / (cells * cells));
+        for (int cell = 0; cell < cells * cells; ++cell) stack.push(cone.ray(cell), share, level);
+    }
 
     /**
-     * Calculates the global lighting effects (reflection and refraction)
-     * by tracing secondary rays recursively and combining their color.
+     * Constructs a ray of a cone. The cross-section of the cone is mapped from the unit square by polar
+     * coordinates - the square root of the first coordinate is the radius - so equal cells of the square
+     * get equal areas. A ray that crosses the surface is mirrored back to the side of the ideal ray.
      *
-     * @param intersection the point of intersection
-     * @param level        the current recursion depth
-     * @param k            the current accumulated attenuation factor
-     * @return the combined color from global effects
+     * @param intersection the intersection
+     * @param d            the direction of the ideal ray
+     * @param u            first axis of the cross-section
+     * @param v            second axis of the cross-section
+     * @param n            the normal at the intersection
+     * @param side         the dot product of the ideal direction and the normal
+     * @param roughness    the radius of the cone at a unit distance
+     * @param a            first coordinate in the unit square
+     * @param b            second coordinate in the unit square
+     * @return the cone ray
      */
-    private Color calcGlobalEffects(Intersection intersection, int level, Double3 k) {
-        Vector normal = intersection.normalBeforeHit;
-        Ray reflectedRay = constructReflectedRay(intersection);
-        Ray refractedRay = constructRefractedRay(intersection);
+    static Ray coneRay(Intersection intersection, Vector d, Vector u, Vector v, Vector n, double side,
+                       double roughness, double a, double b) {
+        double r = roughness * Math.sqrt(a), phi = 2 * Math.PI * b;
+        double cu = r * Math.cos(phi), cv = r * Math.sin(phi);
+        double x = d.getX() + cu * u.getX() + cv * v.getX();
+        double y = d.getY() + cu * u.getY() + cv * v.getY();
+        double z = d.getZ() + cu * u.getZ() + cv * v.getZ();
+        double dn = x * n.getX() + y * n.getY() + z * n.getZ();
+        if (dn * side < 0) {
+            x -= 2 * dn * n.getX();
+            y -= 2 * dn * n.getY();
+            z -= 2 * dn * n.getZ();
+        }
+        return new Ray(intersection.point, Vector.normalized(x, y, z), n, intersection.travelled);
+    }
+
+    boolean preprocessIntersection(Intersection intersection, Vector direction) {
+        intersection.rayDirection = direction;
+        intersection.rayNormalDotProduct = alignZero(direction.dotProduct(intersection.getNormal()));
+
+        return (intersection.rayNormalDotProduct != 0);
+    }
 
-        Material material = intersection.geometry.getMaterial();
 
-        Color reflectedColor = calcGlobalEffect(reflectedRay, level,k, material.kR);
-        Color refractedColor = calcGlobalEffect(refractedRay, level,k, material.kT);
-        //System.out.println("Local color: " + reflectedColor.add(refractedColor));//*********************************************************************************
+    boolean setLightSource(Intersection intersection, LightSource lightSource) {
+        intersection.lightSource = lightSource;
+        intersection.lightDirection = lightSource.getL(intersection.point);
+        intersection.lightNormalDotProduct =
+                alignZero(intersection.lightDirection.dotProduct(intersection.getNormal()));
+
+        return intersection.lightNormalDotProduct * intersection.rayNormalDotProduct > 0;
+    }
 
-        return reflectedColor.add(refractedColor);
+    Double3 calcDiffusive(Intersection intersection) {
+        return intersection.getMaterial().kD.scale(Math.abs(intersection.lightNormalDotProduct));
     }
 
-//    /**
-//     * Calculates the global effect (reflection or refraction) by tracing a secondary ray.
-//     *
-//     * @param ray   the secondary ray (reflected or refracted)
-//     * @param level recursion level
-//     * @param k     accumulated attenuation so far
-//     * @param kx    the transparency/reflection coefficient of the geometry
-//     * @return the color contribution from the global effect
-//     */
-//    private Color calcGlobalEffect(Ray ray, int level, Double3 k, Double3 kx) {
-//        Intersection intersection = findClosestIntersection(ray);
-//        if (intersection == null) {
-//            return scene.background;
-//        }
-//
-//        // Ensure the ray direction is recorded for this intersection
-//        intersection.rayDirection = ray.getDirection();
-//
-//        return calcColor(intersection, level - 1, k.product(kx)).scale(kx);
-//    }
+    Double3 calcSpecular(Intersection intersection) {
+        Vector l = intersection.lightDirection, n = intersection.getNormal(), v = intersection.rayDirection;
+        // r = l - 2(l·n)n, computed in place
+        double ln2 = 2 * intersection.lightNormalDotProduct;
+        double minusVR = -alignZero(v.getX() * (l.getX() - n.getX() * ln2) + v.getY() * (l.getY() - n.getY() * ln2)
+                + v.getZ() * (l.getZ() - n.getZ() * ln2));
+        return minusVR <= 0 ? Double3.ZERO
+                : intersection.getMaterial().kS.scale(Math.pow(minusVR, intersection.getMaterial().nShininess));
+    }
 
 
     /**
-     * Calculates the global lighting effect (reflection or transparency) recursively.
+     * Constructs a reflected ray from a given point and normal.
      *
-     * @param ray the secondary ray (reflection or transparency)
-     * @param level the current recursion depth
-     * @param k the accumulated attenuation coefficient
-     * @param kx the reflection/transparency coefficient of the current geometry
-     * @return the color contribution from the global effect
+     * @param intersection the intersection data (includes point, direction, normal)
+     * @return the reflected ray
      */
-    private Color calcGlobalEffect(Ray ray, int level, Double3 k, Double3 kx) {
-        Double3 kkx = k.product(kx);
-        if (kkx.lowerThan(MIN_CALC_COLOR_K)) {
-            return Color.BLACK;
+    Ray constructReflectedRay(Intersection intersection) {
+        Vector v = intersection.rayDirection;
+        Vector n = intersection.getNormal();
+        double vn2 = 2 * v.dotProduct(n);
+        Vector r = Vector.normalized(v.getX() - n.getX() * vn2, v.getY() - n.getY() * vn2, v.getZ() - n.getZ() * vn2); // reflection direction
+        return new Ray(intersection.point, r, n, intersection.travelled);
+    }
+
+    /**
+     * Constructs a refracted ray (same direction, shifted by the normal).
+     *
+     * @param intersection the intersection data
+     * @return the refracted ray
+     */
+    Ray constructRefractedRay(Intersection intersection) {
+        return new Ray(intersection.point, intersection.rayDirection, intersection.getNormal(),
+                intersection.travelled);
+    }
+
+    /**
+     * Calculates the local lighting effects (diffuse and specular) at a given intersection point.
+     * Includes partial shadowing based on transparency (kt) of objects between the point and the light source.
+     * With light sampling, a fixed amount of lights is sampled from the light tree instead of evaluating
+     * every light that has a position, and with a shadow ray budget only some of the lights cast shadow rays.
+     *
+     * @param intersection the intersection point to compute lighting for
+     * @return the color result of local lighting effects at the intersection
+     */
+    private Color calcColorLocalEffects(Intersection intersection) {
+        Color color = Color.BLACK; // Do not include emission here to avoid duplication
+
+        LightIndex lights = lightIndex();
+        LightTree tree = lightSamples == 0 ? null : lights.tree();
+        if (tree == null && shadowBudget > 0) return calcColorBudgeted(intersection, lights);
+        for (int l : tree == null ? lights.candidates(intersection.point) : lights.untreed())
+            color = addLight(color, intersection, lights, l, 1);
+        if (tree == null) return color;
+
+        // every sample is the lighting of one light over its probability, so their mean estimates the sum
+        long seed = Sampler.seed(intersection.point);
+        double[] probability = new double[1];
+        for (int s = 0; s < lightSamples; ++s) {
+            int l = tree.sample(intersection.point, Sampler.uniform(seed, s), probability);
+            color = addLight(color, intersection, lights, l, 1 / (lightSamples * probability[0]));
         }
+        return color;
+    }
 
-        Intersection intersection = findClosestIntersection(ray);
-        if (intersection == null) {
-            return scene.background.scale(kx);
+    /**
+     * Calculates the local lighting effects with a budget of shadow rays: the unshadowed lighting of
+     * all the lights, and shadow rays only for the lights chosen by {@link #shadowWeights}.
+     *
+     * @param intersection the intersection point to compute lighting for
+     * @param lights       the lights of the scene
+     * @return the color result of local lighting effects at the intersection
+     */
+    private Color calcColorBudgeted(Intersection intersection, LightIndex lights) {
+        Point point = intersection.point;
+        int[] candidates = lights.candidates(point);
+        Color[] unshadowed = new Color[candidates.length];
+        double[] strength = new double[candidates.length];
+        for (int c = 0; c < candidates.length; ++c) {
+            int l = candidates[c];
+            if (!lights.mayIlluminate(l, point) || !setLightSource(intersection, lights.get(l))) continue;
+            Color iL = lights.get(l).getIntensity(point);
+            unshadowed[c] = iL.scale(calcDiffusive(intersection)).add(iL.scale(calcSpecular(intersection)));
+            strength[c] = unshadowed[c].max();
         }
 
-        // Store the ray's direction in the intersection object
-        intersection.rayDirection = ray.getDirection();
-
-        return calcColor(intersection, level - 1, kkx).scale(kx);
-    }
-
-
-
-//    /**
-//     * Calculates the global effect of light on a given ray.
-//     * @param ray the ray to trace
-//     * @param kx the k value for color calculations
-//     * @param level the recursion level
-//     * @param k the k value for color calculations
-//     * @return the color at the intersection point
-//     */
-//    private Color calcGlobalEffect(Ray ray,Double3 kx,int level,Double3 k)
-//    {
-//        Double3 kkx = k.product(kx);
-//        if (kkx.lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK;
-//        Intersection closestIntersection = findClosestIntersection(ray);
-//        if (closestIntersection == null) return scene.background.scale(kx);
-//        return preprocessIntersection(closestIntersection,ray.getDirection())?
-//                calcColor(closestIntersection, level - 1, kkx).scale(kx)
-//                : Color.BLACK;
-//    }
-
-
-//    /**
-//     * Calculates the shadow intensity at a given intersection point.
-//     * note: this function is not used in the current implementation,
-//     *       it is replaced by the transparency function.
-//     *
-//     * @param intersection the intersection point
-//     * @return the shadow intensity
-//     */
-//    @SuppressWarnings("unused")
-//    private boolean unshaded(Intersection intersection)
-//    {
-//        Vector lightDirection = intersection.lightDirection.scale(-1);
-//        Ray lightRay = new Ray(intersection.point, lightDirection,intersection.normal);
-//        List<Intersection> intersections = scene.geometries.calculateIntersections(lightRay);
-//        if(intersections == null) return true; // no intersection with any geometry
-//        // Check if the light source is blocked by any other geometry
-//        double distance = intersection.light.getDistance(lightRay.getHead());
-//        for (Intersection i : intersections) {
-//            if (i.point.distance(lightRay.getHead())<distance&&
-//                    i.material.kT.lowerThan(MIN_CALC_COLOR_K)) return false;
-//        }
-//        return true;
-//    }
+        double[] weights = shadowWeights(strength, shadowBudget, Sampler.seed(point));
+        Color color = Color.BLACK;
+        for (int c = 0; c < candidates.length; ++c) {
+            if (weights[c] == 0) continue;
+            setLightSource(intersection, lights.get(candidates[c]));
+            Double3 ktr = transparency(intersection);
+            if (ktr.lowerThan(MIN_CALC_COLOR_K)) continue;
+            Color light = unshadowed[c].scale(ktr);
+            color = color.add(weights[c] == 1 ? light : light.scale(weights[c]));
+        }
+        return color;
+    }
+
+    /**
+     * Adds the diffuse and specular lighting of one light source at an intersection point.
+     *
+     * @param color        the lighting so far
+     * @param intersection the intersection point
+     * @param lights       the lights of the scene
+     * @param l            the light index
+     * @param weight       the weight of the light - 1, or the inverse probability of a sampled light
+     * @return the lighting with the light added
+     */
+    private Color addLight(Color color, Intersection intersection, LightIndex lights, int l, double weight) {
+        // Skip lights below the cutoff at the point, before any direction, intensity or shadow ray
+        if (!lights.mayIlluminate(l, intersection.point)) return color;
+        LightSource lightSource = lights.get(l);
+        // Skip if angle is wrong between normal, light, and view
+        if (!setLightSource(intersection, lightSource)) return color;
+        Double3 ktr = transparency(intersection);
+        if (ktr.lowerThan(MIN_CALC_COLOR_K)) return color;
+
+        Color iL = lightSource.getIntensity(intersection.point).scale(ktr); // Scale by transparency
+        if (weight != 1) iL = iL.scale(weight);
+        return color.add(iL.scale(calcDiffusive(intersection)), iL.scale(calcSpecular(intersection)));
+    }
 }
\ No newline at end of file
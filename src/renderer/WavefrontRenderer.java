@@ -0,0 +1,611 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import lighting.LightSource;
+import primitives.*;
+import scene.Scene;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import static renderer.SimpleRayTracer.INITIAL_K;
+import static renderer.SimpleRayTracer.MIN_CALC_COLOR_K;
+
+/**
+ * Wavefront renderer - traces the rays of a whole wave of pixels together, stage by stage, instead of
+ * tracing the full tree of rays of one pixel before the next pixel.
+ * <p>
+ * The stages are: generate the primary rays, intersect, shade and spawn the shadow rays, intersect the
+ * shadow rays, accumulate, and spawn the reflected and refracted rays, which run through the stages
+ * again until none is left. The rays wait in struct-of-arrays queues, and every stage is one homogeneous
+ * loop over a queue, split among the cores. Only the accumulation runs on one thread, since several rays
+ * add to the same pixel. The shading is the shading of {@link SimpleRayTracer}.
+ * </p>
+ * <p>
+ * The reflected and refracted rays scatter in all directions, so before every bounce they are sorted
+ * by the octant of their direction and by the Morton code of their head: neighboring entries of the
+ * queue then traverse the same parts of the acceleration structures while those are still cached.
+ * </p>
+ */
+final class WavefrontRenderer {
+    /** Amount of pixels traced together */
+    static final int WAVE_SIZE = 1 << 16;
+    /** Amount of queue entries in one parallel task */
+    private static final int CHUNK = 256;
+    /** Amount of bits of every ray head coordinate in the Morton code */
+    private static final int MORTON_BITS = 9;
+    /** Largest amount of shadow rays queued together - the path rays of a wave spawn theirs in batches */
+    static final int SHADOW_BATCH = 1 << 18;
+
+    /** The ray tracer whose shading is used */
+    private final SimpleRayTracer tracer;
+    /** The scene */
+    private final Scene scene;
+    /** Whether the stages are split among the cores */
+    private final boolean parallel;
+    /** Whether the reflected and refracted rays are sorted before they are traced */
+    private boolean reorder = true;
+
+    /**
+     * Queue of path rays - primary, reflected and refracted rays - with the results of their stages.
+     */
+    private static final class PathQueue {
+        /** Ray heads - X, Y, Z columns */
+        double[] ox, oy, oz;
+        /** Unit ray directions - X, Y, Z columns */
+        double[] dx, dy, dz;
+        /** Distance the pixel cone of every ray travelled before its head */
+        double[] travelled;
+        /** Index of the pixel in the wave, -1 for an empty entry */
+        int[] pixel;
+        /** Depth left for every ray */
+        int[] level;
+        /** Throughput of every ray - the product of the reflection and transparency coefficients along its path */
+        Double3[] throughput;
+        /** Closest intersection of every ray, kept only if the intersection was shaded */
+        Intersection[] hit;
+        /** Emission, ambient light or background added by every ray */
+        Color[] contribution;
+        /** Amount of shadow ray entries of every ray */
+        int[] shadowCount;
+        /** First shadow ray entry of every ray in the shadow queue of its batch */
+        int[] shadowOffset;
+        /** Sorting keys of the entries, allocated on the first sort */
+        long[] keys;
+        /** Amount of entries */
+        int size;
+
+        /**
+         * @param capacity initial amount of entries
+         */
+        PathQueue(int capacity) {
+            allocate(capacity);
+        }
+
+        /**
+         * Allocates the columns.
+         *
+         * @param capacity amount of entries
+         */
+        private void allocate(int capacity) {
+            ox = new double[capacity];
+            oy = new double[capacity];
+            oz = new double[capacity];
+            dx = new double[capacity];
+            dy = new double[capacity];
+            dz = new double[capacity];
+            travelled = new double[capacity];
+            pixel = new int[capacity];
+            level = new int[capacity];
+            throughput = new Double3[capacity];
+            hit = new Intersection[capacity];
+            contribution = new Color[capacity];
+            shadowCount = new int[capacity];
+            shadowOffset = new int[capacity];
+        }
+
+        /**
+         * Empties the queue and makes room for entries, all of them marked empty.
+         *
+         * @param capacity amount of entries
+         */
+        void reset(int capacity) {
+            if (pixel.length < capacity) allocate(Math.max(capacity, 2 * pixel.length));
+            Arrays.fill(pixel, 0, capacity, -1);
+            Arrays.fill(hit, 0, capacity, null);
+            Arrays.fill(contribution, 0, capacity, null);
+            size = capacity;
+        }
+
+        /**
+         * Sets an entry.
+         *
+         * @param i     the entry
+         * @param ray   the ray
+         * @param p     the pixel index in the wave
+         * @param depth the depth left
+         * @param k     the throughput
+         */
+        void set(int i, Ray ray, int p, int depth, Double3 k) {
+            Point head = ray.getHead();
+            Vector direction = ray.getDirection();
+            ox[i] = head.getX();
+            oy[i] = head.getY();
+            oz[i] = head.getZ();
+            dx[i] = direction.getX();
+            dy[i] = direction.getY();
+            dz[i] = direction.getZ();
+            travelled[i] = ray.getTravelled();
+            pixel[i] = p;
+            level[i] = depth;
+            throughput[i] = k;
+        }
+
+        /**
+         * @param i the entry
+         * @return the ray of the entry
+         */
+        Ray ray(int i) {
+            return new Ray(new Point(ox[i], oy[i], oz[i]), Vector.normalized(dx[i], dy[i], dz[i]), travelled[i]);
+        }
+
+        /**
+         * Moves the non-empty entries to the front of the queue, in their order.
+         */
+        void compact() {
+            int n = 0;
+            for (int i = 0; i < size; ++i) {
+                if (pixel[i] < 0) continue;
+                ox[n] = ox[i];
+                oy[n] = oy[i];
+                oz[n] = oz[i];
+                dx[n] = dx[i];
+                dy[n] = dy[i];
+                dz[n] = dz[i];
+                travelled[n] = travelled[i];
+                pixel[n] = pixel[i];
+                level[n] = level[i];
+                throughput[n++] = throughput[i];
+            }
+            size = n;
+        }
+
+        /**
+         * Copies the entries into another queue, sorted by the octant of the ray direction and then by
+         * the Morton code of the ray head within the bounds of the heads, so rays leaving nearby points in
+         * similar directions follow one another and visit the same nodes of the acceleration structures.
+         *
+         * @param target   receives the entries
+         * @param parallel whether to sort on all the cores
+         */
+        void sortInto(PathQueue target, boolean parallel) {
+            if (target.pixel.length < size) target.allocate(Math.max(size, 2 * target.pixel.length));
+            if (keys == null || keys.length < size) keys = new long[Math.max(size, pixel.length)];
+            double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+            for (int i = 0; i < size; ++i) {
+                minX = Math.min(minX, ox[i]);
+                maxX = Math.max(maxX, ox[i]);
+                minY = Math.min(minY, oy[i]);
+                maxY = Math.max(maxY, oy[i]);
+                minZ = Math.min(minZ, oz[i]);
+                maxZ = Math.max(maxZ, oz[i]);
+            }
+            double scale = (1 << MORTON_BITS) - 1;
+            double sx = maxX > minX ? scale / (maxX - minX) : 0;
+            double sy = maxY > minY ? scale / (maxY - minY) : 0;
+            double sz = maxZ > minZ ? scale / (maxZ - minZ) : 0;
+            // the key is above the entry index, so the keys are unique and the order is deterministic
+            for (int i = 0; i < size; ++i) {
+                long octant = (dx[i] < 0 ? 4 : 0) | (dy[i] < 0 ? 2 : 0) | (dz[i] < 0 ? 1 : 0);
+                long morton = spread((int) ((ox[i] - minX) * sx)) << 2
+                        | spread((int) ((oy[i] - minY) * sy)) << 1
+                        | spread((int) ((oz[i] - minZ) * sz));
+                keys[i] = (octant << 3 * MORTON_BITS | morton) << 32 | i;
+            }
+            if (parallel) Arrays.parallelSort(keys, 0, size);
+            else Arrays.sort(keys, 0, size);
+            for (int n = 0; n < size; ++n) {
+                int i = (int) keys[n];
+                target.ox[n] = ox[i];
+                target.oy[n] = oy[i];
+                target.oz[n] = oz[i];
+                target.dx[n] = dx[i];
+                target.dy[n] = dy[i];
+                target.dz[n] = dz[i];
+                target.travelled[n] = travelled[i];
+                target.pixel[n] = pixel[i];
+                target.level[n] = level[i];
+                target.throughput[n] = throughput[i];
+                target.hit[n] = null;
+                target.contribution[n] = null;
+            }
+            target.size = size;
+        }
+
+        /**
+         * Spreads the bits of a coordinate apart, two zero bits after each bit, for the Morton code.
+         *
+         * @param value the quantized coordinate
+         * @return the spread bits
+         */
+        private static long spread(int value) {
+            long x = value & ((1 << MORTON_BITS) - 1);
+            x = (x | x << 16) & 0x030000FFL;
+            x = (x | x << 8) & 0x0300F00FL;
+            x = (x | x << 4) & 0x030C30C3L;
+            return (x | x << 2) & 0x09249249L;
+        }
+    }
+
+    /**
+     * Queue of shadow rays - one per shaded intersection and candidate light source - with the lighting
+     * they carry if the light is not blocked.
+     */
+    private static final class ShadowQueue {
+        /** Ray heads - X, Y, Z columns */
+        double[] ox, oy, oz;
+        /** Unit ray directions - X, Y, Z columns */
+        double[] dx, dy, dz;
+        /** Distance the pixel cone of every shadow ray travelled before its head */
+        double[] travelled;
+        /** The shaded points - X, Y, Z columns */
+        double[] px, py, pz;
+        /** The normals at the shaded points - X, Y, Z columns */
+        double[] nx, ny, nz;
+        /** Distance from the shaded point to the light source */
+        double[] lightDistance;
+        /** Index of the pixel in the wave, -1 for an empty entry */
+        int[] pixel;
+        /** The light source of every shadow ray */
+        LightSource[] light;
+        /** Weight of the light of every shadow ray - 1, or the inverse probability of a sampled light */
+        double[] weight;
+        /** Throughput of the path ray that reached the shaded point */
+        Double3[] throughput;
+        /** Light intensity at the shaded point */
+        Color[] intensity;
+        /** Diffuse and specular factors of the light */
+        Double3[] diffusive, specular;
+        /** Transparency along the shadow ray */
+        Double3[] ktr;
+        /** Amount of entries */
+        int size;
+
+        /**
+         * Empties the queue and makes room for entries, all of them marked empty.
+         *
+         * @param capacity amount of entries
+         */
+        void reset(int capacity) {
+            if (pixel == null || pixel.length < capacity) {
+                int length = pixel == null ? capacity : Math.max(capacity, 2 * pixel.length);
+                ox = new double[length];
+                oy = new double[length];
+                oz = new double[length];
+                dx = new double[length];
+                dy = new double[length];
+                dz = new double[length];
+                travelled = new double[length];
+                px = new double[length];
+                py = new double[length];
+                pz = new double[length];
+                nx = new double[length];
+                ny = new double[length];
+                nz = new double[length];
+                lightDistance = new double[length];
+                pixel = new int[length];
+                light = new LightSource[length];
+                weight = new double[length];
+                throughput = new Double3[length];
+                intensity = new Color[length];
+                diffusive = new Double3[length];
+                specular = new Double3[length];
+                ktr = new Double3[length];
+            }
+            Arrays.fill(pixel, 0, capacity, -1);
+            size = capacity;
+        }
+
+        /**
+         * @param i the entry
+         * @return the shadow ray of the entry
+         */
+        Ray ray(int i) {
+            return new Ray(new Point(ox[i], oy[i], oz[i]), Vector.normalized(dx[i], dy[i], dz[i]), travelled[i]);
+        }
+    }
+
+    /**
+     * Constructs a wavefront renderer.
+     *
+     * @param tracer   the ray tracer whose shading is used
+     * @param parallel whether to split the stages among the cores
+     */
+    WavefrontRenderer(SimpleRayTracer tracer, boolean parallel) {
+        this.tracer = tracer;
+        this.scene = tracer.scene;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Sets whether the reflected and refracted rays of every bounce are sorted by direction and
+     * origin before they are traced, which keeps rays of similar paths together.
+     *
+     * @param reorder whether to sort the secondary rays
+     * @return this renderer (for method chaining)
+     */
+    WavefrontRenderer setReorder(boolean reorder) {
+        this.reorder = reorder;
+        return this;
+    }
+
+    /**
+     * Renders a wave of pixels, in row-major order of the image.
+     *
+     * @param camera the camera
+     * @param nX     image width in pixels
+     * @param nY     image height in pixels
+     * @param from   first pixel index
+     * @param to     end of the pixel indices (exclusive)
+     * @return the pixel colors, indexed from the first pixel
+     */
+    Color[] render(Camera camera, int nX, int nY, int from, int to) {
+        int count = to - from;
+        Color[] pixels = new Color[count];
+        Arrays.fill(pixels, Color.BLACK);
+        LightIndex lights = tracer.lightIndex();
+        PathQueue primary = new PathQueue(count);
+        ShadowQueue shadows = new ShadowQueue();
+
+        // generate the primary rays
+        primary.reset(count);
+        int maxLevel = tracer.getMaxLevel();
+        forEach(count, i -> primary.set(i, camera.constructRay(nX, nY, (from + i) % nX, (from + i) / nX),
+                i, maxLevel, INITIAL_K));
+
+        PathQueue paths = primary, next = new PathQueue(2 * count);
+        while (paths.size > 0) {
+            PathQueue queue = paths, spawned = next;
+            int n = queue.size;
+            // intersect
+            forEach(n, i -> queue.hit[i] = tracer.findClosestIntersection(queue.ray(i)));
+            // shade, counting the shadow rays of every path ray
+            forEach(n, i -> shade(queue, i, lights));
+            accumulate(queue, pixels);
+            // the shadow rays of consecutive path rays are spawned, intersected and accumulated in batches,
+            // each path ray getting entries only for its candidate lights
+            for (int first = 0; first < n; ) {
+                int last = first, slots = 0;
+                while (last < n && (last == first || slots + queue.shadowCount[last] <= SHADOW_BATCH)) {
+                    queue.shadowOffset[last] = slots;
+                    slots += queue.shadowCount[last++];
+                }
+                if (slots > 0) {
+                    int batch = first;
+                    shadows.reset(slots);
+                    forEach(last - first, b -> spawnShadows(queue, batch + b, lights, shadows));
+                    // intersect the shadow rays - an area light traces the rays of its soft shadow here
+                    forEach(shadows.size, j -> {
+                        if (shadows.pixel[j] >= 0)
+                            shadows.ktr[j] = tracer.transparency(shadows.light[j], shadows.ray(j),
+                                    new Point(shadows.px[j], shadows.py[j], shadows.pz[j]),
+                                    new Vector(shadows.nx[j], shadows.ny[j], shadows.nz[j]), shadows.lightDistance[j]);
+                    });
+                    accumulate(shadows, pixels);
+                }
+                first = last;
+            }
+            // spawn the reflected and the refracted rays
+            spawned.reset(2 * n);
+            forEach(n, i -> spawn(queue, i, spawned));
+            spawned.compact();
+            if (reorder && spawned.size > 1)
+                spawned.sortInto(queue, parallel); // the traced queue is free, so it receives the sorted rays
+            else {
+                paths = spawned;
+                next = queue;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Shading stage of one path ray: records the emission, the ambient light and the caustics (or the background
+     * for a missing ray) and counts the shadow rays of the shaded point - one per candidate light, and one per
+     * light sample.
+     *
+     * @param paths  the path rays
+     * @param i      the path ray entry
+     * @param lights the light sources
+     */
+    private void shade(PathQueue paths, int i, LightIndex lights) {
+        paths.shadowCount[i] = 0;
+        Double3 k = paths.throughput[i];
+        Intersection intersection = paths.hit[i];
+        if (intersection == null) {
+            paths.contribution[i] = k == INITIAL_K ? scene.background : scene.background.scale(k);
+            return;
+        }
+        if (paths.level[i] == 0 || k.lowerThan(MIN_CALC_COLOR_K)
+                || !tracer.preprocessIntersection(intersection, Vector.normalized(paths.dx[i], paths.dy[i], paths.dz[i]))) {
+            paths.hit[i] = null;
+            return;
+        }
+
+        Color local = scene.ambientLight.getIntensity()
+                .scale(intersection.getMaterial().kA)
+                .add(intersection.geometry.getEmission());
+        PhotonMap caustics = tracer.photonMap();
+        if (caustics != null) local = local.add(tracer.calcCaustics(intersection, caustics));
+        paths.contribution[i] = k == INITIAL_K ? local : local.scale(k);
+        // the rays of a rough surface are cone sampled right away, by the per-pixel tracing of the thread
+        Material material = intersection.getMaterial();
+        if (material.roughnessR > 0 || material.roughnessT > 0)
+            paths.contribution[i] = paths.contribution[i].add(tracer.calcGlossyEffects(intersection, paths.level[i],
+                    tracer.secondaryThroughputs(intersection, k)));
+        LightTree tree = tracer.getLightSamples() == 0 ? null : lights.tree();
+        paths.shadowCount[i] = tree == null ? lights.candidates(intersection.point).length
+                : lights.untreed().length + tracer.getLightSamples();
+    }
+
+    /**
+     * Spawns the shadow rays of a shaded path ray, at its entries of the shadow queue.
+     *
+     * @param paths   the path rays
+     * @param i       the path ray entry
+     * @param lights  the light sources
+     * @param shadows receives the shadow rays at entries {@code paths.shadowOffset[i] ...}
+     */
+    private void spawnShadows(PathQueue paths, int i, LightIndex lights, ShadowQueue shadows) {
+        if (paths.shadowCount[i] == 0) return;
+        int base = paths.shadowOffset[i];
+        Point point = paths.hit[i].point;
+        LightTree tree = tracer.getLightSamples() == 0 ? null : lights.tree();
+        int[] candidates = tree == null ? lights.candidates(point) : lights.untreed();
+        for (int c = 0; c < candidates.length; ++c)
+            spawnShadow(paths, i, lights, candidates[c], 1, shadows, base + c);
+        if (tree == null && tracer.getShadowBudget() > 0) {
+            // the shadow rays beyond the budget are dropped, and the sampled one gets its weight
+            double[] strength = new double[candidates.length];
+            for (int c = 0; c < candidates.length; ++c) {
+                int j = base + c;
+                if (shadows.pixel[j] < 0) continue;
+                Color iL = shadows.intensity[j];
+                strength[c] = iL.scale(shadows.diffusive[j]).add(iL.scale(shadows.specular[j])).max();
+            }
+            double[] weights = SimpleRayTracer.shadowWeights(strength, tracer.getShadowBudget(), Sampler.seed(point));
+            for (int c = 0; c < candidates.length; ++c) {
+                int j = base + c;
+                if (weights[c] == 0) shadows.pixel[j] = -1;
+                else shadows.weight[j] = weights[c];
+            }
+        }
+        if (tree == null) return;
+        // the sampled lights are weighted as in the per-pixel tracing, and a light sampled again adds its weight
+        int samples = tracer.getLightSamples(), sampled = base + candidates.length;
+        long seed = Sampler.seed(point);
+        double[] probability = new double[1];
+        for (int s = 0; s < samples; ++s) {
+            int l = tree.sample(point, Sampler.uniform(seed, s), probability);
+            double weight = 1 / (samples * probability[0]);
+            int j = sampled;
+            while (j < sampled + s && (shadows.pixel[j] < 0 || shadows.light[j] != lights.get(l))) ++j;
+            if (j < sampled + s) shadows.weight[j] += weight;
+            else spawnShadow(paths, i, lights, l, weight, shadows, sampled + s);
+        }
+    }
+
+    /**
+     * Spawns the shadow ray of a shaded path ray toward one light source, if the light reaches the point.
+     *
+     * @param paths   the path rays
+     * @param i       the path ray entry, with its shaded intersection
+     * @param lights  the light sources
+     * @param l       the light index
+     * @param weight  the weight of the light - 1, or the inverse probability of a sampled light
+     * @param shadows receives the shadow ray
+     * @param j       the shadow ray entry
+     */
+    private void spawnShadow(PathQueue paths, int i, LightIndex lights, int l, double weight, ShadowQueue shadows,
+                             int j) {
+        Intersection intersection = paths.hit[i];
+        Point point = intersection.point;
+        LightSource light = lights.get(l);
+        if (!lights.mayIlluminate(l, point) || !tracer.setLightSource(intersection, light)) return;
+        Ray ray = tracer.shadowRay(intersection);
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        shadows.ox[j] = head.getX();
+        shadows.oy[j] = head.getY();
+        shadows.oz[j] = head.getZ();
+        shadows.dx[j] = direction.getX();
+        shadows.dy[j] = direction.getY();
+        shadows.dz[j] = direction.getZ();
+        shadows.travelled[j] = ray.getTravelled();
+        shadows.px[j] = point.getX();
+        shadows.py[j] = point.getY();
+        shadows.pz[j] = point.getZ();
+        Vector normal = intersection.getNormal();
+        shadows.nx[j] = normal.getX();
+        shadows.ny[j] = normal.getY();
+        shadows.nz[j] = normal.getZ();
+        shadows.lightDistance[j] = light.getDistance(point);
+        shadows.light[j] = light;
+        shadows.weight[j] = weight;
+        shadows.throughput[j] = paths.throughput[i];
+        shadows.intensity[j] = light.getIntensity(point);
+        shadows.diffusive[j] = tracer.calcDiffusive(intersection);
+        shadows.specular[j] = tracer.calcSpecular(intersection);
+        shadows.pixel[j] = paths.pixel[i];
+    }
+
+    /**
+     * Accumulation stage of the path rays: adds their contributions to their pixels.
+     *
+     * @param paths  the path rays
+     * @param pixels the pixel colors
+     */
+    private static void accumulate(PathQueue paths, Color[] pixels) {
+        for (int i = 0; i < paths.size; ++i)
+            if (paths.contribution[i] != null)
+                pixels[paths.pixel[i]] = pixels[paths.pixel[i]].add(paths.contribution[i]);
+    }
+
+    /**
+     * Accumulation stage of a batch of shadow rays: adds the lighting of the shadow rays whose light
+     * is not blocked to their pixels.
+     *
+     * @param shadows the shadow rays
+     * @param pixels  the pixel colors
+     */
+    private static void accumulate(ShadowQueue shadows, Color[] pixels) {
+        for (int j = 0; j < shadows.size; ++j) {
+            if (shadows.pixel[j] < 0 || shadows.ktr[j].lowerThan(MIN_CALC_COLOR_K)) continue;
+            Color iL = shadows.intensity[j].scale(shadows.ktr[j]);
+            if (shadows.weight[j] != 1) iL = iL.scale(shadows.weight[j]);
+            Color light = iL.scale(shadows.diffusive[j]).add(iL.scale(shadows.specular[j]));
+            Double3 k = shadows.throughput[j];
+            pixels[shadows.pixel[j]] = pixels[shadows.pixel[j]].add(k == INITIAL_K ? light : light.scale(k));
+        }
+    }
+
+    /**
+     * Spawning stage of one path ray: adds its refracted and reflected rays, unless their
+     * throughput is too low to matter or the surface is rough - its rays were traced by the shading stage.
+     * The rays are chosen by the termination rules of the tracer.
+     *
+     * @param paths the path rays
+     * @param i     the path ray entry
+     * @param next  receives the new rays at entries {@code 2i} and {@code 2i+1}
+     */
+    private void spawn(PathQueue paths, int i, PathQueue next) {
+        Intersection intersection = paths.hit[i];
+        if (intersection == null) return;
+        Material material = intersection.getMaterial();
+        Double3 k = paths.throughput[i];
+        int level = paths.level[i] - 1;
+        Double3[] kx = tracer.secondaryThroughputs(intersection, k);
+        if (kx[0] != null && material.roughnessT == 0)
+            next.set(2 * i, tracer.constructRefractedRay(intersection), paths.pixel[i], level, kx[0]);
+        if (kx[1] != null && material.roughnessR == 0)
+            next.set(2 * i + 1, tracer.constructReflectedRay(intersection), paths.pixel[i], level, kx[1]);
+    }
+
+    /**
+     * Runs a stage over the entries of a queue, split among the cores in chunks.
+     *
+     * @param count amount of entries
+     * @param stage the stage of one entry
+     */
+    private void forEach(int count, IntConsumer stage) {
+        if (!parallel || count <= CHUNK) {
+            for (int i = 0; i < count; ++i) stage.accept(i);
+            return;
+        }
+        IntStream.range(0, (count + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+            for (int i = c * CHUNK, end = Math.min(count, i + CHUNK); i < end; ++i) stage.accept(i);
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BatchKernels} - the batch path must find exactly the intersections of the scalar path.
+ */
+class BatchKernelsTest {
+
+    /**
+     * Finds the intersection points with the batch kernels switched on or off.
+     *
+     * @param geometry the geometry
+     * @param ray      the ray
+     * @param batch    whether to use the batch kernels
+     * @return the intersection points
+     */
+    private static List<Point> points(Intersectable geometry, Ray ray, boolean batch) {
+        boolean enabled = BatchKernels.isEnabled();
+        BatchKernels.setEnabled(batch);
+        try {
+            return geometry.findIntersections(ray);
+        } finally {
+            BatchKernels.setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Asserts both paths find the same intersection points in the same order.
+     *
+     * @param geometry the geometry
+     * @param ray      the ray
+     */
+    private static void assertSamePaths(Intersectable geometry, Ray ray) {
+        assertEquals(points(geometry, ray, false), points(geometry, ray, true), "Batch path differs for " + ray);
+    }
+
+    /**
+     * Test method for the batch path of {@link Geometries#calculateIntersections(Ray)}.
+     */
+    @Test
+    void testGeometries() {
+        Random random = new Random(7);
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 20; ++i) {
+            Point p = new Point(random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, -random.nextDouble() * 40 - 10);
+            geometries.add(new Sphere(p, 1 + random.nextDouble() * 3),
+                    new Triangle(p, p.add(new Vector(4, 0, 0)), p.add(new Vector(0, 4, 1))));
+        }
+        geometries.add(new Plane(new Point(0, 0, -100), Vector.AXIS_Z));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: random rays through the collection, most of them hit something
+        int hits = 0;
+        for (int i = 0; i < 2000; ++i) {
+            Ray ray = new Ray(Point.ZERO, new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+            assertSamePaths(geometries, ray);
+            List<Point> points = points(geometries, ray, true);
+            if (points != null && points.size() > 1) ++hits;
+        }
+        assertTrue(hits > 100, "Too few rays hit the spheres and the triangles");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: ray starting at a sphere center
+        Geometries boundary = new Geometries();
+        for (int i = 0; i < 8; ++i) boundary.add(new Sphere(new Point(0, 0, -10 * i), 2));
+        boundary.add(new Triangle(new Point(-5, -5, -3), new Point(5, -5, -3), new Point(0, 5, -3)));
+        assertSamePaths(boundary, new Ray(new Point(0, 0, -20), new Vector(0, 1, 0)));
+        // TC11: ray through a triangle vertex and along a triangle edge line
+        assertSamePaths(boundary, new Ray(new Point(0, 5, 10), new Vector(0, 0, -1)));
+        assertSamePaths(boundary, new Ray(new Point(-5, -5, 0), new Vector(0, 0, -1)));
+        // TC12: ray tangent to the spheres
+        assertSamePaths(boundary, new Ray(new Point(2, 0, 10), new Vector(0, 0, -1)));
+    }
+
+    /**
+     * Test method for the batch path of {@link SphereSet#calculateIntersections(Ray)}.
+     */
+    @Test
+    void testSphereSet() {
+        Random random = new Random(11);
+        int count = 500;
+        double[] centers = new double[3 * count], radii = new double[count];
+        for (int i = 0; i < count; ++i) {
+            centers[3 * i] = random.nextDouble() * 100 - 50;
+            centers[3 * i + 1] = random.nextDouble() * 100 - 50;
+            centers[3 * i + 2] = -random.nextDouble() * 100 - 10;
+            radii[i] = 0.5 + random.nextDouble();
+        }
+        SphereSet set = new SphereSet(centers, radii);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: random rays through the set
+        for (int i = 0; i < 2000; ++i)
+            assertSamePaths(set, new Ray(Point.ZERO, new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1)));
+    }
+}
@@ -0,0 +1,107 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BicubicPatch} class and the lazy tessellation of the {@link ParametricSurface}s.
+ */
+class BicubicPatchTest {
+    /**
+     * Builds the control points of a dome over the square [x, x+3] x [0, 3] in the plane z=0,
+     * with the inner control points raised to the given height.
+     *
+     * @param x      the square offset along X
+     * @param height height of the inner control points
+     * @return 16 control points
+     */
+    private static Point[] dome(double x, double height) {
+        Point[] points = new Point[16];
+        for (int i = 0; i < 4; ++i)
+            for (int j = 0; j < 4; ++j)
+                points[4 * i + j] = new Point(x + j, i, (i == 1 || i == 2) && (j == 1 || j == 2) ? height : 0);
+        return points;
+    }
+
+    /**
+     * Test method for {@link BicubicPatch#findIntersections(Ray)}.
+     */
+    @Test
+    void testFindIntersections() {
+        TessellationCache cache = new TessellationCache(1L << 20);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: flat patch is hit where the plane is hit, with the plane normal
+        BicubicPatch flat = new BicubicPatch(dome(0, 0));
+        flat.setTessellationCache(cache);
+        Ray down = new Ray(new Point(1.2, 1.7, 5), new Vector(0, 0, -1));
+        var hits = flat.calculateIntersections(down);
+        assertNotNull(hits, "Ray hits the flat patch");
+        assertEquals(new Point(1.2, 1.7, 0), hits.getFirst().point, "Wrong intersection point");
+        assertEquals(new Vector(0, 0, 1), hits.getFirst().getNormal(), "Wrong normal");
+        assertSame(flat, hits.getFirst().geometry, "The hit belongs to the patch");
+
+        // TC02: the dome is hit close to the evaluated surface at its center
+        BicubicPatch dome = new BicubicPatch(dome(0, 2));
+        dome.setTessellationCache(cache);
+        dome.setResolution(32);
+        List<Point> top = dome.findIntersections(new Ray(new Point(1.5, 1.5, 5), new Vector(0, 0, -1)));
+        assertNotNull(top, "Ray hits the dome");
+        assertEquals(dome.getPoint(0.5, 0.5).getZ(), top.getFirst().getZ(), 1e-3, "Wrong dome height");
+        // Bezier surface at the center: (3/8)^2 of the 4 inner points at height 2 (weights 3/8 each)
+        assertEquals(4 * 0.375 * 0.375 * 2, dome.getPoint(0.5, 0.5).getZ(), 1e-12, "Wrong evaluation");
+
+        // TC03: B-spline patch stays inside the control hull and misses its corners
+        BicubicPatch spline = new BicubicPatch(BicubicPatch.Basis.B_SPLINE, dome(0, 2));
+        spline.setTessellationCache(cache);
+        assertNotEquals(new Point(0, 0, 0), spline.getPoint(0, 0), "B-spline does not interpolate the corner");
+        assertNotNull(spline.findIntersections(new Ray(new Point(1.5, 1.5, 5), new Vector(0, 0, -1))),
+                "Ray hits the B-spline patch");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: ray misses the patch
+        assertNull(flat.findIntersections(new Ray(new Point(5, 5, 5), new Vector(0, 0, -1))), "Ray misses");
+        // TC12: wrong amount of control points
+        assertThrows(IllegalArgumentException.class, () -> new BicubicPatch(new Point(0, 0, 0)),
+                "16 control points required");
+    }
+
+    /**
+     * Test method for the lazy tessellation and the {@link TessellationCache} eviction.
+     */
+    @Test
+    void testTessellationCache() {
+        BicubicPatch[] patches = new BicubicPatch[3];
+        for (int i = 0; i < patches.length; ++i) patches[i] = new BicubicPatch(dome(4 * i, 1));
+        long meshBytes = patches[0].tessellate().getMemoryBytes();
+        // room for two meshes only
+        TessellationCache cache = new TessellationCache(2 * meshBytes + meshBytes / 2);
+        for (BicubicPatch patch : patches) patch.setTessellationCache(cache);
+
+        // TC01: a ray that misses the boxes tessellates nothing
+        for (BicubicPatch patch : patches)
+            assertNull(patch.findIntersections(new Ray(new Point(0, 10, 5), new Vector(0, 0, -1))), "Ray misses");
+        assertEquals(0, cache.size(), "Nothing is tessellated before a ray reaches a patch");
+
+        // TC02: reaching the patches tessellates them, evicting the least recently used one
+        for (int i = 0; i < patches.length; ++i)
+            assertNotNull(patches[i].findIntersections(new Ray(new Point(4 * i + 1.5, 1.5, 5), new Vector(0, 0, -1))),
+                    "Ray hits patch " + i);
+        assertEquals(3, cache.getMisses(), "Every patch is tessellated once");
+        assertEquals(1, cache.getEvictions(), "The first patch is evicted");
+        assertEquals(2, cache.size(), "Two meshes fit the cap");
+        assertTrue(cache.getMemoryBytes() <= 2 * meshBytes + meshBytes / 2, "Memory cap exceeded");
+
+        // TC03: a cached patch is served from the cache, an evicted one is regenerated
+        patches[2].findIntersections(new Ray(new Point(9.5, 1.5, 5), new Vector(0, 0, -1)));
+        assertEquals(1, cache.getHits(), "Cached mesh reused");
+        assertNotNull(patches[0].findIntersections(new Ray(new Point(1.5, 1.5, 5), new Vector(0, 0, -1))),
+                "Evicted patch is regenerated");
+        assertEquals(4, cache.getMisses(), "Evicted patch is tessellated again");
+        assertEquals(2, cache.getEvictions(), "The least recently used patch is evicted");
+    }
+}
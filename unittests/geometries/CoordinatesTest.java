@@ -0,0 +1,63 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link Coordinates} and {@link Indices} storages (off-heap chunks).
+ */
+class CoordinatesTest {
+    /** Binary logarithm of the size of the test chunks in bytes - 64 bytes, far below the real 1 GB */
+    private static final int SMALL_CHUNK = 6;
+
+    /**
+     * Test method for {@link Coordinates#of(double[], boolean, boolean, int)}.
+     */
+    @Test
+    void testChunks() {
+        double[] values = new double[100];
+        for (int i = 0; i < values.length; ++i) values[i] = i * 1.5 - 20;
+        int[] indices = new int[100];
+        for (int i = 0; i < indices.length; ++i) indices[i] = 7 * i;
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: values spread over many chunks, the last one partial, are read back at their positions
+        assertStored(values, Coordinates.of(values, false, true, SMALL_CHUNK), "doubles");
+        assertStored(values, Coordinates.of(values, true, true, SMALL_CHUNK), "floats");
+        Indices chunked = Indices.of(indices, true, SMALL_CHUNK);
+        assertArrayEquals(indices, chunked.toArray(), "Wrong chunked indices");
+        assertEquals(400, chunked.memoryBytes(), "Wrong memory of chunked indices");
+        // TC02: the default chunks hold a small array in one buffer
+        assertStored(values, Coordinates.of(values, false, true), "doubles in one chunk");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: an array of whole chunks
+        double[] whole = new double[64];
+        for (int i = 0; i < whole.length; ++i) whole[i] = i;
+        assertStored(whole, Coordinates.of(whole, false, true, SMALL_CHUNK), "whole chunks");
+        // TC11: a chunk of a single value
+        assertStored(values, Coordinates.of(values, false, true, 3), "chunks of one value");
+        // TC12: a chunk smaller than a value or bigger than a buffer may hold
+        assertThrows(IllegalArgumentException.class, () -> Coordinates.of(values, false, true, 2),
+                "A chunk smaller than a value");
+        assertThrows(IllegalArgumentException.class,
+                () -> Coordinates.of(values, false, true, Coordinates.CHUNK_BYTES_SHIFT + 1), "A chunk over 1 GB");
+    }
+
+    /**
+     * Asserts that an off-heap storage holds the given values.
+     *
+     * @param expected the values
+     * @param actual   the storage
+     * @param context  description of the storage for the failure messages
+     */
+    private static void assertStored(double[] expected, Coordinates actual, String context) {
+        assertTrue(actual.offHeap(), "The " + context + " must be off-heap");
+        assertEquals(expected.length, actual.length(), "Wrong amount of " + context);
+        assertEquals((long) expected.length * (actual.singlePrecision() ? Float.BYTES : Double.BYTES),
+                actual.memoryBytes(), "Wrong memory of " + context);
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], actual.get(i), 1e-6, "Wrong value " + i + " of " + context);
+    }
+}
@@ -0,0 +1,108 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CsgNode} class (constructive solid geometry).
+ */
+class CsgNodeTest {
+    /** Accuracy of the point comparisons */
+    private static final double DELTA = 1e-9;
+
+    /** Sphere of radius 1 at (-0.5,0,0) */
+    private final Sphere left = new Sphere(new Point(-0.5, 0, 0), 1);
+    /** Sphere of radius 1 at (0.5,0,0) */
+    private final Sphere right = new Sphere(new Point(0.5, 0, 0), 1);
+    /** A ray along the X axis through both spheres */
+    private final Ray ray = new Ray(new Point(-5, 0, 0), Vector.AXIS_X);
+
+    /**
+     * Checks the X coordinates of intersection points on the X axis.
+     *
+     * @param expected the expected X coordinates, in distance order
+     * @param result   the intersections
+     */
+    private void assertXs(double[] expected, List<Intersectable.Intersection> result) {
+        assertNotNull(result, "Expected intersections");
+        assertEquals(expected.length, result.size(), "Wrong number of intersections");
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], result.get(i).point.getX(), DELTA, "Wrong intersection point");
+    }
+
+    /**
+     * Test method for {@link CsgNode#calculateIntersections(Ray)}.
+     */
+    @Test
+    void testCalculateIntersections() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: union of overlapping spheres - outer boundaries only
+        assertXs(new double[]{-1.5, 1.5}, CsgNode.union(left, right).calculateIntersections(ray));
+
+        // TC02: intersection - the lens between the spheres
+        var lens = CsgNode.intersection(left, right).calculateIntersections(ray);
+        assertXs(new double[]{-0.5, 0.5}, lens);
+        assertSame(right, lens.get(0).geometry, "Lens entry lies on the right sphere");
+        assertSame(left, lens.get(1).geometry, "Lens exit lies on the left sphere");
+
+        // TC03: difference - the left sphere with a bite taken out
+        assertXs(new double[]{-1.5, -0.5}, CsgNode.difference(left, right).calculateIntersections(ray));
+
+        // TC04: box with a cylindrical hole drilled along Y
+        Box box = new Box(new Point(-1, -1, -1), new Point(1, 1, 1));
+        Cylinder drill = new Cylinder(4, new Ray(new Point(0, -2, 0), Vector.AXIS_Y), 0.5);
+        CsgNode part = CsgNode.difference(box, drill);
+        assertXs(new double[]{-1, -0.5, 0.5, 1}, part.calculateIntersections(ray));
+        // looking down the hole - nothing is hit
+        assertNull(part.calculateIntersections(new Ray(new Point(0, 5, 0), Vector.MINUS_Y)), "Ray through the hole");
+
+        // TC05: nested nodes - a sphere unioned with the drilled box
+        CsgNode assembly = CsgNode.union(part, new Sphere(new Point(3, 0, 0), 1));
+        assertXs(new double[]{-1, -0.5, 0.5, 1, 2, 4}, assembly.calculateIntersections(ray));
+
+        // TC06: ray starting inside the solid - only the exit
+        assertXs(new double[]{1.5}, CsgNode.union(left, right)
+                .calculateIntersections(new Ray(Point.ZERO, Vector.AXIS_X)));
+
+        // TC07: a cylinder cap bounds a CSG result
+        CsgNode capped = CsgNode.intersection(drill, new Sphere(new Point(0, 2, 0), 1));
+        var caps = capped.calculateIntersections(new Ray(new Point(0, 5, 0), Vector.MINUS_Y));
+        assertNotNull(caps, "Ray along the cylinder axis");
+        assertEquals(2, caps.size(), "Wrong number of intersections");
+        assertEquals(2, caps.get(0).point.getY(), DELTA, "Top cap of the cylinder");
+        assertEquals(new Vector(0, 1, 0), caps.get(0).geometry.getNormal(caps.get(0).point), "Cap normal");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: ray misses the node's bounding box
+        assertNull(CsgNode.union(left, right).calculateIntersections(new Ray(new Point(-5, 3, 0), Vector.AXIS_X)),
+                "Ray misses the bounds");
+
+        // TC12: intersection of disjoint solids is empty and has no bounds
+        CsgNode empty = CsgNode.intersection(left, new Sphere(new Point(5, 0, 0), 1));
+        assertNull(empty.getBoundingBox(), "Disjoint intersection has no bounds");
+        assertNull(empty.calculateIntersections(ray), "Disjoint intersection is empty");
+
+        // TC13: the whole result is behind the ray
+        assertNull(CsgNode.union(left, right).calculateIntersections(new Ray(new Point(5, 0, 0), Vector.AXIS_X)),
+                "Solid behind the ray");
+    }
+
+    /**
+     * Test method for {@link Box#findIntersections(Ray)} used by the CSG nodes.
+     */
+    @Test
+    void testBoxIntersections() {
+        Box box = new Box(new Point(-1, -1, -1), new Point(1, 1, 1));
+        // TC01: ray crosses the box
+        assertEquals(List.of(new Point(-1, 0, 0), new Point(1, 0, 0)), box.findIntersections(ray), "Crossing ray");
+        // TC02: ray starts inside the box
+        assertEquals(List.of(new Point(1, 0, 0)), box.findIntersections(new Ray(Point.ZERO, Vector.AXIS_X)),
+                "Ray from inside");
+        // TC03: ray misses the box
+        assertNull(box.findIntersections(new Ray(new Point(-5, 2, 0), Vector.AXIS_X)), "Ray misses");
+    }
+}
@@ -0,0 +1,92 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ImplicitSurface} class (sphere traced signed distance fields).
+ */
+class ImplicitSurfaceTest {
+    /** Accuracy of the sphere tracing comparisons */
+    private static final double DELTA = 0.001;
+
+    /** An implicit unit sphere at the origin */
+    private final ImplicitSurface sphere = new ImplicitSurface(
+            ImplicitSurface.DistanceFunction.sphere(Point.ZERO, 1),
+            BoundingBox.ofSphere(Point.ZERO, 1).expand(0.1));
+
+    /**
+     * Test method for {@link ImplicitSurface#getNormal(Point)}.
+     */
+    @Test
+    void testGetNormal() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: finite differences normal of a sphere points away from the center
+        Vector normal = sphere.getNormal(new Point(0, 0.6, 0.8));
+        assertEquals(1, normal.length(), DELTA, "Normal is not a unit vector");
+        assertEquals(0, new Vector(0, 0.6, 0.8).crossProduct(normal).length(), DELTA, "Wrong normal direction");
+        assertTrue(normal.dotProduct(new Vector(0, 0.6, 0.8)) > 0, "Normal points inside");
+
+        // TC02: analytic normal is used when given
+        ImplicitSurface analytic = new ImplicitSurface(ImplicitSurface.DistanceFunction.sphere(Point.ZERO, 1),
+                BoundingBox.ofSphere(Point.ZERO, 1)).setNormalFunction(p -> p.subtract(Point.ZERO));
+        assertEquals(new Vector(0, 0.6, 0.8), analytic.getNormal(new Point(0, 0.6, 0.8)), "Wrong analytic normal");
+    }
+
+    /**
+     * Test method for {@link ImplicitSurface#findIntersections(Ray)}.
+     */
+    @Test
+    void testFindIntersections() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: ray crosses the sphere - same two points as the analytic sphere
+        Ray ray = new Ray(new Point(-3, 0.5, 0), Vector.AXIS_X);
+        List<Point> result = sphere.findIntersections(ray);
+        assertNotNull(result, "Ray crosses the sphere");
+        assertEquals(2, result.size(), "Wrong number of points");
+        List<Point> expected = new Sphere(Point.ZERO, 1).findIntersections(ray);
+        for (int i = 0; i < 2; ++i)
+            assertEquals(0, expected.get(i).distance(result.get(i)), DELTA, "Wrong intersection point");
+
+        // TC02: ray starts inside the sphere - one point
+        result = sphere.findIntersections(new Ray(Point.ZERO, Vector.AXIS_Y));
+        assertNotNull(result, "Ray starts inside the sphere");
+        assertEquals(1, result.size(), "Wrong number of points");
+        assertEquals(0, new Point(0, 1, 0).distance(result.getFirst()), DELTA, "Wrong intersection point");
+
+        // TC03: ray misses the bounding box
+        assertNull(sphere.findIntersections(new Ray(new Point(-3, 3, 0), Vector.AXIS_X)), "Ray misses the box");
+
+        // TC04: ray passes through the box but misses the sphere
+        assertNull(sphere.findIntersections(new Ray(new Point(-3, 0.9, 0.9), Vector.AXIS_X)),
+                "Ray misses the sphere inside the box");
+
+        // TC05: ray points away from the sphere
+        assertNull(sphere.findIntersections(new Ray(new Point(-3, 0, 0), Vector.MINUS_X)), "Ray points away");
+
+        // TC06: smooth union of two spheres is traced as one solid
+        ImplicitSurface blend = new ImplicitSurface(
+                ImplicitSurface.DistanceFunction.sphere(new Point(-0.8, 0, 0), 1)
+                        .smoothUnion(ImplicitSurface.DistanceFunction.sphere(new Point(0.8, 0, 0), 1), 0.5),
+                new BoundingBox(-2, -1.5, -1.5, 2, 1.5, 1.5));
+        result = blend.findIntersections(new Ray(new Point(-3, 0, 0), Vector.AXIS_X));
+        assertNotNull(result, "Ray crosses the blend");
+        assertEquals(2, result.size(), "Blend must be one solid along the axis");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a step budget too small to reach the surface gives no intersections
+        ImplicitSurface limited = new ImplicitSurface(ImplicitSurface.DistanceFunction.sphere(Point.ZERO, 1),
+                new BoundingBox(-100, -1, -1, 1, 1, 1)).setMaxSteps(3).setLipschitz(20);
+        assertNull(limited.findIntersections(new Ray(new Point(-100, 0, 0), Vector.AXIS_X)),
+                "Step budget must limit the march");
+
+        // TC12: an implicit surface is intersected as a part of a geometries collection
+        Geometries geometries = new Geometries(sphere, new Sphere(new Point(5, 0, 0), 1));
+        assertEquals(4, geometries.findIntersections(new Ray(new Point(-3, 0, 0), Vector.AXIS_X)).size(),
+                "Wrong number of points in geometries");
+    }
+}
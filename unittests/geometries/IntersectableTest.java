@@ -0,0 +1,149 @@
+package geometries;
+
+import geometries.Intersectable.Hit;
+import geometries.Intersectable.Intersection;
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the closest hit search and the intersection sink of {@link Intersectable}.
+ */
+class IntersectableTest {
+    /** Delta for the distance comparisons */
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Finds the closest intersection from the full intersection list.
+     *
+     * @param geometry the geometry
+     * @param ray      the ray
+     * @return the closest intersection, or null
+     */
+    private static Intersection closest(Intersectable geometry, Ray ray) {
+        List<Intersection> intersections = geometry.calculateIntersections(ray);
+        if (intersections == null) return null;
+        Intersection closest = null;
+        double distance = Double.POSITIVE_INFINITY;
+        for (Intersection intersection : intersections)
+            if (intersection.point.distance(ray.getHead()) < distance) {
+                distance = intersection.point.distance(ray.getHead());
+                closest = intersection;
+            }
+        return closest;
+    }
+
+    /**
+     * Test method for {@link Intersectable#findClosestHit(Ray, Hit)}.
+     */
+    @Test
+    void testFindClosestHit() {
+        Random random = new Random(5);
+        Geometries scene = new Geometries(
+                new Plane(new Point(0, 0, -60), Vector.AXIS_Z),
+                new Polygon(new Point(-10, -10, -30), new Point(10, -10, -30), new Point(10, 10, -32), new Point(-10, 10, -32)),
+                new Mesh(new double[]{0, 0, -15, 6, 0, -20, 0, 6, -20, -6, 0, -20, 0, -6, -20, 0, 0, -25},
+                        new int[]{0, 1, 2, 0, 2, 3, 0, 3, 4, 0, 4, 1, 5, 2, 1, 5, 3, 2, 5, 4, 3, 5, 1, 4}),
+                new SphereSet(new double[]{8, 8, -20, -8, -8, -22}, new double[]{2, 3}),
+                CsgNode.difference(new Sphere(new Point(-8, 8, -20), 3), new Sphere(new Point(-8, 8, -17), 2)),
+                new BicubicPatch(patchPoints()));
+        for (int i = 0; i < 20; ++i) {
+            Point center = new Point(random.nextDouble() * 30 - 15, random.nextDouble() * 30 - 15, -40 - random.nextDouble() * 10);
+            scene.add(new Sphere(center, 1 + random.nextDouble()),
+                    new Triangle(center, center.add(new Vector(3, 0, 0)), center.add(new Vector(0, 3, 1))));
+        }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the closest hit is the nearest intersection of the full list, with the same point and normal
+        int hits = 0;
+        for (int i = 0; i < 2000; ++i) {
+            Ray ray = new Ray(new Point(0, 0, 10), new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+            Intersection expected = closest(scene, ray);
+            Hit hit = new Hit();
+            assertEquals(expected != null, scene.findClosestHit(ray, hit), "Wrong hit result for " + ray);
+            if (expected == null) {
+                assertNull(hit.toIntersection(ray), "No intersection expected");
+                continue;
+            }
+            ++hits;
+            Intersection intersection = hit.toIntersection(ray);
+            assertEquals(expected.geometry, intersection.geometry, "Wrong closest geometry for " + ray);
+            assertEquals(expected.point.distance(ray.getHead()), hit.t, DELTA, "Wrong closest distance");
+            assertEquals(expected.point, intersection.point, "Wrong closest point");
+            assertEquals(expected.getNormal(), intersection.getNormal(), "Wrong normal");
+        }
+        assertTrue(hits > 1000, "Too few rays hit the scene");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a hit beyond the search limit is not recorded
+        Ray ray = new Ray(new Point(0, 0, 10), Vector.MINUS_Z);
+        Hit limited = new Hit(20);
+        assertFalse(scene.findClosestHit(ray, limited), "Hit beyond the limit must be ignored");
+        assertFalse(limited.found(), "Hit beyond the limit must not be recorded");
+        // TC11: a hit found before is kept when the geometry is farther
+        Hit hit = new Hit();
+        assertTrue(new Sphere(new Point(0, 0, -5), 1).findClosestHit(ray, hit), "Sphere must be hit");
+        assertFalse(scene.findClosestHit(ray, hit), "A farther geometry must not replace the hit");
+        assertEquals(14, hit.t, DELTA, "Wrong distance to the sphere");
+    }
+
+    /**
+     * Test method for {@link Intersectable#visitIntersections(Ray, Intersectable.IntersectionSink)}.
+     */
+    @Test
+    void testVisitIntersections() {
+        Geometries scene = new Geometries(
+                new Sphere(new Point(0, 0, -10), 2),
+                new Mesh(new double[]{-5, -5, -20, 5, -5, -20, 0, 5, -20}, new int[]{0, 1, 2}),
+                new SphereSet(new double[]{0, 0, -30, 0, 0, -40}, new double[]{1, 1}),
+                new BicubicPatch(patchPoints()),
+                new Plane(new Point(0, 0, -60), Vector.AXIS_Z));
+        for (int i = 0; i < 10; ++i)
+            scene.add(new Sphere(new Point(0, 0, -45 - i), 0.25), new Triangle(new Point(-1, -1, -45.5 - i),
+                    new Point(1, -1, -45.5 - i), new Point(0, 1, -45.5 - i)));
+        Ray ray = new Ray(new Point(0, 0, 10), Vector.MINUS_Z);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the sink receives the intersections of the list, in the same order
+        List<Intersection> visited = new ArrayList<>();
+        assertTrue(scene.visitIntersections(ray, visited::add), "The enumeration must complete");
+        assertEquals(scene.calculateIntersections(ray), visited, "Wrong intersections passed to the sink");
+        assertEquals(38, visited.size(), "Wrong amount of intersections");
+        // TC02: the sink stops the enumeration at the first intersection
+        List<Intersection> first = new ArrayList<>();
+        assertFalse(scene.visitIntersections(ray, intersection -> first.add(intersection) && false),
+                "The enumeration must report the stop");
+        assertEquals(List.of(visited.getFirst()), first, "The enumeration must stop at the first intersection");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the sink stops inside a sphere set and inside a mesh - nothing is passed after the stop
+        for (Intersectable geometry : List.of(new SphereSet(new double[]{0, 0, -30, 0, 0, -40}, new double[]{1, 1}),
+                new Mesh(new double[]{-5, -5, -20, 5, -5, -20, 0, 5, -20, -5, -5, -25, 5, -5, -25, 0, 5, -25},
+                        new int[]{0, 1, 2, 3, 4, 5}))) {
+            int[] count = {0};
+            assertFalse(geometry.visitIntersections(ray, intersection -> ++count[0] < 1), "The stop must be reported");
+            assertEquals(1, count[0], "Nothing may be passed after the stop");
+        }
+        // TC11: a ray missing everything passes nothing and completes
+        assertTrue(scene.visitIntersections(new Ray(new Point(0, 0, 10), Vector.AXIS_Z), intersection -> false),
+                "A missing ray must complete");
+    }
+
+    /**
+     * @return control points of a wavy patch
+     */
+    private static Point[] patchPoints() {
+        Point[] points = new Point[16];
+        for (int i = 0; i < 4; ++i)
+            for (int j = 0; j < 4; ++j)
+                points[4 * i + j] = new Point(-15 + 2 * j, 10 + 2 * i, -35 + ((i + j) % 2 == 0 ? 2 : -2));
+        return points;
+    }
+}
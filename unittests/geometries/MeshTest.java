@@ -0,0 +1,289 @@
+package geometries;
+
+import lighting.AmbientLight;
+import lighting.DirectionalLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import renderer.Camera;
+import renderer.SimpleRayTracer;
+import scene.Scene;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link Mesh} class (indexed triangle mesh with levels of detail).
+ */
+class MeshTest {
+    /**
+     * Tessellates a sphere into a latitude/longitude triangle mesh.
+     *
+     * @param center   sphere center
+     * @param radius   sphere radius
+     * @param segments amount of longitude segments (half of it in latitude)
+     * @return the mesh
+     */
+    static Mesh sphereMesh(Point center, double radius, int segments) {
+        int rings = segments / 2;
+        double[] vertices = new double[3 * (rings + 1) * segments];
+        int v = 0;
+        for (int i = 0; i <= rings; ++i) {
+            double theta = Math.PI * i / rings;
+            for (int j = 0; j < segments; ++j) {
+                double phi = 2 * Math.PI * j / segments;
+                vertices[v++] = center.getX() + radius * Math.sin(theta) * Math.cos(phi);
+                vertices[v++] = center.getY() + radius * Math.cos(theta);
+                vertices[v++] = center.getZ() + radius * Math.sin(theta) * Math.sin(phi);
+            }
+        }
+        int[] indices = new int[6 * rings * segments];
+        int k = 0;
+        for (int i = 0; i < rings; ++i)
+            for (int j = 0; j < segments; ++j) {
+                int a = i * segments + j, b = i * segments + (j + 1) % segments;
+                int c = a + segments, d = b + segments;
+                indices[k++] = a;
+                indices[k++] = c;
+                indices[k++] = b;
+                indices[k++] = b;
+                indices[k++] = c;
+                indices[k++] = d;
+            }
+        return new Mesh(vertices, indices);
+    }
+
+    /**
+     * Test method for {@link Mesh#findIntersections(Ray)}.
+     */
+    @Test
+    void testFindIntersections() {
+        // a quad of two triangles in the plane z=0
+        Mesh quad = new Mesh(List.of(new Point(-1, -1, 0), new Point(1, -1, 0), new Point(1, 1, 0),
+                new Point(-1, 1, 0)), new int[]{0, 1, 2, 0, 2, 3});
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: ray hits the first triangle - same point as the Triangle class
+        Ray ray = new Ray(new Point(0.5, -0.2, 1), new Vector(0, 0, -1));
+        assertEquals(new Triangle(new Point(-1, -1, 0), new Point(1, -1, 0), new Point(1, 1, 0)).findIntersections(ray),
+                quad.findIntersections(ray), "Wrong intersection with the first triangle");
+        // TC02: ray hits the second triangle
+        assertEquals(List.of(new Point(-0.5, 0.2, 0)),
+                quad.findIntersections(new Ray(new Point(-0.5, 0.2, 1), new Vector(0, 0, -1))), "Second triangle");
+        // TC03: ray misses the mesh
+        assertNull(quad.findIntersections(new Ray(new Point(2, 0, 1), new Vector(0, 0, -1))), "Ray misses");
+        // TC04: the mesh is behind the ray
+        assertNull(quad.findIntersections(new Ray(new Point(0, 0, 1), new Vector(0, 0, 1))), "Mesh behind the ray");
+        // TC05: the intersection carries the triangle normal
+        var hit = quad.calculateIntersections(ray).getFirst();
+        assertEquals(new Vector(0, 0, 1), hit.getNormal(), "Wrong intersection normal");
+        assertEquals(new Vector(0, 0, 1), quad.getNormal(hit.point), "Wrong fallback normal");
+
+        // TC06: tessellated sphere is hit twice close to the analytic sphere
+        Mesh sphere = sphereMesh(Point.ZERO, 1, 64);
+        List<Point> result = sphere.findIntersections(new Ray(new Point(0.1, 0.2, -5), new Vector(0, 0, 1)));
+        assertNotNull(result, "Ray crosses the sphere mesh");
+        assertEquals(2, result.size(), "Wrong number of points");
+        for (Point p : result)
+            assertEquals(1, p.distance(Point.ZERO), 0.01, "Point is not on the sphere");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: ray through the shared edge of the triangles
+        assertNotNull(quad.findIntersections(new Ray(new Point(0, 0, 1), new Vector(0, 0, -1))), "Shared edge");
+        // TC12: illegal triangle index
+        assertThrows(IllegalArgumentException.class, () -> new Mesh(new double[]{0, 0, 0, 1, 0, 0, 0, 1, 0},
+                new int[]{0, 1, 3}), "Index out of range must throw");
+    }
+
+    /**
+     * Test method for {@link Mesh#generateLevelsOfDetail(int)} and the level selection.
+     */
+    @Test
+    void testLevelsOfDetail() {
+        Mesh sphere = sphereMesh(Point.ZERO, 1, 128).generateLevelsOfDetail(4);
+        assertEquals(4, sphere.getLevelCount(), "Wrong amount of levels");
+        for (int i = 1; i < sphere.getLevelCount(); ++i)
+            assertTrue(sphere.getTriangleCount(i) < sphere.getTriangleCount(i - 1) / 2,
+                    "Each level must be much coarser than the previous one");
+
+        // the simplified surface stays close to the original one
+        Ray ray = new Ray(new Point(0.1, 0.2, -5), new Vector(0, 0, 1));
+        sphere.setLodPixelSpread(1);
+        List<Point> coarse = sphere.findIntersections(ray);
+        assertNotNull(coarse, "Coarse level must still be hit");
+        assertEquals(1, coarse.getFirst().distance(Point.ZERO), 0.2, "Coarse level is too far from the surface");
+
+        // without a pixel spread the full resolution is always used
+        sphere.setLodPixelSpread(0);
+        assertEquals(0, sphere.selectLevel(1e6), "Full resolution without pixel spread");
+        sphere.setLodPixelSpread(0.001);
+        assertEquals(0, sphere.selectLevel(1), "Close mesh uses full resolution");
+        assertEquals(sphere.getLevelCount() - 1, sphere.selectLevel(1e6), "Far mesh uses the coarsest level");
+
+        // a ray leaving a far hit carries the distance to it, so it sees the coarse level of the hit
+        Ray far = new Ray(new Point(0.1, 0.2, -1000), new Vector(0, 0, 1));
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(sphere.findClosestHit(far, hit), "Far ray must hit the mesh");
+        Intersectable.Intersection intersection = hit.toIntersection(far);
+        assertEquals(hit.t, intersection.travelled, 1e-9, "The hit must carry the distance of the ray cone");
+        Vector outwards = intersection.point.subtract(Point.ZERO).normalize();
+        Ray leaving = new Ray(intersection.point, outwards, intersection.travelled);
+        assertFalse(sphere.findClosestHit(leaving, new Intersectable.Hit()), "A ray leaving a hit shadows its hit");
+        assertTrue(sphere.visitIntersections(leaving, i -> false), "A shadow ray leaving a hit is blocked by it");
+        // the chords of the coarse level lie inside the full resolution surface
+        assertTrue(sphere.findClosestHit(new Ray(intersection.point, outwards), new Intersectable.Hit()),
+                "A close ray from the coarse surface must see the full resolution");
+    }
+
+    /**
+     * Measures the traversal work (triangle and hierarchy node tests) saved by level of detail selection for a row of distant meshes
+     * seen through a camera.
+     */
+    @Test
+    void testLevelOfDetailSavings() {
+        Camera camera = Camera.getBuilder().setLocation(new Point(0, 0, 100)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(20, 20).setResolution(200, 200).build();
+        Geometries meshes = new Geometries();
+        Mesh[] row = new Mesh[5];
+        for (int i = 0; i < row.length; ++i) {
+            row[i] = sphereMesh(new Point(3 * i - 6, 0, -400 * i), 1 + i, 128).generateLevelsOfDetail(4);
+            meshes.add(row[i]);
+        }
+
+        long[] full = castAll(camera, meshes, row, 0);
+        long[] lod = castAll(camera, meshes, row, camera.getPixelSpread());
+        System.out.printf("Mesh LOD: triangle tests %d -> %d (%.1f%% saved), node tests %d -> %d (%.1f%% saved)%n",
+                full[0], lod[0], 100.0 * (full[0] - lod[0]) / full[0],
+                full[1], lod[1], 100.0 * (full[1] - lod[1]) / full[1]);
+        assertTrue(lod[0] < full[0], "Level of detail must save triangle tests");
+        assertTrue(lod[1] < full[1], "Level of detail must save node tests");
+    }
+
+    /**
+     * Error analysis of the single precision storage: renders a mesh far from the origin (where the float
+     * rounding of the vertices is the biggest) with double and with single precision storage and compares
+     * the hit distances, the normals and the pixel colors.
+     */
+    @Test
+    void testSinglePrecision() {
+        Point center = new Point(5000, 3000, -10000);
+        Mesh exact = sphereMesh(center, 50, 128);
+        Mesh compact = sphereMesh(center, 50, 128);
+        long doubleBytes = exact.getMemoryBytes();
+        compact.useSinglePrecision();
+        assertTrue(compact.getMemoryBytes() < doubleBytes * 3 / 4,
+                "Single precision must save memory: " + compact.getMemoryBytes() + " of " + doubleBytes);
+
+        Material material = new Material().setKD(0.6).setKS(0.3).setShininess(50);
+        SimpleRayTracer exactTracer = new SimpleRayTracer(scene(exact.setMaterial(material)));
+        SimpleRayTracer compactTracer = new SimpleRayTracer(scene(compact.setMaterial(material)));
+        Camera camera = Camera.getBuilder().setLocation(center.add(new Vector(0, 0, 300)))
+                .setDirection(center, Vector.AXIS_Y).setVpDistance(100).setVpSize(40, 40).setResolution(100, 100)
+                .build();
+
+        double maxDistanceError = 0, maxSurfaceError = 0, maxNormalError = 0;
+        int hits = 0, differentPixels = 0;
+        for (int i = 0; i < 100; ++i)
+            for (int j = 0; j < 100; ++j) {
+                Ray ray = camera.constructRay(100, 100, j, i);
+                var exactHit = ray.findClosestIntersection(exact.calculateIntersections(ray));
+                var compactHit = ray.findClosestIntersection(compact.calculateIntersections(ray));
+                assertEquals(exactHit == null, compactHit == null, "Hit and miss differ at pixel " + j + "," + i);
+                if (exactHit != null) {
+                    ++hits;
+                    double error = Math.abs(exactHit.point.distance(ray.getHead())
+                            - compactHit.point.distance(ray.getHead()));
+                    maxDistanceError = Math.max(maxDistanceError, error);
+                    // the error across the surface, the distance error grows by 1/cos at grazing angles
+                    maxSurfaceError = Math.max(maxSurfaceError,
+                            error * Math.abs(ray.getDirection().dotProduct(exactHit.getNormal())));
+                    maxNormalError = Math.max(maxNormalError,
+                            1 - exactHit.getNormal().dotProduct(compactHit.getNormal()));
+                }
+                java.awt.Color a = exactTracer.traceRay(ray).getColor(), b = compactTracer.traceRay(ray).getColor();
+                if (Math.abs(a.getRed() - b.getRed()) > 1 || Math.abs(a.getGreen() - b.getGreen()) > 1
+                        || Math.abs(a.getBlue() - b.getBlue()) > 1) ++differentPixels;
+            }
+        System.out.printf("Single precision mesh: %d -> %d bytes, max distance error %.2e (%.2e across the surface), "
+                        + "max normal error %.2e, %d of 10000 pixels differ%n", doubleBytes, compact.getMemoryBytes(),
+                maxDistanceError, maxSurfaceError, maxNormalError, differentPixels);
+        assertTrue(hits > 1000, "The mesh must cover the image");
+        // vertices at coordinates below 16384 move by up to half a float ulp (2^-11) per axis
+        assertTrue(maxSurfaceError < Math.sqrt(3) * 0x1p-11, "Surface error too big: " + maxSurfaceError);
+        assertTrue(maxNormalError < 1e-6, "Normal error too big: " + maxNormalError);
+        assertTrue(differentPixels <= 10, "Too many different pixels: " + differentPixels);
+    }
+
+    /**
+     * Test method for {@link Mesh#useOffHeapStorage()}.
+     */
+    @Test
+    void testOffHeapStorage() {
+        Mesh heap = sphereMesh(new Point(1, 2, 3), 2, 64);
+        Mesh direct = sphereMesh(new Point(1, 2, 3), 2, 64).useOffHeapStorage().generateLevelsOfDetail(3);
+        Mesh compact = sphereMesh(new Point(1, 2, 3), 2, 64).useOffHeapStorage().useSinglePrecision();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: all the arrays of all the levels live off-heap
+        assertEquals(0, heap.getOffHeapBytes(), "Heap mesh has no off-heap data");
+        assertEquals(direct.getMemoryBytes(), direct.getOffHeapBytes(), "Off-heap mesh keeps its data off-heap");
+        assertEquals(3, direct.getLevelCount(), "Levels generated off-heap");
+        assertEquals(compact.getMemoryBytes(), compact.getOffHeapBytes(), "Single precision stays off-heap");
+
+        // TC02: off-heap storage finds the same intersections as the heap storage
+        Random random = new Random(3);
+        for (int n = 0; n < 100; ++n) {
+            Ray ray = new Ray(new Point(random.nextDouble() * 2, random.nextDouble() * 4, -10),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, 5));
+            var expected = heap.calculateIntersections(ray);
+            var actual = direct.calculateIntersections(ray);
+            assertEquals(expected == null ? null : expected.size(), actual == null ? null : actual.size(),
+                    "Wrong number of intersections");
+            if (expected != null)
+                for (var hit : expected)
+                    assertTrue(actual.stream()
+                                    .anyMatch(h -> h.point.equals(hit.point) && h.getNormal().equals(hit.getNormal())),
+                            "Missing intersection " + hit.point);
+            assertEquals(expected == null, compact.calculateIntersections(ray) == null, "Single precision off-heap");
+        }
+        // TC03: fallback normal reads the off-heap data
+        Point side = new Point(3, 2, 3);
+        assertEquals(heap.getNormal(side), direct.getNormal(side), "Wrong fallback normal");
+    }
+
+    /**
+     * Builds a scene with one geometry lit by a directional light.
+     *
+     * @param geometry the geometry
+     * @return the scene
+     */
+    private static Scene scene(Geometry geometry) {
+        Scene scene = new Scene("Single precision").setAmbientLight(new AmbientLight(new Color(40, 40, 40)));
+        scene.geometries.add(geometry);
+        scene.lights.add(new DirectionalLight(new Color(400, 300, 200), new Vector(-1, -1, -2)));
+        return scene;
+    }
+
+    /**
+     * Casts a ray through every pixel, finds its closest hit and counts the tests performed by the meshes.
+     *
+     * @param camera      the camera
+     * @param meshes      the scene geometries
+     * @param row         the meshes
+     * @param pixelSpread pixel spread for the level selection
+     * @return amounts of triangle tests and of hierarchy node tests
+     */
+    private long[] castAll(Camera camera, Geometries meshes, Mesh[] row, double pixelSpread) {
+        for (Mesh mesh : row) mesh.setLodPixelSpread(pixelSpread).setStatistics(true);
+        for (int i = 0; i < 200; ++i)
+            for (int j = 0; j < 200; ++j)
+                meshes.findClosestHit(camera.constructRay(200, 200, j, i), new Intersectable.Hit());
+        long[] tests = {0, 0};
+        for (Mesh mesh : row) {
+            tests[0] += mesh.getTriangleTests();
+            tests[1] += mesh.getNodeTests();
+        }
+        return tests;
+    }
+}
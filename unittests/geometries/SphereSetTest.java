@@ -0,0 +1,113 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SphereSet} class (packed sphere set with a hierarchy).
+ */
+class SphereSetTest {
+    /** Accuracy of the distance comparisons - the set stores single precision data */
+    private static final double DELTA = 1e-4;
+
+    /**
+     * Test method for {@link SphereSet#calculateIntersections(Ray)}.
+     */
+    @Test
+    void testCalculateIntersections() {
+        Material red = new Material().setKD(0.5);
+        Material blue = new Material().setKS(0.5);
+        SphereSet set = new SphereSet(new double[]{0, 0, 0, 3, 0, 0}, new double[]{1, 0.5},
+                new int[]{0, 1}, red, blue);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: ray along X crosses both spheres, same points as the Sphere class
+        Ray ray = new Ray(new Point(-5, 0, 0), Vector.AXIS_X);
+        var result = set.calculateIntersections(ray);
+        assertNotNull(result, "Ray crosses the spheres");
+        assertEquals(4, result.size(), "Wrong number of intersections");
+        List<Double> xs = result.stream().map(i -> i.point.getX()).sorted().toList();
+        assertEquals(List.of(-1d, 1d, 2.5, 3.5), xs, "Wrong intersection points");
+
+        // TC02: every hit carries its sphere normal and material
+        for (var hit : result) {
+            boolean first = hit.point.getX() < 2;
+            assertSame(first ? red : blue, hit.getMaterial(), "Wrong material of the hit sphere");
+            assertEquals(new Vector(Math.signum(hit.point.getX() - (first ? 0 : 3)), 0, 0), hit.getNormal(),
+                    "Wrong normal of the hit sphere");
+        }
+
+        // TC03: ray starts inside a sphere - only the exit
+        assertEquals(List.of(new Point(0, 1, 0)), set.findIntersections(new Ray(Point.ZERO, Vector.AXIS_Y)),
+                "Ray from inside");
+        // TC04: ray misses all the spheres
+        assertNull(set.findIntersections(new Ray(new Point(-5, 2, 0), Vector.AXIS_X)), "Ray misses");
+        // TC05: spheres behind the ray
+        assertNull(set.findIntersections(new Ray(new Point(5, 0, 0), Vector.AXIS_X)), "Spheres behind the ray");
+        // TC06: without a palette the geometry material is used
+        SphereSet plain = new SphereSet(new double[]{0, 0, 0}, new double[]{1});
+        plain.setMaterial(red);
+        assertSame(red, plain.calculateIntersections(ray).getFirst().getMaterial(), "Geometry material");
+        assertEquals(new Vector(-1, 0, 0), plain.getNormal(new Point(-1, 0, 0)), "Fallback normal");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: ray tangent to a sphere
+        assertNull(set.findIntersections(new Ray(new Point(-5, 1, 0), Vector.AXIS_X)), "Tangent ray");
+        // TC12: illegal input
+        assertThrows(IllegalArgumentException.class, () -> new SphereSet(new double[]{0, 0}, new double[]{1}),
+                "Missing center coordinate");
+        assertThrows(IllegalArgumentException.class, () -> new SphereSet(new double[]{0, 0, 0}, new double[]{0}),
+                "Zero radius");
+        assertThrows(IllegalArgumentException.class,
+                () -> new SphereSet(new double[]{0, 0, 0}, new double[]{1}, new int[]{1}, red),
+                "Material index out of range");
+    }
+
+    /**
+     * Compares a large random set with individual {@link Sphere} objects and checks its memory footprint.
+     */
+    @Test
+    void testLargeSet() {
+        Random random = new Random(7);
+        int count = 100_000;
+        double[] centers = new double[3 * count];
+        double[] radii = new double[count];
+        for (int i = 0; i < count; ++i) {
+            for (int j = 0; j < 3; ++j) centers[3 * i + j] = random.nextDouble() * 200 - 100;
+            radii[i] = 0.2 + random.nextDouble() * 0.5;
+        }
+        SphereSet set = new SphereSet(centers, radii);
+        assertEquals(count, set.size(), "Wrong amount of spheres");
+        double bytesPerSphere = (double) set.getMemoryBytes() / count;
+        assertTrue(bytesPerSphere <= 32, "Too much memory per sphere: " + bytesPerSphere);
+
+        Geometries individual = new Geometries();
+        for (int i = 0; i < count; ++i)
+            individual.add(new Sphere(new Point(centers[3 * i], centers[3 * i + 1], centers[3 * i + 2]), radii[i]));
+        for (int n = 0; n < 50; ++n) {
+            Ray ray = new Ray(new Point(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10, -150),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, 3));
+            List<Double> expected = distances(ray, individual.findIntersections(ray));
+            List<Double> actual = distances(ray, set.findIntersections(ray));
+            assertEquals(expected.size(), actual.size(), "Wrong number of intersections");
+            for (int i = 0; i < expected.size(); ++i)
+                assertEquals(expected.get(i), actual.get(i), DELTA, "Wrong intersection distance");
+        }
+    }
+
+    /**
+     * @param ray    the ray
+     * @param points intersection points (or {@code null})
+     * @return the sorted distances of the points from the ray head
+     */
+    private static List<Double> distances(Ray ray, List<Point> points) {
+        return points == null ? List.of()
+                : points.stream().map(p -> p.distance(ray.getHead())).sorted(Comparator.naturalOrder()).toList();
+    }
+}
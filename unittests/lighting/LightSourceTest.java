@@ -0,0 +1,139 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the influence bounds of the {@link LightSource} classes.
+ */
+class LightSourceTest {
+    /** Delta for the range comparisons */
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Test method for {@link PointLight#getRange(double)}.
+     */
+    @Test
+    void testGetRange() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: quadratic attenuation - the strongest component drops to the cutoff at the range
+        PointLight light = new PointLight(new Color(100, 50, 0), Point.ZERO).setKq(1);
+        assertEquals(Math.sqrt(99), light.getRange(1), DELTA, "Wrong range with quadratic attenuation");
+        assertEquals(1, light.getIntensity(new Point(Math.sqrt(99), 0, 0)).max(), DELTA, "Wrong intensity at the range");
+        // TC02: linear attenuation
+        assertEquals(99, new PointLight(new Color(100, 50, 0), Point.ZERO).setKl(1).getRange(1), DELTA,
+                "Wrong range with linear attenuation");
+        // TC03: a light without attenuation and a directional light reach everywhere
+        assertEquals(Double.POSITIVE_INFINITY, new PointLight(new Color(100, 50, 0), Point.ZERO).getRange(1),
+                "Light without attenuation");
+        assertEquals(Double.POSITIVE_INFINITY, new DirectionalLight(new Color(100, 50, 0), Vector.MINUS_Z).getRange(1),
+                "Directional light");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a light below the cutoff everywhere has no range
+        assertEquals(0, new PointLight(new Color(1, 1, 1), Point.ZERO).setKc(2).setKq(1).getRange(1), DELTA,
+                "Light below the cutoff");
+        // TC11: a zero cutoff does not bound the light
+        assertEquals(Double.POSITIVE_INFINITY, light.getRange(0), "Zero cutoff");
+    }
+
+    /**
+     * Test method for {@link LightSource#mayIlluminate(Point, double)}.
+     */
+    @Test
+    void testMayIlluminate() {
+        PointLight point = new PointLight(new Color(100, 50, 0), Point.ZERO).setKq(1);
+        SpotLight spot = new SpotLight(new Color(100, 50, 0), Point.ZERO, Vector.MINUS_Z).setKq(0.01).setBeamExponent(2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: inside and outside the influence sphere of a point light
+        assertTrue(point.mayIlluminate(new Point(0, 9, 0), 1), "Point inside the range");
+        assertFalse(point.mayIlluminate(new Point(0, 10, 0), 1), "Point beyond the range");
+        // TC02: inside the cone of a spot light, behind it and beside the cone
+        assertTrue(spot.mayIlluminate(new Point(1, 0, -10), 1), "Point inside the cone");
+        assertFalse(spot.mayIlluminate(new Point(1, 0, 10), 1), "Point behind the spot light");
+        assertFalse(spot.mayIlluminate(new Point(10, 0, -0.5), 1), "Point beside the cone");
+        // TC03: a point that fails the test gets an intensity below the cutoff
+        Random random = new Random(3);
+        for (int i = 0; i < 10000; ++i) {
+            Point p = new Point(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100,
+                    random.nextDouble() * 200 - 100);
+            for (LightSource light : new LightSource[]{point, spot})
+                if (!light.mayIlluminate(p, 1))
+                    assertTrue(light.getIntensity(p).max() < 1, "Light skipped above the cutoff at " + p);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: with a zero cutoff only the points behind the spot light are skipped
+        assertTrue(spot.mayIlluminate(new Point(1000, 0, -0.5), 0), "Zero cutoff inside the half space");
+        assertFalse(spot.mayIlluminate(new Point(1000, 0, 0), 0), "Zero cutoff on the plane of the spot light");
+        assertTrue(new DirectionalLight(new Color(1, 1, 1), Vector.MINUS_Z).mayIlluminate(Point.ZERO, 1000),
+                "Directional light is never skipped");
+    }
+
+    /**
+     * Test method for {@link AreaLight#getSample(double, double)}.
+     */
+    @Test
+    void testGetSample() {
+        RectLight rect = new RectLight(new Color(100, 100, 100), new Point(1, 2, 3), new Vector(4, 0, 0),
+                new Vector(0, 0, 2));
+        DiscLight disc = new DiscLight(new Color(100, 100, 100), new Point(1, 2, 3), new Vector(1, 1, 0), 5);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the samples of a rectangle stay on it
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; ++i) {
+            Point p = rect.getSample(random.nextDouble(), random.nextDouble());
+            assertTrue(Math.abs(p.getX() - 1) <= 2 && p.getY() == 2 && Math.abs(p.getZ() - 3) <= 1,
+                    "Sample out of the rectangle: " + p);
+        }
+        // TC02: the samples of a disc stay on it and cover equal areas for equal cells
+        int inner = 0;
+        for (int i = 0; i < 100; ++i)
+            for (int j = 0; j < 100; ++j) {
+                Point p = disc.getSample((i + 0.5) / 100, (j + 0.5) / 100);
+                double dx = p.getX() - 1, dy = p.getY() - 2, dz = p.getZ() - 3;
+                assertEquals(0, dx + dy, DELTA, "Sample out of the plane of the disc: " + p);
+                assertTrue(dx * dx + dy * dy + dz * dz <= 25 + DELTA, "Sample out of the disc: " + p);
+                if (dx * dx + dy * dy + dz * dz < 12.5) ++inner;
+            }
+        assertEquals(5000, inner, 100, "The inner half of the disc area must get half of the samples");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the corners and the center of the square map to the corners and the center of the rectangle
+        assertEquals(new Point(-1, 2, 2), rect.getSample(0, 0), "Wrong first corner");
+        assertEquals(new Point(1, 2, 3), rect.getSample(0.5, 0.5), "Wrong center");
+        // TC11: the edge of the square maps to the rim of the disc
+        assertEquals(5, disc.getSample(1, 0.5).distance(new Point(1, 2, 3)), DELTA, "Wrong rim");
+        // TC12: degenerate area lights
+        assertThrows(IllegalArgumentException.class,
+                () -> new RectLight(new Color(1, 1, 1), Point.ZERO, Vector.AXIS_X, new Vector(2, 0, 0)), "Parallel edges");
+        assertThrows(IllegalArgumentException.class,
+                () -> new DiscLight(new Color(1, 1, 1), Point.ZERO, Vector.AXIS_Z, 0), "Zero radius");
+        assertThrows(IllegalArgumentException.class, () -> rect.setSamples(0), "No samples");
+    }
+
+    /**
+     * Test method for {@link AreaLight#getRange(double)}.
+     */
+    @Test
+    void testAreaLightRange() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the influence sphere of an area light reaches beyond its surface by the range of its center
+        AreaLight disc = new DiscLight(new Color(100, 50, 0), Point.ZERO, Vector.AXIS_Z, 3).setKq(1);
+        assertEquals(Math.sqrt(99) + 3, disc.getRange(1), DELTA, "Wrong range of a disc light");
+        assertTrue(disc.mayIlluminate(new Point(0, 12, 0), 1), "Point inside the range of the rim");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: an area light below the cutoff everywhere has no range
+        assertEquals(0, new DiscLight(new Color(1, 1, 1), Point.ZERO, Vector.AXIS_Z, 3).setKc(2).getRange(1), DELTA,
+                "Area light below the cutoff");
+    }
+}
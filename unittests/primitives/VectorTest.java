@@ -98,6 +98,27 @@ class VectorTest {
         assertEquals(1, v1.normalize().length(), "Wrong result of normalization");
         assertEquals(new Vector(1.0,0.0,0.0), v6.normalize(), "Wrong result of normalization");
         assertTrue(v1.normalize().dotProduct(v1) > 0, "Normalized vector is not parallel to the original one");
+        Vector u = v1.normalize();
+        assertSame(u, u.normalize(), "A unit vector must not be normalized again");
+        assertTrue(u.scale(-1).isNormalized(), "A reversed unit vector is a unit vector");
+        assertFalse(v1.isNormalized(), "A constructed vector is not known to be a unit vector");
+    }
+
+    /**
+     * Test method for {@link Vector#normalized(double, double, double)}.
+     */
+    @Test
+    void testNormalized() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the unit vector is flagged and equal to the normalized vector
+        Vector u = Vector.normalized(1, 2, 3);
+        assertTrue(u.isNormalized(), "The factory must flag the unit vector");
+        assertEquals(v1.normalize(), u, "Wrong unit vector");
+        assertSame(u, new Ray(Point.ZERO, u).getDirection(), "A ray must keep a unit direction as is");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: zero components
+        assertThrows(IllegalArgumentException.class, () -> Vector.normalized(0, 0, 0), "Zero vector must throw");
     }
 
     /**
@@ -0,0 +1,94 @@
+package renderer;
+
+import com.sun.management.ThreadMXBean;
+import geometries.*;
+import lighting.*;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the heap allocation rate of the ray casting and shading hot paths.
+ */
+class AllocationTests {
+    /** Image resolution of the measurement */
+    private static final int RESOLUTION = 200;
+    /** Allowed allocation per primary ray - the object-per-operation math took about 9 KB */
+    private static final double MAX_BYTES_PER_RAY = 4096;
+
+    /**
+     * Builds the measured scene - spheres, a triangle, a polygon and a plane, with reflection,
+     * transparency and all the light source types.
+     *
+     * @return the scene
+     */
+    static Scene scene() {
+        return scene(0);
+    }
+
+    /**
+     * Builds the measured scene with rough surfaces.
+     *
+     * @param roughness the roughness of the reflection, the transparency gets half of it
+     * @return the scene
+     */
+    static Scene scene(double roughness) {
+        Scene scene = new Scene("Allocation").setAmbientLight(new AmbientLight(new Color(30, 30, 30)));
+        Material shiny = new Material().setKD(0.4).setKS(0.4).setShininess(60).setKR(0.3).setRoughnessR(roughness);
+        Material glass = new Material().setKD(0.2).setKS(0.5).setShininess(100).setKT(0.6).setRoughnessT(roughness / 2);
+        scene.geometries.add(
+                new Sphere(new Point(-40, 0, -100), 30).setEmission(new Color(60, 20, 20)).setMaterial(shiny),
+                new Sphere(new Point(40, 0, -80), 25).setEmission(new Color(20, 20, 60)).setMaterial(glass),
+                new Triangle(new Point(-100, -30, -200), new Point(100, -30, -200), new Point(0, 80, -220))
+                        .setEmission(new Color(20, 40, 20)).setMaterial(shiny),
+                new Polygon(new Point(-30, 40, -60), new Point(0, 40, -60), new Point(0, 60, -70), new Point(-30, 60, -70))
+                        .setEmission(new Color(40, 40, 0)).setMaterial(shiny),
+                new Plane(new Point(0, -30, 0), Vector.AXIS_Y).setEmission(new Color(15, 15, 15)).setMaterial(shiny));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(50, 100, 50)).setKl(1e-4).setKq(1e-6));
+        scene.lights.add(new SpotLight(new Color(400, 200, 100), new Point(-100, 50, 50), new Vector(1, -0.5, -1))
+                .setKl(1e-4).setKq(1e-6));
+        scene.lights.add(new DirectionalLight(new Color(100, 100, 100), new Vector(0, -1, -1)));
+        return scene;
+    }
+
+    /**
+     * Casts and shades a ray through every pixel and reports the allocated bytes per primary ray.
+     */
+    @Test
+    void allocationPerRay() {
+        Camera camera = Camera.getBuilder().setLocation(new Point(0, 20, 200)).setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(200).setVpSize(200, 200).setResolution(RESOLUTION, RESOLUTION).build();
+        SimpleRayTracer tracer = new SimpleRayTracer(scene());
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+
+        render(camera, tracer); // warm up
+        long before = threads.getThreadAllocatedBytes(thread);
+        Color sum = render(camera, tracer);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        double perRay = (double) allocated / (RESOLUTION * RESOLUTION);
+        System.out.printf("Allocation: %.0f bytes per primary ray (%s)%n", perRay, sum);
+        assertTrue(perRay > 0, "Allocation must be measured");
+        assertTrue(perRay < MAX_BYTES_PER_RAY, "Hot paths allocate too much: " + perRay + " bytes per ray");
+    }
+
+    /**
+     * Casts and shades a ray through every pixel.
+     *
+     * @param camera the camera
+     * @param tracer the ray tracer
+     * @return the sum of the pixel colors
+     */
+    private static Color render(Camera camera, SimpleRayTracer tracer) {
+        Color sum = Color.BLACK;
+        for (int i = 0; i < RESOLUTION; ++i)
+            for (int j = 0; j < RESOLUTION; ++j)
+                sum = sum.add(tracer.traceRay(camera.constructRay(RESOLUTION, RESOLUTION, j, i)));
+        return sum;
+    }
+}
@@ -1,11 +1,13 @@
 package renderer;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.junit.jupiter.api.Test;
 
 import primitives.*;
+import scene.Scene;
 import renderer.Camera;
 
 /**
@@ -94,4 +96,25 @@ class CameraTest {
         // BV01: set to a target on Y-axis without up
         assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setDirection(new Point(0, 10, 0)).build());
     }
+
+    /**
+     * Test method for {@link Camera.Builder#setRayTracer(Scene, RayTracerType)}.
+     */
+    @Test
+    void testSetRayTracer() {
+        Scene scene = new Scene("Test");
+        cameraBuilder.setVpSize(4, 4).setResolution(2, 2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the simple ray tracer and the path tracer render the image
+        assertDoesNotThrow(() -> cameraBuilder.setRayTracer(scene, RayTracerType.SIMPLE).build().renderImage(),
+                "Simple ray tracer");
+        assertDoesNotThrow(() -> cameraBuilder.setRayTracer(scene, RayTracerType.PATH).build().renderImage(),
+                "Path tracer");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: a type without a ray tracer
+        assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setRayTracer(scene, RayTracerType.GRID),
+                "Unsupported ray tracer type");
+    }
 }
@@ -0,0 +1,122 @@
+package renderer;
+
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.PointLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LightIndex}.
+ */
+class LightIndexTest {
+
+    /**
+     * Test method for {@link LightIndex#candidates(Point)}.
+     */
+    @Test
+    void testCandidates() {
+        Random random = new Random(7);
+        List<LightSource> lights = new ArrayList<>();
+        for (int i = 0; i < 300; ++i) {
+            Point position = new Point(random.nextDouble() * 400, random.nextDouble() * 400, random.nextDouble() * 40);
+            lights.add(i % 3 == 0
+                    ? new SpotLight(new Color(100, 100, 100), position, new Vector(0, 0, -1)).setKq(0.1)
+                    : new PointLight(new Color(100, 80, 60), position).setKl(0.5).setKq(0.2));
+            if (i == 150) lights.add(new DirectionalLight(new Color(10, 10, 10), Vector.MINUS_Z));
+        }
+        LightIndex index = new LightIndex(lights, 1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every light that may light a point is a candidate of the point, and the candidates keep the scene order
+        int candidates = 0;
+        for (int i = 0; i < 5000; ++i) {
+            Point p = new Point(random.nextDouble() * 500 - 50, random.nextDouble() * 500 - 50,
+                    random.nextDouble() * 100 - 50);
+            int[] cell = index.candidates(p);
+            for (int c = 1; c < cell.length; ++c) assertTrue(cell[c - 1] < cell[c], "Candidates out of order");
+            candidates += cell.length;
+            for (int l = 0; l < lights.size(); ++l)
+                if (lights.get(l).mayIlluminate(p, 1))
+                    assertTrue(contains(cell, l), "Light " + l + " missing at " + p);
+        }
+        assertTrue(candidates < 5000 * lights.size() / 10, "The index must skip most of the lights");
+        // TC02: a point far from all the bounded lights gets only the unbounded light
+        assertArrayEquals(new int[]{151}, index.candidates(new Point(0, 0, 10000)), "Far point");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a few lights get no grid - every point gets all of them
+        LightIndex few = new LightIndex(lights.subList(0, 3), 1);
+        assertArrayEquals(new int[]{0, 1, 2}, few.candidates(new Point(0, 0, 10000)), "Index of a few lights");
+        // TC11: the index is out of date once the list grows
+        assertTrue(index.indexes(lights, 1), "Index of the list");
+        assertFalse(index.indexes(lights, 2), "Index of another cutoff");
+        lights.add(new PointLight(new Color(1, 1, 1), Point.ZERO));
+        assertFalse(index.indexes(lights, 1), "Index of a grown list");
+    }
+
+    /**
+     * Test method for {@link LightIndex#gridEntries()}.
+     */
+    @Test
+    void testGridEntries() {
+        Random random = new Random(5);
+        List<LightSource> lights = new ArrayList<>();
+        // a few hundred lights whose weak attenuation reaches the whole scene
+        for (int i = 0; i < 400; ++i)
+            lights.add(new PointLight(new Color(100, 100, 100), new Point(random.nextDouble() * 1000,
+                    random.nextDouble() * 1000, random.nextDouble() * 50)).setKq(1e-6));
+
+        // =============== Boundary Values Tests ==================
+        // TC10: lights that all cover the scene get no grid, which would not prune any of them
+        LightIndex covering = new LightIndex(lights, 1);
+        assertEquals(0, covering.gridEntries(), "Grid of lights that reach everywhere");
+        assertEquals(400, covering.candidates(new Point(500, 500, 20)).length, "Every light reaches the point");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a cluster of short lights among them is pruned by the grid, and the covering lights are shared
+        for (int i = 0; i < 300; ++i)
+            lights.add(new PointLight(new Color(100, 100, 100), new Point(random.nextDouble() * 300,
+                    random.nextDouble() * 300, random.nextDouble() * 50)).setKl(0.5).setKq(0.2));
+        LightIndex index = new LightIndex(lights, 1);
+        int candidates = 0;
+        int[] shared = null;
+        for (int i = 0; i < 2000; ++i) {
+            double extent = i % 2 == 0 ? 300 : 1000;
+            Point p = new Point(random.nextDouble() * extent, random.nextDouble() * extent, random.nextDouble() * 50);
+            int[] cell = index.candidates(p);
+            candidates += cell.length;
+            for (int l = 0; l < lights.size(); ++l)
+                if (lights.get(l).mayIlluminate(p, 1)) assertTrue(contains(cell, l), "Light " + l + " missing at " + p);
+            if (cell.length > 400) continue;
+            // a point without short lights gets the shared list of the covering lights
+            if (shared == null) shared = cell;
+            assertSame(shared, cell, "The points without short lights must share their list");
+        }
+        assertNotNull(shared, "No point without short lights");
+        assertTrue(candidates < 2000 * 420, "The index must skip most of the short lights");
+        // TC02: the grid stores the lists of the cells with short lights only, within the entry budget
+        assertTrue(index.gridEntries() > 0, "Short lights get a grid");
+        assertTrue(index.gridEntries() <= LightIndex.MAX_GRID_ENTRIES, "Grid over its budget");
+    }
+
+    /**
+     * @param array an array
+     * @param value a value
+     * @return true if the array contains the value
+     */
+    private static boolean contains(int[] array, int value) {
+        for (int element : array)
+            if (element == value) return true;
+        return false;
+    }
+}
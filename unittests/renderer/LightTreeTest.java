@@ -0,0 +1,78 @@
+package renderer;
+
+import lighting.LightSource;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LightTree}.
+ */
+class LightTreeTest {
+    /** Amount of stratified samples of the tests */
+    private static final int SAMPLES = 200000;
+
+    /**
+     * Test method for {@link LightTree#sample(Point, double, double[])}.
+     */
+    @Test
+    void testSample() {
+        Random random = new Random(11);
+        int n = 500;
+        LightSource[] lights = new LightSource[n];
+        int[] members = new int[n];
+        for (int l = 0; l < n; ++l) {
+            lights[l] = new PointLight(new Color(random.nextDouble() * 100, 50, 20),
+                    new Point(random.nextDouble() * 300, random.nextDouble() * 300, 10 + random.nextDouble() * 20));
+            members[l] = l;
+        }
+        LightTree tree = new LightTree(lights, members);
+        Point point = new Point(150, 150, 0);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every light is sampled as often as its probability, and the probabilities sum to 1
+        int[] counts = new int[n];
+        double[] probabilities = new double[n];
+        double[] probability = new double[1];
+        double estimate = 0, exact = 0;
+        for (int k = 0; k < SAMPLES; ++k) {
+            int l = tree.sample(point, (k + 0.5) / SAMPLES, probability);
+            ++counts[l];
+            probabilities[l] = probability[0];
+            // TC02: the lighting of a sampled light over its probability estimates the lighting of all the lights
+            estimate += lights[l].getIntensity(point).max() / probability[0];
+        }
+        double total = 0;
+        for (int l = 0; l < n; ++l) {
+            exact += lights[l].getIntensity(point).max();
+            total += probabilities[l];
+            assertTrue(counts[l] > 0, "Light " + l + " is never sampled");
+            assertEquals(probabilities[l], (double) counts[l] / SAMPLES, 1e-4, "Wrong frequency of light " + l);
+        }
+        assertEquals(1, total, 1e-9, "The probabilities must sum to 1");
+        assertEquals(exact, estimate / SAMPLES, exact * 1e-3, "Biased estimate");
+        // TC03: a light near the point is sampled more often than a far light of the same power
+        LightSource[] pair = {new PointLight(new Color(10, 10, 10), new Point(0, 0, 1)),
+                new PointLight(new Color(10, 10, 10), new Point(0, 0, 10))};
+        new LightTree(pair, new int[]{0, 1}).sample(Point.ZERO, 0.5, probability);
+        assertEquals(100.0 / 101, new LightTree(pair, new int[]{0, 1}).sample(Point.ZERO, 0.1, probability) == 0
+                ? probability[0] : 1 - probability[0], 1e-9, "Wrong probability of the near light");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a single light is always sampled
+        assertEquals(3, new LightTree(lights, new int[]{3}).sample(point, 0.99, probability), "Single light");
+        assertEquals(1, probability[0], "Single light probability");
+        // TC11: the random numbers of a point are in [0,1) and depend only on the point
+        long seed = Sampler.seed(point);
+        assertEquals(seed, Sampler.seed(new Point(150, 150, 0)), "Seed of the same point");
+        for (int k = 0; k < 1000; ++k) {
+            double u = Sampler.uniform(seed, k);
+            assertTrue(u >= 0 && u < 1, "Random number out of [0,1)");
+        }
+    }
+}
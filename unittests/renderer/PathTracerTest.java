@@ -0,0 +1,101 @@
+package renderer;
+
+import geometries.Plane;
+import lighting.DirectionalLight;
+import lighting.RectLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PathTracer}.
+ */
+class PathTracerTest {
+
+    /**
+     * Builds a scene of a diffuse plane at Z = 0 under a background.
+     *
+     * @param background the background color
+     * @return the scene
+     */
+    private static Scene floor(Color background) {
+        Scene scene = new Scene("Floor").setBackground(background);
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(0.5)));
+        return scene;
+    }
+
+    /**
+     * @param x the X coordinate on the plane
+     * @return a ray down onto the plane at the coordinate
+     */
+    private static Ray down(double x) {
+        return new Ray(new Point(x, 0.3, 5), new Vector(0.1, 0.2, -1));
+    }
+
+    /**
+     * Test method for {@link PathTracer#traceRay(Ray)}.
+     */
+    @Test
+    void testTraceRay() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: under a black sky, the light sources light the plane as in the simple ray tracer
+        Scene lit = floor(Color.BLACK);
+        lit.lights.add(new DirectionalLight(new Color(200, 150, 100), new Vector(1, 1, -2)));
+        assertEquals(new SimpleRayTracer(lit).traceRay(down(0)).max(), new PathTracer(lit).traceRay(down(0)).max(),
+                1e-9, "Wrong direct lighting");
+        // TC02: the sky lights the plane by its diffuse reflection, which the simple ray tracer misses
+        assertEquals(50, new PathTracer(floor(new Color(100, 100, 100))).traceRay(down(0)).max(), 1e-9,
+                "Wrong light of the sky");
+        // TC03: the shadow rays toward an area light and the bounced rays that meet it add up to its light,
+        // which is the mean over its surface of its lighting as seen by the shadow rays
+        Scene area = floor(Color.BLACK);
+        RectLight light = new RectLight(new Color(100, 100, 100), new Point(0, 0, 10), new Vector(20, 0, 0),
+                new Vector(0, 20, 0));
+        area.lights.add(light);
+        PathTracer tracer = new PathTracer(area).setSamples(1024);
+        for (double x : new double[]{0, 8, 20}) {
+            Point point = new Point(x, 0, 0);
+            double expected = 0;
+            for (int i = 0; i < 100; ++i)
+                for (int j = 0; j < 100; ++j) {
+                    Vector l = light.getSample((i + 0.5) / 100, (j + 0.5) / 100).subtract(point).normalize();
+                    expected += 100 * 0.5 * l.getZ() / 10000;
+                }
+            double actual = tracer.traceRay(new Ray(new Point(x, 0, 1), Vector.MINUS_Z)).max();
+            assertEquals(expected, actual, expected * 0.03, "Wrong light of the area light at " + x);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the paths of a ray are seeded from the ray
+        assertEquals(tracer.traceRay(down(3)).max(), tracer.traceRay(down(3)).max(), "Random image");
+    }
+
+    /**
+     * Test method for {@link PathTracer#setNoiseTolerance(double)}.
+     */
+    @Test
+    void testSetNoiseTolerance() {
+        Scene area = floor(Color.BLACK);
+        area.lights.add(new RectLight(new Color(100, 100, 100), new Point(0, 0, 10), new Vector(20, 0, 0),
+                new Vector(0, 20, 0)));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a large tolerance stops after the first batch of paths
+        assertEquals(new PathTracer(area).setSamples(4).traceRay(down(0)).max(),
+                new PathTracer(area).setSamples(64).setNoiseTolerance(1e9).traceRay(down(0)).max(), 1e-9,
+                "Progressive accumulation did not stop");
+        // TC02: the accumulation stops within the tolerance of the mean of all the paths
+        double all = new PathTracer(area).setSamples(512).traceRay(down(0)).max();
+        assertEquals(all, new PathTracer(area).setSamples(512).setNoiseTolerance(0.2).traceRay(down(0)).max(), 1,
+                "Progressive accumulation out of the tolerance");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: bad settings
+        PathTracer tracer = new PathTracer(area);
+        assertThrows(IllegalArgumentException.class, () -> tracer.setNoiseTolerance(-1), "Negative tolerance");
+        assertThrows(IllegalArgumentException.class, () -> tracer.setSamples(0), "No paths");
+        assertThrows(IllegalArgumentException.class, () -> tracer.setMaxDepth(0), "No bounces");
+    }
+}
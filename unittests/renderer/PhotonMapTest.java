@@ -0,0 +1,121 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PhotonMap}.
+ */
+class PhotonMapTest {
+    /** Amount of photons of the random map */
+    private static final int PHOTONS = 5000;
+
+    /**
+     * Test method for {@link PhotonMap#search(Point, Vector, double, int, double)}.
+     */
+    @Test
+    void testSearch() {
+        Random random = new Random(7);
+        float[] positions = new float[3 * PHOTONS], powers = new float[3 * PHOTONS];
+        byte[] directions = new byte[3 * PHOTONS];
+        for (int i = 0; i < 3 * PHOTONS; ++i) positions[i] = (float) (random.nextDouble() * 100);
+        // every other photon falls down, the rest rise
+        for (int i = 0; i < PHOTONS; ++i) directions[3 * i + 2] = (byte) (i % 2 == 0 ? -127 : 127);
+        float[] copy = positions.clone();
+        PhotonMap map = new PhotonMap(positions, powers, directions, PHOTONS);
+
+        for (int q = 0; q < 50; ++q) {
+            Point point = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: the nearest photons of the tree are the nearest photons of a full scan
+            assertArrayEquals(scan(copy, point, -1, 10, 1e9), found(map.search(point, null, 0, 10, 1e9)),
+                    "Wrong nearest photons of " + point);
+            // TC02: a surface seen from above takes only the photons that fall down on it
+            assertArrayEquals(scan(copy, point, 0, 10, 1e9), found(map.search(point, Vector.AXIS_Z, -1, 10, 1e9)),
+                    "Wrong nearest falling photons of " + point);
+
+            // =============== Boundary Values Tests ==================
+            // TC10: fewer photons than asked are found within the radius
+            double[] near = scan(copy, point, -1, 10, 4);
+            assertTrue(near.length < 10, "The radius must hold fewer photons");
+            assertArrayEquals(near, found(map.search(point, null, 0, 10, 4)), "Wrong photons within the radius");
+        }
+        // TC11: an empty map finds nothing
+        PhotonMap empty = new PhotonMap(new float[0], new float[0], new byte[0], 0);
+        assertEquals(0, empty.search(Point.ZERO, null, 0, 10, 1e9).count, "An empty map has no photons");
+        assertEquals(0, empty.gather(Point.ZERO, Vector.AXIS_Z, -1, 10, 1).max(), "An empty map has no light");
+    }
+
+    /**
+     * Finds the nearest photons of a point by scanning them all.
+     *
+     * @param positions the photon positions
+     * @param point     the point
+     * @param parity    the parity of the photon indices to take, -1 to take them all
+     * @param nearest   the amount of nearest photons
+     * @param radius    the radius of the search
+     * @return the sorted squared distances of the nearest photons
+     */
+    private static double[] scan(float[] positions, Point point, int parity, int nearest, double radius) {
+        double[] distances = new double[PHOTONS];
+        int count = 0;
+        for (int i = 0; i < PHOTONS; ++i) {
+            if (parity >= 0 && i % 2 != parity) continue;
+            double dx = point.getX() - positions[3 * i], dy = point.getY() - positions[3 * i + 1],
+                    dz = point.getZ() - positions[3 * i + 2];
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (distance < radius * radius) distances[count++] = distance;
+        }
+        Arrays.sort(distances, 0, count);
+        return Arrays.copyOf(distances, Math.min(count, nearest));
+    }
+
+    /**
+     * Returns the sorted squared distances of the photons found by a query.
+     *
+     * @param query the query
+     * @return the distances
+     */
+    private static double[] found(PhotonMap.Query query) {
+        double[] distances = Arrays.copyOf(query.distances, query.count);
+        Arrays.sort(distances);
+        return distances;
+    }
+
+    /**
+     * Test method for {@link PhotonMap#gather(Point, Vector, double, int, double)}.
+     */
+    @Test
+    void testGather() {
+        // a photon of power 1 falling on every unit of the square [-50,50] x [-50,50] of the plane z = 0
+        int side = 101, n = side * side;
+        float[] positions = new float[3 * n], powers = new float[3 * n];
+        byte[] directions = new byte[3 * n];
+        for (int i = 0; i < n; ++i) {
+            positions[3 * i] = i % side - 50;
+            positions[3 * i + 1] = (float) (i / side - 50);
+            powers[3 * i] = powers[3 * i + 1] = powers[3 * i + 2] = 1;
+            directions[3 * i + 2] = -127;
+        }
+        PhotonMap map = new PhotonMap(positions, powers, directions, n);
+        assertEquals(n, map.size(), "Wrong amount of photons");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the irradiance within the radius is the power per unit of area
+        Color irradiance = map.gather(new Point(0.5, 0.5, 0), Vector.AXIS_Z, -1, 1000, 10);
+        assertEquals(1, irradiance.max(), 0.02, "Wrong irradiance");
+        // TC02: the nearest photons estimate the same irradiance
+        assertEquals(1, map.gather(new Point(0.5, 0.5, 0), Vector.AXIS_Z, -1, 300, 10).max(), 0.1,
+                "Wrong irradiance of the nearest photons");
+        // TC03: the photons do not light the other side of the surface
+        assertEquals(0, map.gather(new Point(0.5, 0.5, 0), Vector.AXIS_Z, 1, 1000, 10).max(),
+                "The photons light the wrong side");
+    }
+}
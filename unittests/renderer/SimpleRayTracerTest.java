@@ -0,0 +1,476 @@
+package renderer;
+
+import geometries.CsgNode;
+import geometries.Intersectable.Hit;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.PointLight;
+import lighting.RectLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the secondary ray loop of {@link SimpleRayTracer}.
+ */
+class SimpleRayTracerTest {
+
+    /**
+     * Builds two facing perfect mirrors that reflect a ray between them forever;
+     * every shaded intersection adds 1/16 of emission.
+     *
+     * @return the ray tracer
+     */
+    private static SimpleRayTracer mirrors() {
+        Scene scene = new Scene("Mirrors");
+        Material mirror = new Material().setKR(1);
+        Color emission = new Color(0.0625, 0.0625, 0.0625);
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setEmission(emission).setMaterial(mirror),
+                new Plane(new Point(0, 0, 10), Vector.AXIS_Z).setEmission(emission).setMaterial(mirror));
+        return new SimpleRayTracer(scene);
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setMaxLevel(int)}.
+     */
+    @Test
+    void testSetMaxLevel() {
+        Ray ray = new Ray(new Point(0, 0, 5), Vector.AXIS_Z);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every level up to the depth adds its emission
+        assertEquals(new java.awt.Color(25, 25, 25), mirrors().setMaxLevel(400).traceRay(ray).getColor(),
+                "Wrong color at depth 400");
+        // TC02: a deep path of 4000 reflections
+        assertEquals(new java.awt.Color(250, 250, 250), mirrors().setMaxLevel(4000).traceRay(ray).getColor(),
+                "Wrong color at depth 4000");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the emission reaches 1 exactly at the 16th level
+        assertEquals(new java.awt.Color(1, 1, 1), mirrors().setMaxLevel(16).traceRay(ray).getColor(),
+                "Wrong color at depth 16");
+        assertEquals(new java.awt.Color(0, 0, 0), mirrors().setMaxLevel(15).traceRay(ray).getColor(),
+                "Wrong color at depth 15");
+        // TC11: the depth must be positive
+        assertThrows(IllegalArgumentException.class, () -> mirrors().setMaxLevel(0), "Zero depth");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#transparency(LightSource, Ray, Point, double)}.
+     */
+    @Test
+    void testTransparency() {
+        Scene scene = new Scene("Occluders");
+        // an opaque sphere above the origin, and a lens of two spheres whose parts outside the lens are no surfaces
+        scene.geometries.add(new Sphere(new Point(0, 0, 50), 5),
+                CsgNode.intersection(new Sphere(new Point(-30, 0, 50), 10), new Sphere(new Point(-30, 0, 60), 10)));
+        LightSource light = new DirectionalLight(new Color(100, 100, 100), Vector.MINUS_Z);
+        scene.lights.add(light);
+        SimpleRayTracer tracer = new SimpleRayTracer(scene);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the sphere blocks the light, and blocks it again as the last occluder
+        assertEquals(Double3.ZERO, transparency(tracer, light, new Point(0, 0, 0)), "Blocked by the sphere");
+        assertEquals(Double3.ZERO, transparency(tracer, light, new Point(1, 1, 0)), "Blocked again by the sphere");
+        // TC02: the last occluder missing does not block the light
+        assertEquals(Double3.ONE, transparency(tracer, light, new Point(20, 0, 0)), "Lit point");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a surface of a CSG node blocks the light only inside the node, so it is never the last occluder
+        assertEquals(Double3.ZERO, transparency(tracer, light, new Point(-30, 0, 0)), "Blocked by the lens");
+        assertEquals(Double3.ONE, transparency(tracer, light, new Point(-30, 9, 0)), "Passing beside the lens");
+        assertEquals(Double3.ZERO, transparency(tracer, light, new Point(0, 0, 0)), "Blocked by the sphere after the lens");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setLightCutoff(double)}.
+     */
+    @Test
+    void testSetLightCutoff() {
+        Scene scene = new Scene("Lamps");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(0.5).setKS(0.5)));
+        for (int i = 0; i < 20; ++i)
+            for (int j = 0; j < 20; ++j)
+                scene.lights.add(new PointLight(new Color(200, 150, 100), new Point(20 * i, 20 * j, 5)).setKq(0.05));
+        SimpleRayTracer exact = new SimpleRayTracer(scene).setLightCutoff(0), culled = new SimpleRayTracer(scene);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the lights skipped below the cutoff do not change the colors
+        for (int x = 0; x < 400; x += 7)
+            for (int y = 0; y < 400; y += 11) {
+                Ray ray = new Ray(new Point(x, y, 50), Vector.MINUS_Z);
+                java.awt.Color expected = exact.traceRay(ray).getColor(), actual = culled.traceRay(ray).getColor();
+                assertTrue(Math.abs(expected.getRed() - actual.getRed()) <= 1
+                                && Math.abs(expected.getGreen() - actual.getGreen()) <= 1
+                                && Math.abs(expected.getBlue() - actual.getBlue()) <= 1,
+                        "Wrong color at " + x + "," + y + ": " + actual + " instead of " + expected);
+            }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the cutoff must not be negative
+        assertThrows(IllegalArgumentException.class, () -> exact.setLightCutoff(-1), "Negative cutoff");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setLightSamples(int)}.
+     */
+    @Test
+    void testSetLightSamples() {
+        Scene scene = new Scene("Night");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(0.5).setKS(0.5)));
+        for (int i = 0; i < 40; ++i)
+            for (int j = 0; j < 40; ++j)
+                scene.lights.add(new PointLight(new Color(8, 6, 4), new Point(10 * i, 10 * j, 5)).setKq(0.05));
+        SimpleRayTracer exact = new SimpleRayTracer(scene).setLightCutoff(0);
+        SimpleRayTracer sampled = new SimpleRayTracer(scene).setLightCutoff(0).setLightSamples(8);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the sampled lighting of a region has the mean of the lighting of all the lights
+        double expected = 0, actual = 0;
+        for (int x = 100; x < 300; x += 4)
+            for (int y = 100; y < 300; y += 4) {
+                Ray ray = new Ray(new Point(x + 0.37, y + 0.61, 50), Vector.MINUS_Z);
+                expected += exact.traceRay(ray).max();
+                actual += sampled.traceRay(ray).max();
+            }
+        assertEquals(expected, actual, expected * 0.02, "Biased light sampling");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the amount of samples must not be negative
+        assertThrows(IllegalArgumentException.class, () -> sampled.setLightSamples(-1), "Negative amount of samples");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setShadowBudget(int)}.
+     */
+    @Test
+    void testSetShadowBudget() {
+        Scene scene = new Scene("Dozen");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(0.5).setKS(0.5)));
+        for (int i = 0; i < 5; ++i)
+            scene.geometries.add(new Sphere(new Point(40 * i + 20, 100, 15), 8).setMaterial(new Material().setKT(0.3)));
+        for (int i = 0; i < 12; ++i)
+            scene.lights.add(new PointLight(new Color(30 + 10 * i, 40, 50), new Point(20 * i, 60 + 7 * i, 40))
+                    .setKq(0.001));
+        SimpleRayTracer exact = new SimpleRayTracer(scene), budgeted = new SimpleRayTracer(scene).setShadowBudget(3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the lighting of a region with three shadow rays per point has the mean of the full lighting
+        double expected = 0, actual = 0;
+        for (int x = 0; x < 200; x += 2)
+            for (int y = 50; y < 150; y += 2) {
+                Ray ray = new Ray(new Point(x + 0.37, y + 0.61, 50), Vector.MINUS_Z);
+                expected += exact.traceRay(ray).max();
+                actual += budgeted.traceRay(ray).max();
+            }
+        assertEquals(expected, actual, expected * 0.02, "Biased shadow ray budget");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a budget of all the lights casts every shadow ray
+        SimpleRayTracer full = new SimpleRayTracer(scene).setShadowBudget(12);
+        for (int x = 0; x < 200; x += 10) {
+            Ray ray = new Ray(new Point(x, 100, 50), Vector.MINUS_Z);
+            assertEquals(exact.traceRay(ray).max(), full.traceRay(ray).max(), 1e-9, "Wrong lighting at " + x);
+        }
+        // TC11: the budget must not be negative
+        assertThrows(IllegalArgumentException.class, () -> exact.setShadowBudget(-1), "Negative budget");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#shadowWeights(double[], int, long)}.
+     */
+    @Test
+    void testShadowWeights() {
+        double[] strength = {5, 1, 0, 3, 1};
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the strongest light gets a shadow ray, one of the rest is sampled, and the weighted strengths
+        // always sum to the total strength
+        for (long seed = 0; seed < 100; ++seed) {
+            double[] weights = SimpleRayTracer.shadowWeights(strength, 2, seed);
+            assertEquals(1, weights[0], "The strongest light must get a shadow ray");
+            assertEquals(0, weights[2], "A light that does not reach the point gets no shadow ray");
+            int rays = 0;
+            double sum = 0;
+            for (int i = 0; i < strength.length; ++i) {
+                if (weights[i] > 0) ++rays;
+                sum += weights[i] * strength[i];
+            }
+            assertEquals(2, rays, "Wrong amount of shadow rays");
+            assertEquals(10, sum, 1e-9, "Wrong weighted strength");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a budget of all the reaching lights gives every one of them a shadow ray
+        assertArrayEquals(new double[]{1, 1, 0, 1, 1}, SimpleRayTracer.shadowWeights(strength, 4, 0), "Full budget");
+        // TC11: a budget of one shadow ray samples a light among all of them
+        double[] weights = SimpleRayTracer.shadowWeights(strength, 1, 3);
+        double sum = 0;
+        for (int i = 0; i < strength.length; ++i) sum += weights[i] * strength[i];
+        assertEquals(10, sum, 1e-9, "Wrong weighted strength of a single shadow ray");
+    }
+
+    /**
+     * Calculates the transparency of the vertical shadow ray of a point.
+     *
+     * @param tracer the ray tracer
+     * @param light  the light source above the scene
+     * @param point  the shaded point
+     * @return the transparency
+     */
+    private static Double3 transparency(SimpleRayTracer tracer, LightSource light, Point point) {
+        return tracer.transparency(light, new Ray(point, Vector.AXIS_Z), point, light.getDistance(point));
+    }
+
+    /**
+     * Test method for the soft shadows of {@link lighting.AreaLight}s.
+     */
+    @Test
+    void testSoftShadows() {
+        Scene scene = new Scene("Soft");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(1)),
+                new Sphere(new Point(0, 0, 20), 5));
+        Scene hard = new Scene("Hard").setGeometries(scene.geometries);
+        Color intensity = new Color(100, 100, 100);
+        RectLight area = new RectLight(intensity, new Point(0, 0, 40), new Vector(8, 0, 0), new Vector(0, 8, 0));
+        scene.lights.add(area);
+        hard.lights.add(new PointLight(intensity, new Point(0, 0, 40)));
+        SimpleRayTracer soft = new SimpleRayTracer(scene), point = new SimpleRayTracer(hard);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: out of the penumbra the area light lights as its center does, and the umbra is dark
+        assertEquals(point.traceRay(down(30)).max(), soft.traceRay(down(30)).max(), 1e-9, "Wrong lit point");
+        assertEquals(0, soft.traceRay(down(0)).max(), "Lit umbra");
+        // TC02: the penumbra is partly lit on both sides of the hard shadow edge (about 10.3 from the center)
+        assertEquals(0, point.traceRay(down(8)).max(), "Lit hard shadow");
+        assertTrue(soft.traceRay(down(8)).max() > 0, "Dark penumbra inside the hard shadow");
+        assertTrue(soft.traceRay(down(12)).max() < point.traceRay(down(12)).max(), "Unshadowed penumbra");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a single sample casts the hard shadow of the center
+        area.setSamples(1);
+        for (double x = 0; x < 20; x += 0.5)
+            assertEquals(point.traceRay(down(x)).max(), soft.traceRay(down(x)).max(), 1e-9, "Wrong hard shadow at " + x);
+    }
+
+    /**
+     * @param x the X coordinate on the plane of {@link #testSoftShadows()}
+     * @return a ray down onto the plane at the coordinate
+     */
+    private static Ray down(double x) {
+        return new Ray(new Point(x, 0.3, 1), Vector.MINUS_Z);
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setConeSamples(int)} - the blurred reflection and the frosted
+     * transparency of rough surfaces.
+     */
+    @Test
+    void testSetConeSamples() {
+        // a bright half plane above the edge X = 0, seen in a mirror and through a clear plane, rough or not
+        Polygon bright = new Polygon(new Point(0, -1000, 50), new Point(1000, -1000, 50), new Point(1000, 1000, 50),
+                new Point(0, 1000, 50));
+        bright.setEmission(new Color(100, 100, 100));
+        SimpleRayTracer mirror = edge(bright, new Material().setKR(1));
+        SimpleRayTracer glossy = edge(bright, new Material().setKR(1).setRoughnessR(0.2));
+        Polygon below = new Polygon(new Point(0, -1000, -50), new Point(1000, -1000, -50), new Point(1000, 1000, -50),
+                new Point(0, 1000, -50));
+        below.setEmission(new Color(100, 100, 100));
+        SimpleRayTracer clear = edge(below, new Material().setKT(1));
+        SimpleRayTracer frosted = edge(below, new Material().setKT(1).setRoughnessT(0.2));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: far from the edge every cone ray sees the same color, so the rough surface looks like the smooth one
+        for (double x : new double[]{-30, 30}) {
+            assertEquals(mirror.traceRay(down(x)).max(), glossy.traceRay(down(x)).max(), 1e-9, "Wrong gloss at " + x);
+            assertEquals(clear.traceRay(down(x)).max(), frosted.traceRay(down(x)).max(), 1e-9, "Wrong frost at " + x);
+        }
+        // TC02: at the edge the rough surfaces blur the sharp edge, and keep the mean color around it
+        double glossyEdge = glossy.traceRay(down(-2)).max(), frostedEdge = frosted.traceRay(down(-2)).max();
+        assertTrue(glossyEdge > 0 && glossyEdge < 100, "Sharp glossy reflection: " + glossyEdge);
+        assertTrue(frostedEdge > 0 && frostedEdge < 100, "Sharp frosted transparency: " + frostedEdge);
+        double sharp = 0, blurred = 0;
+        for (double x = -20; x < 20; x += 0.25) {
+            sharp += mirror.traceRay(down(x)).max();
+            blurred += glossy.traceRay(down(x)).max();
+        }
+        assertEquals(sharp, blurred, sharp * 0.03, "Biased glossy reflection");
+        // TC03: a uniform region of the rough surface gets only the pilot rays, while the edge gets the whole grid
+        int[] rays = new int[1];
+        Plane counting = new Plane(Point.ZERO, Vector.AXIS_Z) {
+            @Override
+            protected boolean calculateClosestHitHelper(Ray ray, Hit hit) {
+                ++rays[0];
+                return super.calculateClosestHitHelper(ray, hit);
+            }
+        };
+        Scene counted = new Scene("Counted edge");
+        counted.geometries.add(counting.setMaterial(new Material().setKR(1).setRoughnessR(0.2)), bright);
+        SimpleRayTracer sampled = new SimpleRayTracer(counted);
+        sampled.traceRay(down(30));
+        int uniform = rays[0];
+        rays[0] = 0;
+        sampled.traceRay(down(-2));
+        assertEquals(1 + 4, uniform, "A uniform cone must get only the pilot rays");
+        assertEquals(1 + 16, rays[0], "A cone over the edge must get every cell");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a single cone cell still blurs the edge
+        glossy.setConeSamples(1);
+        double single = 0;
+        for (double x = -20; x < 20; x += 0.25) single += glossy.traceRay(down(x)).max();
+        assertEquals(sharp, single, sharp * 0.05, "Biased glossy reflection with a single sample");
+        // TC11: the amount of samples and the roughness must be positive
+        assertThrows(IllegalArgumentException.class, () -> glossy.setConeSamples(0), "No cone samples");
+        assertThrows(IllegalArgumentException.class, () -> new Material().setRoughnessR(-0.1), "Negative roughness");
+        assertThrows(IllegalArgumentException.class, () -> new Material().setRoughnessT(-0.1), "Negative roughness");
+    }
+
+    /**
+     * Builds the scene of {@link #testSetConeSamples()}: a plane of a material at Z = 0 and a bright half plane.
+     *
+     * @param bright   the bright half plane
+     * @param material the material of the plane
+     * @return the ray tracer
+     */
+    private static SimpleRayTracer edge(Polygon bright, Material material) {
+        Scene scene = new Scene("Edge");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(material), bright);
+        return new SimpleRayTracer(scene);
+    }
+
+    /**
+     * Builds a scene of diamonds - spheres that both reflect and transmit light - in front of a mirror.
+     *
+     * @return the scene
+     */
+    private static Scene diamonds() {
+        Scene scene = new Scene("Diamonds");
+        Material diamond = new Material().setKD(0.2).setKS(0.3).setShininess(80).setKT(0.6).setKR(0.5);
+        for (int i = 0; i < 4; ++i)
+            scene.geometries.add(new Sphere(new Point(30 * i - 45, 10 * (i % 2), -50 - 10 * i), 18)
+                    .setEmission(new Color(10 * i, 20, 30)).setMaterial(diamond));
+        scene.geometries.add(new Plane(new Point(0, 0, -120), Vector.AXIS_Z).setEmission(new Color(20, 20, 20))
+                .setMaterial(new Material().setKD(0.3).setKR(0.5)));
+        scene.lights.add(new PointLight(new Color(300, 250, 200), new Point(0, 80, 50)).setKl(1e-4));
+        return scene;
+    }
+
+    /**
+     * Sums the strongest color components of a grid of rays from the front of {@link #diamonds()}.
+     *
+     * @param tracer the ray tracer
+     * @return the sum
+     */
+    private static double diamondsSum(SimpleRayTracer tracer) {
+        double sum = 0;
+        for (double x = -70; x < 70; x += 1)
+            for (double y = -30; y < 30; y += 1)
+                sum += tracer.traceRay(new Ray(new Point(x + 0.31, y + 0.47, 100), Vector.MINUS_Z)).max();
+        return sum;
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setRussianRoulette(double)}.
+     */
+    @Test
+    void testSetRussianRoulette() {
+        double exact = diamondsSum(new SimpleRayTracer(diamonds()));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the roulette keeps the mean color of the image
+        assertEquals(exact, diamondsSum(new SimpleRayTracer(diamonds()).setRussianRoulette(0.3)), exact * 0.01,
+                "Biased Russian roulette");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a roulette of every secondary ray keeps the mean color too
+        assertEquals(exact, diamondsSum(new SimpleRayTracer(diamonds()).setRussianRoulette(1)), exact * 0.02,
+                "Biased Russian roulette of every ray");
+        // TC11: no roulette below the throughput of the shaded rays, nor above 1
+        SimpleRayTracer tracer = new SimpleRayTracer(diamonds());
+        assertThrows(IllegalArgumentException.class, () -> tracer.setRussianRoulette(0.0001), "Threshold too low");
+        assertThrows(IllegalArgumentException.class, () -> tracer.setRussianRoulette(1.5), "Threshold above 1");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setSingleBranch(boolean)}.
+     */
+    @Test
+    void testSetSingleBranch() {
+        double exact = diamondsSum(new SimpleRayTracer(diamonds()));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: following one ray per bounce keeps the mean color of the image, with and without the roulette
+        assertEquals(exact, diamondsSum(new SimpleRayTracer(diamonds()).setSingleBranch(true)), exact * 0.02,
+                "Biased single branch");
+        assertEquals(exact, diamondsSum(new SimpleRayTracer(diamonds()).setSingleBranch(true).setRussianRoulette(0.3)),
+                exact * 0.02, "Biased single branch with roulette");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a surface with one secondary ray is traced as before
+        for (double x = -40; x < 40; x += 4) {
+            Ray ray = new Ray(new Point(x, 0, 5), new Vector(0.1, 0.2, -1));
+            assertEquals(mirrors().traceRay(ray).max(), mirrors().setSingleBranch(true).traceRay(ray).max(), 1e-9,
+                    "Wrong single branch of a mirror");
+        }
+    }
+
+    /**
+     * Builds a diffuse floor lit by a point light from below a mirror ceiling, which reflects the light
+     * onto the floor as if from the image of the light above the ceiling.
+     *
+     * @param sheet the material of a sheet between the light and the floor, null for no sheet
+     * @return the ray tracer
+     */
+    private static SimpleRayTracer ceiling(Material sheet) {
+        Scene scene = new Scene("Ceiling");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Y).setMaterial(new Material().setKD(1)),
+                new Plane(new Point(0, 100, 0), Vector.AXIS_Y).setMaterial(new Material().setKR(1)));
+        if (sheet != null)
+            scene.geometries.add(new Polygon(new Point(-30, 20, -30), new Point(30, 20, -30), new Point(30, 20, 30),
+                    new Point(-30, 20, 30)).setMaterial(sheet));
+        scene.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 50, 0)).setKc(0).setKq(1e-4));
+        return new SimpleRayTracer(scene);
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setCaustics(int, double)}.
+     */
+    @Test
+    void testSetCaustics() {
+        Ray center = new Ray(new Point(0, 1, 0), Vector.MINUS_Y), side = new Ray(new Point(100, 1, 0), Vector.MINUS_Y);
+        double direct = ceiling(null).traceRay(center).max(), sideDirect = ceiling(null).traceRay(side).max();
+        SimpleRayTracer caustics = ceiling(null).setCaustics(1000000, 10).setCausticNearest(2000);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the mirror adds the light of the image of the light, I cos / (kQ L^2)
+        assertEquals(100 / (1e-4 * 150 * 150), caustics.traceRay(center).max() - direct, 4,
+                "Wrong caustic under the light");
+        double l = Math.sqrt(100 * 100 + 150 * 150);
+        assertEquals(100 * 150 / (1e-4 * l * l * l), caustics.traceRay(side).max() - sideDirect, 3,
+                "Wrong caustic aside the light");
+        // TC02: a photon map that holds a fifth of the photons gives the same caustic, noisier
+        assertEquals(100 / (1e-4 * 150 * 150), ceiling(null).setCaustics(1000000, 10).setCausticNearest(2000)
+                .setPhotonMemory(100000L * PhotonMap.PHOTON_BYTES).traceRay(center).max() - direct, 8,
+                "Wrong caustic of a smaller photon map");
+        // TC03: the light that only goes through a transparent sheet is not doubled by the photons
+        Material glass = new Material().setKT(0.5);
+        assertEquals(ceiling(glass).traceRay(side).max(), ceiling(glass).setCaustics(1000000, 10)
+                .setCausticNearest(2000).traceRay(side).max() - 100 * 150 / (1e-4 * l * l * l), 3,
+                "Transparent sheet with doubled light");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: without photons the shading is the direct lighting
+        assertEquals(direct, ceiling(null).setCaustics(0, 0).traceRay(center).max(), 1e-9, "Caustics without photons");
+        assertThrows(IllegalArgumentException.class, () -> ceiling(null).setCaustics(-1, 10), "Negative photons");
+        assertThrows(IllegalArgumentException.class, () -> ceiling(null).setCaustics(10, 0), "Zero caustic radius");
+        assertThrows(IllegalArgumentException.class, () -> ceiling(null).setCausticNearest(0), "No nearest photons");
+        assertThrows(IllegalArgumentException.class, () -> ceiling(null).setPhotonMemory(PhotonMap.PHOTON_BYTES - 1),
+                "Photon memory below a photon");
+    }
+}
@@ -0,0 +1,131 @@
+package renderer;
+
+import lighting.PointLight;
+import lighting.RectLight;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link WavefrontRenderer} - it must render the image of the per-pixel tracing.
+ */
+class WavefrontRendererTest {
+    /** Image resolution of the tests */
+    private static final int RESOLUTION = 80;
+
+    /**
+     * Test method for {@link WavefrontRenderer#render(Camera, int, int, int, int)}.
+     */
+    @Test
+    void testRender() {
+        Camera camera = Camera.getBuilder().setLocation(new Point(0, 20, 200))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y).setVpDistance(200).setVpSize(200, 200)
+                .setResolution(RESOLUTION, RESOLUTION).build();
+        SimpleRayTracer tracer = new SimpleRayTracer(AllocationTests.scene());
+        int total = RESOLUTION * RESOLUTION;
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the wave has the colors of the per-pixel tracing, up to the rounding of the sums
+        Color[] wave = new WavefrontRenderer(tracer, false).render(camera, RESOLUTION, RESOLUTION, 0, total);
+        assertSimilar(traced(tracer, camera), wave, "");
+        // TC02: the parallel stages give exactly the serial colors
+        Color[] parallel = new WavefrontRenderer(tracer, true).render(camera, RESOLUTION, RESOLUTION, 0, total);
+        for (int p = 0; p < total; ++p)
+            assertEquals(wave[p].getColor(), parallel[p].getColor(), "Parallel stages differ at pixel " + p);
+        // TC03: the secondary rays traced in their spawning order give the colors of the sorted rays
+        assertSimilar(wave, new WavefrontRenderer(tracer, false).setReorder(false)
+                .render(camera, RESOLUTION, RESOLUTION, 0, total), " without sorting");
+        // TC04: the wave samples the lights as the per-pixel tracing does
+        SimpleRayTracer sampling = new SimpleRayTracer(AllocationTests.scene()).setLightSamples(2);
+        assertSimilar(traced(sampling, camera), new WavefrontRenderer(sampling, true)
+                .render(camera, RESOLUTION, RESOLUTION, 0, total), " with light sampling");
+        // TC05: the wave spends the shadow ray budget as the per-pixel tracing does
+        SimpleRayTracer budgeted = new SimpleRayTracer(AllocationTests.scene()).setShadowBudget(2);
+        assertSimilar(traced(budgeted, camera), new WavefrontRenderer(budgeted, true)
+                .render(camera, RESOLUTION, RESOLUTION, 0, total), " with a shadow ray budget");
+        // TC06: the wave casts the soft shadows of an area light as the per-pixel tracing does
+        Scene soft = AllocationTests.scene();
+        soft.lights.add(new RectLight(new Color(200, 200, 200), new Point(0, 100, -40), new Vector(40, 0, 0),
+                new Vector(0, 0, 40)).setKl(1e-4));
+        SimpleRayTracer areaLit = new SimpleRayTracer(soft);
+        assertSimilar(traced(areaLit, camera), new WavefrontRenderer(areaLit, true)
+                .render(camera, RESOLUTION, RESOLUTION, 0, total), " with an area light");
+        // TC07: the wave blurs the rough surfaces as the per-pixel tracing does
+        SimpleRayTracer glossy = new SimpleRayTracer(AllocationTests.scene(0.1));
+        assertSimilar(traced(glossy, camera), new WavefrontRenderer(glossy, true)
+                .render(camera, RESOLUTION, RESOLUTION, 0, total), " with rough surfaces");
+        // TC08: the wave terminates and chooses the secondary rays as the per-pixel tracing does
+        SimpleRayTracer branching = new SimpleRayTracer(AllocationTests.scene()).setSingleBranch(true)
+                .setRussianRoulette(0.3);
+        assertSimilar(traced(branching, camera), new WavefrontRenderer(branching, true)
+                .render(camera, RESOLUTION, RESOLUTION, 0, total), " with single branches and roulette");
+        // TC09: the wave gathers the caustic photons as the per-pixel tracing does
+        SimpleRayTracer caustic = new SimpleRayTracer(AllocationTests.scene()).setCaustics(20000, 5);
+        assertSimilar(traced(caustic, camera), new WavefrontRenderer(caustic, true)
+                .render(camera, RESOLUTION, RESOLUTION, 0, total), " with caustics");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a wave starting inside a row renders the same pixels
+        int from = RESOLUTION + RESOLUTION / 2;
+        Color[] part = new WavefrontRenderer(tracer, false).render(camera, RESOLUTION, RESOLUTION, from, from + 7);
+        for (int p = 0; p < 7; ++p)
+            assertEquals(wave[from + p].getColor(), part[p].getColor(), "Wrong pixel " + (from + p) + " of a partial wave");
+        // TC11: a wave with more shadow rays than a batch spawns them in batches of path rays
+        Scene many = AllocationTests.scene();
+        for (int l = 0; l < 200; ++l)
+            many.lights.add(new PointLight(new Color(2, 2, 1), new Point(l % 10 * 20 - 90, 60 + l / 10 * 3, 40)));
+        assertTrue(RESOLUTION * RESOLUTION * many.lights.size() > WavefrontRenderer.SHADOW_BATCH,
+                "The shadow rays must exceed a batch");
+        SimpleRayTracer lit = new SimpleRayTracer(many);
+        assertSimilar(traced(lit, camera), new WavefrontRenderer(lit, true)
+                .render(camera, RESOLUTION, RESOLUTION, 0, total), " with many lights");
+    }
+
+    /**
+     * Traces every pixel of the test image on its own.
+     *
+     * @param tracer the ray tracer
+     * @param camera the camera
+     * @return the pixel colors in row-major order
+     */
+    private static Color[] traced(SimpleRayTracer tracer, Camera camera) {
+        Color[] colors = new Color[RESOLUTION * RESOLUTION];
+        for (int p = 0; p < colors.length; ++p)
+            colors[p] = tracer.traceRay(camera.constructRay(RESOLUTION, RESOLUTION, p % RESOLUTION, p / RESOLUTION));
+        return colors;
+    }
+
+    /**
+     * Asserts that two images differ by at most 1 in every color component of every pixel.
+     *
+     * @param expected the expected pixel colors
+     * @param actual   the actual pixel colors
+     * @param context  description of the rendering for the failure message
+     */
+    private static void assertSimilar(Color[] expected, Color[] actual, String context) {
+        for (int p = 0; p < expected.length; ++p) {
+            java.awt.Color e = expected[p].getColor(), a = actual[p].getColor();
+            assertTrue(Math.abs(e.getRed() - a.getRed()) <= 1 && Math.abs(e.getGreen() - a.getGreen()) <= 1
+                            && Math.abs(e.getBlue() - a.getBlue()) <= 1,
+                    "Wrong color of pixel " + p + context + ": " + a + " instead of " + e);
+        }
+    }
+
+    /**
+     * Test method for {@link Camera.Builder#setWavefront(boolean)}.
+     */
+    @Test
+    void testSetWavefront() {
+        Camera.Builder builder = Camera.getBuilder().setVpDistance(100).setVpSize(10, 10).setResolution(10, 10)
+                .setWavefront(true);
+
+        // =============== Boundary Values Tests ==================
+        // TC10: wavefront rendering traces one ray per pixel
+        assertDoesNotThrow(builder::build, "Wavefront rendering with one ray per pixel");
+        assertThrows(IllegalStateException.class, () -> builder.setASS(2).build(), "Wavefront rendering with ASS");
+    }
+}